@@ -0,0 +1,135 @@
+package org.apache.lucene.codecs.auto;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.codecs.FieldStats;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.lucene41.Lucene41PostingsFormat;
+import org.apache.lucene.codecs.lucene410.Lucene410Codec;
+import org.apache.lucene.codecs.memory.FSTOrdPostingsFormat;
+import org.apache.lucene.codecs.memory.MemoryPostingsFormat;
+import org.apache.lucene.codecs.perfield.PerFieldPostingsFormat;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfo.IndexOptions;
+
+/**
+ * A {@link Lucene410Codec} that picks the postings format of every field of
+ * every segment from the statistics of the field in the segment:
+ * <ul>
+ *   <li>primary keys, which only index documents, have a single term per
+ *       document and whose terms match a single document on average, use
+ *       {@link MemoryPostingsFormat} if they have at most
+ *       <code>maxPrimaryKeyTerms</code> terms, so that lookups don't need to
+ *       go to disk,</li>
+ *   <li>low-cardinality fields, like facets, which have at most
+ *       <code>maxLowCardinalityTerms</code> terms that match many documents
+ *       on average, use {@link FSTOrdPostingsFormat}, which keeps the
+ *       whole terms dictionary in memory,</li>
+ *   <li>other fields, like text, use {@link Lucene41PostingsFormat}.</li>
+ * </ul>
+ * Segments that have less than <code>minSegmentDocs</code> documents always
+ * use {@link Lucene41PostingsFormat}: their statistics say little about the
+ * field, and they will likely be merged soon.
+ * <p>
+ * The format that is picked is recorded in the {@link FieldInfo} attributes
+ * of every segment (see {@link PerFieldPostingsFormat}), so that merges
+ * decide again based on the statistics of the merged segment, and indices
+ * can be read with the default codec.
+ * <p>
+ * Doc values don't need this, since {@link Lucene410Codec}'s doc values
+ * format already picks sparse or dense, table, GCD or delta encodings for
+ * every field of every segment.
+ * @lucene.experimental
+ */
+public class AutoPostingsCodec extends Lucene410Codec {
+
+  /** Default maximum number of terms of primary keys that use {@link MemoryPostingsFormat}. */
+  public static final long DEFAULT_MAX_PRIMARY_KEY_TERMS = 1 << 20;
+
+  /** Default maximum number of terms of low-cardinality fields. */
+  public static final long DEFAULT_MAX_LOW_CARDINALITY_TERMS = 1024;
+
+  /** Default minimum number of documents of segments whose formats are
+   *  picked from statistics. */
+  public static final int DEFAULT_MIN_SEGMENT_DOCS = 128;
+
+  /** Minimum average doc freq of the terms of low-cardinality fields. */
+  static final long MIN_LOW_CARDINALITY_DOC_FREQ = 16;
+
+  private final PostingsFormat defaultFormat = new Lucene41PostingsFormat();
+  private final PostingsFormat primaryKeyFormat = new MemoryPostingsFormat();
+  private final PostingsFormat lowCardinalityFormat = new FSTOrdPostingsFormat();
+  private final long maxPrimaryKeyTerms;
+  private final long maxLowCardinalityTerms;
+  private final int minSegmentDocs;
+
+  /** Create a new instance with default thresholds. */
+  public AutoPostingsCodec() {
+    this(DEFAULT_MAX_PRIMARY_KEY_TERMS, DEFAULT_MAX_LOW_CARDINALITY_TERMS);
+  }
+
+  /** Create a new instance with the given maximum numbers of terms of
+   *  primary keys that are held in memory and of low-cardinality fields. */
+  public AutoPostingsCodec(long maxPrimaryKeyTerms, long maxLowCardinalityTerms) {
+    this(maxPrimaryKeyTerms, maxLowCardinalityTerms, DEFAULT_MIN_SEGMENT_DOCS);
+  }
+
+  /** Create a new instance with the given maximum numbers of terms of
+   *  primary keys that are held in memory and of low-cardinality fields, and
+   *  the given minimum number of documents of segments whose formats are
+   *  picked from statistics. */
+  public AutoPostingsCodec(long maxPrimaryKeyTerms, long maxLowCardinalityTerms, int minSegmentDocs) {
+    if (maxPrimaryKeyTerms < 0 || maxLowCardinalityTerms < 0 || minSegmentDocs < 0) {
+      throw new IllegalArgumentException("thresholds must be >= 0, got maxPrimaryKeyTerms=" + maxPrimaryKeyTerms
+          + ", maxLowCardinalityTerms=" + maxLowCardinalityTerms + " and minSegmentDocs=" + minSegmentDocs);
+    }
+    this.maxPrimaryKeyTerms = maxPrimaryKeyTerms;
+    this.maxLowCardinalityTerms = maxLowCardinalityTerms;
+    this.minSegmentDocs = minSegmentDocs;
+  }
+
+  @Override
+  public PostingsFormat getPostingsFormatForField(String field) {
+    return defaultFormat;
+  }
+
+  @Override
+  public PostingsFormat getPostingsFormatForField(FieldInfo field, FieldStats stats) {
+    if (stats == null || stats.numTerms <= 0 || stats.sumDocFreq <= 0 || stats.maxDoc < minSegmentDocs) {
+      return getPostingsFormatForField(field.name);
+    }
+    final long numTerms = stats.numTerms;
+    final long sumDocFreq = stats.sumDocFreq;
+    if (field.getIndexOptions() == IndexOptions.DOCS_ONLY
+        && sumDocFreq <= numTerms + (numTerms >>> 4)
+        && stats.docCount >= sumDocFreq - (sumDocFreq >>> 4)) {
+      // primary key: terms match one doc on average, and docs have one term
+      return numTerms <= maxPrimaryKeyTerms ? primaryKeyFormat : defaultFormat;
+    }
+    if (numTerms <= maxLowCardinalityTerms && sumDocFreq >= numTerms * MIN_LOW_CARDINALITY_DOC_FREQ) {
+      return lowCardinalityFormat;
+    }
+    return defaultFormat;
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "(maxPrimaryKeyTerms=" + maxPrimaryKeyTerms
+        + ", maxLowCardinalityTerms=" + maxLowCardinalityTerms + ", minSegmentDocs=" + minSegmentDocs + ")";
+  }
+}
@@ -0,0 +1,138 @@
+package org.apache.lucene.codecs.eliasfano;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.FieldsConsumer;
+import org.apache.lucene.codecs.FieldsProducer;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.PostingsReaderBase;
+import org.apache.lucene.codecs.PostingsWriterBase;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsReader;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsWriter;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.packed.EliasFanoEncoder;
+
+/**
+ * Postings format that stores the doc IDs of each term as a
+ * partitioned Elias-Fano sequence.
+ * <p>
+ * The doc IDs of a term are cut into partitions of {@link #PARTITION_SIZE}
+ * docs, and each partition picks the smallest of three encodings for its
+ * doc IDs, relative to the last doc ID of the previous partition:
+ * <ul>
+ *   <li>a run, when the partition's doc IDs are consecutive, which takes
+ *       no space besides the partition header;</li>
+ *   <li>a bitmap, for dense partitions;</li>
+ *   <li>an Elias-Fano sequence, for sparse partitions.</li>
+ * </ul>
+ * Instead of multi-level skip lists, terms that have more than one
+ * partition store an Elias-Fano sequence of the last doc ID of every
+ * partition, and Elias-Fano sequences of the file pointers of every
+ * partition (see {@link EliasFanoEncoder#writeTo}).  {@code advance()}
+ * uses the index of the upper bits of the former to find the target
+ * partition in nearly constant time, and then jumps to it directly.
+ * <p>
+ * Freqs are bit-packed per partition, and only decoded on the first call
+ * to {@code freq()} in a partition.  Positions, offsets and payloads are
+ * stored as vInts in a separate file, with one file pointer per partition.
+ * <p>
+ * Files:
+ * <ul>
+ *   <li><tt>.efd</tt>: doc IDs, freqs and partition indexes</li>
+ *   <li><tt>.efp</tt>: positions, offsets and payloads</li>
+ * </ul>
+ *
+ * @lucene.experimental
+ */
+public final class EliasFanoPostingsFormat extends PostingsFormat {
+
+  /** Filename extension for doc IDs, freqs and partition indexes. */
+  public static final String DOC_EXTENSION = "efd";
+
+  /** Filename extension for positions, offsets and payloads. */
+  public static final String POS_EXTENSION = "efp";
+
+  /** Number of docs per partition. */
+  public static final int PARTITION_SIZE = 128;
+
+  private final int minTermBlockSize;
+  private final int maxTermBlockSize;
+
+  /** Creates {@code EliasFanoPostingsFormat} with default
+   *  settings. */
+  public EliasFanoPostingsFormat() {
+    this(BlockTreeTermsWriter.DEFAULT_MIN_BLOCK_SIZE, BlockTreeTermsWriter.DEFAULT_MAX_BLOCK_SIZE);
+  }
+
+  /** Creates {@code EliasFanoPostingsFormat} with custom
+   *  values for {@code minBlockSize} and {@code
+   *  maxBlockSize} passed to block terms dictionary.
+   *  @see BlockTreeTermsWriter#BlockTreeTermsWriter(SegmentWriteState,PostingsWriterBase,int,int) */
+  public EliasFanoPostingsFormat(int minTermBlockSize, int maxTermBlockSize) {
+    super("EliasFano");
+    this.minTermBlockSize = minTermBlockSize;
+    assert minTermBlockSize > 1;
+    this.maxTermBlockSize = maxTermBlockSize;
+    assert minTermBlockSize <= maxTermBlockSize;
+  }
+
+  @Override
+  public String toString() {
+    return getName() + "(partitionSize=" + PARTITION_SIZE + ")";
+  }
+
+  @Override
+  public FieldsConsumer fieldsConsumer(SegmentWriteState state) throws IOException {
+    PostingsWriterBase postingsWriter = new EliasFanoPostingsWriter(state);
+
+    boolean success = false;
+    try {
+      FieldsConsumer ret = new BlockTreeTermsWriter(state,
+                                                    postingsWriter,
+                                                    minTermBlockSize,
+                                                    maxTermBlockSize);
+      success = true;
+      return ret;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(postingsWriter);
+      }
+    }
+  }
+
+  @Override
+  public FieldsProducer fieldsProducer(SegmentReadState state) throws IOException {
+    PostingsReaderBase postingsReader =
+        new EliasFanoPostingsReader(state.directory, state.fieldInfos, state.segmentInfo, state.context, state.segmentSuffix);
+    boolean success = false;
+    try {
+      FieldsProducer ret = new BlockTreeTermsReader(state.directory, state.fieldInfos, state.segmentInfo, postingsReader,
+                                                    state.context, state.segmentSuffix, state.termsIndexDivisor);
+      success = true;
+      return ret;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(postingsReader);
+      }
+    }
+  }
+}
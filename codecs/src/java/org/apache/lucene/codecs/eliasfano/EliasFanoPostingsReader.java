@@ -0,0 +1,595 @@
+package org.apache.lucene.codecs.eliasfano;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import static org.apache.lucene.codecs.eliasfano.EliasFanoPostingsFormat.PARTITION_SIZE;
+import static org.apache.lucene.codecs.eliasfano.EliasFanoPostingsWriter.EliasFanoTermState;
+import static org.apache.lucene.codecs.eliasfano.EliasFanoPostingsWriter.numBytes;
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.BlockTermState;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.PostingsReaderBase;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.DocsAndPositionsEnum;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfo.IndexOptions;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.SegmentInfo;
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.packed.EliasFanoDecoder;
+import org.apache.lucene.util.packed.EliasFanoEncoder;
+
+/**
+ * Reads postings written by {@link EliasFanoPostingsWriter}.
+ *
+ * @see EliasFanoPostingsFormat for details
+ * @lucene.experimental
+ */
+final class EliasFanoPostingsReader extends PostingsReaderBase {
+
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(EliasFanoPostingsReader.class);
+
+  private final IndexInput docIn;
+  private final IndexInput posIn;
+
+  /** Sole constructor. */
+  public EliasFanoPostingsReader(Directory dir, FieldInfos fieldInfos, SegmentInfo segmentInfo, IOContext ioContext, String segmentSuffix) throws IOException {
+    boolean success = false;
+    IndexInput docIn = null;
+    IndexInput posIn = null;
+    try {
+      docIn = dir.openInput(IndexFileNames.segmentFileName(segmentInfo.name, segmentSuffix, EliasFanoPostingsFormat.DOC_EXTENSION),
+                            ioContext);
+      CodecUtil.checkHeader(docIn,
+                            EliasFanoPostingsWriter.DOC_CODEC,
+                            EliasFanoPostingsWriter.VERSION_START,
+                            EliasFanoPostingsWriter.VERSION_CURRENT);
+      // NOTE: data file is too costly to verify checksum against all the bytes on open,
+      // but for now we at least verify proper structure of the checksum footer: which looks
+      // for FOOTER_MAGIC + algorithmID. This is cheap and can detect some forms of corruption
+      // such as file truncation.
+      CodecUtil.retrieveChecksum(docIn);
+
+      if (fieldInfos.hasProx()) {
+        posIn = dir.openInput(IndexFileNames.segmentFileName(segmentInfo.name, segmentSuffix, EliasFanoPostingsFormat.POS_EXTENSION),
+                              ioContext);
+        CodecUtil.checkHeader(posIn,
+                              EliasFanoPostingsWriter.POS_CODEC,
+                              EliasFanoPostingsWriter.VERSION_START,
+                              EliasFanoPostingsWriter.VERSION_CURRENT);
+        CodecUtil.retrieveChecksum(posIn);
+      }
+
+      this.docIn = docIn;
+      this.posIn = posIn;
+      success = true;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(docIn, posIn);
+      }
+    }
+  }
+
+  @Override
+  public void init(IndexInput termsIn) throws IOException {
+    // Make sure we are talking to the matching postings writer
+    CodecUtil.checkHeader(termsIn,
+                          EliasFanoPostingsWriter.TERMS_CODEC,
+                          EliasFanoPostingsWriter.VERSION_START,
+                          EliasFanoPostingsWriter.VERSION_CURRENT);
+    final int indexPartitionSize = termsIn.readVInt();
+    if (indexPartitionSize != PARTITION_SIZE) {
+      throw new IllegalStateException("index-time PARTITION_SIZE (" + indexPartitionSize + ") != read-time PARTITION_SIZE (" + PARTITION_SIZE + ")");
+    }
+  }
+
+  /** Reads the first <code>count</code> values of <code>bitsPerValue</code>
+   *  bits from <code>bytes</code>, least significant bits first.
+   *  @see EliasFanoPostingsWriter#writeBits */
+  static void readBits(byte[] bytes, int count, int bitsPerValue, int[] values) {
+    if (bitsPerValue == 0) {
+      for (int i = 0; i < count; i++) {
+        values[i] = 0;
+      }
+      return;
+    }
+    final long mask = (1L << bitsPerValue) - 1;
+    long acc = 0;
+    int accBits = 0;
+    int byteUpto = 0;
+    for (int i = 0; i < count; i++) {
+      while (accBits < bitsPerValue) {
+        acc |= (bytes[byteUpto++] & 0xFFL) << accBits;
+        accBits += 8;
+      }
+      values[i] = (int) (acc & mask);
+      acc >>>= bitsPerValue;
+      accBits -= bitsPerValue;
+    }
+  }
+
+  @Override
+  public BlockTermState newTermState() {
+    return new EliasFanoTermState();
+  }
+
+  @Override
+  public void close() throws IOException {
+    IOUtils.close(docIn, posIn);
+  }
+
+  @Override
+  public void decodeTerm(long[] longs, DataInput in, FieldInfo fieldInfo, BlockTermState _termState, boolean absolute)
+    throws IOException {
+    final EliasFanoTermState termState = (EliasFanoTermState) _termState;
+    final boolean fieldHasPositions = fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS) >= 0;
+
+    if (absolute) {
+      termState.docStartFP = 0;
+      termState.posStartFP = 0;
+    }
+    termState.docStartFP += longs[0];
+    if (fieldHasPositions) {
+      termState.posStartFP += longs[1];
+    }
+    if (termState.docFreq == 1) {
+      termState.singletonDocID = in.readVInt();
+    } else {
+      termState.singletonDocID = -1;
+    }
+    if (termState.docFreq > PARTITION_SIZE) {
+      termState.indexOffset = in.readVLong();
+    } else {
+      termState.indexOffset = -1;
+    }
+  }
+
+  @Override
+  public DocsEnum docs(FieldInfo fieldInfo, BlockTermState termState, Bits liveDocs, DocsEnum reuse, int flags) throws IOException {
+    EliasFanoDocsEnum docsEnum;
+    if (reuse instanceof EliasFanoDocsEnum) {
+      docsEnum = (EliasFanoDocsEnum) reuse;
+      if (!docsEnum.canReuse(docIn, fieldInfo)) {
+        docsEnum = new EliasFanoDocsEnum(fieldInfo);
+      }
+    } else {
+      docsEnum = new EliasFanoDocsEnum(fieldInfo);
+    }
+    return docsEnum.reset(liveDocs, (EliasFanoTermState) termState, false);
+  }
+
+  @Override
+  public DocsAndPositionsEnum docsAndPositions(FieldInfo fieldInfo, BlockTermState termState, Bits liveDocs,
+                                               DocsAndPositionsEnum reuse, int flags)
+    throws IOException {
+    EliasFanoDocsEnum docsEnum;
+    if (reuse instanceof EliasFanoDocsEnum) {
+      docsEnum = (EliasFanoDocsEnum) reuse;
+      if (!docsEnum.canReuse(docIn, fieldInfo)) {
+        docsEnum = new EliasFanoDocsEnum(fieldInfo);
+      }
+    } else {
+      docsEnum = new EliasFanoDocsEnum(fieldInfo);
+    }
+    return docsEnum.reset(liveDocs, (EliasFanoTermState) termState, true);
+  }
+
+  final class EliasFanoDocsEnum extends DocsAndPositionsEnum {
+    private final int[] docBuffer = new int[PARTITION_SIZE];
+    private final int[] freqBuffer = new int[PARTITION_SIZE];
+    private final int[] lowBuffer = new int[PARTITION_SIZE];
+    private byte[] bytes = new byte[64];
+
+    // bit-packed freqs of the current partition, decoded on
+    // the first call to freq()
+    private final byte[] freqEncoded = new byte[numBytes(PARTITION_SIZE, 32)];
+    private int freqBitsPerValue;
+    private boolean freqsPending;
+
+    final IndexInput startDocIn;
+    final IndexInput docIn;
+    IndexInput posIn;
+
+    final boolean indexHasFreq;
+    final boolean indexHasPos;
+    final boolean indexHasOffsets;
+    final boolean indexHasPayloads;
+
+    private boolean needsPositions;
+    private Bits liveDocs;
+
+    private int docFreq;                              // number of docs in this posting list
+    private long totalTermFreq;                       // sum of freqs in this posting list (or docFreq when omitted)
+    private int docUpto;                              // how many docs we've read into buffers
+    private int doc;                                  // doc we last read
+    private int singletonDocID;
+
+    private int partitionUpto;                        // index of the current partition
+    private int partitionLastDoc;                     // last doc of the current partition
+    private int bufferUpto;
+    private int bufferLength;
+
+    // where this term's postings start:
+    private long docTermStartFP;
+    private long posTermStartFP;
+
+    // partition index, lazily loaded on the first advance that
+    // goes beyond the current partition:
+    private long indexOffset;
+    private boolean indexLoaded;
+    private EliasFanoDecoder lastDocsDecoder;
+    private EliasFanoDecoder baseDecoder;
+    private EliasFanoDecoder docOffsetsDecoder;
+    private EliasFanoDecoder posOffsetsDecoder;
+
+    // positions:
+    private int freq;
+    private int posPendingCount;
+    private int position;
+    private int startOffset;
+    private int endOffset;
+    private int payloadLength;
+    private int offsetLength;
+    private final BytesRef payload;
+
+    public EliasFanoDocsEnum(FieldInfo fieldInfo) throws IOException {
+      this.startDocIn = EliasFanoPostingsReader.this.docIn;
+      this.docIn = startDocIn.clone();
+      indexHasFreq = fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS) >= 0;
+      indexHasPos = fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS) >= 0;
+      indexHasOffsets = fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS) >= 0;
+      indexHasPayloads = fieldInfo.hasPayloads();
+      payload = indexHasPayloads ? new BytesRef() : null;
+    }
+
+    public boolean canReuse(IndexInput docIn, FieldInfo fieldInfo) {
+      return docIn == startDocIn &&
+        indexHasFreq == (fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS) >= 0) &&
+        indexHasPos == (fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS) >= 0) &&
+        indexHasOffsets == (fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS) >= 0) &&
+        indexHasPayloads == fieldInfo.hasPayloads();
+    }
+
+    public EliasFanoDocsEnum reset(Bits liveDocs, EliasFanoTermState termState, boolean needsPositions) throws IOException {
+      this.liveDocs = liveDocs;
+      this.needsPositions = needsPositions && indexHasPos;
+
+      docFreq = termState.docFreq;
+      totalTermFreq = indexHasFreq ? termState.totalTermFreq : docFreq;
+      docTermStartFP = termState.docStartFP;
+      posTermStartFP = termState.posStartFP;
+      indexOffset = termState.indexOffset;
+      singletonDocID = termState.singletonDocID;
+      if (docFreq > 1) {
+        docIn.seek(docTermStartFP);
+      }
+      if (this.needsPositions) {
+        if (posIn == null) {
+          posIn = EliasFanoPostingsReader.this.posIn.clone();
+        }
+        posIn.seek(posTermStartFP);
+      }
+
+      doc = -1;
+      docUpto = 0;
+      partitionUpto = -1;
+      partitionLastDoc = -1;
+      bufferUpto = 0;
+      bufferLength = 0;
+      indexLoaded = false;
+      freqsPending = false;
+      freq = 1;
+      posPendingCount = 0;
+      return this;
+    }
+
+    @Override
+    public int freq() throws IOException {
+      if (needsPositions) {
+        return freq;
+      }
+      if (freqsPending) {
+        decodeFreqs();
+      }
+      return freqBuffer[bufferUpto - 1];
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    private byte[] readBytes(int length) throws IOException {
+      if (bytes.length < length) {
+        bytes = new byte[ArrayUtil.oversize(length, 1)];
+      }
+      docIn.readBytes(bytes, 0, length);
+      return bytes;
+    }
+
+    /** Decodes the next partition into the buffers. */
+    private void refill() throws IOException {
+      if (needsPositions) {
+        // positions that are still pending belong to the
+        // previous partition, skip them before resetting state
+        skipPositions(posPendingCount);
+        posPendingCount = 0;
+        payloadLength = -1;
+        offsetLength = -1;
+      }
+      partitionUpto++;
+
+      if (docFreq == 1) {
+        docBuffer[0] = singletonDocID;
+        freqBuffer[0] = (int) totalTermFreq;
+        bufferLength = 1;
+      } else {
+        final int base = partitionLastDoc;
+        final int count = Math.min(PARTITION_SIZE, docFreq - docUpto);
+        final byte encoding = docIn.readByte();
+        final int universe = docIn.readVInt() + count;
+        switch (encoding) {
+          case EliasFanoPostingsWriter.RUN:
+            for (int i = 0; i < count; i++) {
+              docBuffer[i] = base + 1 + i;
+            }
+            break;
+          case EliasFanoPostingsWriter.BITMAP: {
+            final byte[] bitmap = readBytes(numBytes(universe, 1));
+            int upto = 0;
+            for (int i = 0; upto < count; i++) {
+              int b = bitmap[i] & 0xFF;
+              while (b != 0) {
+                final int bit = Integer.numberOfTrailingZeros(b);
+                docBuffer[upto++] = base + 1 + (i << 3) + bit;
+                b &= b - 1;
+              }
+            }
+            break;
+          }
+          case EliasFanoPostingsWriter.ELIAS_FANO: {
+            final int lowBits = 31 - Integer.numberOfLeadingZeros(universe / count);
+            readBits(readBytes(numBytes(count, lowBits)), count, lowBits, lowBuffer);
+            final byte[] upper = readBytes(numBytes(((universe - 1) >>> lowBits) + count, 1));
+            int upto = 0;
+            for (int i = 0; upto < count; i++) {
+              int b = upper[i] & 0xFF;
+              while (b != 0) {
+                final int bit = Integer.numberOfTrailingZeros(b);
+                final int high = (i << 3) + bit - upto;
+                docBuffer[upto] = base + 1 + ((high << lowBits) | lowBuffer[upto]);
+                upto++;
+                b &= b - 1;
+              }
+            }
+            break;
+          }
+          default:
+            throw new CorruptIndexException("invalid partition encoding: " + encoding + " (resource=" + docIn + ")");
+        }
+        if (indexHasFreq) {
+          freqBitsPerValue = docIn.readByte();
+          docIn.readBytes(freqEncoded, 0, numBytes(count, freqBitsPerValue));
+          freqsPending = true;
+        }
+        bufferLength = count;
+      }
+
+      docUpto += bufferLength;
+      partitionLastDoc = docBuffer[bufferLength - 1];
+      bufferUpto = 0;
+      if (!indexHasFreq) {
+        freqsPending = false;
+        for (int i = 0; i < bufferLength; i++) {
+          freqBuffer[i] = 1;
+        }
+      } else if (freqsPending && needsPositions) {
+        decodeFreqs();
+      }
+    }
+
+    private void decodeFreqs() {
+      readBits(freqEncoded, bufferLength, freqBitsPerValue, freqBuffer);
+      for (int i = 0; i < bufferLength; i++) {
+        freqBuffer[i]++;
+      }
+      freqsPending = false;
+    }
+
+    private void loadIndex() throws IOException {
+      final long fp = docIn.getFilePointer();
+      docIn.seek(docTermStartFP + indexOffset);
+      final EliasFanoEncoder lastDocs = EliasFanoEncoder.readFrom(docIn);
+      final EliasFanoEncoder docOffsets = EliasFanoEncoder.readFrom(docIn);
+      lastDocsDecoder = lastDocs.getDecoder();
+      baseDecoder = lastDocs.getDecoder();
+      docOffsetsDecoder = docOffsets.getDecoder();
+      if (needsPositions) {
+        posOffsetsDecoder = EliasFanoEncoder.readFrom(docIn).getDecoder();
+      }
+      docIn.seek(fp);
+      indexLoaded = true;
+    }
+
+    /** Positions the enum just before partition <code>p</code>. */
+    private void seekPartition(int p) throws IOException {
+      assert p > partitionUpto + 1;
+      baseDecoder.advanceToIndex(p - 1);
+      docOffsetsDecoder.advanceToIndex(p);
+      docIn.seek(docTermStartFP + docOffsetsDecoder.currentValue());
+      if (needsPositions) {
+        posOffsetsDecoder.advanceToIndex(p);
+        posIn.seek(posTermStartFP + posOffsetsDecoder.currentValue());
+        posPendingCount = 0;
+      }
+      partitionUpto = p - 1;
+      partitionLastDoc = (int) baseDecoder.currentValue();
+      docUpto = p * PARTITION_SIZE;
+      bufferUpto = bufferLength = 0;
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+      return scanTo(doc + 1);
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+      if (target > partitionLastDoc && indexOffset != -1) {
+        if (!indexLoaded) {
+          loadIndex();
+        }
+        if (lastDocsDecoder.advanceToValue(target) == EliasFanoDecoder.NO_MORE_VALUES) {
+          return doc = NO_MORE_DOCS;
+        }
+        final int p = (int) lastDocsDecoder.currentIndex();
+        if (p > partitionUpto + 1) {
+          seekPartition(p);
+        }
+      }
+      return scanTo(target);
+    }
+
+    private int scanTo(int target) throws IOException {
+      while (true) {
+        if (bufferUpto == bufferLength) {
+          if (docUpto == docFreq) {
+            return doc = NO_MORE_DOCS;
+          }
+          refill();
+        }
+        final int d = docBuffer[bufferUpto];
+        if (needsPositions) {
+          posPendingCount += freqBuffer[bufferUpto];
+        }
+        bufferUpto++;
+        if (d >= target && (liveDocs == null || liveDocs.get(d))) {
+          if (needsPositions) {
+            freq = freqBuffer[bufferUpto - 1];
+            position = 0;
+            startOffset = 0;
+          }
+          return doc = d;
+        }
+      }
+    }
+
+    private void skipPositions(int count) throws IOException {
+      for (int i = 0; i < count; i++) {
+        final int code = posIn.readVInt();
+        if (indexHasPayloads) {
+          if ((code & 1) != 0) {
+            payloadLength = posIn.readVInt();
+          }
+          if (payloadLength != 0) {
+            posIn.seek(posIn.getFilePointer() + payloadLength);
+          }
+        }
+        if (indexHasOffsets) {
+          if ((posIn.readVInt() & 1) != 0) {
+            offsetLength = posIn.readVInt();
+          }
+        }
+      }
+    }
+
+    @Override
+    public int nextPosition() throws IOException {
+      assert needsPositions;
+      if (posPendingCount > freq) {
+        skipPositions(posPendingCount - freq);
+        posPendingCount = freq;
+      }
+      posPendingCount--;
+
+      final int code = posIn.readVInt();
+      if (indexHasPayloads) {
+        if ((code & 1) != 0) {
+          payloadLength = posIn.readVInt();
+        }
+        position += code >>> 1;
+        payload.length = payloadLength;
+        if (payloadLength != 0) {
+          payload.bytes = ArrayUtil.grow(payload.bytes, payloadLength);
+          posIn.readBytes(payload.bytes, 0, payloadLength);
+        }
+      } else {
+        position += code;
+      }
+      if (indexHasOffsets) {
+        final int offsetCode = posIn.readVInt();
+        if ((offsetCode & 1) != 0) {
+          offsetLength = posIn.readVInt();
+        }
+        startOffset += offsetCode >>> 1;
+        endOffset = startOffset + offsetLength;
+      }
+      return position;
+    }
+
+    @Override
+    public int startOffset() {
+      return indexHasOffsets && needsPositions ? startOffset : -1;
+    }
+
+    @Override
+    public int endOffset() {
+      return indexHasOffsets && needsPositions ? endOffset : -1;
+    }
+
+    @Override
+    public BytesRef getPayload() {
+      if (!needsPositions || payload == null || payload.length == 0) {
+        return null;
+      }
+      return payload;
+    }
+
+    @Override
+    public long cost() {
+      return docFreq;
+    }
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return BASE_RAM_BYTES_USED;
+  }
+
+  @Override
+  public void checkIntegrity() throws IOException {
+    if (docIn != null) {
+      CodecUtil.checksumEntireFile(docIn);
+    }
+    if (posIn != null) {
+      CodecUtil.checksumEntireFile(posIn);
+    }
+  }
+}
@@ -0,0 +1,455 @@
+package org.apache.lucene.codecs.eliasfano;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import static org.apache.lucene.codecs.eliasfano.EliasFanoPostingsFormat.PARTITION_SIZE;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.codecs.BlockTermState;
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.PostingsWriterBase;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfo.IndexOptions;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.index.TermState;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.packed.EliasFanoEncoder;
+import org.apache.lucene.util.packed.PackedInts;
+
+/**
+ * Writes postings in the format described in {@link EliasFanoPostingsFormat}.
+ *
+ * @lucene.experimental
+ */
+final class EliasFanoPostingsWriter extends PostingsWriterBase {
+
+  final static String TERMS_CODEC = "EliasFanoPostingsWriterTerms";
+  final static String DOC_CODEC = "EliasFanoPostingsWriterDoc";
+  final static String POS_CODEC = "EliasFanoPostingsWriterPos";
+
+  // Increment version to change it
+  final static int VERSION_START = 0;
+  final static int VERSION_CURRENT = VERSION_START;
+
+  // Encodings of the doc IDs of a partition:
+  /** Doc IDs are consecutive */
+  final static byte RUN = 0;
+  /** Doc IDs are set bits of a bitmap */
+  final static byte BITMAP = 1;
+  /** Doc IDs are encoded as an Elias-Fano sequence */
+  final static byte ELIAS_FANO = 2;
+
+  final IndexOutput docOut;
+  final IndexOutput posOut;
+
+  final static EliasFanoTermState emptyState = new EliasFanoTermState();
+  EliasFanoTermState lastState;
+
+  // How current field indexes postings:
+  private boolean fieldHasFreqs;
+  private boolean fieldHasPositions;
+  private boolean fieldHasOffsets;
+  private boolean fieldHasPayloads;
+
+  // Holds starting file pointers for current term:
+  private long docStartFP;
+  private long posStartFP;
+
+  // Current partition:
+  private final int[] docBuffer = new int[PARTITION_SIZE];
+  private final int[] freqBuffer = new int[PARTITION_SIZE];
+  private int docBufferUpto;
+  private long partitionPosOffset;
+  private int lastPartitionDocID;
+
+  // Partitions of the current term, to build the index:
+  private int numPartitions;
+  private long[] partitionLastDocs = new long[8];
+  private long[] partitionDocOffsets = new long[8];
+  private long[] partitionPosOffsets = new long[8];
+
+  private int lastDocID;
+  private int docCount;
+
+  private int lastPosition;
+  private int lastStartOffset;
+  private int lastPayloadLength;
+  private int lastOffsetLength;
+
+  private final int[] scratch = new int[PARTITION_SIZE];
+  private byte[] scratchBytes = new byte[64];
+
+  /** Creates a postings writer */
+  public EliasFanoPostingsWriter(SegmentWriteState state) throws IOException {
+    IndexOutput docOut = null;
+    IndexOutput posOut = null;
+    boolean success = false;
+    try {
+      docOut = state.directory.createOutput(IndexFileNames.segmentFileName(state.segmentInfo.name,
+          state.segmentSuffix, EliasFanoPostingsFormat.DOC_EXTENSION), state.context);
+      CodecUtil.writeHeader(docOut, DOC_CODEC, VERSION_CURRENT);
+      if (state.fieldInfos.hasProx()) {
+        posOut = state.directory.createOutput(IndexFileNames.segmentFileName(state.segmentInfo.name,
+            state.segmentSuffix, EliasFanoPostingsFormat.POS_EXTENSION), state.context);
+        CodecUtil.writeHeader(posOut, POS_CODEC, VERSION_CURRENT);
+      }
+      this.docOut = docOut;
+      this.posOut = posOut;
+      success = true;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(docOut, posOut);
+      }
+    }
+  }
+
+  final static class EliasFanoTermState extends BlockTermState {
+    long docStartFP = 0;
+    long posStartFP = 0;
+    // offset of the partition index from docStartFP, or -1 if
+    // the term has a single partition
+    long indexOffset = -1;
+    int singletonDocID = -1;
+
+    @Override
+    public EliasFanoTermState clone() {
+      EliasFanoTermState other = new EliasFanoTermState();
+      other.copyFrom(this);
+      return other;
+    }
+
+    @Override
+    public void copyFrom(TermState _other) {
+      super.copyFrom(_other);
+      EliasFanoTermState other = (EliasFanoTermState) _other;
+      docStartFP = other.docStartFP;
+      posStartFP = other.posStartFP;
+      indexOffset = other.indexOffset;
+      singletonDocID = other.singletonDocID;
+    }
+
+    @Override
+    public String toString() {
+      return super.toString() + " docStartFP=" + docStartFP + " posStartFP=" + posStartFP + " indexOffset=" + indexOffset + " singletonDocID=" + singletonDocID;
+    }
+  }
+
+  @Override
+  public EliasFanoTermState newTermState() {
+    return new EliasFanoTermState();
+  }
+
+  @Override
+  public void init(IndexOutput termsOut) throws IOException {
+    CodecUtil.writeHeader(termsOut, TERMS_CODEC, VERSION_CURRENT);
+    termsOut.writeVInt(PARTITION_SIZE);
+  }
+
+  @Override
+  public int setField(FieldInfo fieldInfo) {
+    IndexOptions indexOptions = fieldInfo.getIndexOptions();
+    fieldHasFreqs = indexOptions.compareTo(IndexOptions.DOCS_AND_FREQS) >= 0;
+    fieldHasPositions = indexOptions.compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS) >= 0;
+    fieldHasOffsets = indexOptions.compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS) >= 0;
+    fieldHasPayloads = fieldInfo.hasPayloads();
+    lastState = emptyState;
+    return fieldHasPositions ? 2 : 1;
+  }
+
+  @Override
+  public void startTerm() {
+    docStartFP = docOut.getFilePointer();
+    if (fieldHasPositions) {
+      posStartFP = posOut.getFilePointer();
+    }
+    lastDocID = 0;
+    lastPartitionDocID = -1;
+    numPartitions = 0;
+  }
+
+  @Override
+  public void startDoc(int docID, int termDocFreq) throws IOException {
+    if (docID < 0 || (docCount > 0 && docID <= lastDocID)) {
+      throw new CorruptIndexException("docs out of order (" + docID + " <= " + lastDocID + " ) (docOut: " + docOut + ")");
+    }
+
+    if (docBufferUpto == 0 && fieldHasPositions) {
+      // positions of a partition can be read without
+      // reading the positions of previous partitions
+      partitionPosOffset = posOut.getFilePointer() - posStartFP;
+      lastPayloadLength = -1;
+      lastOffsetLength = -1;
+    }
+
+    docBuffer[docBufferUpto] = docID;
+    if (fieldHasFreqs) {
+      freqBuffer[docBufferUpto] = termDocFreq;
+    }
+    docBufferUpto++;
+    docCount++;
+
+    lastDocID = docID;
+    lastPosition = 0;
+    lastStartOffset = 0;
+  }
+
+  /** Add a new position & payload */
+  @Override
+  public void addPosition(int position, BytesRef payload, int startOffset, int endOffset) throws IOException {
+    final int delta = position - lastPosition;
+    lastPosition = position;
+    if (fieldHasPayloads) {
+      final int payloadLength = payload == null ? 0 : payload.length;
+      if (payloadLength != lastPayloadLength) {
+        lastPayloadLength = payloadLength;
+        posOut.writeVInt((delta<<1)|1);
+        posOut.writeVInt(payloadLength);
+      } else {
+        posOut.writeVInt(delta<<1);
+      }
+      if (payloadLength != 0) {
+        posOut.writeBytes(payload.bytes, payload.offset, payloadLength);
+      }
+    } else {
+      posOut.writeVInt(delta);
+    }
+
+    if (fieldHasOffsets) {
+      assert startOffset >= lastStartOffset;
+      assert endOffset >= startOffset;
+      final int startDelta = startOffset - lastStartOffset;
+      final int offsetLength = endOffset - startOffset;
+      if (offsetLength != lastOffsetLength) {
+        lastOffsetLength = offsetLength;
+        posOut.writeVInt((startDelta<<1)|1);
+        posOut.writeVInt(offsetLength);
+      } else {
+        posOut.writeVInt(startDelta<<1);
+      }
+      lastStartOffset = startOffset;
+    }
+  }
+
+  @Override
+  public void finishDoc() throws IOException {
+    if (docBufferUpto == PARTITION_SIZE) {
+      writePartition();
+    }
+  }
+
+  /** Writes the buffered docs (and freqs) as one partition. */
+  private void writePartition() throws IOException {
+    final int count = docBufferUpto;
+    assert count > 0;
+    final int lastDoc = docBuffer[count-1];
+
+    if (numPartitions == partitionLastDocs.length) {
+      final int newLength = ArrayUtil.oversize(numPartitions + 1, 8);
+      partitionLastDocs = Arrays.copyOf(partitionLastDocs, newLength);
+      partitionDocOffsets = Arrays.copyOf(partitionDocOffsets, newLength);
+      partitionPosOffsets = Arrays.copyOf(partitionPosOffsets, newLength);
+    }
+    partitionLastDocs[numPartitions] = lastDoc;
+    partitionDocOffsets[numPartitions] = docOut.getFilePointer() - docStartFP;
+    partitionPosOffsets[numPartitions] = partitionPosOffset;
+    numPartitions++;
+
+    // doc IDs are encoded as values in [0, universe) relative to the
+    // last doc of the previous partition:
+    final int universe = lastDoc - lastPartitionDocID;
+    assert universe >= count;
+    for (int i = 0; i < count; i++) {
+      scratch[i] = docBuffer[i] - lastPartitionDocID - 1;
+    }
+    lastPartitionDocID = lastDoc;
+
+    if (universe == count) {
+      docOut.writeByte(RUN);
+      docOut.writeVInt(0);
+    } else {
+      final int bitmapBytes = numBytes(universe, 1);
+      final int lowBits = 31 - Integer.numberOfLeadingZeros(universe / count);
+      final int upperBits = ((universe - 1) >>> lowBits) + count;
+      final int efBytes = numBytes(count, lowBits) + numBytes(upperBits, 1);
+      if (bitmapBytes <= efBytes) {
+        docOut.writeByte(BITMAP);
+        docOut.writeVInt(universe - count);
+        final byte[] bytes = clearScratchBytes(bitmapBytes);
+        for (int i = 0; i < count; i++) {
+          setBit(bytes, scratch[i]);
+        }
+        docOut.writeBytes(bytes, bitmapBytes);
+      } else {
+        docOut.writeByte(ELIAS_FANO);
+        docOut.writeVInt(universe - count);
+        final byte[] bytes = clearScratchBytes(numBytes(upperBits, 1));
+        final int lowMask = (1 << lowBits) - 1;
+        for (int i = 0; i < count; i++) {
+          setBit(bytes, (scratch[i] >>> lowBits) + i);
+          scratch[i] &= lowMask;
+        }
+        writeBits(docOut, scratch, count, lowBits);
+        docOut.writeBytes(bytes, numBytes(upperBits, 1));
+      }
+    }
+
+    if (fieldHasFreqs) {
+      int or = 0;
+      for (int i = 0; i < count; i++) {
+        scratch[i] = freqBuffer[i] - 1;
+        or |= scratch[i];
+      }
+      final int bitsPerValue = PackedInts.bitsRequired(or);
+      docOut.writeByte((byte) bitsPerValue);
+      writeBits(docOut, scratch, count, bitsPerValue);
+    }
+
+    docBufferUpto = 0;
+  }
+
+  private byte[] clearScratchBytes(int length) {
+    if (scratchBytes.length < length) {
+      scratchBytes = new byte[ArrayUtil.oversize(length, 1)];
+    } else {
+      Arrays.fill(scratchBytes, 0, length, (byte) 0);
+    }
+    return scratchBytes;
+  }
+
+  private static void setBit(byte[] bytes, int index) {
+    bytes[index >>> 3] |= 1 << (index & 7);
+  }
+
+  /** Number of bytes needed to store <code>count</code> values of <code>bitsPerValue</code> bits. */
+  static int numBytes(int count, int bitsPerValue) {
+    return (int) (((long) count * bitsPerValue + 7) >>> 3);
+  }
+
+  /** Writes the first <code>count</code> values, which must all fit in
+   *  <code>bitsPerValue</code> bits, least significant bits first.
+   *  @see EliasFanoPostingsReader#readBits */
+  static void writeBits(DataOutput out, int[] values, int count, int bitsPerValue) throws IOException {
+    if (bitsPerValue == 0) {
+      return;
+    }
+    long acc = 0;
+    int accBits = 0;
+    for (int i = 0; i < count; i++) {
+      assert bitsPerValue == 32 || (values[i] >>> bitsPerValue) == 0;
+      acc |= (values[i] & 0xFFFFFFFFL) << accBits;
+      accBits += bitsPerValue;
+      while (accBits >= 8) {
+        out.writeByte((byte) acc);
+        acc >>>= 8;
+        accBits -= 8;
+      }
+    }
+    if (accBits > 0) {
+      out.writeByte((byte) acc);
+    }
+  }
+
+  /** Called when we are done adding docs to this term */
+  @Override
+  public void finishTerm(BlockTermState _state) throws IOException {
+    EliasFanoTermState state = (EliasFanoTermState) _state;
+    assert state.docFreq > 0;
+    assert state.docFreq == docCount: state.docFreq + " vs " + docCount;
+
+    final int singletonDocID;
+    long indexOffset = -1;
+    if (state.docFreq == 1) {
+      // pulse the singleton docid into the term dictionary
+      singletonDocID = docBuffer[0];
+      docBufferUpto = 0;
+    } else {
+      singletonDocID = -1;
+      if (docBufferUpto > 0) {
+        writePartition();
+      }
+      if (numPartitions > 1) {
+        indexOffset = docOut.getFilePointer() - docStartFP;
+        writeIndex(partitionLastDocs);
+        writeIndex(partitionDocOffsets);
+        if (fieldHasPositions) {
+          writeIndex(partitionPosOffsets);
+        }
+      }
+    }
+
+    state.docStartFP = docStartFP;
+    state.posStartFP = posStartFP;
+    state.singletonDocID = singletonDocID;
+    state.indexOffset = indexOffset;
+    lastDocID = 0;
+    docCount = 0;
+  }
+
+  private void writeIndex(long[] values) throws IOException {
+    final EliasFanoEncoder efEncoder = new EliasFanoEncoder(numPartitions, values[numPartitions-1]);
+    for (int i = 0; i < numPartitions; i++) {
+      efEncoder.encodeNext(values[i]);
+    }
+    efEncoder.writeTo(docOut);
+  }
+
+  @Override
+  public void encodeTerm(long[] longs, DataOutput out, FieldInfo fieldInfo, BlockTermState _state, boolean absolute) throws IOException {
+    EliasFanoTermState state = (EliasFanoTermState)_state;
+    if (absolute) {
+      lastState = emptyState;
+    }
+    longs[0] = state.docStartFP - lastState.docStartFP;
+    if (fieldHasPositions) {
+      longs[1] = state.posStartFP - lastState.posStartFP;
+    }
+    if (state.singletonDocID != -1) {
+      out.writeVInt(state.singletonDocID);
+    }
+    if (state.indexOffset != -1) {
+      out.writeVLong(state.indexOffset);
+    }
+    lastState = state;
+  }
+
+  @Override
+  public void close() throws IOException {
+    boolean success = false;
+    try {
+      CodecUtil.writeFooter(docOut);
+      if (posOut != null) {
+        CodecUtil.writeFooter(posOut);
+      }
+      success = true;
+    } finally {
+      if (success) {
+        IOUtils.close(docOut, posOut);
+      } else {
+        IOUtils.closeWhileHandlingException(docOut, posOut);
+      }
+    }
+  }
+}
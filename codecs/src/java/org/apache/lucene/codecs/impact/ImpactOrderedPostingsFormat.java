@@ -0,0 +1,504 @@
+package org.apache.lucene.codecs.impact;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.FieldsConsumer;
+import org.apache.lucene.codecs.FieldsProducer;
+import org.apache.lucene.codecs.PostingsConsumer;
+import org.apache.lucene.codecs.PostingsFormat;
+import org.apache.lucene.codecs.TermStats;
+import org.apache.lucene.codecs.TermsConsumer;
+import org.apache.lucene.codecs.lucene41.Lucene41PostingsFormat;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfo.IndexOptions;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * A {@link PostingsFormat} that stores, next to the docID-ordered postings
+ * of a delegate format, an impact-ordered copy of the postings of terms that
+ * have a high document frequency.
+ * <p>
+ * The impact of a term in a document is its term frequency, quantized into
+ * {@link #MAX_IMPACT} buckets on a log scale (see {@link #impact(int)}).
+ * The docs of a term are grouped into one segment per impact, and segments
+ * are stored by decreasing impact, so that {@link ImpactOrderedSearcher} can
+ * process the docs that contribute the most to the score first, and stop
+ * as soon as the top hits cannot change anymore. Impacts can be read through
+ * {@link ImpactOrderedTerms#impacts(BytesRef)}.
+ * <p>
+ * Norms are not available to postings formats at write time, so impacts
+ * only take term frequencies into account.
+ * <p>
+ * The format of the imp file is as follows:
+ * <ul>
+ * <li>Impacts (.imp) --&gt; Header, DelegatePostingsFormatName,
+ * TermImpacts<sup>NumImpactTerms</sup>, FieldIndex, IndexOffset, Footer</li>
+ * <li>TermImpacts --&gt; NumSegments, Segment<sup>NumSegments</sup></li>
+ * <li>Segment --&gt; Impact, DocCount, DocDelta<sup>DocCount</sup></li>
+ * <li>FieldIndex --&gt; NumFields, &lt;FieldNumber, NumTerms,
+ * &lt;Term, TermFPDelta&gt;<sup>NumTerms</sup>&gt;<sup>NumFields</sup></li>
+ * <li>Header --&gt; {@link CodecUtil#writeHeader CodecHeader}</li>
+ * <li>DelegatePostingsFormatName --&gt; {@link DataOutput#writeString(String)
+ * String} The name of a ServiceProvider registered {@link PostingsFormat}</li>
+ * <li>NumSegments, Impact, DocCount, DocDelta, NumFields, FieldNumber,
+ * NumTerms --&gt; {@link DataOutput#writeVInt VInt}</li>
+ * <li>Term --&gt; {@link DataOutput#writeVInt VInt} length followed by the
+ * term bytes</li>
+ * <li>TermFPDelta --&gt; {@link DataOutput#writeVLong VLong}</li>
+ * <li>IndexOffset --&gt; {@link DataOutput#writeLong Uint64}</li>
+ * <li>Footer --&gt; {@link CodecUtil#writeFooter CodecFooter}</li>
+ * </ul>
+ * <p>
+ * Segments are sorted by decreasing impact, and doc IDs are delta-encoded
+ * in increasing order within a segment. Only terms that have a
+ * {@link TermStats#docFreq docFreq} of at least <code>minDocFreq</code> in
+ * fields that index term frequencies have impacts.
+ * @lucene.experimental
+ */
+public final class ImpactOrderedPostingsFormat extends PostingsFormat {
+
+  static final String CODEC_NAME = "ImpactOrdered";
+  static final int VERSION_START = 0;
+  static final int VERSION_CURRENT = VERSION_START;
+
+  /** Extension of impacts file */
+  static final String IMPACTS_EXTENSION = "imp";
+
+  /** Maximum impact. */
+  public static final int MAX_IMPACT = 16;
+
+  /** Default minimum doc freq of terms that get impacts. */
+  public static final int DEFAULT_MIN_DOC_FREQ = 1024;
+
+  private final PostingsFormat delegatePostingsFormat;
+  private final int minDocFreq;
+
+  /**
+   * Creates impact-ordered postings for terms that have a doc freq of at
+   * least <code>minDocFreq</code>, and delegates to
+   * <code>delegatePostingsFormat</code> for all other postings data.
+   */
+  public ImpactOrderedPostingsFormat(PostingsFormat delegatePostingsFormat, int minDocFreq) {
+    super(CODEC_NAME);
+    if (minDocFreq < 1) {
+      throw new IllegalArgumentException("minDocFreq must be >= 1, got " + minDocFreq);
+    }
+    this.delegatePostingsFormat = delegatePostingsFormat;
+    this.minDocFreq = minDocFreq;
+  }
+
+  /** Delegates to {@link Lucene41PostingsFormat}, with
+   *  {@link #DEFAULT_MIN_DOC_FREQ}. */
+  public ImpactOrderedPostingsFormat() {
+    this(new Lucene41PostingsFormat(), DEFAULT_MIN_DOC_FREQ);
+  }
+
+  /**
+   * Return the impact of a term in a document given its frequency, between
+   * <code>1</code> and {@link #MAX_IMPACT}.
+   */
+  public static int impact(int freq) {
+    assert freq > 0;
+    return Math.min(MAX_IMPACT, 32 - Integer.numberOfLeadingZeros(freq));
+  }
+
+  @Override
+  public String toString() {
+    return getName() + "(delegate=" + delegatePostingsFormat + ", minDocFreq=" + minDocFreq + ")";
+  }
+
+  @Override
+  public FieldsConsumer fieldsConsumer(SegmentWriteState state) throws IOException {
+    final FieldsConsumer delegateFieldsConsumer = delegatePostingsFormat.fieldsConsumer(state);
+    boolean success = false;
+    try {
+      FieldsConsumer ret = new ImpactFieldsConsumer(delegateFieldsConsumer, state);
+      success = true;
+      return ret;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(delegateFieldsConsumer);
+      }
+    }
+  }
+
+  @Override
+  public FieldsProducer fieldsProducer(SegmentReadState state) throws IOException {
+    return new ImpactFieldsProducer(state);
+  }
+
+  /** Impacts of the terms of a field. */
+  static final class FieldImpacts {
+    final BytesRef[] terms;
+    final long[] fps;
+
+    FieldImpacts(BytesRef[] terms, long[] fps) {
+      this.terms = terms;
+      this.fps = fps;
+    }
+
+    /** Return the file pointer of the impacts of the given term, or -1. */
+    long fp(BytesRef term) {
+      int lo = 0, hi = terms.length - 1;
+      while (lo <= hi) {
+        final int mid = (lo + hi) >>> 1;
+        final int cmp = terms[mid].compareTo(term);
+        if (cmp < 0) {
+          lo = mid + 1;
+        } else if (cmp > 0) {
+          hi = mid - 1;
+        } else {
+          return fps[mid];
+        }
+      }
+      return -1;
+    }
+
+    long ramBytesUsed() {
+      long bytes = RamUsageEstimator.sizeOf(fps) + RamUsageEstimator.shallowSizeOf(terms);
+      for (BytesRef term : terms) {
+        bytes += RamUsageEstimator.NUM_BYTES_OBJECT_HEADER + RamUsageEstimator.sizeOf(term.bytes);
+      }
+      return bytes;
+    }
+  }
+
+  static final class ImpactFieldsProducer extends FieldsProducer {
+    private final FieldsProducer delegateFieldsProducer;
+    private final IndexInput impactsIn;
+    private final Map<String,FieldImpacts> impactsByFieldName = new HashMap<>();
+
+    ImpactFieldsProducer(SegmentReadState state) throws IOException {
+      final String impactsFileName = IndexFileNames.segmentFileName(
+          state.segmentInfo.name, state.segmentSuffix, IMPACTS_EXTENSION);
+      IndexInput in = null;
+      FieldsProducer delegate = null;
+      boolean success = false;
+      try {
+        in = state.directory.openInput(impactsFileName, state.context);
+        CodecUtil.checkHeader(in, CODEC_NAME, VERSION_START, VERSION_CURRENT);
+        final PostingsFormat delegatePostingsFormat = PostingsFormat.forName(in.readString());
+        delegate = delegatePostingsFormat.fieldsProducer(state);
+
+        CodecUtil.retrieveChecksum(in);
+        in.seek(in.length() - CodecUtil.footerLength() - 8);
+        final long indexOffset = in.readLong();
+        in.seek(indexOffset);
+        final int numFields = in.readVInt();
+        for (int i = 0; i < numFields; ++i) {
+          final int fieldNumber = in.readVInt();
+          final FieldInfo fieldInfo = state.fieldInfos.fieldInfo(fieldNumber);
+          if (fieldInfo == null) {
+            throw new CorruptIndexException("invalid field number: " + fieldNumber + " (resource=" + in + ")");
+          }
+          final int numTerms = in.readVInt();
+          final BytesRef[] terms = new BytesRef[numTerms];
+          final long[] fps = new long[numTerms];
+          long fp = 0;
+          for (int j = 0; j < numTerms; ++j) {
+            final BytesRef term = new BytesRef(in.readVInt());
+            term.length = term.bytes.length;
+            in.readBytes(term.bytes, 0, term.length);
+            terms[j] = term;
+            fp += in.readVLong();
+            fps[j] = fp;
+          }
+          impactsByFieldName.put(fieldInfo.name, new FieldImpacts(terms, fps));
+        }
+        if (in.getFilePointer() != in.length() - CodecUtil.footerLength() - 8) {
+          throw new CorruptIndexException("did not read all bytes of the field index (resource=" + in + ")");
+        }
+        success = true;
+      } finally {
+        if (!success) {
+          IOUtils.closeWhileHandlingException(in, delegate);
+        }
+      }
+      impactsIn = in;
+      delegateFieldsProducer = delegate;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+      return delegateFieldsProducer.iterator();
+    }
+
+    @Override
+    public void close() throws IOException {
+      IOUtils.close(impactsIn, delegateFieldsProducer);
+    }
+
+    @Override
+    public Terms terms(String field) throws IOException {
+      final Terms terms = delegateFieldsProducer.terms(field);
+      final FieldImpacts impacts = impactsByFieldName.get(field);
+      if (terms == null || impacts == null) {
+        return terms;
+      }
+      return new ImpactOrderedTerms(terms, impacts, impactsIn);
+    }
+
+    @Override
+    public int size() {
+      return delegateFieldsProducer.size();
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      long sizeInBytes = delegateFieldsProducer.ramBytesUsed();
+      for (Map.Entry<String,FieldImpacts> entry : impactsByFieldName.entrySet()) {
+        sizeInBytes += entry.getKey().length() * RamUsageEstimator.NUM_BYTES_CHAR;
+        sizeInBytes += entry.getValue().ramBytesUsed();
+      }
+      return sizeInBytes;
+    }
+
+    @Override
+    public void checkIntegrity() throws IOException {
+      delegateFieldsProducer.checkIntegrity();
+      CodecUtil.checksumEntireFile(impactsIn);
+    }
+  }
+
+  final class ImpactFieldsConsumer extends FieldsConsumer {
+    private final FieldsConsumer delegateFieldsConsumer;
+    private final IndexOutput impactsOut;
+    private final List<FieldInfo> fields = new ArrayList<>();
+    private final List<List<BytesRef>> fieldTerms = new ArrayList<>();
+    private final List<List<Long>> fieldFPs = new ArrayList<>();
+
+    ImpactFieldsConsumer(FieldsConsumer delegateFieldsConsumer, SegmentWriteState state) throws IOException {
+      this.delegateFieldsConsumer = delegateFieldsConsumer;
+      final String impactsFileName = IndexFileNames.segmentFileName(
+          state.segmentInfo.name, state.segmentSuffix, IMPACTS_EXTENSION);
+      impactsOut = state.directory.createOutput(impactsFileName, state.context);
+      boolean success = false;
+      try {
+        CodecUtil.writeHeader(impactsOut, CODEC_NAME, VERSION_CURRENT);
+        // remember the name of the postings format we will delegate to
+        impactsOut.writeString(delegatePostingsFormat.getName());
+        success = true;
+      } finally {
+        if (!success) {
+          IOUtils.closeWhileHandlingException(impactsOut);
+        }
+      }
+    }
+
+    @Override
+    public TermsConsumer addField(FieldInfo field) throws IOException {
+      final TermsConsumer delegateTermsConsumer = delegateFieldsConsumer.addField(field);
+      if (field.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS) < 0) {
+        // no freqs, hence no impacts
+        return delegateTermsConsumer;
+      }
+      final List<BytesRef> terms = new ArrayList<>();
+      final List<Long> fps = new ArrayList<>();
+      fields.add(field);
+      fieldTerms.add(terms);
+      fieldFPs.add(fps);
+      return new ImpactTermsConsumer(delegateTermsConsumer, impactsOut, terms, fps);
+    }
+
+    @Override
+    public void close() throws IOException {
+      boolean success = false;
+      try {
+        delegateFieldsConsumer.close();
+
+        final long indexOffset = impactsOut.getFilePointer();
+        int numFields = 0;
+        for (List<BytesRef> terms : fieldTerms) {
+          if (terms.isEmpty() == false) {
+            ++numFields;
+          }
+        }
+        impactsOut.writeVInt(numFields);
+        for (int i = 0; i < fields.size(); ++i) {
+          final List<BytesRef> terms = fieldTerms.get(i);
+          if (terms.isEmpty()) {
+            continue;
+          }
+          final List<Long> fps = fieldFPs.get(i);
+          impactsOut.writeVInt(fields.get(i).number);
+          impactsOut.writeVInt(terms.size());
+          long previousFP = 0;
+          for (int j = 0; j < terms.size(); ++j) {
+            final BytesRef term = terms.get(j);
+            impactsOut.writeVInt(term.length);
+            impactsOut.writeBytes(term.bytes, term.offset, term.length);
+            final long fp = fps.get(j);
+            impactsOut.writeVLong(fp - previousFP);
+            previousFP = fp;
+          }
+        }
+        impactsOut.writeLong(indexOffset);
+        CodecUtil.writeFooter(impactsOut);
+        success = true;
+      } finally {
+        if (success) {
+          IOUtils.close(impactsOut);
+        } else {
+          IOUtils.closeWhileHandlingException(impactsOut);
+        }
+      }
+    }
+  }
+
+  final class ImpactTermsConsumer extends TermsConsumer {
+    private final TermsConsumer delegateTermsConsumer;
+    private final IndexOutput impactsOut;
+    private final List<BytesRef> terms;
+    private final List<Long> fps;
+    private final ImpactPostingsConsumer postingsConsumer;
+    private final int[] bucketCounts;
+    private int[] sortedDocs;
+
+    ImpactTermsConsumer(TermsConsumer delegateTermsConsumer, IndexOutput impactsOut, List<BytesRef> terms, List<Long> fps) {
+      this.delegateTermsConsumer = delegateTermsConsumer;
+      this.impactsOut = impactsOut;
+      this.terms = terms;
+      this.fps = fps;
+      postingsConsumer = new ImpactPostingsConsumer();
+      bucketCounts = new int[MAX_IMPACT + 1];
+      sortedDocs = new int[0];
+    }
+
+    @Override
+    public PostingsConsumer startTerm(BytesRef text) throws IOException {
+      postingsConsumer.reset(delegateTermsConsumer.startTerm(text));
+      return postingsConsumer;
+    }
+
+    @Override
+    public void finishTerm(BytesRef text, TermStats stats) throws IOException {
+      if (stats.docFreq >= minDocFreq) {
+        assert stats.docFreq == postingsConsumer.numDocs;
+        terms.add(BytesRef.deepCopyOf(text));
+        fps.add(impactsOut.getFilePointer());
+        writeImpacts(postingsConsumer.docs, postingsConsumer.freqs, postingsConsumer.numDocs);
+      }
+      delegateTermsConsumer.finishTerm(text, stats);
+    }
+
+    private void writeImpacts(int[] docs, int[] freqs, int numDocs) throws IOException {
+      // counting sort by decreasing impact, docs stay sorted within an impact
+      final int[] counts = bucketCounts;
+      Arrays.fill(counts, 0);
+      for (int i = 0; i < numDocs; ++i) {
+        ++counts[MAX_IMPACT - impact(freqs[i]) + 1];
+      }
+      int numSegments = 0;
+      for (int i = 1; i < counts.length; ++i) {
+        if (counts[i] > 0) {
+          ++numSegments;
+        }
+        counts[i] += counts[i - 1];
+      }
+      sortedDocs = ArrayUtil.grow(sortedDocs, numDocs);
+      for (int i = 0; i < numDocs; ++i) {
+        sortedDocs[counts[MAX_IMPACT - impact(freqs[i])]++] = docs[i];
+      }
+
+      impactsOut.writeVInt(numSegments);
+      int start = 0;
+      for (int impact = MAX_IMPACT; impact >= 1; --impact) {
+        final int end = counts[MAX_IMPACT - impact];
+        if (end == start) {
+          continue;
+        }
+        impactsOut.writeVInt(impact);
+        impactsOut.writeVInt(end - start);
+        int previousDoc = 0;
+        for (int i = start; i < end; ++i) {
+          impactsOut.writeVInt(sortedDocs[i] - previousDoc);
+          previousDoc = sortedDocs[i];
+        }
+        start = end;
+      }
+      assert start == numDocs;
+    }
+
+    @Override
+    public void finish(long sumTotalTermFreq, long sumDocFreq, int docCount) throws IOException {
+      delegateTermsConsumer.finish(sumTotalTermFreq, sumDocFreq, docCount);
+    }
+
+    @Override
+    public Comparator<BytesRef> getComparator() throws IOException {
+      return delegateTermsConsumer.getComparator();
+    }
+  }
+
+  /** Buffers the docs and freqs of the current term. */
+  static final class ImpactPostingsConsumer extends PostingsConsumer {
+    private PostingsConsumer delegate;
+    int[] docs = new int[0];
+    int[] freqs = new int[0];
+    int numDocs;
+
+    void reset(PostingsConsumer delegate) {
+      this.delegate = delegate;
+      numDocs = 0;
+    }
+
+    @Override
+    public void startDoc(int docID, int freq) throws IOException {
+      assert freq > 0;
+      if (numDocs == docs.length) {
+        docs = ArrayUtil.grow(docs, numDocs + 1);
+        freqs = ArrayUtil.grow(freqs, docs.length);
+      }
+      docs[numDocs] = docID;
+      freqs[numDocs] = freq;
+      ++numDocs;
+      delegate.startDoc(docID, freq);
+    }
+
+    @Override
+    public void addPosition(int position, BytesRef payload, int startOffset, int endOffset) throws IOException {
+      delegate.addPosition(position, payload, startOffset, endOffset);
+    }
+
+    @Override
+    public void finishDoc() throws IOException {
+      delegate.finishDoc();
+    }
+  }
+}
@@ -0,0 +1,385 @@
+package org.apache.lucene.codecs.impact;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.search.similarities.TFIDFSimilarity;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Computes the top hits of a disjunction of terms in score-at-a-time order,
+ * using the impacts recorded by {@link ImpactOrderedPostingsFormat}.
+ * <p>
+ * The score of a document is the sum, over the query terms that it
+ * contains, of the {@link TFIDFSimilarity#idf idf} of the term multiplied
+ * by the {@link ImpactOrderedPostingsFormat#impact(int) impact} of the term
+ * in the document. Segments of impact-ordered postings are processed by
+ * decreasing contribution to the score, and search stops as soon as the
+ * remaining segments cannot change the set of top hits anymore, whose scores
+ * are then completed using the docID-ordered postings. Terms that have no
+ * impacts, for instance because they are not frequent enough or because the
+ * reader wraps the postings of the segment, are fully evaluated from their
+ * docID-ordered postings, so that scores do not depend on which terms have
+ * impacts.
+ * <p>
+ * {@link TopDocs#totalHits} is the number of documents that have been
+ * scored, which is a lower bound of the number of matching documents.
+ * @lucene.experimental
+ */
+public class ImpactOrderedSearcher {
+
+  private static final Comparator<ScoreDoc> BY_DESC_SCORE_THEN_DOC = new Comparator<ScoreDoc>() {
+    @Override
+    public int compare(ScoreDoc a, ScoreDoc b) {
+      final int cmp = Float.compare(b.score, a.score);
+      return cmp != 0 ? cmp : Integer.compare(a.doc, b.doc);
+    }
+  };
+
+  private final IndexReader reader;
+  private TFIDFSimilarity similarity = new DefaultSimilarity();
+
+  /** Creates a searcher searching the provided index. */
+  public ImpactOrderedSearcher(IndexReader reader) {
+    this.reader = reader;
+  }
+
+  /** Set the {@link TFIDFSimilarity} that is used to compute term weights. */
+  public void setSimilarity(TFIDFSimilarity similarity) {
+    this.similarity = similarity;
+  }
+
+  /** Expert: Return the {@link TFIDFSimilarity} that is used to compute
+   *  term weights. */
+  public TFIDFSimilarity getSimilarity() {
+    return similarity;
+  }
+
+  /**
+   * Return the top <code>n</code> documents that contain any of the
+   * provided terms in <code>field</code>.
+   */
+  public TopDocs search(String field, BytesRef[] terms, int n) throws IOException {
+    if (n <= 0) {
+      throw new IllegalArgumentException("n must be > 0, got " + n);
+    }
+    final float[] weights = new float[terms.length];
+    for (int i = 0; i < terms.length; ++i) {
+      final int docFreq = reader.docFreq(new Term(field, terms[i]));
+      weights[i] = docFreq == 0 ? 0f : similarity.idf(docFreq, reader.maxDoc());
+    }
+
+    final List<ScoreDoc> hits = new ArrayList<>();
+    int totalHits = 0;
+    for (AtomicReaderContext context : reader.leaves()) {
+      totalHits += searchLeaf(context, field, terms, weights, n, hits);
+    }
+
+    final ScoreDoc[] scoreDocs = hits.toArray(new ScoreDoc[hits.size()]);
+    Arrays.sort(scoreDocs, BY_DESC_SCORE_THEN_DOC);
+    final ScoreDoc[] topDocs = Arrays.copyOf(scoreDocs, Math.min(n, scoreDocs.length));
+    final float maxScore = topDocs.length == 0 ? Float.NaN : topDocs[0].score;
+    return new TopDocs(totalHits, topDocs, maxScore);
+  }
+
+  /** Add the top hits of the provided leaf to <code>hits</code>, and return
+   *  the number of scored documents. */
+  private static int searchLeaf(AtomicReaderContext context, String field, BytesRef[] terms,
+      float[] weights, int n, List<ScoreDoc> hits) throws IOException {
+    final AtomicReader reader = context.reader();
+    final Terms fieldTerms = reader.terms(field);
+    if (fieldTerms == null) {
+      return 0;
+    }
+    final Bits liveDocs = reader.getLiveDocs();
+    final Accumulator accumulator = new Accumulator(n);
+
+    final ImpactsEnum[] impacts = new ImpactsEnum[terms.length];
+    // the impact of the next segment of every term, 0 if exhausted
+    final int[] nextImpacts = new int[terms.length];
+    TermsEnum termsEnum = null;
+    DocsEnum docsEnum = null;
+    for (int i = 0; i < terms.length; ++i) {
+      if (weights[i] == 0f) {
+        continue;
+      }
+      if (fieldTerms instanceof ImpactOrderedTerms) {
+        impacts[i] = ((ImpactOrderedTerms) fieldTerms).impacts(terms[i]);
+      }
+      if (impacts[i] != null) {
+        nextImpacts[i] = impacts[i].nextSegment();
+      } else {
+        // no impacts, evaluate the whole term
+        termsEnum = fieldTerms.iterator(termsEnum);
+        if (termsEnum.seekExact(terms[i])) {
+          docsEnum = termsEnum.docs(liveDocs, docsEnum, DocsEnum.FLAG_FREQS);
+          for (int doc = docsEnum.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docsEnum.nextDoc()) {
+            accumulator.add(doc, weights[i] * ImpactOrderedPostingsFormat.impact(docsEnum.freq()));
+          }
+        }
+      }
+    }
+
+    while (true) {
+      // pick the segment that has the highest contribution
+      int best = -1;
+      float remaining = 0;
+      for (int i = 0; i < terms.length; ++i) {
+        if (nextImpacts[i] > 0) {
+          final float contribution = weights[i] * nextImpacts[i];
+          remaining += contribution;
+          if (best == -1 || contribution > weights[best] * nextImpacts[best]) {
+            best = i;
+          }
+        }
+      }
+      if (best == -1 || accumulator.canStop(remaining)) {
+        break;
+      }
+      final ImpactsEnum segment = impacts[best];
+      final float contribution = weights[best] * segment.impact();
+      for (int doc = segment.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = segment.nextDoc()) {
+        if (liveDocs == null || liveDocs.get(doc)) {
+          accumulator.add(doc, contribution);
+        }
+      }
+      nextImpacts[best] = segment.nextSegment();
+    }
+
+    final ScoreDoc[] top = accumulator.top();
+
+    // complete the scores of the top hits with the segments that have not
+    // been processed, which have an impact of at most nextImpacts[i]
+    Arrays.sort(top, new Comparator<ScoreDoc>() {
+      @Override
+      public int compare(ScoreDoc a, ScoreDoc b) {
+        return Integer.compare(a.doc, b.doc);
+      }
+    });
+    for (int i = 0; i < terms.length; ++i) {
+      if (nextImpacts[i] == 0) {
+        continue;
+      }
+      termsEnum = fieldTerms.iterator(termsEnum);
+      if (termsEnum.seekExact(terms[i]) == false) {
+        throw new IllegalStateException("term has impacts but no postings: " + terms[i]);
+      }
+      docsEnum = termsEnum.docs(null, docsEnum, DocsEnum.FLAG_FREQS);
+      for (ScoreDoc hit : top) {
+        int doc = docsEnum.docID();
+        if (doc < hit.doc) {
+          doc = docsEnum.advance(hit.doc);
+        }
+        if (doc == hit.doc) {
+          final int impact = ImpactOrderedPostingsFormat.impact(docsEnum.freq());
+          if (impact <= nextImpacts[i]) {
+            hit.score += weights[i] * impact;
+          }
+        }
+      }
+    }
+
+    for (ScoreDoc hit : top) {
+      hit.doc += context.docBase;
+      hits.add(hit);
+    }
+    return accumulator.size();
+  }
+
+  /**
+   * Partial scores of the documents of a leaf that have been scored so far,
+   * in a hash table so that memory usage depends on the number of scored
+   * documents rather than on maxDoc, and a heap of the <code>n</code> best of
+   * them so that the stopping condition is checked in constant time. Since
+   * scores only increase, a document only leaves the heap when it is
+   * replaced by a better one.
+   */
+  private static final class Accumulator {
+
+    private final int n;
+    // doc -> slot + 1, 0 for empty buckets
+    private int[] table = new int[32];
+    private int shift = 32 - 5;
+    private int size;
+    // per slot:
+    private int[] docs = new int[16];
+    private float[] scores = new float[16];
+    private int[] heapIndexes = new int[16]; // -1 if not in the heap
+    // slots of the best docs, the least competitive one first
+    private final int[] heap;
+    private int heapSize;
+    // upper bound of the scores of the docs that are not in the heap
+    private float maxOtherScore;
+
+    Accumulator(int n) {
+      this.n = n;
+      heap = new int[n];
+    }
+
+    /** Return the number of scored docs. */
+    int size() {
+      return size;
+    }
+
+    /** Add <code>score</code> to the score of <code>doc</code>. */
+    void add(int doc, float score) {
+      final int slot = slot(doc);
+      scores[slot] += score;
+      final int heapIndex = heapIndexes[slot];
+      if (heapIndex >= 0) {
+        // the doc is more competitive now
+        downHeap(heapIndex);
+      } else if (heapSize < n) {
+        heap[heapSize] = slot;
+        heapIndexes[slot] = heapSize;
+        upHeap(heapSize++);
+      } else if (lessThan(heap[0], slot)) {
+        final int evicted = heap[0];
+        heapIndexes[evicted] = -1;
+        maxOtherScore = Math.max(maxOtherScore, scores[evicted]);
+        heap[0] = slot;
+        heapIndexes[slot] = 0;
+        downHeap(0);
+      } else {
+        maxOtherScore = Math.max(maxOtherScore, scores[slot]);
+      }
+    }
+
+    /**
+     * Return true if documents can't make it into the top <code>n</code>
+     * hits anymore, given that scores can't increase by more than
+     * <code>remaining</code>.
+     */
+    boolean canStop(float remaining) {
+      if (heapSize < n) {
+        // unscored docs could still make it
+        return false;
+      }
+      // strict comparison, docs that would tie could still make it
+      return scores[heap[0]] > maxOtherScore + remaining;
+    }
+
+    /** Return the top <code>n</code> scored docs, in no particular order. */
+    ScoreDoc[] top() {
+      final ScoreDoc[] top = new ScoreDoc[heapSize];
+      for (int i = 0; i < heapSize; ++i) {
+        top[i] = new ScoreDoc(docs[heap[i]], scores[heap[i]]);
+      }
+      return top;
+    }
+
+    private int slot(int doc) {
+      for (int bucket = (doc * 0x9E3779B9) >>> shift; ; bucket = (bucket + 1) & (table.length - 1)) {
+        final int slot = table[bucket] - 1;
+        if (slot == -1) {
+          return newSlot(bucket, doc);
+        } else if (docs[slot] == doc) {
+          return slot;
+        }
+      }
+    }
+
+    private int newSlot(int bucket, int doc) {
+      final int slot = size++;
+      if (slot == docs.length) {
+        docs = ArrayUtil.grow(docs, size);
+        scores = Arrays.copyOf(scores, docs.length);
+        heapIndexes = Arrays.copyOf(heapIndexes, docs.length);
+      }
+      docs[slot] = doc;
+      heapIndexes[slot] = -1;
+      table[bucket] = slot + 1;
+      if (size > table.length >>> 1) {
+        rehash();
+      }
+      return slot;
+    }
+
+    private void rehash() {
+      table = new int[table.length << 1];
+      shift--;
+      for (int slot = 0; slot < size; ++slot) {
+        int bucket = (docs[slot] * 0x9E3779B9) >>> shift;
+        while (table[bucket] != 0) {
+          bucket = (bucket + 1) & (table.length - 1);
+        }
+        table[bucket] = slot + 1;
+      }
+    }
+
+    /** Whether the doc in slot <code>a</code> is less competitive than the
+     *  doc in slot <code>b</code>. */
+    private boolean lessThan(int a, int b) {
+      final int cmp = Float.compare(scores[a], scores[b]);
+      return cmp < 0 || (cmp == 0 && docs[a] > docs[b]);
+    }
+
+    private void upHeap(int i) {
+      final int slot = heap[i];
+      int parent = (i - 1) >>> 1;
+      while (i > 0 && lessThan(slot, heap[parent])) {
+        setHeap(i, heap[parent]);
+        i = parent;
+        parent = (i - 1) >>> 1;
+      }
+      setHeap(i, slot);
+    }
+
+    private void downHeap(int i) {
+      final int slot = heap[i];
+      while (true) {
+        int child = 2 * i + 1;
+        if (child >= heapSize) {
+          break;
+        }
+        if (child + 1 < heapSize && lessThan(heap[child + 1], heap[child])) {
+          child++;
+        }
+        if (lessThan(heap[child], slot) == false) {
+          break;
+        }
+        setHeap(i, heap[child]);
+        i = child;
+      }
+      setHeap(i, slot);
+    }
+
+    private void setHeap(int i, int slot) {
+      heap[i] = slot;
+      heapIndexes[slot] = i;
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package org.apache.lucene.codecs.impact;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.impact.ImpactOrderedPostingsFormat.FieldImpacts;
+import org.apache.lucene.index.FilterAtomicReader.FilterTerms;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.automaton.CompiledAutomaton;
+
+/**
+ * {@link Terms} of a field that has impacts, as returned by the postings
+ * readers of {@link ImpactOrderedPostingsFormat}.
+ * @lucene.experimental
+ */
+public final class ImpactOrderedTerms extends FilterTerms {
+
+  private final FieldImpacts impacts;
+  private final IndexInput impactsIn;
+
+  ImpactOrderedTerms(Terms in, FieldImpacts impacts, IndexInput impactsIn) {
+    super(in);
+    this.impacts = impacts;
+    this.impactsIn = impactsIn;
+  }
+
+  @Override
+  public TermsEnum intersect(CompiledAutomaton compiled, BytesRef startTerm) throws IOException {
+    return in.intersect(compiled, startTerm);
+  }
+
+  /**
+   * Return the impact-ordered postings of the given term, or <tt>null</tt>
+   * if the term doesn't exist or is not frequent enough to have impacts.
+   * The returned enum ignores deletions.
+   */
+  public ImpactsEnum impacts(BytesRef term) throws IOException {
+    final long fp = impacts.fp(term);
+    if (fp == -1) {
+      return null;
+    }
+    final IndexInput in = impactsIn.clone();
+    in.seek(fp);
+    return new ImpactsEnum(in);
+  }
+}
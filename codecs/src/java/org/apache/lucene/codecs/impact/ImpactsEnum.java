@@ -0,0 +1,87 @@
+package org.apache.lucene.codecs.impact;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.IndexInput;
+
+/**
+ * Iterates over the impact-ordered postings of a term: docs are grouped into
+ * segments of docs that have the same impact, which are returned by
+ * decreasing impact, and docs are returned in increasing order within a
+ * segment.
+ * @see ImpactOrderedTerms#impacts
+ * @lucene.experimental
+ */
+public final class ImpactsEnum {
+
+  private final IndexInput in;
+  private int segmentsLeft;
+  private int impact;
+  private int docCount;
+  private int docsLeft;
+  private int doc;
+
+  ImpactsEnum(IndexInput in) throws IOException {
+    this.in = in;
+    segmentsLeft = in.readVInt();
+  }
+
+  /**
+   * Move to the next segment and return its impact, or <code>0</code> if
+   * there are no more segments. Docs of the current segment that have not
+   * been consumed are skipped.
+   */
+  public int nextSegment() throws IOException {
+    while (docsLeft > 0) {
+      in.readVInt();
+      --docsLeft;
+    }
+    if (segmentsLeft == 0) {
+      return impact = docCount = 0;
+    }
+    --segmentsLeft;
+    impact = in.readVInt();
+    docsLeft = docCount = in.readVInt();
+    doc = 0;
+    return impact;
+  }
+
+  /** Return the impact of the current segment. */
+  public int impact() {
+    return impact;
+  }
+
+  /** Return the number of docs in the current segment. */
+  public int docCount() {
+    return docCount;
+  }
+
+  /** Return the next doc of the current segment, or
+   *  {@link DocIdSetIterator#NO_MORE_DOCS} if all its docs have been
+   *  consumed. */
+  public int nextDoc() throws IOException {
+    if (docsLeft == 0) {
+      return DocIdSetIterator.NO_MORE_DOCS;
+    }
+    --docsLeft;
+    return doc += in.readVInt();
+  }
+}
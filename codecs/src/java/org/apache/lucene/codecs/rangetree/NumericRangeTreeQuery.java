@@ -0,0 +1,192 @@
+package org.apache.lucene.codecs.rangetree;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.search.BitsFilteredDocIdSet;
+import org.apache.lucene.search.ConstantScoreQuery;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.FieldCacheDocIdSet;
+import org.apache.lucene.search.Filter;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.ToStringUtils;
+
+/**
+ * A range query over the {@link SortedNumericDocValues} of a field that has
+ * been indexed with {@link RangeTreeDocValuesFormat}: only the leaf blocks
+ * that overlap the range are read, and the values of the blocks that are
+ * fully contained in the range are not even decoded.
+ * <p>
+ * Documents match if any of their values is in the range. Wrapping readers
+ * such as {@link org.apache.lucene.index.SlowCompositeReaderWrapper} hide
+ * the tree: the values of every document are then checked one by one, which
+ * gives the same results but visits all documents of the segment.
+ *
+ * @lucene.experimental
+ */
+public class NumericRangeTreeQuery extends Query {
+
+  final String field;
+  final Long min, max;
+  final boolean minInclusive, maxInclusive;
+
+  /** Matches documents of <code>field</code> that have a value between
+   *  <code>min</code> and <code>max</code>. A null bound means that this
+   *  side of the range is open. */
+  public NumericRangeTreeQuery(String field, Long min, boolean minInclusive, Long max, boolean maxInclusive) {
+    if (field == null) {
+      throw new IllegalArgumentException("field must not be null");
+    }
+    this.field = field;
+    this.min = min;
+    this.minInclusive = minInclusive;
+    this.max = max;
+    this.maxInclusive = maxInclusive;
+  }
+
+  /** Returns the field name for this query */
+  public String getField() { return field; }
+
+  /** Returns <code>true</code> if the lower endpoint is inclusive */
+  public boolean includesMin() { return minInclusive; }
+
+  /** Returns <code>true</code> if the upper endpoint is inclusive */
+  public boolean includesMax() { return maxInclusive; }
+
+  /** Returns the lower value of this range query */
+  public Long getMin() { return min; }
+
+  /** Returns the upper value of this range query */
+  public Long getMax() { return max; }
+
+  @Override
+  public Query rewrite(IndexReader reader) throws IOException {
+    final Query query = new ConstantScoreQuery(new RangeTreeFilter());
+    query.setBoost(getBoost());
+    return query;
+  }
+
+  private class RangeTreeFilter extends Filter {
+
+    @Override
+    public DocIdSet getDocIdSet(AtomicReaderContext context, Bits acceptDocs) throws IOException {
+      // translate to inclusive bounds
+      long lower = Long.MIN_VALUE;
+      if (min != null) {
+        if (minInclusive) {
+          lower = min;
+        } else if (min == Long.MAX_VALUE) {
+          return null;
+        } else {
+          lower = min + 1;
+        }
+      }
+      long upper = Long.MAX_VALUE;
+      if (max != null) {
+        if (maxInclusive) {
+          upper = max;
+        } else if (max == Long.MIN_VALUE) {
+          return null;
+        } else {
+          upper = max - 1;
+        }
+      }
+      if (lower > upper) {
+        return null;
+      }
+
+      final SortedNumericDocValues values = context.reader().getSortedNumericDocValues(field);
+      if (values == null) {
+        return null;
+      }
+      if (values instanceof RangeTreeSortedNumericDocValues) {
+        final FixedBitSet bits = new FixedBitSet(context.reader().maxDoc());
+        ((RangeTreeSortedNumericDocValues) values).getRangeTreeReader().intersect(lower, upper, bits);
+        return BitsFilteredDocIdSet.wrap(bits, acceptDocs);
+      }
+
+      // the tree is hidden, eg. by a wrapping reader: check every document
+      final long inclusiveLowerPoint = lower;
+      final long inclusiveUpperPoint = upper;
+      return new FieldCacheDocIdSet(context.reader().maxDoc(), acceptDocs) {
+        @Override
+        protected boolean matchDoc(int doc) {
+          values.setDocument(doc);
+          final int count = values.count();
+          for (int i = 0; i < count; i++) {
+            final long value = values.valueAt(i);
+            if (value > inclusiveUpperPoint) {
+              // values are sorted
+              return false;
+            } else if (value >= inclusiveLowerPoint) {
+              return true;
+            }
+          }
+          return false;
+        }
+      };
+    }
+
+    @Override
+    public String toString() {
+      return NumericRangeTreeQuery.this.toString();
+    }
+  }
+
+  @Override
+  public String toString(String field) {
+    final StringBuilder sb = new StringBuilder();
+    if (!this.field.equals(field)) sb.append(this.field).append(':');
+    return sb.append(minInclusive ? '[' : '{')
+      .append((min == null) ? "*" : min.toString())
+      .append(" TO ")
+      .append((max == null) ? "*" : max.toString())
+      .append(maxInclusive ? ']' : '}')
+      .append(ToStringUtils.boost(getBoost()))
+      .toString();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o == this) return true;
+    if (!super.equals(o)) return false;
+    final NumericRangeTreeQuery q = (NumericRangeTreeQuery) o;
+    return field.equals(q.field) &&
+      (q.min == null ? min == null : q.min.equals(min)) &&
+      (q.max == null ? max == null : q.max.equals(max)) &&
+      minInclusive == q.minInclusive &&
+      maxInclusive == q.maxInclusive;
+  }
+
+  @Override
+  public int hashCode() {
+    int hash = super.hashCode();
+    hash += field.hashCode();
+    if (min != null) hash += min.hashCode()^0x14fa55fb;
+    if (max != null) hash += max.hashCode()^0x733fa5fe;
+    return hash +
+      (Boolean.valueOf(minInclusive).hashCode()^0x14fa55fb)+
+      (Boolean.valueOf(maxInclusive).hashCode()^0x733fa5fe);
+  }
+}
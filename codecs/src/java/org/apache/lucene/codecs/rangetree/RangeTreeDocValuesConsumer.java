@@ -0,0 +1,369 @@
+package org.apache.lucene.codecs.rangetree;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.DocValuesConsumer;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.SegmentWriteState;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteArrayDataOutput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.IntroSorter;
+import org.apache.lucene.util.OfflineSorter;
+
+/**
+ * Writer for {@link RangeTreeDocValuesFormat}: delegates the values and
+ * writes the block tree of sorted numeric fields.
+ */
+class RangeTreeDocValuesConsumer extends DocValuesConsumer {
+
+  // how the values of a leaf block are encoded
+  static final byte VALUES_DELTA = 0;
+  static final byte VALUES_RAW = 1;
+
+  // size of a pair in the offline sort: the sortable value, then the document
+  private static final int BYTES_PER_POINT = 12;
+
+  final DocValuesConsumer delegate;
+  final int maxPointsInLeafNode;
+  final int maxPointsSortInHeap;
+  IndexOutput data, meta;
+
+  RangeTreeDocValuesConsumer(DocValuesConsumer delegate, SegmentWriteState state, int maxPointsInLeafNode, int maxPointsSortInHeap) throws IOException {
+    this.delegate = delegate;
+    this.maxPointsInLeafNode = maxPointsInLeafNode;
+    this.maxPointsSortInHeap = maxPointsSortInHeap;
+    boolean success = false;
+    try {
+      String dataName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, RangeTreeDocValuesFormat.DATA_EXTENSION);
+      data = state.directory.createOutput(dataName, state.context);
+      CodecUtil.writeHeader(data, RangeTreeDocValuesFormat.DATA_CODEC_NAME, RangeTreeDocValuesFormat.VERSION_CURRENT);
+      String metaName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, RangeTreeDocValuesFormat.META_EXTENSION);
+      meta = state.directory.createOutput(metaName, state.context);
+      CodecUtil.writeHeader(meta, RangeTreeDocValuesFormat.META_CODEC_NAME, RangeTreeDocValuesFormat.VERSION_CURRENT);
+      success = true;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(this);
+      }
+    }
+  }
+
+  @Override
+  public void addNumericField(FieldInfo field, Iterable<Number> values) throws IOException {
+    delegate.addNumericField(field, values);
+  }
+
+  @Override
+  public void addBinaryField(FieldInfo field, Iterable<BytesRef> values) throws IOException {
+    delegate.addBinaryField(field, values);
+  }
+
+  @Override
+  public void addSortedField(FieldInfo field, Iterable<BytesRef> values, Iterable<Number> docToOrd) throws IOException {
+    delegate.addSortedField(field, values, docToOrd);
+  }
+
+  @Override
+  public void addSortedNumericField(FieldInfo field, Iterable<Number> docToValueCount, Iterable<Number> values) throws IOException {
+    delegate.addSortedNumericField(field, docToValueCount, values);
+
+    // buffer the pairs in heap, and switch to an offline sort when there are too many
+    long[] heapValues = new long[16];
+    int[] heapDocs = new int[16];
+    int numHeapPoints = 0;
+    long numPoints = 0;
+    final byte[] scratch = new byte[BYTES_PER_POINT];
+    final ByteArrayDataOutput scratchOut = new ByteArrayDataOutput(scratch);
+    File tempInput = null, tempSorted = null;
+    OfflineSorter.ByteSequencesWriter writer = null;
+    OfflineSorter.ByteSequencesReader reader = null;
+    boolean success = false;
+    try {
+      final Iterator<Number> valuesIt = values.iterator();
+      int docID = 0;
+      for (Number count : docToValueCount) {
+        final int valueCount = count.intValue();
+        for (int i = 0; i < valueCount; i++) {
+          final long value = valuesIt.next().longValue();
+          if (writer == null && numHeapPoints == maxPointsSortInHeap) {
+            tempInput = File.createTempFile("rangetree", ".input", OfflineSorter.defaultTempDir());
+            writer = new OfflineSorter.ByteSequencesWriter(tempInput);
+            for (int j = 0; j < numHeapPoints; j++) {
+              writePoint(writer, scratch, scratchOut, heapValues[j], heapDocs[j]);
+            }
+            heapValues = null;
+            heapDocs = null;
+          }
+          if (writer != null) {
+            writePoint(writer, scratch, scratchOut, value, docID);
+          } else {
+            heapValues = ArrayUtil.grow(heapValues, numHeapPoints + 1);
+            heapDocs = ArrayUtil.grow(heapDocs, numHeapPoints + 1);
+            heapValues[numHeapPoints] = value;
+            heapDocs[numHeapPoints] = docID;
+            numHeapPoints++;
+          }
+          numPoints++;
+        }
+        docID++;
+      }
+      assert valuesIt.hasNext() == false;
+
+      final PointReader points;
+      if (writer == null) {
+        points = new HeapPointReader(heapValues, heapDocs, numHeapPoints);
+      } else {
+        writer.close();
+        writer = null;
+        tempSorted = File.createTempFile("rangetree", ".sorted", OfflineSorter.defaultTempDir());
+        // the encoding sorts by value, then by document
+        new OfflineSorter().sort(tempInput, tempSorted);
+        tempInput.delete();
+        tempInput = null;
+        reader = new OfflineSorter.ByteSequencesReader(tempSorted);
+        points = new OfflinePointReader(reader);
+      }
+      writeTree(field, points, numPoints);
+      success = true;
+    } finally {
+      if (success) {
+        IOUtils.close(writer, reader);
+      } else {
+        IOUtils.closeWhileHandlingException(writer, reader);
+      }
+      if (tempInput != null) {
+        tempInput.delete();
+      }
+      if (tempSorted != null) {
+        tempSorted.delete();
+      }
+    }
+  }
+
+  /** Encodes a pair so that the unsigned byte order of pairs is their order
+   *  by value, then by document. */
+  private static void writePoint(OfflineSorter.ByteSequencesWriter writer, byte[] scratch, ByteArrayDataOutput scratchOut, long value, int doc) throws IOException {
+    scratchOut.reset(scratch);
+    scratchOut.writeLong(value ^ Long.MIN_VALUE);
+    scratchOut.writeInt(doc);
+    writer.write(scratch, 0, BYTES_PER_POINT);
+  }
+
+  /** Writes the leaf blocks of the sorted pairs, then the index. */
+  private void writeTree(FieldInfo field, PointReader points, long numPoints) throws IOException {
+    final long numLeavesLong = (numPoints + maxPointsInLeafNode - 1) / maxPointsInLeafNode;
+    if (numLeavesLong > ArrayUtil.MAX_ARRAY_LENGTH) {
+      throw new IllegalStateException("field \"" + field.name + "\" has too many values: " + numPoints);
+    }
+    final int numLeaves = (int) numLeavesLong;
+    final long[] leafFPs = new long[numLeaves];
+    final long[] leafMins = new long[numLeaves];
+    final long[] leafMaxs = new long[numLeaves];
+    final int leafSize = (int) Math.min(maxPointsInLeafNode, numPoints);
+    final long[] values = new long[leafSize];
+    final int[] docs = new int[leafSize];
+    long remaining = numPoints;
+    for (int leaf = 0; leaf < numLeaves; leaf++) {
+      final int count = (int) Math.min(maxPointsInLeafNode, remaining);
+      for (int i = 0; i < count; i++) {
+        final boolean hasNext = points.next();
+        assert hasNext;
+        values[i] = points.value();
+        docs[i] = points.doc();
+      }
+      remaining -= count;
+
+      leafFPs[leaf] = data.getFilePointer();
+      leafMins[leaf] = values[0];
+      leafMaxs[leaf] = values[count - 1];
+      data.writeVInt(count);
+      for (int i = 0; i < count; i++) {
+        data.writeVInt(docs[i]);
+      }
+      if (values[count - 1] - values[0] >= 0) {
+        // no overflow, all deltas are positive
+        data.writeByte(VALUES_DELTA);
+        data.writeLong(values[0]);
+        for (int i = 1; i < count; i++) {
+          data.writeVLong(values[i] - values[i - 1]);
+        }
+      } else {
+        data.writeByte(VALUES_RAW);
+        for (int i = 0; i < count; i++) {
+          data.writeLong(values[i]);
+        }
+      }
+    }
+    assert remaining == 0 && points.next() == false;
+
+    final long indexFP = data.getFilePointer();
+    data.writeVInt(numLeaves);
+    long lastFP = 0;
+    for (int leaf = 0; leaf < numLeaves; leaf++) {
+      data.writeLong(leafMins[leaf]);
+      data.writeLong(leafMaxs[leaf]);
+      data.writeVLong(leafFPs[leaf] - lastFP);
+      lastFP = leafFPs[leaf];
+    }
+
+    meta.writeVInt(field.number);
+    meta.writeLong(indexFP);
+  }
+
+  /** Iterates over (value, document) pairs in sorted order. */
+  private static abstract class PointReader {
+    /** Moves to the next pair, returns false when there are no more pairs. */
+    abstract boolean next() throws IOException;
+    abstract long value();
+    abstract int doc();
+  }
+
+  /** Sorts pairs that were buffered in heap. */
+  private static final class HeapPointReader extends PointReader {
+    private final long[] values;
+    private final int[] docs;
+    private final int numPoints;
+    private int upto = -1;
+
+    HeapPointReader(final long[] values, final int[] docs, int numPoints) {
+      this.values = values;
+      this.docs = docs;
+      this.numPoints = numPoints;
+      new IntroSorter() {
+        long pivotValue;
+        int pivotDoc;
+
+        @Override
+        protected void swap(int i, int j) {
+          final long value = values[i];
+          values[i] = values[j];
+          values[j] = value;
+          final int doc = docs[i];
+          docs[i] = docs[j];
+          docs[j] = doc;
+        }
+
+        @Override
+        protected int compare(int i, int j) {
+          final int cmp = Long.compare(values[i], values[j]);
+          return cmp != 0 ? cmp : Integer.compare(docs[i], docs[j]);
+        }
+
+        @Override
+        protected void setPivot(int i) {
+          pivotValue = values[i];
+          pivotDoc = docs[i];
+        }
+
+        @Override
+        protected int comparePivot(int j) {
+          final int cmp = Long.compare(pivotValue, values[j]);
+          return cmp != 0 ? cmp : Integer.compare(pivotDoc, docs[j]);
+        }
+      }.sort(0, numPoints);
+    }
+
+    @Override
+    boolean next() {
+      return ++upto < numPoints;
+    }
+
+    @Override
+    long value() {
+      return values[upto];
+    }
+
+    @Override
+    int doc() {
+      return docs[upto];
+    }
+  }
+
+  /** Reads pairs back from the output of the {@link OfflineSorter}. */
+  private static final class OfflinePointReader extends PointReader {
+    private final OfflineSorter.ByteSequencesReader reader;
+    private final BytesRefBuilder scratch = new BytesRefBuilder();
+    private final ByteArrayDataInput in = new ByteArrayDataInput();
+    private long value;
+    private int doc;
+
+    OfflinePointReader(OfflineSorter.ByteSequencesReader reader) {
+      this.reader = reader;
+    }
+
+    @Override
+    boolean next() throws IOException {
+      if (reader.read(scratch) == false) {
+        return false;
+      }
+      assert scratch.length() == BYTES_PER_POINT;
+      in.reset(scratch.bytes(), 0, scratch.length());
+      value = in.readLong() ^ Long.MIN_VALUE;
+      doc = in.readInt();
+      return true;
+    }
+
+    @Override
+    long value() {
+      return value;
+    }
+
+    @Override
+    int doc() {
+      return doc;
+    }
+  }
+
+  @Override
+  public void addSortedSetField(FieldInfo field, Iterable<BytesRef> values, Iterable<Number> docToOrdCount, Iterable<Number> ords) throws IOException {
+    delegate.addSortedSetField(field, values, docToOrdCount, ords);
+  }
+
+  @Override
+  public void close() throws IOException {
+    boolean success = false;
+    try {
+      if (meta != null) {
+        meta.writeVInt(-1); // write EOF marker
+        CodecUtil.writeFooter(meta); // write checksum
+      }
+      if (data != null) {
+        CodecUtil.writeFooter(data); // write checksum
+      }
+      success = true;
+    } finally {
+      if (success) {
+        IOUtils.close(data, meta, delegate);
+      } else {
+        IOUtils.closeWhileHandlingException(data, meta, delegate);
+      }
+      data = meta = null;
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package org.apache.lucene.codecs.rangetree;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.codecs.DocValuesConsumer;
+import org.apache.lucene.codecs.DocValuesFormat;
+import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.codecs.lucene410.Lucene410DocValuesFormat;
+import org.apache.lucene.document.SortedNumericDocValuesField; // javadocs
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SegmentWriteState;
+
+/**
+ * A {@link DocValuesFormat} that indexes {@link SortedNumericDocValuesField}
+ * values in a per-segment block tree, so that {@link NumericRangeTreeQuery}
+ * can find the documents whose values are in a range without the trie terms
+ * of {@link org.apache.lucene.search.NumericRangeQuery}.
+ * <p>
+ * Values are stored as usual by the {@link Lucene410DocValuesFormat}. In
+ * addition, the (value, document) pairs of every field are sorted by value
+ * and written in leaf blocks of at most <code>maxPointsInLeafNode</code>
+ * pairs, together with the minimum and maximum value of every block. A range
+ * query only reads the values of the (at most two) blocks that cross its
+ * boundaries, the documents of the blocks that are fully within the range are
+ * added without reading their values.
+ * <p>
+ * The pairs of a field are sorted when the segment is flushed or merged: in
+ * heap, which takes 12 bytes per pair, as long as there are at most
+ * <code>maxPointsSortInHeap</code> pairs, and with an {@link
+ * org.apache.lucene.util.OfflineSorter} in temporary files otherwise.
+ * <p>
+ * File formats:
+ * <ul>
+ *   <li><tt>.rtd</tt>: for every field, the leaf blocks and then the index:
+ *       the number of blocks and, for every block, its minimum and maximum
+ *       values and its file pointer. A block is the number of pairs, their
+ *       documents and their values, as deltas when they fit.
+ *   <li><tt>.rtm</tt>: the number of every field and the file pointer of its
+ *       index.
+ * </ul>
+ *
+ * @lucene.experimental
+ */
+public class RangeTreeDocValuesFormat extends DocValuesFormat {
+
+  static final String DATA_CODEC_NAME = "RangeTreeData";
+  static final String DATA_EXTENSION = "rtd";
+  static final String META_CODEC_NAME = "RangeTreeMeta";
+  static final String META_EXTENSION = "rtm";
+
+  static final int VERSION_START = 0;
+  static final int VERSION_CURRENT = VERSION_START;
+
+  /** Default maximum number of (value, document) pairs per leaf block. */
+  public static final int DEFAULT_MAX_POINTS_IN_LEAF_NODE = 1024;
+
+  /** Default maximum number of (value, document) pairs that are sorted in
+   *  heap, about 12 MB. */
+  public static final int DEFAULT_MAX_POINTS_SORT_IN_HEAP = 1024 * 1024;
+
+  private final DocValuesFormat delegate = new Lucene410DocValuesFormat();
+  private final int maxPointsInLeafNode;
+  private final int maxPointsSortInHeap;
+
+  /** Creates a new RangeTreeDocValuesFormat with the default block size. */
+  public RangeTreeDocValuesFormat() {
+    this(DEFAULT_MAX_POINTS_IN_LEAF_NODE);
+  }
+
+  /** Creates a new RangeTreeDocValuesFormat that writes at most
+   *  <code>maxPointsInLeafNode</code> pairs per leaf block. Smaller blocks
+   *  make range queries read less values, at the cost of a larger index. */
+  public RangeTreeDocValuesFormat(int maxPointsInLeafNode) {
+    this(maxPointsInLeafNode, DEFAULT_MAX_POINTS_SORT_IN_HEAP);
+  }
+
+  /** Creates a new RangeTreeDocValuesFormat that writes at most
+   *  <code>maxPointsInLeafNode</code> pairs per leaf block, and sorts the
+   *  pairs of a field in temporary files when there are more than
+   *  <code>maxPointsSortInHeap</code> of them. */
+  public RangeTreeDocValuesFormat(int maxPointsInLeafNode, int maxPointsSortInHeap) {
+    super("RangeTree");
+    if (maxPointsInLeafNode <= 0) {
+      throw new IllegalArgumentException("maxPointsInLeafNode must be > 0, got " + maxPointsInLeafNode);
+    }
+    if (maxPointsSortInHeap < 0) {
+      throw new IllegalArgumentException("maxPointsSortInHeap must be >= 0, got " + maxPointsSortInHeap);
+    }
+    this.maxPointsInLeafNode = maxPointsInLeafNode;
+    this.maxPointsSortInHeap = maxPointsSortInHeap;
+  }
+
+  @Override
+  public DocValuesConsumer fieldsConsumer(SegmentWriteState state) throws IOException {
+    return new RangeTreeDocValuesConsumer(delegate.fieldsConsumer(state), state, maxPointsInLeafNode, maxPointsSortInHeap);
+  }
+
+  @Override
+  public DocValuesProducer fieldsProducer(SegmentReadState state) throws IOException {
+    return new RangeTreeDocValuesProducer(delegate.fieldsProducer(state), state);
+  }
+
+  @Override
+  public String toString() {
+    return getName() + "(maxPointsInLeafNode=" + maxPointsInLeafNode + ",maxPointsSortInHeap=" + maxPointsSortInHeap + ")";
+  }
+}
@@ -0,0 +1,168 @@
+package org.apache.lucene.codecs.rangetree;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.CorruptIndexException;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SegmentReadState;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.store.ChecksumIndexInput;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * Reader for {@link RangeTreeDocValuesFormat}: sorted numeric values expose
+ * the block tree of their field, the index of which is loaded on first use.
+ */
+class RangeTreeDocValuesProducer extends DocValuesProducer {
+
+  private final DocValuesProducer delegate;
+  private final IndexInput data;
+  // field number -> file pointer of the index
+  private final Map<Integer,Long> indexFPs = new HashMap<>();
+  private final Map<Integer,RangeTreeReader> treeReaders = new HashMap<>();
+
+  RangeTreeDocValuesProducer(DocValuesProducer delegate, SegmentReadState state) throws IOException {
+    this.delegate = delegate;
+    String metaName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, RangeTreeDocValuesFormat.META_EXTENSION);
+    ChecksumIndexInput in = state.directory.openChecksumInput(metaName, state.context);
+    final int version;
+    boolean success = false;
+    try {
+      version = CodecUtil.checkHeader(in, RangeTreeDocValuesFormat.META_CODEC_NAME,
+                                      RangeTreeDocValuesFormat.VERSION_START,
+                                      RangeTreeDocValuesFormat.VERSION_CURRENT);
+      for (int fieldNumber = in.readVInt(); fieldNumber != -1; fieldNumber = in.readVInt()) {
+        indexFPs.put(fieldNumber, in.readLong());
+      }
+      CodecUtil.checkFooter(in);
+      success = true;
+    } finally {
+      if (success) {
+        IOUtils.close(in);
+      } else {
+        IOUtils.closeWhileHandlingException(in);
+      }
+    }
+
+    String dataName = IndexFileNames.segmentFileName(state.segmentInfo.name, state.segmentSuffix, RangeTreeDocValuesFormat.DATA_EXTENSION);
+    data = state.directory.openInput(dataName, state.context);
+    success = false;
+    try {
+      final int version2 = CodecUtil.checkHeader(data, RangeTreeDocValuesFormat.DATA_CODEC_NAME,
+                                                 RangeTreeDocValuesFormat.VERSION_START,
+                                                 RangeTreeDocValuesFormat.VERSION_CURRENT);
+      if (version != version2) {
+        throw new CorruptIndexException("Format versions mismatch");
+      }
+
+      // NOTE: data file is too costly to verify checksum against all the bytes on open,
+      // but for now we at least verify proper structure of the checksum footer.
+      CodecUtil.retrieveChecksum(data);
+
+      success = true;
+    } finally {
+      if (!success) {
+        IOUtils.closeWhileHandlingException(data);
+      }
+    }
+  }
+
+  @Override
+  public NumericDocValues getNumeric(FieldInfo field) throws IOException {
+    return delegate.getNumeric(field);
+  }
+
+  @Override
+  public BinaryDocValues getBinary(FieldInfo field) throws IOException {
+    return delegate.getBinary(field);
+  }
+
+  @Override
+  public SortedDocValues getSorted(FieldInfo field) throws IOException {
+    return delegate.getSorted(field);
+  }
+
+  @Override
+  public SortedNumericDocValues getSortedNumeric(FieldInfo field) throws IOException {
+    final SortedNumericDocValues values = delegate.getSortedNumeric(field);
+    final RangeTreeReader treeReader = getTreeReader(field);
+    if (treeReader == null) {
+      return values;
+    }
+    return new RangeTreeSortedNumericDocValues(values, treeReader);
+  }
+
+  private synchronized RangeTreeReader getTreeReader(FieldInfo field) throws IOException {
+    RangeTreeReader treeReader = treeReaders.get(field.number);
+    if (treeReader == null) {
+      final Long indexFP = indexFPs.get(field.number);
+      if (indexFP == null) {
+        return null;
+      }
+      IndexInput in = data.clone();
+      in.seek(indexFP);
+      treeReader = new RangeTreeReader(in);
+      treeReaders.put(field.number, treeReader);
+    }
+    return treeReader;
+  }
+
+  @Override
+  public SortedSetDocValues getSortedSet(FieldInfo field) throws IOException {
+    return delegate.getSortedSet(field);
+  }
+
+  @Override
+  public Bits getDocsWithField(FieldInfo field) throws IOException {
+    return delegate.getDocsWithField(field);
+  }
+
+  @Override
+  public synchronized long ramBytesUsed() {
+    long ramBytesUsed = RamUsageEstimator.shallowSizeOfInstance(getClass()) + delegate.ramBytesUsed();
+    for (RangeTreeReader treeReader : treeReaders.values()) {
+      ramBytesUsed += treeReader.ramBytesUsed();
+    }
+    return ramBytesUsed;
+  }
+
+  @Override
+  public void checkIntegrity() throws IOException {
+    CodecUtil.checksumEntireFile(data);
+    delegate.checkIntegrity();
+  }
+
+  @Override
+  public void close() throws IOException {
+    IOUtils.close(data, delegate);
+  }
+}
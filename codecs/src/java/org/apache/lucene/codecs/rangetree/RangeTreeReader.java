@@ -0,0 +1,117 @@
+package org.apache.lucene.codecs.rangetree;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * In-memory index of the leaf blocks of a field, and the logic to collect
+ * the documents that have a value in a range.
+ */
+final class RangeTreeReader implements Accountable {
+
+  private final IndexInput data;
+  private final int numLeaves;
+  private final long[] leafMin, leafMax, leafFP;
+
+  /** Reads the index that <code>data</code> is positioned on. */
+  RangeTreeReader(IndexInput data) throws IOException {
+    this.data = data;
+    numLeaves = data.readVInt();
+    leafMin = new long[numLeaves];
+    leafMax = new long[numLeaves];
+    leafFP = new long[numLeaves];
+    long fp = 0;
+    for (int leaf = 0; leaf < numLeaves; leaf++) {
+      leafMin[leaf] = data.readLong();
+      leafMax[leaf] = data.readLong();
+      fp += data.readVLong();
+      leafFP[leaf] = fp;
+    }
+  }
+
+  /** Sets the bits of the documents that have a value between
+   *  <code>min</code> and <code>max</code>, both inclusive. */
+  void intersect(long min, long max, FixedBitSet bits) throws IOException {
+    if (min > max) {
+      return;
+    }
+    final IndexInput in = data.clone();
+    int[] docs = new int[0];
+    // leaves are sorted by value: skip those whose max is less than min
+    for (int leaf = firstLeaf(min); leaf < numLeaves && leafMin[leaf] <= max; leaf++) {
+      in.seek(leafFP[leaf]);
+      final int count = in.readVInt();
+      if (min <= leafMin[leaf] && leafMax[leaf] <= max) {
+        // the whole leaf matches, no need to read values
+        for (int i = 0; i < count; i++) {
+          bits.set(in.readVInt());
+        }
+      } else {
+        docs = ArrayUtil.grow(docs, count);
+        for (int i = 0; i < count; i++) {
+          docs[i] = in.readVInt();
+        }
+        final byte encoding = in.readByte();
+        long value = 0;
+        for (int i = 0; i < count; i++) {
+          if (encoding == RangeTreeDocValuesConsumer.VALUES_DELTA) {
+            value = i == 0 ? in.readLong() : value + in.readVLong();
+          } else {
+            value = in.readLong();
+          }
+          if (value > max) {
+            break;
+          }
+          if (value >= min) {
+            bits.set(docs[i]);
+          }
+        }
+      }
+    }
+  }
+
+  /** Returns the first leaf whose maximum value is greater than or equal to
+   *  <code>min</code>. */
+  private int firstLeaf(long min) {
+    int lo = 0, hi = numLeaves - 1;
+    while (lo <= hi) {
+      final int mid = (lo + hi) >>> 1;
+      if (leafMax[mid] < min) {
+        lo = mid + 1;
+      } else {
+        hi = mid - 1;
+      }
+    }
+    return lo;
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return RamUsageEstimator.shallowSizeOfInstance(getClass())
+        + RamUsageEstimator.sizeOf(leafMin)
+        + RamUsageEstimator.sizeOf(leafMax)
+        + RamUsageEstimator.sizeOf(leafFP);
+  }
+}
@@ -0,0 +1,159 @@
+package org.apache.lucene.codecs.auto;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.perfield.PerFieldPostingsFormat;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LogDocMergePolicy;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+
+public class TestAutoPostingsCodec extends LuceneTestCase {
+
+  private static IndexWriter newWriter(Directory dir, Codec codec) throws IOException {
+    IndexWriterConfig iwc = new IndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random()));
+    iwc.setCodec(codec);
+    iwc.setMergePolicy(new LogDocMergePolicy());
+    return new IndexWriter(dir, iwc);
+  }
+
+  private void addDocs(IndexWriter w, int from, int to) throws IOException {
+    for (int i = from; i < to; i++) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Store.NO));
+      doc.add(new StringField("category", "cat" + (i % 4), Store.NO));
+      StringBuilder body = new StringBuilder();
+      for (int j = 0; j < 5; j++) {
+        body.append(" w").append(random().nextInt(300));
+      }
+      doc.add(new TextField("body", body.toString(), Store.NO));
+      w.addDocument(doc);
+    }
+  }
+
+  private static String getFormat(DirectoryReader reader, int leaf, String field) {
+    FieldInfos infos = reader.leaves().get(leaf).reader().getFieldInfos();
+    return infos.fieldInfo(field).getAttribute(PerFieldPostingsFormat.PER_FIELD_FORMAT_KEY);
+  }
+
+  public void testPickFormats() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = newWriter(dir, new AutoPostingsCodec());
+    addDocs(w, 0, 200);
+    w.close();
+
+    DirectoryReader reader = DirectoryReader.open(dir);
+    assertEquals("Memory", getFormat(reader, 0, "id"));
+    assertEquals("FSTOrd41", getFormat(reader, 0, "category"));
+    assertEquals("Lucene41", getFormat(reader, 0, "body"));
+    IndexSearcher searcher = newSearcher(reader);
+    assertEquals(1, searcher.search(new TermQuery(new Term("id", "42")), 1).totalHits);
+    assertEquals(50, searcher.search(new TermQuery(new Term("category", "cat1")), 1).totalHits);
+    reader.close();
+    dir.close();
+  }
+
+  public void testDecideAgainOnMerge() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = newWriter(dir, new AutoPostingsCodec(150, AutoPostingsCodec.DEFAULT_MAX_LOW_CARDINALITY_TERMS, 100));
+    addDocs(w, 0, 100);
+    w.commit();
+    addDocs(w, 100, 200);
+    w.commit();
+
+    DirectoryReader reader = DirectoryReader.open(dir);
+    assertEquals(2, reader.leaves().size());
+    for (int i = 0; i < 2; i++) {
+      assertEquals("Memory", getFormat(reader, i, "id"));
+    }
+    reader.close();
+
+    // too many terms to keep the merged primary key in memory
+    w.forceMerge(1);
+    w.close();
+    reader = DirectoryReader.open(dir);
+    assertEquals("Lucene41", getFormat(reader, 0, "id"));
+    assertEquals("FSTOrd41", getFormat(reader, 0, "category"));
+    assertEquals(1, newSearcher(reader).search(new TermQuery(new Term("id", "142")), 1).totalHits);
+    reader.close();
+    dir.close();
+  }
+
+  public void testNotPrimaryKeys() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = newWriter(dir, new AutoPostingsCodec());
+    for (int i = 0; i < 200; i++) {
+      Document doc = new Document();
+      // unique terms, but two per document
+      doc.add(new StringField("tags", "a" + i, Store.NO));
+      doc.add(new StringField("tags", "b" + i, Store.NO));
+      // unique terms, but with positions
+      doc.add(new TextField("title", "t" + i, Store.NO));
+      w.addDocument(doc);
+    }
+    w.close();
+
+    DirectoryReader reader = DirectoryReader.open(dir);
+    assertEquals("Lucene41", getFormat(reader, 0, "tags"));
+    assertEquals("Lucene41", getFormat(reader, 0, "title"));
+    reader.close();
+    dir.close();
+  }
+
+  public void testSmallSegment() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = newWriter(dir, new AutoPostingsCodec());
+    addDocs(w, 0, AutoPostingsCodec.DEFAULT_MIN_SEGMENT_DOCS - 1);
+    w.close();
+
+    DirectoryReader reader = DirectoryReader.open(dir);
+    assertEquals("Lucene41", getFormat(reader, 0, "id"));
+    assertEquals("Lucene41", getFormat(reader, 0, "category"));
+    reader.close();
+    dir.close();
+  }
+
+  public void testIllegalThresholds() {
+    try {
+      new AutoPostingsCodec(-1, 10);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      // ok
+    }
+    try {
+      new AutoPostingsCodec(10, 10, -1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      // ok
+    }
+  }
+}
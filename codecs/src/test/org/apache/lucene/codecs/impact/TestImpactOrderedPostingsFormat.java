@@ -0,0 +1,242 @@
+package org.apache.lucene.codecs.impact;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.lucene41.Lucene41PostingsFormat;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.BasePostingsFormatTestCase;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.DefaultSimilarity;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.TestUtil;
+
+/**
+ * Tests ImpactOrderedPostingsFormat
+ */
+public class TestImpactOrderedPostingsFormat extends BasePostingsFormatTestCase {
+  private final Codec codec = TestUtil.alwaysPostingsFormat(new ImpactOrderedPostingsFormat(new Lucene41PostingsFormat(), 2));
+
+  @Override
+  protected Codec getCodec() {
+    return codec;
+  }
+
+  public void testImpact() {
+    assertEquals(1, ImpactOrderedPostingsFormat.impact(1));
+    assertEquals(2, ImpactOrderedPostingsFormat.impact(2));
+    assertEquals(2, ImpactOrderedPostingsFormat.impact(3));
+    assertEquals(3, ImpactOrderedPostingsFormat.impact(4));
+    assertEquals(ImpactOrderedPostingsFormat.MAX_IMPACT, ImpactOrderedPostingsFormat.impact(Integer.MAX_VALUE));
+  }
+
+  public void testImpactsEnum() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(codec);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int[] freqs = new int[atLeast(100)];
+    for (int i = 0; i < freqs.length; i++) {
+      freqs[i] = TestUtil.nextInt(random(), 1, 40);
+      Document doc = new Document();
+      StringBuilder sb = new StringBuilder();
+      for (int j = 0; j < freqs[i]; j++) {
+        sb.append("a ");
+      }
+      doc.add(newTextField("body", sb.toString(), Field.Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    DirectoryReader reader = DirectoryReader.open(w, true);
+    w.close();
+
+    ImpactOrderedTerms terms = (ImpactOrderedTerms) getOnlySegmentReader(reader).terms("body");
+    assertNull(terms.impacts(new BytesRef("b")));
+    ImpactsEnum impacts = terms.impacts(new BytesRef("a"));
+    assertNotNull(impacts);
+    int previousImpact = Integer.MAX_VALUE;
+    int numDocs = 0;
+    for (int impact = impacts.nextSegment(); impact != 0; impact = impacts.nextSegment()) {
+      assertTrue(impact < previousImpact);
+      assertTrue(impacts.docCount() > 0);
+      int previousDoc = -1;
+      // sometimes only consume part of the segment
+      final int stopAt = random().nextInt(5) == 0 ? random().nextInt(impacts.docCount()) : impacts.docCount();
+      for (int i = 0; i < stopAt; i++) {
+        final int doc = impacts.nextDoc();
+        assertTrue(doc > previousDoc);
+        assertEquals(impact, ImpactOrderedPostingsFormat.impact(freqs[doc]));
+        previousDoc = doc;
+      }
+      if (stopAt == impacts.docCount()) {
+        assertEquals(DocIdSetIterator.NO_MORE_DOCS, impacts.nextDoc());
+      }
+      numDocs += impacts.docCount();
+      previousImpact = impact;
+    }
+    assertEquals(freqs.length, numDocs);
+    reader.close();
+    dir.close();
+  }
+
+  public void testEarlyTermination() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(codec);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = atLeast(1000);
+    final int numTopDocs = TestUtil.nextInt(random(), 1, 10);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newStringField("id", Integer.toString(i), Field.Store.YES));
+      doc.add(newTextField("body", i < numTopDocs ? "a a a a a a a a b" : "a b", Field.Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    DirectoryReader reader = DirectoryReader.open(w, true);
+    w.close();
+
+    ImpactOrderedSearcher searcher = new ImpactOrderedSearcher(reader);
+    TopDocs topDocs = searcher.search("body", new BytesRef[] {new BytesRef("a"), new BytesRef("b")}, numTopDocs);
+    assertEquals(numTopDocs, topDocs.scoreDocs.length);
+    // merges may reorder documents
+    for (ScoreDoc hit : topDocs.scoreDocs) {
+      final int id = Integer.parseInt(reader.document(hit.doc).get("id"));
+      assertTrue("unexpected hit: " + id, id < numTopDocs);
+    }
+    // only the docs of the segment with the highest impact have been scored
+    assertEquals(numTopDocs, topDocs.totalHits);
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testSearch() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(codec);
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir, iwc);
+    final int numDocs = atLeast(500);
+    final int numTerms = TestUtil.nextInt(random(), 2, 10);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      StringBuilder sb = new StringBuilder();
+      for (int j = 0; j < numTerms; j++) {
+        if (random().nextInt(j + 1) == 0) {
+          final int freq = 1 + (int) Math.pow(2, random().nextDouble() * 6);
+          for (int k = 0; k < freq; k++) {
+            sb.append(" t").append(j);
+          }
+        }
+      }
+      doc.add(newStringField("id", Integer.toString(i), Field.Store.NO));
+      doc.add(newTextField("body", sb.toString(), Field.Store.NO));
+      w.addDocument(doc);
+    }
+    final int numDeletes = random().nextInt(numDocs / 20);
+    for (int i = 0; i < numDeletes; i++) {
+      w.deleteDocuments(new Term("id", Integer.toString(random().nextInt(numDocs))));
+    }
+    DirectoryReader reader = w.getReader();
+    w.close();
+
+    ImpactOrderedSearcher searcher = new ImpactOrderedSearcher(reader);
+    final int iters = atLeast(10);
+    for (int iter = 0; iter < iters; iter++) {
+      final BytesRef[] terms = new BytesRef[TestUtil.nextInt(random(), 1, 4)];
+      for (int i = 0; i < terms.length; i++) {
+        terms[i] = new BytesRef("t" + random().nextInt(numTerms + 1));
+      }
+      final int n = TestUtil.nextInt(random(), 1, 20);
+      final TopDocs actual = searcher.search("body", terms, n);
+      final List<ScoreDoc> expected = bruteForce(reader, "body", terms);
+      assertEquals(Math.min(n, expected.size()), actual.scoreDocs.length);
+      for (int i = 0; i < actual.scoreDocs.length; i++) {
+        final ScoreDoc hit = actual.scoreDocs[i];
+        assertEquals(expected.get(i).score, hit.score, 0.0001f);
+        float expectedScore = 0;
+        for (ScoreDoc sd : expected) {
+          if (sd.doc == hit.doc) {
+            expectedScore = sd.score;
+          }
+        }
+        assertEquals(expectedScore, hit.score, 0.0001f);
+      }
+    }
+
+    reader.close();
+    dir.close();
+  }
+
+  /** Score all docs from docID-ordered postings. */
+  private static List<ScoreDoc> bruteForce(DirectoryReader reader, String field, BytesRef[] terms) throws IOException {
+    final DefaultSimilarity similarity = new DefaultSimilarity();
+    final List<ScoreDoc> hits = new ArrayList<>();
+    for (AtomicReaderContext context : reader.leaves()) {
+      final AtomicReader leaf = context.reader();
+      final Bits liveDocs = leaf.getLiveDocs();
+      final float[] scores = new float[leaf.maxDoc()];
+      for (BytesRef term : terms) {
+        final int docFreq = reader.docFreq(new Term(field, term));
+        if (docFreq == 0) {
+          continue;
+        }
+        final float weight = similarity.idf(docFreq, reader.maxDoc());
+        final DocsEnum docs = leaf.termDocsEnum(new Term(field, term));
+        if (docs == null) {
+          continue;
+        }
+        for (int doc = docs.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = docs.nextDoc()) {
+          scores[doc] += weight * ImpactOrderedPostingsFormat.impact(docs.freq());
+        }
+      }
+      for (int doc = 0; doc < leaf.maxDoc(); doc++) {
+        if (scores[doc] > 0 && (liveDocs == null || liveDocs.get(doc))) {
+          hits.add(new ScoreDoc(context.docBase + doc, scores[doc]));
+        }
+      }
+    }
+    Collections.sort(hits, new Comparator<ScoreDoc>() {
+      @Override
+      public int compare(ScoreDoc a, ScoreDoc b) {
+        return Float.compare(b.score, a.score);
+      }
+    });
+    return hits;
+  }
+}
@@ -0,0 +1,158 @@
+package org.apache.lucene.codecs.rangetree;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.index.SlowCompositeReaderWrapper;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryUtils;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+public class TestNumericRangeTreeQuery extends LuceneTestCase {
+
+  private static long randomValue(long[] interesting) {
+    switch (random().nextInt(4)) {
+      case 0:
+        return interesting[random().nextInt(interesting.length)];
+      case 1:
+        return random().nextLong();
+      default:
+        return TestUtil.nextLong(random(), -1000, 1000);
+    }
+  }
+
+  public void testRandom() throws Exception {
+    final long[] interesting = new long[] { Long.MIN_VALUE, Long.MIN_VALUE + 1, -1, 0, 1, Long.MAX_VALUE - 1, Long.MAX_VALUE };
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    // small in-heap sorts make flushes and merges sort offline
+    iwc.setCodec(TestUtil.alwaysDocValuesFormat(new RangeTreeDocValuesFormat(TestUtil.nextInt(random(), 1, 100), TestUtil.nextInt(random(), 0, 2000))));
+    IndexWriter w = new IndexWriter(dir, iwc);
+
+    final int numDocs = atLeast(1000);
+    final long[][] docValues = new long[numDocs][];
+    final boolean[] deleted = new boolean[numDocs];
+    for (int id = 0; id < numDocs; id++) {
+      Document doc = new Document();
+      doc.add(newStringField("id", Integer.toString(id), Field.Store.YES));
+      docValues[id] = new long[random().nextInt(10) == 0 ? 0 : TestUtil.nextInt(random(), 1, 3)];
+      for (int i = 0; i < docValues[id].length; i++) {
+        docValues[id][i] = randomValue(interesting);
+        doc.add(new SortedNumericDocValuesField("value", docValues[id][i]));
+      }
+      w.addDocument(doc);
+      if (id > 0 && random().nextInt(20) == 0) {
+        final int toDelete = random().nextInt(id);
+        w.deleteDocuments(new Term("id", Integer.toString(toDelete)));
+        deleted[toDelete] = true;
+      }
+    }
+    if (random().nextBoolean()) {
+      w.forceMerge(1);
+    }
+    DirectoryReader reader = DirectoryReader.open(w, true);
+    w.close();
+    // a wrapped reader hides the tree and makes the query check every document
+    IndexSearcher searcher = newSearcher(random().nextBoolean() ? reader : SlowCompositeReaderWrapper.wrap(reader), false, false);
+
+    final int iters = atLeast(100);
+    for (int iter = 0; iter < iters; iter++) {
+      final Long min = random().nextInt(10) == 0 ? null : randomValue(interesting);
+      final Long max = random().nextInt(10) == 0 ? null : randomValue(interesting);
+      final boolean minInclusive = random().nextBoolean();
+      final boolean maxInclusive = random().nextBoolean();
+      final Query query = new NumericRangeTreeQuery("value", min, minInclusive, max, maxInclusive);
+
+      final FixedBitSet expected = new FixedBitSet(numDocs);
+      for (int id = 0; id < numDocs; id++) {
+        if (deleted[id]) {
+          continue;
+        }
+        for (long value : docValues[id]) {
+          final boolean aboveMin = min == null || (minInclusive ? value >= min : value > min);
+          final boolean belowMax = max == null || (maxInclusive ? value <= max : value < max);
+          if (aboveMin && belowMax) {
+            expected.set(id);
+            break;
+          }
+        }
+      }
+
+      final TopDocs hits = searcher.search(query, numDocs);
+      final FixedBitSet actual = new FixedBitSet(numDocs);
+      for (ScoreDoc scoreDoc : hits.scoreDocs) {
+        actual.set(Integer.parseInt(searcher.doc(scoreDoc.doc).get("id")));
+      }
+      assertEquals(query.toString(), expected.cardinality(), hits.totalHits);
+      assertTrue(query.toString(), expected.equals(actual));
+    }
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testEqualsAndHashCode() {
+    Query q1 = new NumericRangeTreeQuery("value", 1L, true, 10L, false);
+    Query q2 = new NumericRangeTreeQuery("value", 1L, true, 10L, false);
+    QueryUtils.checkEqual(q1, q2);
+    QueryUtils.checkUnequal(q1, new NumericRangeTreeQuery("value", 1L, true, 10L, true));
+    QueryUtils.checkUnequal(q1, new NumericRangeTreeQuery("value", null, true, 10L, false));
+    QueryUtils.checkUnequal(q1, new NumericRangeTreeQuery("other", 1L, true, 10L, false));
+    assertEquals("value:[1 TO 10}", q1.toString());
+    assertEquals("[* TO 10}", new NumericRangeTreeQuery("value", null, true, 10L, false).toString("value"));
+  }
+
+  public void testWrappedReader() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(TestUtil.alwaysDocValuesFormat(new RangeTreeDocValuesFormat()));
+    iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    for (int i = 0; i < 3; i++) {
+      Document doc = new Document();
+      doc.add(new SortedNumericDocValuesField("value", i));
+      doc.add(new SortedNumericDocValuesField("value", i + 10));
+      w.addDocument(doc);
+      w.commit();
+    }
+    w.addDocument(new Document());
+    w.close();
+    DirectoryReader reader = DirectoryReader.open(dir);
+    IndexSearcher searcher = newSearcher(SlowCompositeReaderWrapper.wrap(reader), false, false);
+    assertEquals(2, searcher.search(new NumericRangeTreeQuery("value", 1L, true, 2L, true), 10).totalHits);
+    assertEquals(1, searcher.search(new NumericRangeTreeQuery("value", 10L, false, 11L, true), 10).totalHits);
+    assertEquals(3, searcher.search(new NumericRangeTreeQuery("value", null, true, null, true), 10).totalHits);
+    assertEquals(0, searcher.search(new NumericRangeTreeQuery("value", 3L, true, 9L, true), 10).totalHits);
+    reader.close();
+    dir.close();
+  }
+}
@@ -0,0 +1,65 @@
+package org.apache.lucene.codecs;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.index.FieldInfo; // javadocs
+import org.apache.lucene.index.Terms; // javadocs
+
+/**
+ * Holder for statistics of a field that is about to be written, which
+ * postings formats may use to pick an encoding.
+ * <p>
+ * When flushing, statistics are exact. When merging, they are computed from
+ * the merged segments, so deleted documents are counted and {@link #numTerms}
+ * is the sum of the number of terms of every segment, which is an upper
+ * bound of the number of unique terms.
+ *
+ * @see FieldsConsumer#addField(FieldInfo, FieldStats)
+ * @lucene.experimental
+ */
+public class FieldStats {
+  /** Number of unique terms of the field, or -1 if unknown.
+   *  @see Terms#size() */
+  public final long numTerms;
+
+  /** Number of documents that have at least one term for the
+   *  field, or -1 if unknown.
+   *  @see Terms#getDocCount() */
+  public final int docCount;
+
+  /** Sum of the doc freqs of all terms of the field, or -1 if
+   *  unknown.
+   *  @see Terms#getSumDocFreq() */
+  public final long sumDocFreq;
+
+  /** Number of documents of the segment. */
+  public final int maxDoc;
+
+  /** Sole constructor. */
+  public FieldStats(long numTerms, int docCount, long sumDocFreq, int maxDoc) {
+    this.numTerms = numTerms;
+    this.docCount = docCount;
+    this.sumDocFreq = sumDocFreq;
+    this.maxDoc = maxDoc;
+  }
+
+  @Override
+  public String toString() {
+    return "FieldStats(numTerms=" + numTerms + ", docCount=" + docCount + ", sumDocFreq=" + sumDocFreq + ", maxDoc=" + maxDoc + ")";
+  }
+}
@@ -20,6 +20,7 @@ package org.apache.lucene.codecs;
 import java.io.Closeable;
 import java.io.IOException;
 
+import org.apache.lucene.index.AtomicReader;
 import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.Fields;
 import org.apache.lucene.index.MergeState;
@@ -36,7 +37,7 @@ import org.apache.lucene.index.Terms;
  * <ol>
  *   <li>FieldsConsumer is created by 
  *       {@link PostingsFormat#fieldsConsumer(SegmentWriteState)}.
- *   <li>For each field, {@link #addField(FieldInfo)} is called,
+ *   <li>For each field, {@link #addField(FieldInfo, FieldStats)} is called,
  *       returning a {@link TermsConsumer} for the field.
  *   <li>After all fields are added, the consumer is {@link #close}d.
  * </ol>
@@ -52,6 +53,13 @@ public abstract class FieldsConsumer implements Closeable {
 
   /** Add a new field */
   public abstract TermsConsumer addField(FieldInfo field) throws IOException;
+
+  /** Add a new field, given statistics about its postings that formats
+   *  may use to pick an encoding. The default implementation ignores
+   *  <code>stats</code> and calls {@link #addField(FieldInfo)}. */
+  public TermsConsumer addField(FieldInfo field, FieldStats stats) throws IOException {
+    return addField(field);
+  }
   
   /** Called when we are done adding everything. */
   @Override
@@ -68,9 +76,25 @@ public abstract class FieldsConsumer implements Closeable {
       assert info != null : "FieldInfo for field is null: "+ field;
       Terms terms = fields.terms(field);
       if (terms != null) {
-        final TermsConsumer termsConsumer = addField(info);
+        final TermsConsumer termsConsumer = addField(info, getMergedStats(mergeState, field, terms));
         termsConsumer.merge(mergeState, info.getIndexOptions(), terms.iterator(null));
       }
     }
   }
+
+  private static FieldStats getMergedStats(MergeState mergeState, String field, Terms terms) throws IOException {
+    long numTerms = 0;
+    for (AtomicReader reader : mergeState.readers) {
+      final Terms readerTerms = reader.terms(field);
+      if (readerTerms != null) {
+        final long size = readerTerms.size();
+        if (size == -1) {
+          numTerms = -1;
+          break;
+        }
+        numTerms += size;
+      }
+    }
+    return new FieldStats(numTerms, terms.getDocCount(), terms.getSumDocFreq(), mergeState.segmentInfo.getDocCount());
+  }
 }
@@ -25,6 +25,8 @@ import java.util.TreeMap;
 import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.codecs.FieldsProducer;
 import org.apache.lucene.codecs.PostingsReaderBase;
+import org.apache.lucene.codecs.compressing.CompressionMode;
+import org.apache.lucene.codecs.compressing.Decompressor;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.index.FieldInfo.IndexOptions;
 import org.apache.lucene.index.FieldInfo;
@@ -32,9 +34,11 @@ import org.apache.lucene.index.FieldInfos;
 import org.apache.lucene.index.IndexFileNames;
 import org.apache.lucene.index.SegmentInfo;
 import org.apache.lucene.index.Terms;
+import org.apache.lucene.store.DataInput;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.MMapDirectory;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.RamUsageEstimator;
@@ -60,6 +64,10 @@ import org.apache.lucene.util.RamUsageEstimator;
  *  but with added logic to break up too-large blocks of all
  *  terms sharing a given prefix into smaller ones.</p>
  *
+ *  <p>The terms index of every field is an FST, that is loaded
+ *  onto the heap by default.  See {@link FSTLoadMode} to read it
+ *  from the {@link Directory} instead.</p>
+ *
  *  <p>Use {@link org.apache.lucene.index.CheckIndex} with the <code>-verbose</code>
  *  option to see summary statistics on the blocks in the
  *  dictionary.
@@ -73,9 +81,33 @@ public class BlockTreeTermsReader extends FieldsProducer {
 
   private static long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(BlockTreeTermsReader.class);
 
+  /**
+   * Whether the terms index FST of a field is loaded onto the heap, or
+   * read from the {@link Directory} on demand.
+   */
+  public static enum FSTLoadMode {
+    /** Always load the terms index onto the heap. */
+    ON_HEAP,
+    /** Always read the terms index from the {@link Directory}.
+     *  This is only fast if the index file is memory-mapped, or
+     *  otherwise cached. */
+    OFF_HEAP,
+    /** Read the terms index from the {@link Directory} if the
+     *  index file is memory-mapped and the field has at most one
+     *  term per document, such as a primary key: these fields
+     *  have the largest terms indexes, and lookups in them are
+     *  usually followed by a seek in the terms dictionary anyway.
+     *  Load other terms indexes onto the heap. */
+    AUTO
+  }
+
   // Open input to the main terms dict file (_X.tib)
   final IndexInput in;
 
+  // Open input to the terms index file (_X.tip), if the terms
+  // index of at least one field is off-heap
+  private IndexInput indexIn;
+
   //private static final boolean DEBUG = BlockTreeTermsWriter.DEBUG;
 
   // Reads the terms dict entries, to gather state to
@@ -92,11 +124,21 @@ public class BlockTreeTermsReader extends FieldsProducer {
 
   final String segment;
   
-  private final int version;
+  final int version;
 
-  /** Sole constructor. */
+  // LZ4, to decompress the suffixes and stats of terms blocks
+  private static final Decompressor DECOMPRESSOR = CompressionMode.FAST.newDecompressor();
+
+  /** Create a new reader, that loads the terms index according to {@link FSTLoadMode#AUTO}. */
 	public BlockTreeTermsReader(Directory dir, FieldInfos fieldInfos,
 			SegmentInfo info, PostingsReaderBase postingsReader, IOContext ioContext, String segmentSuffix, int indexDivisor) throws IOException {
+    this(dir, fieldInfos, info, postingsReader, ioContext, segmentSuffix, indexDivisor, FSTLoadMode.AUTO);
+  }
+
+  /** Create a new reader, that loads the terms index according to the given {@link FSTLoadMode}. */
+	public BlockTreeTermsReader(Directory dir, FieldInfos fieldInfos,
+			SegmentInfo info, PostingsReaderBase postingsReader, IOContext ioContext, String segmentSuffix, int indexDivisor,
+			FSTLoadMode fstLoadMode) throws IOException {
     
 		this.postingsReader = postingsReader;
     	this.segment = info.name;
@@ -184,14 +226,18 @@ public class BlockTreeTermsReader extends FieldsProducer {
           throw new CorruptIndexException("invalid sumTotalTermFreq: " + sumTotalTermFreq + " sumDocFreq: " + sumDocFreq + " (resource=" + in + ")");
         }
         final long indexStartFP = indexDivisor != -1 ? indexIn.readVLong() : 0;
+        final boolean indexOffHeap = indexDivisor != -1 && isIndexOffHeap(fstLoadMode, indexIn, numTerms, sumDocFreq, docCount);
 				FieldReader previous = 
 						fields.put(fieldInfo.name, new FieldReader(this, fieldInfo, numTerms, rootCode, sumTotalTermFreq, 
-								sumDocFreq, docCount, indexStartFP, longsSize, indexIn, minTerm, maxTerm));
+								sumDocFreq, docCount, indexStartFP, longsSize, indexIn, indexOffHeap, minTerm, maxTerm));
 				if (previous != null) {
 					throw new CorruptIndexException("duplicate field: " + fieldInfo.name + " (resource=" + in + ")");
 				}
+        if (indexOffHeap) {
+          this.indexIn = indexIn;
+        }
 			}
-			if (indexDivisor != -1) {
+			if (indexDivisor != -1 && this.indexIn == null) {
 				indexIn.close();
 			}
 
@@ -204,6 +250,27 @@ public class BlockTreeTermsReader extends FieldsProducer {
 		}
 	}
 
+  private static boolean isIndexOffHeap(FSTLoadMode fstLoadMode, IndexInput indexIn, long numTerms, long sumDocFreq, int docCount) {
+    switch (fstLoadMode) {
+      case ON_HEAP:
+        return false;
+      case OFF_HEAP:
+        return true;
+      case AUTO:
+        return MMapDirectory.isMapped(indexIn) && sumDocFreq == docCount && numTerms > 1;
+      default:
+        throw new AssertionError();
+    }
+  }
+
+  /** Decompresses {@code length} LZ4-compressed bytes of a terms block into
+   *  {@code dest}, and returns it, or a larger array if it was too small. */
+  static byte[] decompress(DataInput in, int length, byte[] dest) throws IOException {
+    final BytesRef bytes = new BytesRef(dest);
+    DECOMPRESSOR.decompress(in, length, 0, length, bytes);
+    return bytes.bytes;
+  }
+
   private static BytesRef readBytesRef(IndexInput in) throws IOException {
     BytesRef bytes = new BytesRef();
     bytes.length = in.readVInt();
@@ -255,7 +322,7 @@ public class BlockTreeTermsReader extends FieldsProducer {
   @Override
   public void close() throws IOException {
     try {
-      IOUtils.close(in, postingsReader);
+      IOUtils.close(in, indexIn, postingsReader);
     } finally { 
       // Clear so refs to terms index is GCable even if
       // app hangs onto us:
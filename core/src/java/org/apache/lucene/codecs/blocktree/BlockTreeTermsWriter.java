@@ -29,6 +29,8 @@ import org.apache.lucene.codecs.PostingsConsumer;
 import org.apache.lucene.codecs.PostingsWriterBase;
 import org.apache.lucene.codecs.TermStats;
 import org.apache.lucene.codecs.TermsConsumer;
+import org.apache.lucene.codecs.compressing.CompressionMode;
+import org.apache.lucene.codecs.compressing.Compressor;
 import org.apache.lucene.index.FieldInfo.IndexOptions;
 import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.FieldInfos;
@@ -121,15 +123,17 @@ import org.apache.lucene.util.packed.PackedInts;
  *    <li>TermsDict (.tim) --&gt; Header, <i>PostingsHeader</i>, NodeBlock<sup>NumBlocks</sup>,
  *                               FieldSummary, DirOffset, Footer</li>
  *    <li>NodeBlock --&gt; (OuterNode | InnerNode)</li>
- *    <li>OuterNode --&gt; EntryCount, SuffixLength, Byte<sup>SuffixLength</sup>, StatsLength, &lt; TermStats &gt;<sup>EntryCount</sup>, MetaLength, &lt;<i>TermMetadata</i>&gt;<sup>EntryCount</sup></li>
- *    <li>InnerNode --&gt; EntryCount, SuffixLength[,Sub?], Byte<sup>SuffixLength</sup>, StatsLength, &lt; TermStats ? &gt;<sup>EntryCount</sup>, MetaLength, &lt;<i>TermMetadata ? </i>&gt;<sup>EntryCount</sup></li>
+ *    <li>OuterNode --&gt; EntryCount, SuffixLength, Suffixes, StatsLength, Stats, MetaLength, &lt;<i>TermMetadata</i>&gt;<sup>EntryCount</sup></li>
+ *    <li>InnerNode --&gt; EntryCount, SuffixLength[,Sub?], Suffixes, StatsLength, Stats, MetaLength, &lt;<i>TermMetadata ? </i>&gt;<sup>EntryCount</sup></li>
+ *    <li>Suffixes --&gt; Byte<sup>SuffixLength</sup> | LZ4(Byte<sup>SuffixLength</sup>)</li>
+ *    <li>Stats --&gt; &lt; TermStats ? &gt;<sup>EntryCount</sup> | CompressedStatsLength, LZ4(&lt; TermStats ? &gt;<sup>EntryCount</sup>)</li>
  *    <li>TermStats --&gt; DocFreq, TotalTermFreq </li>
  *    <li>FieldSummary --&gt; NumFields, &lt;FieldNumber, NumTerms, RootCodeLength, Byte<sup>RootCodeLength</sup>,
  *                            SumTotalTermFreq?, SumDocFreq, DocCount, LongsSize, MinTerm, MaxTerm&gt;<sup>NumFields</sup></li>
  *    <li>Header --&gt; {@link CodecUtil#writeHeader CodecHeader}</li>
  *    <li>DirOffset --&gt; {@link DataOutput#writeLong Uint64}</li>
  *    <li>MinTerm,MaxTerm --&gt; {@link DataOutput#writeVInt VInt} length followed by the byte[]</li>
- *    <li>EntryCount,SuffixLength,StatsLength,DocFreq,MetaLength,NumFields,
+ *    <li>EntryCount,SuffixLength,StatsLength,CompressedStatsLength,DocFreq,MetaLength,NumFields,
  *        FieldNumber,RootCodeLength,DocCount,LongsSize --&gt; {@link DataOutput#writeVInt VInt}</li>
  *    <li>TotalTermFreq,NumTerms,SumTotalTermFreq,SumDocFreq --&gt; 
  *        {@link DataOutput#writeVLong VLong}</li>
@@ -157,6 +161,10 @@ import org.apache.lucene.util.packed.PackedInts;
  *        and per-term data (such as pointers to inverted files).</li>
  *    <li>For inner nodes of the tree, every entry will steal one bit to mark whether it points
  *        to child nodes(sub-block). If so, the corresponding TermStats and TermMetaData are omitted </li>
+ *    <li>SuffixLength steals two bits to mark whether the node is an outer node, and whether the
+ *        suffixes are compressed with {@link CompressionMode#FAST LZ4}. StatsLength steals one bit
+ *        to mark whether the stats are compressed. Suffixes and stats are only compressed when that
+ *        saves at least a quarter of their bytes.</li>
  * </ul>
  * <a name="Termindex" id="Termindex"></a>
  * <h3>Term Index</h3>
@@ -237,8 +245,14 @@ public final class BlockTreeTermsWriter extends FieldsConsumer {
   /** min/max term */
   public static final int VERSION_MIN_MAX_TERMS = 4;
 
+  /** LZ4-compressed suffixes and stats */
+  public static final int VERSION_COMPRESSED_BLOCKS = 5;
+
   /** Current terms format. */
-  public static final int VERSION_CURRENT = VERSION_MIN_MAX_TERMS;
+  public static final int VERSION_CURRENT = VERSION_COMPRESSED_BLOCKS;
+
+  /** Suffixes and stats of a block that take fewer bytes than this are never compressed. */
+  static final int MIN_COMPRESSED_LENGTH = 16;
 
   /** Extension of terms index file */
   static final String TERMS_INDEX_EXTENSION = "tip";
@@ -830,14 +844,26 @@ public final class BlockTreeTermsWriter extends FieldsConsumer {
       // this would take more space but would enable binary
       // search on lookup
 
-      // Write suffixes byte[] blob to terms dict output:
-      out.writeVInt((int) (suffixWriter.getFilePointer() << 1) | (isLeafBlock ? 1:0));
-      suffixWriter.writeTo(out);
+      // Write suffixes byte[] blob to terms dict output, LZ4-compressed if that pays off:
+      final boolean compressSuffixes = compress(suffixWriter);
+      out.writeVInt((int) (suffixWriter.getFilePointer() << 2) | (compressSuffixes ? 2:0) | (isLeafBlock ? 1:0));
+      if (compressSuffixes) {
+        compressedWriter.writeTo(out);
+      } else {
+        suffixWriter.writeTo(out);
+      }
       suffixWriter.reset();
 
-      // Write term stats byte[] blob
-      out.writeVInt((int) statsWriter.getFilePointer());
-      statsWriter.writeTo(out);
+      // Write term stats byte[] blob; unlike suffixes, stats are decompressed lazily, so
+      // their compressed length is written too:
+      final boolean compressStats = compress(statsWriter);
+      out.writeVInt((int) (statsWriter.getFilePointer() << 1) | (compressStats ? 1:0));
+      if (compressStats) {
+        out.writeVInt((int) compressedWriter.getFilePointer());
+        compressedWriter.writeTo(out);
+      } else {
+        statsWriter.writeTo(out);
+      }
       statsWriter.reset();
 
       // Write term meta data byte[] blob
@@ -1013,10 +1039,27 @@ public final class BlockTreeTermsWriter extends FieldsConsumer {
       }
     }
 
+    // LZ4-compresses the bytes of blob into compressedWriter, and returns
+    // true if that saves at least 1/4th of them
+    private boolean compress(RAMOutputStream blob) throws IOException {
+      final int length = (int) blob.getFilePointer();
+      if (length < MIN_COMPRESSED_LENGTH) {
+        return false;
+      }
+      blobBytes = ArrayUtil.grow(blobBytes, length);
+      blob.writeTo(blobBytes, 0);
+      compressedWriter.reset();
+      compressor.compress(blobBytes, 0, length, compressedWriter);
+      return compressedWriter.getFilePointer() <= length - (length >>> 2);
+    }
+
     private final RAMOutputStream suffixWriter = new RAMOutputStream();
     private final RAMOutputStream statsWriter = new RAMOutputStream();
     private final RAMOutputStream metaWriter = new RAMOutputStream();
     private final RAMOutputStream bytesWriter = new RAMOutputStream();
+    private final RAMOutputStream compressedWriter = new RAMOutputStream();
+    private final Compressor compressor = CompressionMode.FAST.newCompressor();
+    private byte[] blobBytes = new byte[128];
   }
 
   @Override
@@ -55,10 +55,11 @@ public final class FieldReader extends Terms implements Accountable {
   final BlockTreeTermsReader parent;
 
   final FST<BytesRef> index;
+  final boolean indexOffHeap;
   //private boolean DEBUG;
 
 	FieldReader(BlockTreeTermsReader parent, FieldInfo fieldInfo, long numTerms, BytesRef rootCode, long sumTotalTermFreq,
-			long sumDocFreq, int docCount, long indexStartFP, int longsSize, IndexInput indexIn, BytesRef minTerm, BytesRef maxTerm) throws IOException {
+			long sumDocFreq, int docCount, long indexStartFP, int longsSize, IndexInput indexIn, boolean indexOffHeap, BytesRef minTerm, BytesRef maxTerm) throws IOException {
     assert numTerms > 0;
     this.fieldInfo = fieldInfo;
     //DEBUG = BlockTreeTermsReader.DEBUG && fieldInfo.name.equals("id");
@@ -76,13 +77,15 @@ public final class FieldReader extends Terms implements Accountable {
     //   System.out.println("BTTR: seg=" + segment + " field=" + fieldInfo.name + " rootBlockCode=" + rootCode + " divisor=" + indexDivisor);
     // }
 
+    this.indexOffHeap = indexIn != null && indexOffHeap;
+
     rootBlockFP = (new ByteArrayDataInput(rootCode.bytes, rootCode.offset, rootCode.length)).readVLong() >>> BlockTreeTermsWriter.OUTPUT_FLAGS_NUM_BITS;
 
 		if (indexIn != null) {
 			final IndexInput clone = indexIn.clone();
       //System.out.println("start=" + indexStartFP + " field=" + fieldInfo.name);
 			clone.seek(indexStartFP);
-			index = new FST<>(clone, ByteSequenceOutputs.getSingleton());
+			index = new FST<>(clone, ByteSequenceOutputs.getSingleton(), indexOffHeap);
         
       /*
         if (false) {
@@ -182,6 +185,14 @@ public final class FieldReader extends Terms implements Accountable {
     return new IntersectTermsEnum(this, compiled, startTerm);
   }
     
+  /** Returns true if the terms index of this field is read from the
+   *  {@link org.apache.lucene.store.Directory}, rather than loaded onto
+   *  the heap.
+   *  @see BlockTreeTermsReader.FSTLoadMode */
+  public boolean isIndexOffHeap() {
+    return indexOffHeap;
+  }
+
   @Override
   public long ramBytesUsed() {
     return BASE_RAM_BYTES_USED + ((index!=null)? index.ramBytesUsed() : 0);
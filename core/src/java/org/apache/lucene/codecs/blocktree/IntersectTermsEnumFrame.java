@@ -46,6 +46,13 @@ final class IntersectTermsEnumFrame {
   byte[] statBytes = new byte[64];
   final ByteArrayDataInput statsReader = new ByteArrayDataInput();
 
+  // compressed stats of the current block, only decompressed once a
+  // term's metadata is decoded
+  byte[] compressedStatBytes = new byte[64];
+  final ByteArrayDataInput compressedStatsReader = new ByteArrayDataInput();
+  boolean statsCompressed;
+  int statsLength;
+
   byte[] floorData = new byte[32];
   final ByteArrayDataInput floorDataReader = new ByteArrayDataInput();
 
@@ -178,21 +185,41 @@ final class IntersectTermsEnumFrame {
     // term suffixes:
     code = ite.in.readVInt();
     isLeafBlock = (code & 1) != 0;
-    int numBytes = code >>> 1;
+    final boolean compressedBlocks = ite.fr.parent.version >= BlockTreeTermsWriter.VERSION_COMPRESSED_BLOCKS;
+    final boolean suffixesCompressed = compressedBlocks && (code & 2) != 0;
+    int numBytes = compressedBlocks ? code >>> 2 : code >>> 1;
     // if (DEBUG) System.out.println("      entCount=" + entCount + " lastInFloor?=" + isLastInFloor + " leafBlock?=" + isLeafBlock + " numSuffixBytes=" + numBytes);
-    if (suffixBytes.length < numBytes) {
-      suffixBytes = new byte[ArrayUtil.oversize(numBytes, 1)];
+    if (suffixesCompressed) {
+      suffixBytes = BlockTreeTermsReader.decompress(ite.in, numBytes, suffixBytes);
+    } else {
+      if (suffixBytes.length < numBytes) {
+        suffixBytes = new byte[ArrayUtil.oversize(numBytes, 1)];
+      }
+      ite.in.readBytes(suffixBytes, 0, numBytes);
     }
-    ite.in.readBytes(suffixBytes, 0, numBytes);
     suffixesReader.reset(suffixBytes, 0, numBytes);
 
     // stats
     numBytes = ite.in.readVInt();
-    if (statBytes.length < numBytes) {
-      statBytes = new byte[ArrayUtil.oversize(numBytes, 1)];
+    statsCompressed = compressedBlocks && (numBytes & 1) != 0;
+    if (compressedBlocks) {
+      numBytes >>>= 1;
+    }
+    statsLength = numBytes;
+    if (statsCompressed) {
+      final int compressedLength = ite.in.readVInt();
+      if (compressedStatBytes.length < compressedLength) {
+        compressedStatBytes = new byte[ArrayUtil.oversize(compressedLength, 1)];
+      }
+      ite.in.readBytes(compressedStatBytes, 0, compressedLength);
+      compressedStatsReader.reset(compressedStatBytes, 0, compressedLength);
+    } else {
+      if (statBytes.length < numBytes) {
+        statBytes = new byte[ArrayUtil.oversize(numBytes, 1)];
+      }
+      ite.in.readBytes(statBytes, 0, numBytes);
+      statsReader.reset(statBytes, 0, numBytes);
     }
-    ite.in.readBytes(statBytes, 0, numBytes);
-    statsReader.reset(statBytes, 0, numBytes);
     metaDataUpto = 0;
 
     termState.termBlockOrd = 0;
@@ -263,6 +290,12 @@ final class IntersectTermsEnumFrame {
     boolean absolute = metaDataUpto == 0;
     assert limit > 0;
 
+    if (statsCompressed) {
+      statBytes = BlockTreeTermsReader.decompress(compressedStatsReader, statsLength, statBytes);
+      statsReader.reset(statBytes, 0, statsLength);
+      statsCompressed = false;
+    }
+
     // TODO: better API would be "jump straight to term=N"???
     while (metaDataUpto < limit) {
 
@@ -48,6 +48,18 @@ final class SegmentTermsEnumFrame {
   byte[] statBytes = new byte[64];
   final ByteArrayDataInput statsReader = new ByteArrayDataInput();
 
+  // compressed stats of the current block, only decompressed once a
+  // term's metadata is decoded
+  byte[] compressedStatBytes = new byte[64];
+  final ByteArrayDataInput compressedStatsReader = new ByteArrayDataInput();
+  boolean statsCompressed;
+  int statsLength;
+
+  // bytes taken by the suffixes and stats of the current block
+  // in the terms dict, for Stats
+  int suffixesLengthOnDisk;
+  int statsLengthOnDisk;
+
   byte[] floorData = new byte[32];
   final ByteArrayDataInput floorDataReader = new ByteArrayDataInput();
 
@@ -164,12 +176,20 @@ final class SegmentTermsEnumFrame {
     // term suffixes:
     code = ste.in.readVInt();
     isLeafBlock = (code & 1) != 0;
-    int numBytes = code >>> 1;
-    if (suffixBytes.length < numBytes) {
-      suffixBytes = new byte[ArrayUtil.oversize(numBytes, 1)];
+    final boolean compressedBlocks = ste.fr.parent.version >= BlockTreeTermsWriter.VERSION_COMPRESSED_BLOCKS;
+    final boolean suffixesCompressed = compressedBlocks && (code & 2) != 0;
+    int numBytes = compressedBlocks ? code >>> 2 : code >>> 1;
+    long startFP = ste.in.getFilePointer();
+    if (suffixesCompressed) {
+      suffixBytes = BlockTreeTermsReader.decompress(ste.in, numBytes, suffixBytes);
+    } else {
+      if (suffixBytes.length < numBytes) {
+        suffixBytes = new byte[ArrayUtil.oversize(numBytes, 1)];
+      }
+      ste.in.readBytes(suffixBytes, 0, numBytes);
     }
-    ste.in.readBytes(suffixBytes, 0, numBytes);
     suffixesReader.reset(suffixBytes, 0, numBytes);
+    suffixesLengthOnDisk = (int) (ste.in.getFilePointer() - startFP);
 
     /*if (DEBUG) {
       if (arc == null) {
@@ -181,11 +201,27 @@ final class SegmentTermsEnumFrame {
 
     // stats
     numBytes = ste.in.readVInt();
-    if (statBytes.length < numBytes) {
-      statBytes = new byte[ArrayUtil.oversize(numBytes, 1)];
+    statsCompressed = compressedBlocks && (numBytes & 1) != 0;
+    if (compressedBlocks) {
+      numBytes >>>= 1;
     }
-    ste.in.readBytes(statBytes, 0, numBytes);
-    statsReader.reset(statBytes, 0, numBytes);
+    statsLength = numBytes;
+    startFP = ste.in.getFilePointer();
+    if (statsCompressed) {
+      final int compressedLength = ste.in.readVInt();
+      if (compressedStatBytes.length < compressedLength) {
+        compressedStatBytes = new byte[ArrayUtil.oversize(compressedLength, 1)];
+      }
+      ste.in.readBytes(compressedStatBytes, 0, compressedLength);
+      compressedStatsReader.reset(compressedStatBytes, 0, compressedLength);
+    } else {
+      if (statBytes.length < numBytes) {
+        statBytes = new byte[ArrayUtil.oversize(numBytes, 1)];
+      }
+      ste.in.readBytes(statBytes, 0, numBytes);
+      statsReader.reset(statBytes, 0, numBytes);
+    }
+    statsLengthOnDisk = (int) (ste.in.getFilePointer() - startFP);
     metaDataUpto = 0;
 
     state.termBlockOrd = 0;
@@ -388,6 +424,12 @@ final class SegmentTermsEnumFrame {
     boolean absolute = metaDataUpto == 0;
     assert limit > 0;
 
+    if (statsCompressed) {
+      statBytes = BlockTreeTermsReader.decompress(compressedStatsReader, statsLength, statBytes);
+      statsReader.reset(statBytes, 0, statsLength);
+      statsCompressed = false;
+    }
+
     // TODO: better API would be "jump straight to term=N"???
     while (metaDataUpto < limit) {
 
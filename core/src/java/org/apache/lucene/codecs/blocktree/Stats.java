@@ -116,8 +116,8 @@ public class Stats {
     }
     blockCountByPrefixLen[frame.prefix]++;
     startBlockCount++;
-    totalBlockSuffixBytes += frame.suffixesReader.length();
-    totalBlockStatsBytes += frame.statsReader.length();
+    totalBlockSuffixBytes += frame.suffixesLengthOnDisk;
+    totalBlockStatsBytes += frame.statsLengthOnDisk;
   }
 
   void endBlock(SegmentTermsEnumFrame frame) {
@@ -134,7 +134,7 @@ public class Stats {
       throw new IllegalStateException();
     }
     endBlockCount++;
-    final long otherBytes = frame.fpEnd - frame.fp - frame.suffixesReader.length() - frame.statsReader.length();
+    final long otherBytes = frame.fpEnd - frame.fp - frame.suffixesLengthOnDisk - frame.statsLengthOnDisk;
     assert otherBytes > 0 : "otherBytes=" + otherBytes + " frame.fp=" + frame.fp + " frame.fpEnd=" + frame.fpEnd;
     totalBlockOtherBytes += otherBytes;
   }
@@ -25,6 +25,7 @@ import java.util.zip.Inflater;
 import org.apache.lucene.index.CorruptIndexException;
 import org.apache.lucene.store.DataInput;
 import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.RAMOutputStream;
 import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.BytesRef;
 
@@ -110,6 +111,34 @@ public abstract class CompressionMode {
 
   };
 
+  /**
+   * This compression mode is similar to {@link #FAST}, but it cuts every
+   * chunk into a small dictionary and a few blocks, that are compressed
+   * independently of each other with the dictionary as a preset. Loading a
+   * document then only needs to decompress the dictionary and the blocks
+   * that hold the document, instead of the whole chunk, while the dictionary
+   * still lets LZ4 find the redundancy between documents of the chunk. This
+   * mode is best used with large chunks of many small documents.
+   */
+  public static final CompressionMode FAST_WITH_DICTIONARY = new CompressionMode() {
+
+    @Override
+    public Compressor newCompressor() {
+      return new LZ4WithDictionaryCompressor();
+    }
+
+    @Override
+    public Decompressor newDecompressor() {
+      return new LZ4WithDictionaryDecompressor();
+    }
+
+    @Override
+    public String toString() {
+      return "FAST_WITH_DICTIONARY";
+    }
+
+  };
+
   /** Sole constructor. */
   protected CompressionMode() {}
 
@@ -179,6 +208,130 @@ public abstract class CompressionMode {
 
   }
 
+  // number of blocks that chunks are cut into, after the dictionary
+  static final int DICTIONARY_NUM_BLOCKS = 8;
+  // the dictionary is half the size of a block
+  static final int DICTIONARY_SIZE_FACTOR = 2;
+
+  private static final class LZ4WithDictionaryCompressor extends Compressor {
+
+    private final LZ4.HashTable ht;
+    private final RAMOutputStream compressed;
+    private final int[] compressedLengths;
+    // the dictionary, followed by the current block
+    private byte[] scratch;
+
+    LZ4WithDictionaryCompressor() {
+      ht = new LZ4.HashTable();
+      compressed = new RAMOutputStream();
+      compressedLengths = new int[1 + DICTIONARY_NUM_BLOCKS];
+      scratch = new byte[0];
+    }
+
+    @Override
+    public void compress(byte[] bytes, int off, int len, DataOutput out)
+        throws IOException {
+      final int dictLength = Math.min(LZ4.MAX_DISTANCE - 1, len / (DICTIONARY_NUM_BLOCKS * DICTIONARY_SIZE_FACTOR));
+      final int blockLength = (len - dictLength + DICTIONARY_NUM_BLOCKS - 1) / DICTIONARY_NUM_BLOCKS;
+      out.writeVInt(dictLength);
+      out.writeVInt(blockLength);
+
+      compressed.reset();
+      if (dictLength > 0) {
+        LZ4.compress(bytes, off, dictLength, compressed, ht);
+      }
+      compressedLengths[0] = (int) compressed.getFilePointer();
+      int numBlocks = 0;
+      // blocks are compressed with the dictionary right before them
+      scratch = ArrayUtil.grow(scratch, dictLength + blockLength);
+      System.arraycopy(bytes, off, scratch, 0, dictLength);
+      for (int start = dictLength; start < len; start += blockLength) {
+        final long fp = compressed.getFilePointer();
+        final int l = Math.min(blockLength, len - start);
+        System.arraycopy(bytes, off + start, scratch, dictLength, l);
+        LZ4.compressWithDictionary(scratch, 0, dictLength, l, compressed, ht);
+        compressedLengths[++numBlocks] = (int) (compressed.getFilePointer() - fp);
+      }
+
+      // lengths first, so that decompression can skip the blocks it doesn't need
+      for (int i = 0; i <= numBlocks; ++i) {
+        out.writeVInt(compressedLengths[i]);
+      }
+      compressed.writeTo(out);
+    }
+
+  }
+
+  private static final class LZ4WithDictionaryDecompressor extends Decompressor {
+
+    private int[] compressedLengths;
+    // the dictionary, followed by the current block
+    private byte[] buffer;
+
+    LZ4WithDictionaryDecompressor() {
+      compressedLengths = new int[1 + DICTIONARY_NUM_BLOCKS];
+      buffer = new byte[0];
+    }
+
+    @Override
+    public void decompress(DataInput in, int originalLength, int offset, int length, BytesRef bytes) throws IOException {
+      assert offset + length <= originalLength;
+      if (length == 0) {
+        bytes.length = 0;
+        return;
+      }
+      final int dictLength = in.readVInt();
+      final int blockLength = in.readVInt();
+      final int numBlocks = blockLength == 0 ? 0 : (originalLength - dictLength + blockLength - 1) / blockLength;
+      if (dictLength > originalLength || numBlocks > DICTIONARY_NUM_BLOCKS) {
+        throw new CorruptIndexException("Corrupted: dictLength=" + dictLength + ", blockLength=" + blockLength + ", originalLength=" + originalLength + " (resource=" + in + ")");
+      }
+      for (int i = 0; i <= numBlocks; ++i) {
+        compressedLengths[i] = in.readVInt();
+      }
+
+      // add 7 padding bytes, this is not necessary but can help decompression run faster
+      buffer = ArrayUtil.grow(buffer, dictLength + blockLength + 7);
+      if (dictLength > 0 && LZ4.decompress(in, dictLength, buffer, 0) != dictLength) {
+        throw new CorruptIndexException("Corrupted: dictionary length mismatch (resource=" + in + ")");
+      }
+
+      // bytes.bytes starts at the dictionary if it is needed, at the first needed block otherwise
+      final int end = offset + length;
+      final int firstBlock = offset < dictLength ? 0 : (offset - dictLength) / blockLength;
+      final int lastBlock = end <= dictLength ? -1 : (end - dictLength - 1) / blockLength;
+      final int start = offset < dictLength ? 0 : dictLength + firstBlock * blockLength;
+      final int decompressedEnd = lastBlock == -1 ? dictLength : Math.min(originalLength, dictLength + (lastBlock + 1) * blockLength);
+      bytes.bytes = ArrayUtil.grow(bytes.bytes, decompressedEnd - start);
+      if (start == 0) {
+        System.arraycopy(buffer, 0, bytes.bytes, 0, dictLength);
+      }
+
+      long skip = 0;
+      for (int i = 0; i < firstBlock; ++i) {
+        skip += compressedLengths[1 + i];
+      }
+      in.skipBytes(skip);
+      for (int i = firstBlock; i <= lastBlock; ++i) {
+        final int blockStart = dictLength + i * blockLength;
+        final int len = Math.min(blockLength, originalLength - blockStart);
+        if (LZ4.decompress(in, dictLength + len, buffer, dictLength) != dictLength + len) {
+          throw new CorruptIndexException("Corrupted: block length mismatch (resource=" + in + ")");
+        }
+        System.arraycopy(buffer, dictLength, bytes.bytes, blockStart - start, len);
+      }
+
+      bytes.offset = offset - start;
+      bytes.length = length;
+    }
+
+    @Override
+    public Decompressor clone() {
+      return new LZ4WithDictionaryDecompressor();
+    }
+
+  }
+
   private static final class DeflateDecompressor extends Decompressor {
 
     final Inflater decompressor;
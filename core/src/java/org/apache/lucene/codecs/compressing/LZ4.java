@@ -252,6 +252,67 @@ final class LZ4 {
     encodeLastLiterals(bytes, anchor, end - anchor, out);
   }
 
+  /**
+   * Compress <code>bytes[dictOff+dictLen:dictOff+dictLen+len]</code> into
+   * <code>out</code>, using <code>bytes[dictOff:dictOff+dictLen]</code> as a
+   * preset dictionary that matches may refer to. <code>dictLen</code> must be
+   * less than {@link #MAX_DISTANCE}. To decompress, the dictionary must be
+   * stored in the destination array right before the decompressed bytes.
+   */
+  public static void compressWithDictionary(byte[] bytes, int dictOff, int dictLen, int len, DataOutput out, HashTable ht) throws IOException {
+    assert dictLen < MAX_DISTANCE;
+
+    final int base = dictOff;
+    int off = dictOff + dictLen;
+    final int end = off + len;
+
+    int anchor = off;
+
+    if (len > LAST_LITERALS + MIN_MATCH) {
+
+      final int limit = end - LAST_LITERALS;
+      final int matchLimit = limit - MIN_MATCH;
+      ht.reset(dictLen + len);
+      final int hashLog = ht.hashLog;
+      final PackedInts.Mutable hashTable = ht.hashTable;
+
+      // make sequences of the dictionary available as references
+      for (int i = dictOff; i + MIN_MATCH <= dictOff + dictLen; ++i) {
+        hashTable.set(hash(readInt(bytes, i), hashLog), i - base);
+      }
+
+      main:
+      while (off <= limit) {
+        // find a match
+        int ref;
+        while (true) {
+          if (off >= matchLimit) {
+            break main;
+          }
+          final int v = readInt(bytes, off);
+          final int h = hash(v, hashLog);
+          ref = base + (int) hashTable.get(h);
+          assert PackedInts.bitsRequired(off - base) <= hashTable.getBitsPerValue();
+          hashTable.set(h, off - base);
+          if (ref < off && off - ref < MAX_DISTANCE && readInt(bytes, ref) == v) {
+            break;
+          }
+          ++off;
+        }
+
+        // compute match length
+        final int matchLen = MIN_MATCH + commonBytes(bytes, ref + MIN_MATCH, off + MIN_MATCH, limit);
+
+        encodeSequence(bytes, anchor, ref, off, matchLen, out);
+        off += matchLen;
+        anchor = off;
+      }
+    }
+
+    // last literals
+    encodeLastLiterals(bytes, anchor, end - anchor, out);
+  }
+
   private static class Match {
     int start, ref, len;
 
@@ -213,6 +213,53 @@ final class ForUtil implements Accountable {
     decoder.decode(encoded, 0, decoded, 0, iters);
   }
 
+  /**
+   * Read the next block of data without decoding it, so that it can be
+   * decoded later with {@link #decodeBlock}, if at all.
+   *
+   * @param in        the input to use to read data
+   * @param encoded   where to store encoded data
+   * @return the number of bits per value of the block
+   * @throws IOException If there is a low-level I/O error
+   */
+  int readEncodedBlock(IndexInput in, byte[] encoded) throws IOException {
+    final int numBits = in.readByte();
+    assert numBits <= 32 : numBits;
+
+    if (numBits == ALL_VALUES_EQUAL) {
+      final int value = in.readVInt();
+      encoded[0] = (byte) (value >>> 24);
+      encoded[1] = (byte) (value >>> 16);
+      encoded[2] = (byte) (value >>> 8);
+      encoded[3] = (byte) value;
+    } else {
+      in.readBytes(encoded, 0, encodedSizes[numBits]);
+    }
+    return numBits;
+  }
+
+  /**
+   * Decode a block that was read with {@link #readEncodedBlock}.
+   *
+   * @param numBits   the number of bits per value, as returned by {@link #readEncodedBlock}
+   * @param encoded   the encoded data
+   * @param decoded   where to write decoded data
+   */
+  void decodeBlock(int numBits, byte[] encoded, int[] decoded) {
+    if (numBits == ALL_VALUES_EQUAL) {
+      final int value = ((encoded[0] & 0xFF) << 24) | ((encoded[1] & 0xFF) << 16)
+          | ((encoded[2] & 0xFF) << 8) | (encoded[3] & 0xFF);
+      Arrays.fill(decoded, 0, BLOCK_SIZE, value);
+      return;
+    }
+
+    final PackedInts.Decoder decoder = decoders[numBits];
+    final int iters = iterations[numBits];
+    assert iters * decoder.byteValueCount() >= BLOCK_SIZE;
+
+    decoder.decode(encoded, 0, decoded, 0, iters);
+  }
+
   /**
    * Skip the next block of data.
    *
@@ -162,6 +162,19 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
     }
   }
 
+  /**
+   * Turns the first <code>count</code> doc deltas of <code>docBuffer</code>
+   * into absolute doc IDs, starting from <code>base</code>. Doing this once
+   * per block in a tight loop is cheaper than accumulating deltas one at a
+   * time in nextDoc/advance, and lets advance scan absolute doc IDs.
+   */
+  static void prefixSum(int[] docBuffer, int count, int base) {
+    docBuffer[0] += base;
+    for (int i = 1; i < count; ++i) {
+      docBuffer[i] += docBuffer[i-1];
+    }
+  }
+
   @Override
   public BlockTermState newTermState() {
     return new IntBlockTermState();
@@ -295,7 +308,7 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
   final class BlockDocsEnum extends DocsEnum {
     private final byte[] encoded;
     
-    private final int[] docDeltaBuffer = new int[MAX_DATA_SIZE];
+    private final int[] docBuffer = new int[MAX_DATA_SIZE];
     private final int[] freqBuffer = new int[MAX_DATA_SIZE];
 
     private int docBufferUpto;
@@ -316,7 +329,12 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
     private int docUpto;                              // how many docs we've read
     private int doc;                                  // doc we last read
     private int accum;                                // accumulator for doc deltas
-    private int freq;                                 // freq we last read
+
+    // freqs of the current block are only decoded on the first call to
+    // freq(), since many queries never call it
+    private final byte[] freqEncoded;
+    private int freqBitsPerValue;
+    private boolean freqsPending;
 
     // Where this term's postings start in the .doc file:
     private long docTermStartFP;
@@ -343,6 +361,7 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
       indexHasOffsets = fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS) >= 0;
       indexHasPayloads = fieldInfo.hasPayloads();
       encoded = new byte[MAX_ENCODED_SIZE];    
+      freqEncoded = indexHasFreq ? new byte[MAX_ENCODED_SIZE] : null;
     }
 
     public boolean canReuse(IndexInput docIn, FieldInfo fieldInfo) {
@@ -376,6 +395,7 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
         Arrays.fill(freqBuffer, 1);
       }
       accum = 0;
+      freqsPending = false;
       docUpto = 0;
       nextSkipDoc = BLOCK_SIZE - 1; // we won't skip if target is found in first block
       docBufferUpto = BLOCK_SIZE;
@@ -385,7 +405,11 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
     
     @Override
     public int freq() throws IOException {
-      return freq;
+      if (freqsPending) {
+        forUtil.decodeBlock(freqBitsPerValue, freqEncoded, freqBuffer);
+        freqsPending = false;
+      }
+      return freqBuffer[docBufferUpto - 1];
     }
 
     @Override
@@ -401,27 +425,32 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
         // if (DEBUG) {
         //   System.out.println("    fill doc block from fp=" + docIn.getFilePointer());
         // }
-        forUtil.readBlock(docIn, encoded, docDeltaBuffer);
+        forUtil.readBlock(docIn, encoded, docBuffer);
+        prefixSum(docBuffer, BLOCK_SIZE, accum);
 
         if (indexHasFreq) {
           // if (DEBUG) {
           //   System.out.println("    fill freq block from fp=" + docIn.getFilePointer());
           // }
           if (needsFreq) {
-            forUtil.readBlock(docIn, encoded, freqBuffer);
+            freqBitsPerValue = forUtil.readEncodedBlock(docIn, freqEncoded);
+            freqsPending = true;
           } else {
             forUtil.skipBlock(docIn); // skip over freqs
           }
         }
       } else if (docFreq == 1) {
-        docDeltaBuffer[0] = singletonDocID;
+        freqsPending = false;
+        docBuffer[0] = singletonDocID;
         freqBuffer[0] = (int) totalTermFreq;
       } else {
         // Read vInts:
         // if (DEBUG) {
         //   System.out.println("    fill last vInt block from fp=" + docIn.getFilePointer());
         // }
-        readVIntBlock(docIn, docDeltaBuffer, freqBuffer, left, indexHasFreq);
+        freqsPending = false;
+        readVIntBlock(docIn, docBuffer, freqBuffer, left, indexHasFreq);
+        prefixSum(docBuffer, left, accum);
       }
       docBufferUpto = 0;
     }
@@ -447,14 +476,13 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
         }
 
         // if (DEBUG) {
-        //   System.out.println("    accum=" + accum + " docDeltaBuffer[" + docBufferUpto + "]=" + docDeltaBuffer[docBufferUpto]);
+        //   System.out.println("    accum=" + accum + " docBuffer[" + docBufferUpto + "]=" + docBuffer[docBufferUpto]);
         // }
-        accum += docDeltaBuffer[docBufferUpto];
+        accum = docBuffer[docBufferUpto];
         docUpto++;
 
         if (liveDocs == null || liveDocs.get(accum)) {
           doc = accum;
-          freq = freqBuffer[docBufferUpto];
           docBufferUpto++;
           // if (DEBUG) {
           //   System.out.println("  return doc=" + doc + " freq=" + freq);
@@ -468,9 +496,42 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
       }
     }
 
+    @Override
+    public int read(int[] docs) throws IOException {
+      assert docs.length > 0;
+      int count = 0;
+      // loop until a doc is found, since all docs of a block may be deleted
+      while (count == 0) {
+        if (docUpto == docFreq) {
+          doc = NO_MORE_DOCS;
+          return 0;
+        }
+        if (docBufferUpto == BLOCK_SIZE) {
+          refillDocs();
+        }
+        final int length = Math.min(Math.min(docFreq - docUpto, BLOCK_SIZE - docBufferUpto), docs.length);
+        if (liveDocs == null) {
+          System.arraycopy(docBuffer, docBufferUpto, docs, 0, length);
+          count = length;
+        } else {
+          for (int i = docBufferUpto, end = docBufferUpto + length; i < end; ++i) {
+            final int d = docBuffer[i];
+            if (liveDocs.get(d)) {
+              docs[count++] = d;
+            }
+          }
+        }
+        docBufferUpto += length;
+        docUpto += length;
+        accum = docBuffer[docBufferUpto - 1];
+      }
+      // no need to wait for the next call to report that the enum is exhausted
+      doc = docUpto == docFreq ? NO_MORE_DOCS : docs[count - 1];
+      return count;
+    }
+
     @Override
     public int advance(int target) throws IOException {
-      // TODO: make frq block load lazy/skippable
       // if (DEBUG) {
       //   System.out.println("  FPR.advance target=" + target);
       // }
@@ -535,7 +596,7 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
         // if (DEBUG) {
         //   System.out.println("  scan doc=" + accum + " docBufferUpto=" + docBufferUpto);
         // }
-        accum += docDeltaBuffer[docBufferUpto];
+        accum = docBuffer[docBufferUpto];
         docUpto++;
 
         if (accum >= target) {
@@ -551,7 +612,6 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
         // if (DEBUG) {
         //   System.out.println("  return doc=" + accum);
         // }
-        freq = freqBuffer[docBufferUpto];
         docBufferUpto++;
         return doc = accum;
       } else {
@@ -574,7 +634,7 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
     
     private final byte[] encoded;
 
-    private final int[] docDeltaBuffer = new int[MAX_DATA_SIZE];
+    private final int[] docBuffer = new int[MAX_DATA_SIZE];
     private final int[] freqBuffer = new int[MAX_DATA_SIZE];
     private final int[] posDeltaBuffer = new int[MAX_DATA_SIZE];
 
@@ -708,20 +768,22 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
         // if (DEBUG) {
         //   System.out.println("    fill doc block from fp=" + docIn.getFilePointer());
         // }
-        forUtil.readBlock(docIn, encoded, docDeltaBuffer);
+        forUtil.readBlock(docIn, encoded, docBuffer);
+        prefixSum(docBuffer, BLOCK_SIZE, accum);
         // if (DEBUG) {
         //   System.out.println("    fill freq block from fp=" + docIn.getFilePointer());
         // }
         forUtil.readBlock(docIn, encoded, freqBuffer);
       } else if (docFreq == 1) {
-        docDeltaBuffer[0] = singletonDocID;
+        docBuffer[0] = singletonDocID;
         freqBuffer[0] = (int) totalTermFreq;
       } else {
         // Read vInts:
         // if (DEBUG) {
         //   System.out.println("    fill last vInt doc block from fp=" + docIn.getFilePointer());
         // }
-        readVIntBlock(docIn, docDeltaBuffer, freqBuffer, left, true);
+        readVIntBlock(docIn, docBuffer, freqBuffer, left, true);
+        prefixSum(docBuffer, left, accum);
       }
       docBufferUpto = 0;
     }
@@ -780,9 +842,9 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
           refillDocs();
         }
         // if (DEBUG) {
-        //   System.out.println("    accum=" + accum + " docDeltaBuffer[" + docBufferUpto + "]=" + docDeltaBuffer[docBufferUpto]);
+        //   System.out.println("    accum=" + accum + " docBuffer[" + docBufferUpto + "]=" + docBuffer[docBufferUpto]);
         // }
-        accum += docDeltaBuffer[docBufferUpto];
+        accum = docBuffer[docBufferUpto];
         freq = freqBuffer[docBufferUpto];
         posPendingCount += freq;
         docBufferUpto++;
@@ -870,7 +932,7 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
         // if (DEBUG) {
         //   System.out.println("  scan doc=" + accum + " docBufferUpto=" + docBufferUpto);
         // }
-        accum += docDeltaBuffer[docBufferUpto];
+        accum = docBuffer[docBufferUpto];
         freq = freqBuffer[docBufferUpto];
         posPendingCount += freq;
         docBufferUpto++;
@@ -994,7 +1056,7 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
     
     private final byte[] encoded;
 
-    private final int[] docDeltaBuffer = new int[MAX_DATA_SIZE];
+    private final int[] docBuffer = new int[MAX_DATA_SIZE];
     private final int[] freqBuffer = new int[MAX_DATA_SIZE];
     private final int[] posDeltaBuffer = new int[MAX_DATA_SIZE];
 
@@ -1173,19 +1235,21 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
         // if (DEBUG) {
         //   System.out.println("    fill doc block from fp=" + docIn.getFilePointer());
         // }
-        forUtil.readBlock(docIn, encoded, docDeltaBuffer);
+        forUtil.readBlock(docIn, encoded, docBuffer);
+        prefixSum(docBuffer, BLOCK_SIZE, accum);
         // if (DEBUG) {
         //   System.out.println("    fill freq block from fp=" + docIn.getFilePointer());
         // }
         forUtil.readBlock(docIn, encoded, freqBuffer);
       } else if (docFreq == 1) {
-        docDeltaBuffer[0] = singletonDocID;
+        docBuffer[0] = singletonDocID;
         freqBuffer[0] = (int) totalTermFreq;
       } else {
         // if (DEBUG) {
         //   System.out.println("    fill last vInt doc block from fp=" + docIn.getFilePointer());
         // }
-        readVIntBlock(docIn, docDeltaBuffer, freqBuffer, left, true);
+        readVIntBlock(docIn, docBuffer, freqBuffer, left, true);
+        prefixSum(docBuffer, left, accum);
       }
       docBufferUpto = 0;
     }
@@ -1302,9 +1366,9 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
           refillDocs();
         }
         // if (DEBUG) {
-        //   System.out.println("    accum=" + accum + " docDeltaBuffer[" + docBufferUpto + "]=" + docDeltaBuffer[docBufferUpto]);
+        //   System.out.println("    accum=" + accum + " docBuffer[" + docBufferUpto + "]=" + docBuffer[docBufferUpto]);
         // }
-        accum += docDeltaBuffer[docBufferUpto];
+        accum = docBuffer[docBufferUpto];
         freq = freqBuffer[docBufferUpto];
         posPendingCount += freq;
         docBufferUpto++;
@@ -1397,7 +1461,7 @@ public final class Lucene41PostingsReader extends PostingsReaderBase {
         // if (DEBUG) {
         //   System.out.println("  scan doc=" + accum + " docBufferUpto=" + docBufferUpto);
         // }
-        accum += docDeltaBuffer[docBufferUpto];
+        accum = docBuffer[docBufferUpto];
         freq = freqBuffer[docBufferUpto];
         posPendingCount += freq;
         docBufferUpto++;
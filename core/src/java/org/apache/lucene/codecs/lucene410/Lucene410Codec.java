@@ -19,6 +19,7 @@ package org.apache.lucene.codecs.lucene410;
 
 import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.codecs.DocValuesFormat;
+import org.apache.lucene.codecs.FieldStats;
 import org.apache.lucene.codecs.FieldInfosFormat;
 import org.apache.lucene.codecs.FilterCodec;
 import org.apache.lucene.codecs.LiveDocsFormat;
@@ -35,6 +36,7 @@ import org.apache.lucene.codecs.lucene46.Lucene46SegmentInfoFormat;
 import org.apache.lucene.codecs.lucene49.Lucene49NormsFormat;
 import org.apache.lucene.codecs.perfield.PerFieldDocValuesFormat;
 import org.apache.lucene.codecs.perfield.PerFieldPostingsFormat;
+import org.apache.lucene.index.FieldInfo;
 
 /**
  * Implements the Lucene 4.10 index format, with configurable per-field postings
@@ -61,6 +63,11 @@ public class Lucene410Codec extends Codec {
     public PostingsFormat getPostingsFormatForField(String field) {
       return Lucene410Codec.this.getPostingsFormatForField(field);
     }
+
+    @Override
+    public PostingsFormat getPostingsFormatForField(FieldInfo field, FieldStats stats) {
+      return Lucene410Codec.this.getPostingsFormatForField(field, stats);
+    }
   };
   
   private final DocValuesFormat docValuesFormat = new PerFieldDocValuesFormat() {
@@ -114,6 +121,17 @@ public class Lucene410Codec extends Codec {
     return defaultFormat;
   }
   
+  /** Returns the postings format that should be used for writing
+   *  new segments of <code>field</code>, given statistics about its
+   *  postings in the new segment, which may be <tt>null</tt>.
+   *
+   *  The default implementation calls {@link #getPostingsFormatForField(String)}.
+   *  @see PerFieldPostingsFormat#getPostingsFormatForField(FieldInfo, FieldStats)
+   */
+  public PostingsFormat getPostingsFormatForField(FieldInfo field, FieldStats stats) {
+    return getPostingsFormatForField(field.name);
+  }
+
   /** Returns the docvalues format that should be used for writing 
    *  new segments of <code>field</code>.
    *  
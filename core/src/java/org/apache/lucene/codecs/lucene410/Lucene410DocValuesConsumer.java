@@ -22,6 +22,8 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.codecs.DocValuesConsumer;
@@ -61,6 +63,11 @@ class Lucene410DocValuesConsumer extends DocValuesConsumer implements Closeable
   static final int BLOCK_INTERVAL_COUNT = 1 << BLOCK_INTERVAL_SHIFT;
   static final int BLOCK_INTERVAL_MASK = BLOCK_INTERVAL_COUNT - 1;
 
+  // compress numerics in blocks of 16384 values when their ranges differ
+  static final int NUMERIC_BLOCK_SHIFT = 14;
+  static final int NUMERIC_BLOCK_SIZE = 1 << NUMERIC_BLOCK_SHIFT;
+  static final int NUMERIC_BLOCK_MASK = NUMERIC_BLOCK_SIZE - 1;
+
   /** Compressed using packed blocks of ints. */
   public static final int DELTA_COMPRESSED = 0;
   /** Compressed by computing the GCD. */
@@ -69,6 +76,24 @@ class Lucene410DocValuesConsumer extends DocValuesConsumer implements Closeable
   public static final int TABLE_COMPRESSED = 2;
   /** Compressed with monotonically increasing values */
   public static final int MONOTONIC_COMPRESSED = 3;
+  /** Compressed with constant value (uses only missing bitset) */
+  public static final int CONST_COMPRESSED = 4;
+  /** Compressed by only storing the doc IDs that have a value, and their values */
+  public static final int SPARSE_COMPRESSED = 5;
+  /** Compressed by computing the minimum value, GCD and bits per value of
+   *  every block of {@link #NUMERIC_BLOCK_SIZE} values separately. */
+  public static final int BLOCK_COMPRESSED = 6;
+
+  /** Fields where less than one document in {@code SPARSE_DENSITY_DIVISOR}
+   *  has a value are written as {@link #SPARSE_COMPRESSED}. */
+  static final int SPARSE_DENSITY_DIVISOR = 32;
+  /** {@link #SPARSE_COMPRESSED} fields record the index of the first doc
+   *  with a value in every block of {@code 1 << SPARSE_JUMP_SHIFT} docs. */
+  static final int SPARSE_JUMP_SHIFT = 12;
+
+  /** Written instead of an offset to the missing bitset when no document
+   *  has a value. */
+  static final long ALL_MISSING = -2L;
   
   /** Uncompressed binary, written directly (fixed length). */
   public static final int BINARY_FIXED_UNCOMPRESSED = 0;
@@ -117,10 +142,14 @@ class Lucene410DocValuesConsumer extends DocValuesConsumer implements Closeable
     long maxValue = Long.MIN_VALUE;
     long gcd = 0;
     boolean missing = false;
+    long numDocsWithValue = 0;
     // TODO: more efficient?
     HashSet<Long> uniqueValues = null;
+    // estimated size of BLOCK_COMPRESSED values
+    long blockBytes = 0;
     if (optimizeStorage) {
       uniqueValues = new HashSet<>();
+      final BlockStats block = new BlockStats();
 
       for (Number nv : values) {
         final long v;
@@ -129,6 +158,7 @@ class Lucene410DocValuesConsumer extends DocValuesConsumer implements Closeable
           missing = true;
         } else {
           v = nv.longValue();
+          numDocsWithValue++;
         }
 
         if (gcd != 1) {
@@ -153,8 +183,17 @@ class Lucene410DocValuesConsumer extends DocValuesConsumer implements Closeable
           }
         }
 
+        block.add(v);
+        if (block.count == NUMERIC_BLOCK_SIZE) {
+          blockBytes += block.bytesUsed();
+          block.reset();
+        }
+
         ++count;
       }
+      if (block.count > 0) {
+        blockBytes += block.bytesUsed();
+      }
     } else {
       for (Number nv : values) {
         long v = nv.longValue();
@@ -164,14 +203,21 @@ class Lucene410DocValuesConsumer extends DocValuesConsumer implements Closeable
       }
     }
     
+    if (missing && numDocsWithValue != 0 && numDocsWithValue < count / SPARSE_DENSITY_DIVISOR) {
+      addSparseNumericField(field, values, numDocsWithValue, count);
+      return;
+    }
+
     final long delta = maxValue - minValue;
     final int deltaBitsRequired = DirectWriter.unsignedBitsRequired(delta);
     final int tableBitsRequired = uniqueValues == null
         ? Integer.MAX_VALUE
         : DirectWriter.bitsRequired(uniqueValues.size() - 1);
 
-    final int format;
-    if (uniqueValues != null && tableBitsRequired < deltaBitsRequired) {
+    int format;
+    if (uniqueValues != null && uniqueValues.size() == 1) {
+      format = CONST_COMPRESSED;
+    } else if (uniqueValues != null && tableBitsRequired < deltaBitsRequired) {
       format = TABLE_COMPRESSED;
     } else if (gcd != 0 && gcd != 1) {
       final long gcdDelta = (maxValue - minValue) / gcd;
@@ -180,10 +226,29 @@ class Lucene410DocValuesConsumer extends DocValuesConsumer implements Closeable
     } else {
       format = DELTA_COMPRESSED;
     }
+    final int bitsRequired;
+    switch (format) {
+      case TABLE_COMPRESSED:
+        bitsRequired = tableBitsRequired;
+        break;
+      case GCD_COMPRESSED:
+        bitsRequired = DirectWriter.unsignedBitsRequired((maxValue - minValue) / gcd);
+        break;
+      default:
+        bitsRequired = deltaBitsRequired;
+    }
+    // a few outliers make every value of the field wide: if compressing blocks
+    // separately saves at least 1/8th of the space, it is worth the extra lookup
+    final long fieldBytes = (count * bitsRequired + 7) >>> 3;
+    if (optimizeStorage && format != CONST_COMPRESSED && count > NUMERIC_BLOCK_SIZE && blockBytes < fieldBytes - (fieldBytes >>> 3)) {
+      format = BLOCK_COMPRESSED;
+    }
     meta.writeVInt(field.number);
     meta.writeByte(Lucene410DocValuesFormat.NUMERIC);
     meta.writeVInt(format);
-    if (missing) {
+    if (missing && numDocsWithValue == 0) {
+      meta.writeLong(ALL_MISSING);
+    } else if (missing) {
       meta.writeLong(data.getFilePointer());
       writeMissingBitset(values);
     } else {
@@ -193,6 +258,10 @@ class Lucene410DocValuesConsumer extends DocValuesConsumer implements Closeable
     meta.writeVLong(count);
 
     switch (format) {
+      case CONST_COMPRESSED:
+        // only one value (possibly the 0 of missing docs): nothing to write but the value
+        meta.writeLong(minValue);
+        break;
       case GCD_COMPRESSED:
         meta.writeLong(minValue);
         meta.writeLong(gcd);
@@ -233,11 +302,185 @@ class Lucene410DocValuesConsumer extends DocValuesConsumer implements Closeable
         }
         ordsWriter.finish();
         break;
+      case BLOCK_COMPRESSED:
+        writeBlocks(values);
+        break;
       default:
         throw new AssertionError();
     }
     meta.writeLong(data.getFilePointer());
   }
+
+  // writes every block of NUMERIC_BLOCK_SIZE values with its own minimum value, GCD and bits per
+  // value, followed by a table of these, and of where each block starts
+  private void writeBlocks(Iterable<Number> values) throws IOException {
+    final long startFP = data.getFilePointer();
+    final RAMOutputStream blockTable = new RAMOutputStream();
+    final long[] buffer = new long[NUMERIC_BLOCK_SIZE];
+    final BlockStats block = new BlockStats();
+    for (Number nv : values) {
+      final long v = nv == null ? 0 : nv.longValue();
+      buffer[block.count] = v;
+      block.add(v);
+      if (block.count == NUMERIC_BLOCK_SIZE) {
+        writeBlock(buffer, block, startFP, blockTable);
+      }
+    }
+    if (block.count > 0) {
+      writeBlock(buffer, block, startFP, blockTable);
+    }
+    meta.writeLong(data.getFilePointer());
+    blockTable.writeTo(data);
+  }
+
+  private void writeBlock(long[] buffer, BlockStats block, long startFP, RAMOutputStream blockTable) throws IOException {
+    final int bitsPerValue = block.bitsPerValue();
+    blockTable.writeLong(block.min);
+    blockTable.writeVLong(block.gcd);
+    blockTable.writeByte((byte) bitsPerValue);
+    blockTable.writeVLong(data.getFilePointer() - startFP);
+    if (bitsPerValue != 0) {
+      final DirectWriter writer = DirectWriter.getInstance(data, block.count, bitsPerValue);
+      for (int i = 0; i < block.count; i++) {
+        writer.add((buffer[i] - block.min) / block.gcd);
+      }
+      writer.finish();
+    }
+    block.reset();
+  }
+
+  /** Min, max and GCD of a block of values. Like for the whole field, the GCD is
+   *  only computed if values can't overflow when subtracting the minimum value. */
+  private static final class BlockStats {
+    int count;
+    long min;
+    long max;
+    long gcd;
+
+    BlockStats() {
+      reset();
+    }
+
+    void reset() {
+      count = 0;
+      min = Long.MAX_VALUE;
+      max = Long.MIN_VALUE;
+      gcd = 0;
+    }
+
+    void add(long v) {
+      if (gcd != 1) {
+        if (v < Long.MIN_VALUE / 2 || v > Long.MAX_VALUE / 2) {
+          gcd = 1;
+        } else if (count != 0) { // min needs to be set first
+          gcd = MathUtil.gcd(gcd, v - min);
+        }
+      }
+      min = Math.min(min, v);
+      max = Math.max(max, v);
+      ++count;
+    }
+
+    int bitsPerValue() {
+      if (min == max) {
+        return 0;
+      }
+      if (gcd == 0) {
+        gcd = 1;
+      }
+      return DirectWriter.unsignedBitsRequired((max - min) / gcd);
+    }
+
+    /** Bytes used by the values of this block and its entry in the block table, roughly. */
+    long bytesUsed() {
+      // DirectWriter pads with 3 bytes
+      return (((long) count * bitsPerValue() + 7) >>> 3) + 3 + 16;
+    }
+  }
+
+  // writes the doc IDs that have a value, a jump table into them, and the values of these docs only
+  private void addSparseNumericField(FieldInfo field, Iterable<Number> values, long numDocsWithValue, long count) throws IOException {
+    meta.writeVInt(field.number);
+    meta.writeByte(Lucene410DocValuesFormat.NUMERIC);
+    meta.writeVInt(SPARSE_COMPRESSED);
+    meta.writeLong(-1L);
+    meta.writeLong(data.getFilePointer());
+    meta.writeVLong(count);
+    meta.writeVLong(numDocsWithValue);
+
+    final int docBitsRequired = DirectWriter.unsignedBitsRequired(count - 1);
+    meta.writeVInt(docBitsRequired);
+    final DirectWriter docsWriter = DirectWriter.getInstance(data, numDocsWithValue, docBitsRequired);
+    long doc = 0;
+    for (Number nv : values) {
+      if (nv != null) {
+        docsWriter.add(doc);
+      }
+      doc++;
+    }
+    docsWriter.finish();
+
+    // jumpTable[i] is the index of the first doc ID that is >= (i << SPARSE_JUMP_SHIFT),
+    // so that lookups only need to search a single block
+    final long numJumps = ((count - 1) >>> SPARSE_JUMP_SHIFT) + 2;
+    final int jumpBitsRequired = DirectWriter.unsignedBitsRequired(numDocsWithValue);
+    meta.writeLong(data.getFilePointer());
+    meta.writeVInt(jumpBitsRequired);
+    final DirectWriter jumpWriter = DirectWriter.getInstance(data, numJumps, jumpBitsRequired);
+    jumpWriter.add(0);
+    doc = 0;
+    long index = 0;
+    for (Number nv : values) {
+      if (doc != 0 && (doc & ((1 << SPARSE_JUMP_SHIFT) - 1)) == 0) {
+        jumpWriter.add(index);
+      }
+      if (nv != null) {
+        index++;
+      }
+      doc++;
+    }
+    jumpWriter.add(index);
+    jumpWriter.finish();
+
+    addNumericField(field, nonMissingValues(values), true);
+    meta.writeLong(data.getFilePointer());
+  }
+
+  /** Returns a view of the non-null values of {@code values}. */
+  private static Iterable<Number> nonMissingValues(final Iterable<Number> values) {
+    return new Iterable<Number>() {
+      @Override
+      public Iterator<Number> iterator() {
+        final Iterator<Number> it = values.iterator();
+        return new Iterator<Number>() {
+          Number next;
+
+          @Override
+          public boolean hasNext() {
+            while (next == null && it.hasNext()) {
+              next = it.next();
+            }
+            return next != null;
+          }
+
+          @Override
+          public Number next() {
+            if (!hasNext()) {
+              throw new NoSuchElementException();
+            }
+            final Number value = next;
+            next = null;
+            return value;
+          }
+
+          @Override
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        };
+      }
+    };
+  }
   
   // TODO: in some cases representing missing with minValue-1 wouldn't take up additional space and so on,
   // but this is very simple, and algorithms only check this for values of 0 anyway (doesnt slow down normal decode)
@@ -49,6 +49,11 @@ import org.apache.lucene.util.packed.MonotonicBlockPackedWriter;
  *        common denominator (GCD) is computed, and quotients are stored using Delta-compressed Numerics.
  *    <li>Monotonic-compressed: when all numbers are monotonically increasing offsets, they are written
  *        as blocks of bitpacked integers, encoding the deviation from the expected delta.
+ *    <li>Const-compressed: when all documents share the same value (or have no value at all),
+ *        only this value is written.
+ *    <li>Sparse-compressed: when only a small fraction of documents have a value, the IDs of
+ *        these documents are written, along with a jump table into them for every 4096 documents,
+ *        and their values are written with one of the strategies above.
  * </ul>
  * <p>
  * {@link DocValuesType#BINARY BINARY}:
@@ -94,11 +99,14 @@ import org.apache.lucene.util.packed.MonotonicBlockPackedWriter;
  *   <p>DocValues metadata (.dvm) --&gt; Header,&lt;Entry&gt;<sup>NumFields</sup>,Footer</p>
  *   <ul>
  *     <li>Entry --&gt; NumericEntry | BinaryEntry | SortedEntry | SortedSetEntry | SortedNumericEntry</li>
- *     <li>NumericEntry --&gt; GCDNumericEntry | TableNumericEntry | DeltaNumericEntry</li>
+ *     <li>NumericEntry --&gt; GCDNumericEntry | TableNumericEntry | DeltaNumericEntry | ConstNumericEntry | SparseNumericEntry | BlockNumericEntry</li>
  *     <li>GCDNumericEntry --&gt; NumericHeader,MinValue,GCD,BitsPerValue</li>
  *     <li>TableNumericEntry --&gt; NumericHeader,TableSize,{@link DataOutput#writeLong Int64}<sup>TableSize</sup>,BitsPerValue</li>
  *     <li>DeltaNumericEntry --&gt; NumericHeader,MinValue,BitsPerValue</li>
  *     <li>MonotonicNumericEntry --&gt; NumericHeader,PackedVersion,BlockSize</li>
+ *     <li>ConstNumericEntry --&gt; NumericHeader,MinValue</li>
+ *     <li>SparseNumericEntry --&gt; NumericHeader,NumDocsWithValue,BitsPerValue,JumpTableOffset,BitsPerValue,FieldNumber,EntryType,NumericEntry</li>
+ *     <li>BlockNumericEntry --&gt; NumericHeader,BlockTableOffset</li>
  *     <li>NumericHeader --&gt; FieldNumber,EntryType,NumericType,MissingOffset,DataOffset,Count,EndOffset</li>
  *     <li>BinaryEntry --&gt; FixedBinaryEntry | VariableBinaryEntry | PrefixBinaryEntry</li>
  *     <li>FixedBinaryEntry --&gt; BinaryHeader</li>
@@ -111,7 +119,8 @@ import org.apache.lucene.util.packed.MonotonicBlockPackedWriter;
  *     <li>FieldNumber,PackedVersion,MinLength,MaxLength,BlockSize,ValueCount --&gt; {@link DataOutput#writeVInt VInt}</li>
  *     <li>EntryType,CompressionType --&gt; {@link DataOutput#writeByte Byte}</li>
  *     <li>Header --&gt; {@link CodecUtil#writeHeader CodecHeader}</li>
- *     <li>MinValue,GCD,MissingOffset,AddressOffset,DataOffset,EndOffset --&gt; {@link DataOutput#writeLong Int64}</li>
+ *     <li>MinValue,GCD,MissingOffset,AddressOffset,DataOffset,EndOffset,JumpTableOffset,BlockTableOffset --&gt; {@link DataOutput#writeLong Int64}</li>
+ *     <li>NumDocsWithValue --&gt; {@link DataOutput#writeVLong VLong}</li>
  *     <li>TableSize,BitsPerValue --&gt; {@link DataOutput#writeVInt vInt}</li>
  *     <li>Footer --&gt; {@link CodecUtil#writeFooter CodecFooter}</li>
  *   </ul>
@@ -133,6 +142,13 @@ import org.apache.lucene.util.packed.MonotonicBlockPackedWriter;
  *             using blocks of delta-encoded ints.
  *         <li>2 --&gt; table-compressed. When the number of unique numeric values is small and it would save space,
  *             a lookup table of unique values is written, followed by the ordinal for each document.
+ *         <li>4 --&gt; const-compressed. All documents have the same value, which is stored in the metadata.
+ *         <li>5 --&gt; sparse-compressed. Less than one document in 32 has a value: the IDs of these documents
+ *             are written, followed by a jump table that gives the index of the first of these IDs that is
+ *             greater than or equal to every multiple of 4096, and by a nested NumericEntry for their values.
+ *         <li>6 --&gt; block-compressed. Every block of 16k values has its own minimum value, GCD and
+ *             bits per value, so that a few outliers don't make all values wide. A table of the
+ *             minimum value, GCD, bits per value and start offset of every block follows the values.
  *      </ul>
  *   <p>BinaryType indicates how Binary values will be stored:
  *      <ul>
@@ -145,7 +161,7 @@ import org.apache.lucene.util.packed.MonotonicBlockPackedWriter;
  *      Otherwise, the binary values are of variable size, and packed integer metadata (PackedVersion,BlockSize)
  *      is written for the addresses.
  *   <p>MissingOffset points to a byte[] containing a bitset of all documents that had a value for the field.
- *      If its -1, then there are no missing values.
+ *      If its -1, then there are no missing values. If its -2, then no document has a value.
  *   <p>Checksum contains the CRC32 checksum of all bytes in the .dvm file up
  *      until the checksum. This is used to verify integrity of the file on opening the
  *      index.
@@ -154,10 +170,13 @@ import org.apache.lucene.util.packed.MonotonicBlockPackedWriter;
  *   <p>For DocValues field, this stores the actual per-document data (the heavy-lifting)</p>
  *   <p>DocValues data (.dvd) --&gt; Header,&lt;NumericData | BinaryData | SortedData&gt;<sup>NumFields</sup>,Footer</p>
  *   <ul>
- *     <li>NumericData --&gt; DeltaCompressedNumerics | TableCompressedNumerics | GCDCompressedNumerics</li>
+ *     <li>NumericData --&gt; DeltaCompressedNumerics | TableCompressedNumerics | GCDCompressedNumerics | BlockCompressedNumerics</li>
  *     <li>BinaryData --&gt;  {@link DataOutput#writeByte Byte}<sup>DataLength</sup>,Addresses</li>
  *     <li>SortedData --&gt; {@link FST FST&lt;Int64&gt;}</li>
  *     <li>DeltaCompressedNumerics,TableCompressedNumerics,GCDCompressedNumerics --&gt; {@link DirectWriter PackedInts}</li>
+ *     <li>BlockCompressedNumerics --&gt; {@link DirectWriter PackedInts}<sup>NumBlocks</sup>,&lt;MinValue,GCD,BitsPerValue,BlockOffset&gt;<sup>NumBlocks</sup></li>
+ *     <li>BlockCompressedNumerics MinValue --&gt; {@link DataOutput#writeLong Int64}, GCD,BlockOffset --&gt; {@link DataOutput#writeVLong VLong},
+ *         BitsPerValue --&gt; {@link DataOutput#writeByte Byte}. Blocks that have a single value have BitsPerValue 0 and no packed ints.</li>
  *     <li>Addresses --&gt; {@link MonotonicBlockPackedWriter MonotonicBlockPackedInts(blockSize=16k)}</li>
  *     <li>Footer --&gt; {@link CodecUtil#writeFooter CodecFooter}</li>
  *   </ul>
@@ -186,7 +205,9 @@ public final class Lucene410DocValuesFormat extends DocValuesFormat {
   static final String META_CODEC = "Lucene410ValuesMetadata";
   static final String META_EXTENSION = "dvm";
   static final int VERSION_START = 0;
-  static final int VERSION_CURRENT = VERSION_START;
+  static final int VERSION_SPARSE = 1;
+  static final int VERSION_BLOCK = 2;
+  static final int VERSION_CURRENT = VERSION_BLOCK;
   static final byte NUMERIC = 0;
   static final byte BINARY = 1;
   static final byte SORTED = 2;
@@ -17,14 +17,21 @@ package org.apache.lucene.codecs.lucene410;
  * limitations under the License.
  */
 
+import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.ALL_MISSING;
 import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.BINARY_FIXED_UNCOMPRESSED;
 import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.BINARY_PREFIX_COMPRESSED;
 import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.BINARY_VARIABLE_UNCOMPRESSED;
+import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.BLOCK_COMPRESSED;
+import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.CONST_COMPRESSED;
 import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.DELTA_COMPRESSED;
 import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.GCD_COMPRESSED;
 import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.MONOTONIC_COMPRESSED;
+import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.NUMERIC_BLOCK_MASK;
+import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.NUMERIC_BLOCK_SHIFT;
 import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.SORTED_SINGLE_VALUED;
 import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.SORTED_WITH_ADDRESSES;
+import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.SPARSE_COMPRESSED;
+import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.SPARSE_JUMP_SHIFT;
 import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.TABLE_COMPRESSED;
 import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.INTERVAL_SHIFT;
 import static org.apache.lucene.codecs.lucene410.Lucene410DocValuesConsumer.INTERVAL_COUNT;
@@ -87,6 +94,7 @@ class Lucene410DocValuesProducer extends DocValuesProducer implements Closeable
   private final Map<Integer,MonotonicBlockPackedReader> addressInstances = new HashMap<>();
   private final Map<Integer,MonotonicBlockPackedReader> ordIndexInstances = new HashMap<>();
   private final Map<Integer,ReverseTermsIndex> reverseIndexInstances = new HashMap<>();
+  private final Map<NumericEntry,NumericBlocks> blockInstances = new HashMap<>();
   
   /** expert: instantiates a new reader */
   Lucene410DocValuesProducer(SegmentReadState state, String dataCodec, String dataExtension, String metaCodec, String metaExtension) throws IOException {
@@ -287,6 +295,27 @@ class Lucene410DocValuesProducer extends DocValuesProducer implements Closeable
         entry.packedIntsVersion = meta.readVInt();
         entry.blockSize = meta.readVInt();
         break;
+      case CONST_COMPRESSED:
+        entry.minValue = meta.readLong();
+        break;
+      case BLOCK_COMPRESSED:
+        entry.blockTableOffset = meta.readLong();
+        break;
+      case SPARSE_COMPRESSED:
+        entry.numDocsWithValue = meta.readVLong();
+        entry.bitsPerValue = meta.readVInt();
+        entry.jumpTableOffset = meta.readLong();
+        entry.jumpTableBitsPerValue = meta.readVInt();
+        // the values of the docs that have one are a nested entry
+        final int fieldNumber = meta.readVInt();
+        if (meta.readByte() != Lucene410DocValuesFormat.NUMERIC) {
+          throw new CorruptIndexException("sparse entry for field: " + fieldNumber + " is corrupt (resource=" + meta + ")");
+        }
+        entry.nonMissingValues = readNumericEntry(meta);
+        if (entry.nonMissingValues.format == SPARSE_COMPRESSED || entry.nonMissingValues.count != entry.numDocsWithValue) {
+          throw new CorruptIndexException("sparse entry for field: " + fieldNumber + " is corrupt (resource=" + meta + ")");
+        }
+        break;
       default:
         throw new CorruptIndexException("Unknown format: " + entry.format + ", input=" + meta);
     }
@@ -348,6 +377,28 @@ class Lucene410DocValuesProducer extends DocValuesProducer implements Closeable
   }
 
   LongValues getNumeric(NumericEntry entry) throws IOException {
+    switch (entry.format) {
+      case CONST_COMPRESSED:
+        final long constant = entry.minValue;
+        return new LongValues() {
+          @Override
+          public long get(long id) {
+            return constant;
+          }
+        };
+      case SPARSE_COMPRESSED:
+        final SparseDocs docs = getSparseDocs(entry);
+        final LongValues nonMissingValues = getNumeric(entry.nonMissingValues);
+        return new LongValues() {
+          @Override
+          public long get(long id) {
+            final long index = docs.indexOf((int) id);
+            return index == -1 ? 0 : nonMissingValues.get(index);
+          }
+        };
+      case BLOCK_COMPRESSED:
+        return getBlockNumeric(entry);
+    }
     RandomAccessInput slice = this.data.randomAccessSlice(entry.offset, entry.endOffset - entry.offset);
     switch (entry.format) {
       case DELTA_COMPRESSED:
@@ -556,7 +607,7 @@ class Lucene410DocValuesProducer extends DocValuesProducer implements Closeable
     NumericEntry numericEntry = numerics.get(field.number);
     final LongValues values = getNumeric(numericEntry);
     if (ss.format == SORTED_SINGLE_VALUED) {
-      final Bits docsWithField = getMissingBits(numericEntry.missingOffset);
+      final Bits docsWithField = getDocsWithField(numericEntry);
       return DocValues.singleton(values, docsWithField);
     } else if (ss.format == SORTED_WITH_ADDRESSES) {
       final MonotonicBlockPackedReader ordIndex = getOrdIndexInstance(field, ordIndexes.get(field.number));
@@ -668,6 +719,8 @@ class Lucene410DocValuesProducer extends DocValuesProducer implements Closeable
   private Bits getMissingBits(final long offset) throws IOException {
     if (offset == -1) {
       return new Bits.MatchAllBits(maxDoc);
+    } else if (offset == ALL_MISSING) {
+      return new Bits.MatchNoBits(maxDoc);
     } else {
       int length = (int) ((maxDoc + 7L) >>> 3);
       final RandomAccessInput in = data.randomAccessSlice(offset, length);
@@ -703,12 +756,162 @@ class Lucene410DocValuesProducer extends DocValuesProducer implements Closeable
         return getMissingBits(be.missingOffset);
       case NUMERIC:
         NumericEntry ne = numerics.get(field.number);
-        return getMissingBits(ne.missingOffset);
+        return getDocsWithField(ne);
       default:
         throw new AssertionError();
     }
   }
 
+  private Bits getDocsWithField(NumericEntry entry) throws IOException {
+    if (entry.format == SPARSE_COMPRESSED) {
+      final SparseDocs docs = getSparseDocs(entry);
+      return new Bits() {
+        @Override
+        public boolean get(int index) {
+          return docs.indexOf(index) != -1;
+        }
+
+        @Override
+        public int length() {
+          return maxDoc;
+        }
+      };
+    } else {
+      return getMissingBits(entry.missingOffset);
+    }
+  }
+
+  /** returns the block table of a {@link Lucene410DocValuesConsumer#BLOCK_COMPRESSED blocked} numeric field. */
+  private synchronized NumericBlocks getNumericBlocks(NumericEntry entry) throws IOException {
+    NumericBlocks blocks = blockInstances.get(entry);
+    if (blocks == null) {
+      final int numBlocks = (int) ((entry.count + NUMERIC_BLOCK_MASK) >>> NUMERIC_BLOCK_SHIFT);
+      blocks = new NumericBlocks(numBlocks);
+      data.seek(entry.blockTableOffset);
+      for (int i = 0; i < numBlocks; i++) {
+        blocks.mins[i] = data.readLong();
+        blocks.gcds[i] = data.readVLong();
+        blocks.bitsPerValue[i] = data.readByte();
+        blocks.offsets[i] = entry.offset + data.readVLong();
+      }
+      blocks.offsets[numBlocks] = entry.blockTableOffset;
+      blockInstances.put(entry, blocks);
+      ramBytesUsed.addAndGet(blocks.ramBytesUsed());
+    }
+    return blocks;
+  }
+
+  private LongValues getBlockNumeric(NumericEntry entry) throws IOException {
+    final NumericBlocks blocks = getNumericBlocks(entry);
+    final LongValues[] readers = new LongValues[blocks.mins.length];
+    return new LongValues() {
+      @Override
+      public long get(long id) {
+        final int block = (int) (id >>> NUMERIC_BLOCK_SHIFT);
+        final int bitsPerValue = blocks.bitsPerValue[block];
+        if (bitsPerValue == 0) {
+          return blocks.mins[block];
+        }
+        LongValues reader = readers[block];
+        if (reader == null) {
+          try {
+            final long offset = blocks.offsets[block];
+            final RandomAccessInput slice = data.randomAccessSlice(offset, blocks.offsets[block + 1] - offset);
+            reader = readers[block] = DirectReader.getInstance(slice, bitsPerValue);
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+        }
+        return blocks.mins[block] + blocks.gcds[block] * reader.get(id & NUMERIC_BLOCK_MASK);
+      }
+    };
+  }
+
+  /** Minimum value, GCD, bits per value and start offset of every block of a blocked numeric field. */
+  static final class NumericBlocks {
+    final long[] mins;
+    final long[] gcds;
+    final byte[] bitsPerValue;
+    final long[] offsets;
+
+    NumericBlocks(int numBlocks) {
+      mins = new long[numBlocks];
+      gcds = new long[numBlocks];
+      bitsPerValue = new byte[numBlocks];
+      offsets = new long[numBlocks + 1];
+    }
+
+    long ramBytesUsed() {
+      return RamUsageEstimator.sizeOf(mins) + RamUsageEstimator.sizeOf(gcds)
+          + RamUsageEstimator.sizeOf(bitsPerValue) + RamUsageEstimator.sizeOf(offsets);
+    }
+  }
+
+  private SparseDocs getSparseDocs(NumericEntry entry) throws IOException {
+    final RandomAccessInput docsSlice = data.randomAccessSlice(entry.offset, entry.jumpTableOffset - entry.offset);
+    final RandomAccessInput jumpTableSlice = data.randomAccessSlice(entry.jumpTableOffset, entry.nonMissingValues.offset - entry.jumpTableOffset);
+    return new SparseDocs(DirectReader.getInstance(docsSlice, entry.bitsPerValue),
+                          DirectReader.getInstance(jumpTableSlice, entry.jumpTableBitsPerValue));
+  }
+
+  /** 
+   * Doc IDs of a {@link Lucene410DocValuesConsumer#SPARSE_COMPRESSED sparse} field.
+   * Lookups only search the block of the jump table that contains the target,
+   * and remember where the previous lookup ended, so that looking up doc IDs
+   * in increasing order, as sorting and faceting do, only gallops forward.
+   * Instances are stateful and not thread-safe, like other per-thread doc values.
+   */
+  static final class SparseDocs {
+    private final LongValues docIDs;
+    private final LongValues jumpTable;
+    // all doc IDs before index cursor are < lastTarget
+    private int lastTarget = -1;
+    private long cursor;
+
+    SparseDocs(LongValues docIDs, LongValues jumpTable) {
+      this.docIDs = docIDs;
+      this.jumpTable = jumpTable;
+    }
+
+    /** Returns the index of {@code target} among the docs that have a value, or -1 if it has none. */
+    long indexOf(int target) {
+      final int block = target >>> SPARSE_JUMP_SHIFT;
+      long lo = jumpTable.get(block);
+      final long blockEnd = jumpTable.get(block + 1);
+      long hi = blockEnd;
+      if (target >= lastTarget && cursor > lo) {
+        lo = cursor;
+      }
+      // gallop forward from lo: entries before lo are < target
+      for (long step = 1; lo < hi; step <<= 1) {
+        final long probe = lo + step - 1;
+        if (probe >= hi) {
+          break;
+        }
+        if (docIDs.get(probe) >= target) {
+          hi = probe + 1;
+          break;
+        }
+        lo = probe + 1;
+      }
+      // binary search for the first entry >= target in [lo, hi)
+      while (lo < hi) {
+        final long mid = (lo + hi) >>> 1;
+        if (docIDs.get(mid) < target) {
+          lo = mid + 1;
+        } else {
+          hi = mid;
+        }
+      }
+      lastTarget = target;
+      cursor = lo;
+      if (lo < blockEnd && docIDs.get(lo) == target) {
+        return lo;
+      }
+      return -1;
+    }
+  }
+
   @Override
   public void close() throws IOException {
     data.close();
@@ -737,6 +940,17 @@ class Lucene410DocValuesProducer extends DocValuesProducer implements Closeable
     long minValue;
     long gcd;
     long table[];
+
+    /** number of documents that have a value, for sparse fields */
+    long numDocsWithValue;
+    /** offset to the jump table of sparse fields */
+    long jumpTableOffset;
+    /** bits per value used to pack the jump table */
+    int jumpTableBitsPerValue;
+    /** values of the documents that have one, for sparse fields */
+    NumericEntry nonMissingValues;
+    /** offset to the table of per-block minimum values, GCDs, bits per value and offsets, for blocked fields */
+    long blockTableOffset;
   }
   
   /** metadata entry for a binary docvalues field */
@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.ServiceLoader; // javadocs
 import java.util.TreeMap;
 
+import org.apache.lucene.codecs.FieldStats;
 import org.apache.lucene.codecs.FieldsConsumer;
 import org.apache.lucene.codecs.FieldsProducer;
 import org.apache.lucene.codecs.PostingsFormat;
@@ -99,7 +100,12 @@ public abstract class PerFieldPostingsFormat extends PostingsFormat {
 
     @Override
     public TermsConsumer addField(FieldInfo field) throws IOException {
-      final PostingsFormat format = getPostingsFormatForField(field.name);
+      return addField(field, null);
+    }
+
+    @Override
+    public TermsConsumer addField(FieldInfo field, FieldStats stats) throws IOException {
+      final PostingsFormat format = getPostingsFormatForField(field, stats);
       if (format == null) {
         throw new IllegalStateException("invalid null PostingsFormat for field=\"" + field.name + "\"");
       }
@@ -259,4 +265,20 @@ public abstract class PerFieldPostingsFormat extends PostingsFormat {
    * The field to format mapping is written to the index, so
    * this method is only invoked when writing, not when reading. */
   public abstract PostingsFormat getPostingsFormatForField(String field);
+
+  /**
+   * Returns the postings format that should be used for writing new
+   * segments of <code>field</code>, given statistics about its postings in
+   * the new segment. <code>stats</code> may be <tt>null</tt> if they are
+   * not available. The default implementation ignores <code>stats</code>
+   * and calls {@link #getPostingsFormatForField(String)}.
+   * <p>
+   * Since the chosen format is recorded in the {@link FieldInfo} attributes
+   * of every segment, this allows to pick a different format for every
+   * segment, and merges re-decide based on the statistics of the merged
+   * segment.
+   * @lucene.experimental */
+  public PostingsFormat getPostingsFormatForField(FieldInfo field, FieldStats stats) {
+    return getPostingsFormatForField(field.name);
+  }
 }
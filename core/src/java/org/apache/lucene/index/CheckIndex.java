@@ -17,16 +17,27 @@ package org.apache.lucene.index;
  * limitations under the License.
  */
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
 import java.text.NumberFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.codecs.PostingsFormat;
@@ -48,6 +59,8 @@ import org.apache.lucene.util.CommandLineUtil;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LongBitSet;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.apache.lucene.util.ThreadInterruptedException;
 import org.apache.lucene.util.Version;
 
 
@@ -362,6 +375,25 @@ public class CheckIndex {
 
   private boolean verbose;
 
+  private int threadCount = 1;
+
+  /** Sets the number of threads used to check the index.  With more
+   *  than one thread, segments are checked concurrently, and so are the
+   *  parts of each segment (checksums, postings, stored fields, term
+   *  vectors, doc values, ...).  Messages are still printed in segment
+   *  order, but only once a segment is fully checked.  Default is 1. */
+  public void setThreadCount(int threadCount) {
+    if (threadCount < 1) {
+      throw new IllegalArgumentException("threadCount must be >= 1; got: " + threadCount);
+    }
+    this.threadCount = threadCount;
+  }
+
+  /** See {@link #setThreadCount}. */
+  public int getThreadCount() {
+    return threadCount;
+  }
+
   /** Set infoStream where messages should go.  If null, no
    *  messages are printed.  If verbose is true then more
    *  details are printed. */
@@ -525,17 +557,121 @@ public class CheckIndex {
     result.newSegments.clear();
     result.maxSegmentName = -1;
 
-    for(int i=0;i<numSegments;i++) {
-      final SegmentCommitInfo info = sis.info(i);
-      int segmentName = Integer.parseInt(info.info.name.substring(1), Character.MAX_RADIX);
-      if (segmentName > result.maxSegmentName) {
-        result.maxSegmentName = segmentName;
+    final ExecutorService executor = threadCount > 1 ? Executors.newFixedThreadPool(threadCount, new NamedThreadFactory("CheckIndex")) : null;
+    // segments whose parts are still being checked, in segment order:
+    final Deque<SegmentCheck> pending = new ArrayDeque<>();
+    try {
+      for(int i=0;i<numSegments;i++) {
+        final SegmentCommitInfo info = sis.info(i);
+        int segmentName = Integer.parseInt(info.info.name.substring(1), Character.MAX_RADIX);
+        if (segmentName > result.maxSegmentName) {
+          result.maxSegmentName = segmentName;
+        }
+        if (onlySegments != null && !onlySegments.contains(info.info.name)) {
+          continue;
+        }
+        Status.SegmentInfoStatus segInfoStat = new Status.SegmentInfoStatus();
+        result.segmentInfos.add(segInfoStat);
+        pending.add(startSegment(info, i, numSegments, segInfoStat, nf, executor));
+        // bound the number of concurrently open segments:
+        while (pending.size() > (executor == null ? 0 : threadCount)) {
+          finishSegment(pending.removeFirst(), result);
+        }
       }
-      if (onlySegments != null && !onlySegments.contains(info.info.name)) {
-        continue;
+      while (pending.isEmpty() == false) {
+        finishSegment(pending.removeFirst(), result);
+      }
+    } finally {
+      if (executor != null) {
+        executor.shutdown();
+        try {
+          executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ie) {
+          throw new ThreadInterruptedException(ie);
+        }
+      }
+      // only non-empty if we hit an exception (failFast):
+      for (SegmentCheck check : pending) {
+        IOUtils.closeWhileHandlingException(check.reader);
+      }
+    }
+
+    if (0 == result.numBadSegments) {
+      result.clean = true;
+    } else
+      msg(infoStream, "WARNING: " + result.numBadSegments + " broken segments (containing " + result.totLoseDocCount + " documents) detected");
+
+    if ( ! (result.validCounter = (result.maxSegmentName < sis.counter))) {
+      result.clean = false;
+      result.newSegments.counter = result.maxSegmentName + 1; 
+      msg(infoStream, "ERROR: Next segment name counter " + sis.counter + " is not greater than max segment name " + result.maxSegmentName);
+    }
+    
+    if (result.clean) {
+      msg(infoStream, "No problems were detected with this index.\n");
+    }
+
+    return result;
+  }
+
+  /** State of one segment being checked; its parts may run concurrently. */
+  private static final class SegmentCheck {
+    final SegmentCommitInfo info;
+    final Status.SegmentInfoStatus segInfoStat;
+    /** Output of the segment header, or null if it went straight to the infoStream */
+    BufferedInfoStream head;
+    AtomicReader reader;
+    final List<Future<BufferedInfoStream>> parts = new ArrayList<>();
+    volatile int toLoseDocCount;
+    Throwable failure;
+
+    SegmentCheck(SegmentCommitInfo info, Status.SegmentInfoStatus segInfoStat) {
+      this.info = info;
+      this.segInfoStat = segInfoStat;
+      this.toLoseDocCount = info.info.getDocCount();
+    }
+  }
+
+  /** Collects the messages of a part that is checked concurrently,
+   *  so that they can be printed in order once it's done. */
+  private static final class BufferedInfoStream {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    final PrintStream out;
+
+    BufferedInfoStream() {
+      try {
+        out = new PrintStream(bytes, false, IOUtils.UTF_8);
+      } catch (UnsupportedEncodingException uee) {
+        throw new RuntimeException(uee);
       }
-      Status.SegmentInfoStatus segInfoStat = new Status.SegmentInfoStatus();
-      result.segmentInfos.add(segInfoStat);
+    }
+
+    void printTo(PrintStream infoStream) {
+      out.flush();
+      try {
+        infoStream.print(bytes.toString(IOUtils.UTF_8));
+      } catch (UnsupportedEncodingException uee) {
+        throw new RuntimeException(uee);
+      }
+    }
+  }
+
+  /** One part of checking a segment, writing its messages to the given stream. */
+  private static interface SegmentPart {
+    void check(PrintStream infoStream) throws Exception;
+  }
+
+  /** Opens the segment and starts checking its parts: inline if
+   *  executor is null, else concurrently on the executor. */
+  private SegmentCheck startSegment(final SegmentCommitInfo info, int i, int numSegments, final Status.SegmentInfoStatus segInfoStat,
+                                    NumberFormat nf, ExecutorService executor) {
+    final SegmentCheck check = new SegmentCheck(info, segInfoStat);
+    PrintStream infoStream = this.infoStream;
+    if (executor != null && infoStream != null) {
+      check.head = new BufferedInfoStream();
+      infoStream = check.head.out;
+    }
+    try {
       msg(infoStream, "  " + (1+i) + " of " + numSegments + ": name=" + info.info.name + " docCount=" + info.info.getDocCount());
       segInfoStat.name = info.info.name;
       segInfoStat.docCount = info.info.getDocCount();
@@ -545,140 +681,188 @@ public class CheckIndex {
         throw new RuntimeException("illegal number of documents: maxDoc=" + info.info.getDocCount());
       }
 
-      int toLoseDocCount = info.info.getDocCount();
-
-      AtomicReader reader = null;
-
-      try {
-        msg(infoStream, "    version=" + (version == null ? "3.0" : version));
-        final Codec codec = info.info.getCodec();
-        msg(infoStream, "    codec=" + codec);
-        segInfoStat.codec = codec;
-        msg(infoStream, "    compound=" + info.info.getUseCompoundFile());
-        segInfoStat.compound = info.info.getUseCompoundFile();
-        msg(infoStream, "    numFiles=" + info.files().size());
-        segInfoStat.numFiles = info.files().size();
-        segInfoStat.sizeMB = info.sizeInBytes()/(1024.*1024.);
-        if (info.info.getAttribute(Lucene3xSegmentInfoFormat.DS_OFFSET_KEY) == null) {
-          // don't print size in bytes if its a 3.0 segment with shared docstores
-          msg(infoStream, "    size (MB)=" + nf.format(segInfoStat.sizeMB));
-        }
-        Map<String,String> diagnostics = info.info.getDiagnostics();
-        segInfoStat.diagnostics = diagnostics;
-        if (diagnostics.size() > 0) {
-          msg(infoStream, "    diagnostics = " + diagnostics);
-        }
-
-        if (!info.hasDeletions()) {
-          msg(infoStream, "    no deletions");
-          segInfoStat.hasDeletions = false;
-        }
-        else{
-          msg(infoStream, "    has deletions [delGen=" + info.getDelGen() + "]");
-          segInfoStat.hasDeletions = true;
-          segInfoStat.deletionsGen = info.getDelGen();
-        }
-        if (infoStream != null)
-          infoStream.print("    test: open reader.........");
-        reader = new SegmentReader(info, DirectoryReader.DEFAULT_TERMS_INDEX_DIVISOR, IOContext.DEFAULT);
-        msg(infoStream, "OK");
-
-        segInfoStat.openReaderPassed = true;
-        
-        if (infoStream != null)
-          infoStream.print("    test: check integrity.....");
-        reader.checkIntegrity();
-        msg(infoStream, "OK");
+      msg(infoStream, "    version=" + (version == null ? "3.0" : version));
+      final Codec codec = info.info.getCodec();
+      msg(infoStream, "    codec=" + codec);
+      segInfoStat.codec = codec;
+      msg(infoStream, "    compound=" + info.info.getUseCompoundFile());
+      segInfoStat.compound = info.info.getUseCompoundFile();
+      msg(infoStream, "    numFiles=" + info.files().size());
+      segInfoStat.numFiles = info.files().size();
+      segInfoStat.sizeMB = info.sizeInBytes()/(1024.*1024.);
+      if (info.info.getAttribute(Lucene3xSegmentInfoFormat.DS_OFFSET_KEY) == null) {
+        // don't print size in bytes if its a 3.0 segment with shared docstores
+        msg(infoStream, "    size (MB)=" + nf.format(segInfoStat.sizeMB));
+      }
+      Map<String,String> diagnostics = info.info.getDiagnostics();
+      segInfoStat.diagnostics = diagnostics;
+      if (diagnostics.size() > 0) {
+        msg(infoStream, "    diagnostics = " + diagnostics);
+      }
 
-        if (infoStream != null)
-          infoStream.print("    test: check live docs.....");
-        final int numDocs = reader.numDocs();
-        toLoseDocCount = numDocs;
-        if (reader.hasDeletions()) {
-          if (reader.numDocs() != info.info.getDocCount() - info.getDelCount()) {
-            throw new RuntimeException("delete count mismatch: info=" + (info.info.getDocCount() - info.getDelCount()) + " vs reader=" + reader.numDocs());
+      if (!info.hasDeletions()) {
+        msg(infoStream, "    no deletions");
+        segInfoStat.hasDeletions = false;
+      }
+      else{
+        msg(infoStream, "    has deletions [delGen=" + info.getDelGen() + "]");
+        segInfoStat.hasDeletions = true;
+        segInfoStat.deletionsGen = info.getDelGen();
+      }
+      if (infoStream != null)
+        infoStream.print("    test: open reader.........");
+      final AtomicReader reader = check.reader = new SegmentReader(info, DirectoryReader.DEFAULT_TERMS_INDEX_DIVISOR, IOContext.DEFAULT);
+      msg(infoStream, "OK");
+
+      segInfoStat.openReaderPassed = true;
+
+      final SegmentPart[] parts = new SegmentPart[] {
+        new SegmentPart() {
+          @Override
+          public void check(PrintStream infoStream) throws IOException {
+            if (infoStream != null)
+              infoStream.print("    test: check integrity.....");
+            reader.checkIntegrity();
+            msg(infoStream, "OK");
           }
-          if ((info.info.getDocCount()-reader.numDocs()) > reader.maxDoc()) {
-            throw new RuntimeException("too many deleted docs: maxDoc()=" + reader.maxDoc() + " vs del count=" + (info.info.getDocCount()-reader.numDocs()));
+        },
+        new SegmentPart() {
+          @Override
+          public void check(PrintStream infoStream) throws IOException {
+            check.toLoseDocCount = testLiveDocs(info, reader, segInfoStat, infoStream);
+
+            // Test getFieldInfos()
+            if (infoStream != null) {
+              infoStream.print("    test: fields..............");
+            }         
+            FieldInfos fieldInfos = reader.getFieldInfos();
+            msg(infoStream, "OK [" + fieldInfos.size() + " fields]");
+            segInfoStat.numFields = fieldInfos.size();
           }
-          if (info.info.getDocCount() - numDocs != info.getDelCount()) {
-            throw new RuntimeException("delete count mismatch: info=" + info.getDelCount() + " vs reader=" + (info.info.getDocCount() - numDocs));
+        },
+        new SegmentPart() {
+          @Override
+          public void check(PrintStream infoStream) throws IOException {
+            // Test Field Norms
+            segInfoStat.fieldNormStatus = testFieldNorms(reader, infoStream, failFast);
           }
-          Bits liveDocs = reader.getLiveDocs();
-          if (liveDocs == null) {
-            throw new RuntimeException("segment should have deletions, but liveDocs is null");
-          } else {
-            int numLive = 0;
-            for (int j = 0; j < liveDocs.length(); j++) {
-              if (liveDocs.get(j)) {
-                numLive++;
-              }
-            }
-            if (numLive != numDocs) {
-              throw new RuntimeException("liveDocs count mismatch: info=" + numDocs + ", vs bits=" + numLive);
-            }
+        },
+        new SegmentPart() {
+          @Override
+          public void check(PrintStream infoStream) throws IOException {
+            // Test the Term Index
+            segInfoStat.termIndexStatus = testPostings(reader, infoStream, verbose, failFast);
           }
-          
-          segInfoStat.numDeleted = info.info.getDocCount() - numDocs;
-          msg(infoStream, "OK [" + (segInfoStat.numDeleted) + " deleted docs]");
-        } else {
-          if (info.getDelCount() != 0) {
-            throw new RuntimeException("delete count mismatch: info=" + info.getDelCount() + " vs reader=" + (info.info.getDocCount() - numDocs));
+        },
+        new SegmentPart() {
+          @Override
+          public void check(PrintStream infoStream) throws IOException {
+            // Test Stored Fields
+            segInfoStat.storedFieldStatus = testStoredFields(reader, infoStream, failFast);
           }
-          Bits liveDocs = reader.getLiveDocs();
-          if (liveDocs != null) {
-            // its ok for it to be non-null here, as long as none are set right?
-            for (int j = 0; j < liveDocs.length(); j++) {
-              if (!liveDocs.get(j)) {
-                throw new RuntimeException("liveDocs mismatch: info says no deletions but doc " + j + " is deleted.");
-              }
-            }
+        },
+        new SegmentPart() {
+          @Override
+          public void check(PrintStream infoStream) throws IOException {
+            // Test Term Vectors
+            segInfoStat.termVectorStatus = testTermVectors(reader, infoStream, verbose, crossCheckTermVectors, failFast);
+          }
+        },
+        new SegmentPart() {
+          @Override
+          public void check(PrintStream infoStream) throws IOException {
+            segInfoStat.docValuesStatus = testDocValues(reader, infoStream, failFast);
           }
-          msg(infoStream, "OK");
-        }
-        if (reader.maxDoc() != info.info.getDocCount()) {
-          throw new RuntimeException("SegmentReader.maxDoc() " + reader.maxDoc() + " != SegmentInfos.docCount " + info.info.getDocCount());
         }
+      };
 
-        // Test getFieldInfos()
-        if (infoStream != null) {
-          infoStream.print("    test: fields..............");
-        }         
-        FieldInfos fieldInfos = reader.getFieldInfos();
-        msg(infoStream, "OK [" + fieldInfos.size() + " fields]");
-        segInfoStat.numFields = fieldInfos.size();
-        
-        // Test Field Norms
-        segInfoStat.fieldNormStatus = testFieldNorms(reader, infoStream, failFast);
-
-        // Test the Term Index
-        segInfoStat.termIndexStatus = testPostings(reader, infoStream, verbose, failFast);
+      for (final SegmentPart part : parts) {
+        if (executor == null) {
+          part.check(infoStream);
+        } else {
+          final boolean buffered = infoStream != null;
+          check.parts.add(executor.submit(new Callable<BufferedInfoStream>() {
+            @Override
+            public BufferedInfoStream call() throws Exception {
+              final BufferedInfoStream out = buffered ? new BufferedInfoStream() : null;
+              try {
+                part.check(out == null ? null : out.out);
+              } catch (Throwable t) {
+                // keep the partial output, it tells which test failed:
+                throw new PartFailedException(out, t);
+              }
+              return out;
+            }
+          }));
+        }
+      }
+    } catch (Throwable t) {
+      check.failure = t;
+    }
+    return check;
+  }
 
-        // Test Stored Fields
-        segInfoStat.storedFieldStatus = testStoredFields(reader, infoStream, failFast);
+  /** Wraps the exception of a concurrently checked segment part, along with its messages. */
+  private static final class PartFailedException extends Exception {
+    final BufferedInfoStream out;
 
-        // Test Term Vectors
-        segInfoStat.termVectorStatus = testTermVectors(reader, infoStream, verbose, crossCheckTermVectors, failFast);
+    PartFailedException(BufferedInfoStream out, Throwable cause) {
+      super(cause);
+      this.out = out;
+    }
+  }
 
-        segInfoStat.docValuesStatus = testDocValues(reader, infoStream, failFast);
+  /** Waits for all parts of the segment, prints their messages in
+   *  order and records the outcome in the result. */
+  private void finishSegment(SegmentCheck check, Status result) throws IOException {
+    try {
+      if (check.head != null) {
+        check.head.printTo(infoStream);
+      }
+      for (Future<BufferedInfoStream> part : check.parts) {
+        if (check.failure != null) {
+          // stop printing at the first failed part, like a sequential check does
+          part.cancel(false);
+          continue;
+        }
+        try {
+          final BufferedInfoStream out = part.get();
+          if (out != null) {
+            out.printTo(infoStream);
+          }
+        } catch (ExecutionException ee) {
+          final PartFailedException pfe = (PartFailedException) ee.getCause();
+          if (pfe.out != null) {
+            pfe.out.printTo(infoStream);
+          }
+          check.failure = pfe.getCause();
+        } catch (InterruptedException ie) {
+          throw new ThreadInterruptedException(ie);
+        }
+      }
 
+      final Status.SegmentInfoStatus segInfoStat = check.segInfoStat;
+      if (check.failure == null) {
+        if (check.reader.maxDoc() != check.info.info.getDocCount()) {
+          check.failure = new RuntimeException("SegmentReader.maxDoc() " + check.reader.maxDoc() + " != SegmentInfos.docCount " + check.info.info.getDocCount());
+        }
         // Rethrow the first exception we encountered
         //  This will cause stats for failed segments to be incremented properly
-        if (segInfoStat.fieldNormStatus.error != null) {
-          throw new RuntimeException("Field Norm test failed");
+        else if (segInfoStat.fieldNormStatus.error != null) {
+          check.failure = new RuntimeException("Field Norm test failed");
         } else if (segInfoStat.termIndexStatus.error != null) {
-          throw new RuntimeException("Term Index test failed");
+          check.failure = new RuntimeException("Term Index test failed");
         } else if (segInfoStat.storedFieldStatus.error != null) {
-          throw new RuntimeException("Stored Field test failed");
+          check.failure = new RuntimeException("Stored Field test failed");
         } else if (segInfoStat.termVectorStatus.error != null) {
-          throw new RuntimeException("Term Vector test failed");
+          check.failure = new RuntimeException("Term Vector test failed");
         }  else if (segInfoStat.docValuesStatus.error != null) {
-          throw new RuntimeException("DocValues test failed");
+          check.failure = new RuntimeException("DocValues test failed");
         }
+      }
 
-        msg(infoStream, "");
-
-      } catch (Throwable t) {
+      if (check.failure != null) {
+        final Throwable t = check.failure;
         if (failFast) {
           IOUtils.reThrow(t);
         }
@@ -689,34 +873,84 @@ public class CheckIndex {
         if (infoStream != null)
           t.printStackTrace(infoStream);
         msg(infoStream, "");
-        result.totLoseDocCount += toLoseDocCount;
+        result.totLoseDocCount += check.toLoseDocCount;
         result.numBadSegments++;
-        continue;
-      } finally {
-        if (reader != null)
-          reader.close();
+        return;
       }
 
+      msg(infoStream, "");
+
       // Keeper
-      result.newSegments.add(info.clone());
+      result.newSegments.add(check.info.clone());
+    } finally {
+      if (check.reader != null) {
+        // NOTE: all parts are done or cancelled by now; a
+        // cancelled part that did not start never will:
+        for (Future<BufferedInfoStream> part : check.parts) {
+          try {
+            part.get();
+          } catch (CancellationException | ExecutionException e) {
+            // already handled, or didn't run
+          } catch (InterruptedException ie) {
+            throw new ThreadInterruptedException(ie);
+          }
+        }
+        check.reader.close();
+      }
     }
+  }
 
-    if (0 == result.numBadSegments) {
-      result.clean = true;
-    } else
-      msg(infoStream, "WARNING: " + result.numBadSegments + " broken segments (containing " + result.totLoseDocCount + " documents) detected");
-
-    if ( ! (result.validCounter = (result.maxSegmentName < sis.counter))) {
-      result.clean = false;
-      result.newSegments.counter = result.maxSegmentName + 1; 
-      msg(infoStream, "ERROR: Next segment name counter " + sis.counter + " is not greater than max segment name " + result.maxSegmentName);
-    }
-    
-    if (result.clean) {
-      msg(infoStream, "No problems were detected with this index.\n");
+  /**
+   * Test live docs.
+   * @return the number of live docs
+   */
+  private static int testLiveDocs(SegmentCommitInfo info, AtomicReader reader, Status.SegmentInfoStatus segInfoStat, PrintStream infoStream) {
+    if (infoStream != null)
+      infoStream.print("    test: check live docs.....");
+    final int numDocs = reader.numDocs();
+    if (reader.hasDeletions()) {
+      if (reader.numDocs() != info.info.getDocCount() - info.getDelCount()) {
+        throw new RuntimeException("delete count mismatch: info=" + (info.info.getDocCount() - info.getDelCount()) + " vs reader=" + reader.numDocs());
+      }
+      if ((info.info.getDocCount()-reader.numDocs()) > reader.maxDoc()) {
+        throw new RuntimeException("too many deleted docs: maxDoc()=" + reader.maxDoc() + " vs del count=" + (info.info.getDocCount()-reader.numDocs()));
+      }
+      if (info.info.getDocCount() - numDocs != info.getDelCount()) {
+        throw new RuntimeException("delete count mismatch: info=" + info.getDelCount() + " vs reader=" + (info.info.getDocCount() - numDocs));
+      }
+      Bits liveDocs = reader.getLiveDocs();
+      if (liveDocs == null) {
+        throw new RuntimeException("segment should have deletions, but liveDocs is null");
+      } else {
+        int numLive = 0;
+        for (int j = 0; j < liveDocs.length(); j++) {
+          if (liveDocs.get(j)) {
+            numLive++;
+          }
+        }
+        if (numLive != numDocs) {
+          throw new RuntimeException("liveDocs count mismatch: info=" + numDocs + ", vs bits=" + numLive);
+        }
+      }
+      
+      segInfoStat.numDeleted = info.info.getDocCount() - numDocs;
+      msg(infoStream, "OK [" + (segInfoStat.numDeleted) + " deleted docs]");
+    } else {
+      if (info.getDelCount() != 0) {
+        throw new RuntimeException("delete count mismatch: info=" + info.getDelCount() + " vs reader=" + (info.info.getDocCount() - numDocs));
+      }
+      Bits liveDocs = reader.getLiveDocs();
+      if (liveDocs != null) {
+        // its ok for it to be non-null here, as long as none are set right?
+        for (int j = 0; j < liveDocs.length(); j++) {
+          if (!liveDocs.get(j)) {
+            throw new RuntimeException("liveDocs mismatch: info says no deletions but doc " + j + " is deleted.");
+          }
+        }
+      }
+      msg(infoStream, "OK");
     }
-
-    return result;
+    return numDocs;
   }
 
   /**
@@ -1999,6 +2233,7 @@ public class CheckIndex {
     boolean doFix = false;
     boolean doCrossCheckTermVectors = false;
     boolean verbose = false;
+    int threadCount = 1;
     List<String> onlySegments = new ArrayList<>();
     String indexPath = null;
     String dirImpl = null;
@@ -2011,6 +2246,17 @@ public class CheckIndex {
         doCrossCheckTermVectors = true;
       } else if (arg.equals("-verbose")) {
         verbose = true;
+      } else if (arg.equals("-threadCount")) {
+        if (i == args.length-1) {
+          System.out.println("ERROR: missing value for -threadCount option");
+          System.exit(1);
+        }
+        i++;
+        threadCount = Integer.parseInt(args[i]);
+        if (threadCount < 1) {
+          System.out.println("ERROR: -threadCount must be at least 1; got: " + threadCount);
+          System.exit(1);
+        }
       } else if (arg.equals("-segment")) {
         if (i == args.length-1) {
           System.out.println("ERROR: missing name for -segment option");
@@ -2037,7 +2283,7 @@ public class CheckIndex {
 
     if (indexPath == null) {
       System.out.println("\nERROR: index path not specified");
-      System.out.println("\nUsage: java org.apache.lucene.index.CheckIndex pathToIndex [-fix] [-crossCheckTermVectors] [-segment X] [-segment Y] [-dir-impl X]\n" +
+      System.out.println("\nUsage: java org.apache.lucene.index.CheckIndex pathToIndex [-fix] [-crossCheckTermVectors] [-segment X] [-segment Y] [-dir-impl X] [-threadCount N]\n" +
                          "\n" +
                          "  -fix: actually write a new segments_N file, removing any problematic segments\n" +
                          "  -crossCheckTermVectors: verifies that term vectors match postings; THIS IS VERY SLOW!\n" +
@@ -2048,6 +2294,7 @@ public class CheckIndex {
                          "              You can't use this with the -fix option\n" +
                          "  -dir-impl X: use a specific " + FSDirectory.class.getSimpleName() + " implementation. " +
                          "If no package is specified the " + FSDirectory.class.getPackage().getName() + " package will be used.\n" +
+                         "  -threadCount N: check segments, and the parts of each segment, concurrently on N threads\n" +
                          "\n" +
                          "**WARNING**: -fix should only be used on an emergency basis as it will cause\n" +
                          "documents (perhaps many) to be permanently removed from the index.  Always make\n" +
@@ -2092,6 +2339,7 @@ public class CheckIndex {
     CheckIndex checker = new CheckIndex(dir);
     checker.setCrossCheckTermVectors(doCrossCheckTermVectors);
     checker.setInfoStream(System.out, verbose);
+    checker.setThreadCount(threadCount);
 
     Status result = checker.checkIndex(onlySegments);
     if (result.missingSegments) {
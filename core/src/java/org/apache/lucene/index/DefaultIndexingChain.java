@@ -79,7 +79,7 @@ final class DefaultIndexingChain extends DocConsumer {
   // TODO: can we remove this lazy-init / make cleaner / do it another way...? 
 	private void initStoredFieldsWriter() throws IOException {
 		if (storedFieldsWriter == null) {
-			storedFieldsWriter = docWriter.codec.storedFieldsFormat().fieldsWriter(docWriter.directory, docWriter.getSegmentInfo(), IOContext.DEFAULT);
+			storedFieldsWriter = docWriter.codec.storedFieldsFormat().fieldsWriter(docWriter.segmentDirectory, docWriter.getSegmentInfo(), IOContext.DEFAULT);
 		}
 	}
 
@@ -60,6 +60,39 @@ public abstract class DocsEnum extends DocIdSetIterator {
    */
   public abstract int freq() throws IOException;
   
+  /**
+   * Reads the documents that follow the current document into {@code docs},
+   * and returns how many documents were read, or 0 if there are no more
+   * documents. After a call that returns 0, {@link #docID()} returns
+   * {@link DocIdSetIterator#NO_MORE_DOCS}. After a call that returns
+   * {@code n > 0}, it returns {@code docs[n-1]}, or already
+   * {@link DocIdSetIterator#NO_MORE_DOCS} if the enum found out that these
+   * were the last documents; the next call then returns 0 either way.
+   * Calls to this method may be mixed with calls to
+   * {@link #nextDoc()} and {@link #advance(int)}, but {@link #freq()} is
+   * undefined right after it.
+   * <p>
+   * The default implementation calls {@link #nextDoc()} until
+   * {@code docs} is full, but postings formats that decode documents in
+   * blocks may override it to copy a whole block at once. Consumers that
+   * only collect document IDs, like filters that compute the union of many
+   * terms, should prefer this method.
+   */
+  public int read(int[] docs) throws IOException {
+    assert docs.length > 0;
+    if (docID() == NO_MORE_DOCS) {
+      return 0;
+    }
+    int count = 0;
+    for (int doc = nextDoc(); doc != NO_MORE_DOCS; doc = nextDoc()) {
+      docs[count++] = doc;
+      if (count == docs.length) {
+        break;
+      }
+    }
+    return count;
+  }
+
   /** Returns the related attributes. */
   public AttributeSource attributes() {
     if (atts == null) atts = new AttributeSource();
@@ -28,6 +28,7 @@ import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.codecs.Codec;
 import org.apache.lucene.index.DocumentsWriterDeleteQueue.DeleteSlice;
 import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.store.CompoundFileDirectory;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FlushInfo;
 import org.apache.lucene.store.IOContext;
@@ -35,6 +36,7 @@ import org.apache.lucene.store.TrackingDirectoryWrapper;
 import org.apache.lucene.util.ByteBlockPool.Allocator;
 import org.apache.lucene.util.ByteBlockPool.DirectTrackingAllocator;
 import org.apache.lucene.util.Counter;
+import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.InfoStream;
 import org.apache.lucene.util.IntBlockPool;
 import org.apache.lucene.util.MutableBits;
@@ -123,6 +125,8 @@ class DocumentsWriterPerThread {
       }
 
       pendingUpdates.clear();
+      // the outputs are closed by now; this only releases the compound file
+      IOUtils.closeWhileHandlingException(cfsDirectory);
       createdFiles.addAll(directory.getCreatedFiles());
     } finally {
       aborting = false;
@@ -133,8 +137,14 @@ class DocumentsWriterPerThread {
   }
   private final static boolean INFO_VERBOSE = false;
   final Codec codec;
+  /** Tracks all files created in the index directory */
   final TrackingDirectoryWrapper directory;
   final Directory directoryOrig;
+  /** Compound file the codec writes this segment's files into, or null */
+  final CompoundFileDirectory cfsDirectory;
+  /** Directory the codec writes this segment's files into: either
+   *  {@link #directory}, or the compound file on top of it */
+  final Directory segmentDirectory;
 	final DocState docState;
 	final DocConsumer consumer;
   final Counter bytesUsed;
@@ -161,6 +171,16 @@ class DocumentsWriterPerThread {
                                   FieldInfos.Builder fieldInfos, AtomicLong pendingNumDocs) throws IOException {
     this.directoryOrig = directory;
     this.directory = new TrackingDirectoryWrapper(directory);
+    if (indexWriterConfig.getUseCompoundFile()) {
+      // stream the segment's files straight into the compound file,
+      // rather than copying them in after flush:
+      final String cfsFileName = IndexFileNames.segmentFileName(segmentName, "", IndexFileNames.COMPOUND_FILE_EXTENSION);
+      this.cfsDirectory = new CompoundFileDirectory(this.directory, cfsFileName, IOContext.DEFAULT, true);
+      this.segmentDirectory = cfsDirectory;
+    } else {
+      this.cfsDirectory = null;
+      this.segmentDirectory = this.directory;
+    }
     this.fieldInfos = fieldInfos;
     this.indexWriterConfig = indexWriterConfig;
     this.infoStream = infoStream;
@@ -402,7 +422,7 @@ class DocumentsWriterPerThread {
     assert deleteSlice.isEmpty() : "all deletes must be applied in prepareFlush";
     segmentInfo.setDocCount(numDocsInRAM);
 		final SegmentWriteState flushState = 
-				new SegmentWriteState(infoStream, directory, segmentInfo, fieldInfos.finish(), indexWriterConfig.getTermIndexInterval(),
+				new SegmentWriteState(infoStream, segmentDirectory, segmentInfo, fieldInfos.finish(), indexWriterConfig.getTermIndexInterval(),
         pendingUpdates, new IOContext(new FlushInfo(numDocsInRAM, bytesUsed())));
     final double startMBUsed = bytesUsed() / 1024. / 1024.;
 
@@ -435,7 +455,26 @@ class DocumentsWriterPerThread {
     try {
       consumer.flush(flushState);
       pendingUpdates.terms.clear();
-      segmentInfo.setFiles(new HashSet<>(directory.getCreatedFiles()));
+      if (cfsDirectory != null) {
+        // writes the entry table:
+        cfsDirectory.close();
+        final String cfeFileName = IndexFileNames.segmentFileName(segmentInfo.name, "", IndexFileNames.COMPOUND_FILE_ENTRIES_EXTENSION);
+        if (indexWriterConfig.getUseCompoundFile()) {
+          final Set<String> cfsFiles = new HashSet<>();
+          cfsFiles.add(cfsDirectory.getName());
+          cfsFiles.add(cfeFileName);
+          segmentInfo.setFiles(cfsFiles);
+          segmentInfo.setUseCompoundFile(true);
+        } else {
+          // compound files were disabled while this segment was
+          // being indexed (rare): unpack the compound file
+          segmentInfo.setFiles(unpackCompoundFile(flushState.context));
+          filesToDelete.add(cfsDirectory.getName());
+          filesToDelete.add(cfeFileName);
+        }
+      } else {
+        segmentInfo.setFiles(new HashSet<>(directory.getCreatedFiles()));
+      }
 
       final SegmentCommitInfo segmentInfoPerCommit = new SegmentCommitInfo(segmentInfo, 0, -1L, -1L, -1L);
       if (infoStream.isEnabled("DWPT")) {
@@ -481,6 +520,22 @@ class DocumentsWriterPerThread {
     }
   }
   
+  /** Copies all files out of the compound file this segment was
+   *  flushed into, and returns their names. */
+  private Set<String> unpackCompoundFile(IOContext context) throws IOException {
+    final Set<String> files = new HashSet<>();
+    final CompoundFileDirectory cfsReader = new CompoundFileDirectory(directory, cfsDirectory.getName(), context, false);
+    try {
+      for (String file : cfsReader.listAll()) {
+        cfsReader.copy(directory, file, file, context);
+        files.add(file);
+      }
+    } finally {
+      cfsReader.close();
+    }
+    return files;
+  }
+
   private final Set<String> filesToDelete = new HashSet<>();
   
   public Set<String> pendingFilesToDelete() {
@@ -502,7 +557,10 @@ class DocumentsWriterPerThread {
     boolean success = false;
     try {
       
-      if (indexWriterConfig.getUseCompoundFile()) {
+      // NOTE: if the segment was flushed into a compound file
+      // already, or was unpacked from one because compound files
+      // were disabled in the meantime, there is nothing to do here
+      if (cfsDirectory == null && indexWriterConfig.getUseCompoundFile()) {
         filesToDelete.addAll(IndexWriter.createCompoundFile(infoStream, directory, MergeState.CheckAbort.NONE, newSegment.info, context));
         newSegment.info.setUseCompoundFile(true);
       }
@@ -23,6 +23,7 @@ import java.util.Map;
 
 import org.apache.lucene.analysis.tokenattributes.OffsetAttribute;
 import org.apache.lucene.analysis.tokenattributes.PayloadAttribute;
+import org.apache.lucene.codecs.FieldStats;
 import org.apache.lucene.codecs.FieldsConsumer;
 import org.apache.lucene.codecs.PostingsConsumer;
 import org.apache.lucene.codecs.TermStats;
@@ -50,6 +51,15 @@ final class FreqProxTermsWriterPerField extends TermsHashPerField {
    *  segment. */
   boolean sawPayloads;
 
+  /** Number of docs and of (term, doc) pairs in the current segment, which
+   *  are given to the codec as {@link FieldStats}. */
+  int docCount;
+  long sumDocFreq;
+
+  /** Set to true if the field produced any token in the current document,
+   *  documents where it produced none are not counted in docCount. */
+  private boolean sawTermInDoc;
+
 	public FreqProxTermsWriterPerField(FieldInvertState invertState, TermsHash termsHash, FieldInfo fieldInfo, TermsHashPerField nextPerField) {
 		super(fieldInfo.getIndexOptions().compareTo(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS) >= 0 ? 2 : 1, 
 				invertState, termsHash, nextPerField, fieldInfo);
@@ -63,6 +73,9 @@ final class FreqProxTermsWriterPerField extends TermsHashPerField {
   @Override
   void finish() throws IOException {
     super.finish();
+    if (sawTermInDoc) {
+      docCount++;
+    }
     if (sawPayloads) {
       fieldInfo.setStorePayloads();
     }
@@ -73,9 +86,18 @@ final class FreqProxTermsWriterPerField extends TermsHashPerField {
 		super.start(f, first);
 		payloadAttribute = fieldState.payloadAttribute;
 		offsetAttribute = fieldState.offsetAttribute;
+    if (first) {
+      sawTermInDoc = false;
+    }
 		return true;
 	}
 
+  @Override
+  void add() throws IOException {
+    super.add();
+    sawTermInDoc = true;
+  }
+
   void writeProx(int termID, int proxCode) {
     if (payloadAttribute == null) {
       writeVInt(1, proxCode<<1);
@@ -128,6 +150,7 @@ final class FreqProxTermsWriterPerField extends TermsHashPerField {
     }
     fieldState.maxTermFrequency = Math.max(1, fieldState.maxTermFrequency);
     fieldState.uniqueTermCount++;
+    sumDocFreq++;
   }
 
   @Override
@@ -145,6 +168,7 @@ final class FreqProxTermsWriterPerField extends TermsHashPerField {
         postings.lastDocCodes[termID] = docState.docID - postings.lastDocIDs[termID];
         postings.lastDocIDs[termID] = docState.docID;
         fieldState.uniqueTermCount++;
+        sumDocFreq++;
       }
     } else if (docState.docID != postings.lastDocIDs[termID]) {
       assert docState.docID > postings.lastDocIDs[termID]:"id: "+docState.docID + " postings ID: "+ postings.lastDocIDs[termID] + " termID: "+termID;
@@ -175,6 +199,7 @@ final class FreqProxTermsWriterPerField extends TermsHashPerField {
         assert !hasOffsets;
       }
       fieldState.uniqueTermCount++;
+      sumDocFreq++;
     } else {
       fieldState.maxTermFrequency = Math.max(fieldState.maxTermFrequency, ++postings.termFreqs[termID]);
       if (hasProx) {
@@ -282,7 +307,8 @@ final class FreqProxTermsWriterPerField extends TermsHashPerField {
 			return; // nothing to flush, don't bother the codec with the unindexed field
 		}
     
-		final TermsConsumer termsConsumer = consumer.addField(fieldInfo);
+		final FieldStats stats = new FieldStats(bytesHash.size(), docCount, sumDocFreq, state.segmentInfo.getDocCount());
+		final TermsConsumer termsConsumer = consumer.addField(fieldInfo, stats);
 		final Comparator<BytesRef> termComp = termsConsumer.getComparator();
 
     // CONFUSING: this.indexOptions holds the index options
@@ -18,8 +18,11 @@ package org.apache.lucene.index;
  */
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.lucene.index.MultiTermsEnum.TermsEnumIndex;
 import org.apache.lucene.index.MultiTermsEnum.TermsEnumWithSlice;
@@ -498,21 +501,191 @@ public class MultiDocValues {
     final long ramBytesUsed;
     
     OrdinalMap(Object owner, TermsEnum subs[], SegmentMap segmentMap, float acceptableOverheadRatio) throws IOException {
-      // create the ordinal mappings by pulling a termsenum over each sub's 
-      // unique terms, and walking a multitermsenum over those
+      this(owner, segmentMap, merge(subs, segmentMap, acceptableOverheadRatio), new LongValues[subs.length], 0L, acceptableOverheadRatio);
+    }
+
+    /** Creates a map that has the same mappings as <code>other</code>, which
+     *  are shared, but the given owner. */
+    OrdinalMap(OrdinalMap other, Object owner) {
+      this.owner = owner;
+      this.globalOrdDeltas = other.globalOrdDeltas;
+      this.firstSegments = other.firstSegments;
+      this.segmentToGlobalOrds = other.segmentToGlobalOrds;
+      this.segmentMap = other.segmentMap;
+      this.ramBytesUsed = other.ramBytesUsed;
+    }
+
+    /** <code>reusedOrds[i]</code> is the mapping of the i-th segment in the
+     *  order of the {@link SegmentMap} if it is reused from another map, in
+     *  which case <code>mappings</code> has no ords for this segment. */
+    private OrdinalMap(Object owner, SegmentMap segmentMap, Deltas mappings, LongValues[] reusedOrds,
+        long reusedRamBytesUsed, float acceptableOverheadRatio) {
       this.owner = owner;
       this.segmentMap = segmentMap;
-      // even though we accept an overhead ratio, we keep these ones with COMPACT
-      // since they are only used to resolve values given a global ord, which is
-      // slow anyway
-      PackedLongValues.Builder globalOrdDeltas = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
-      PackedLongValues.Builder firstSegments = PackedLongValues.packedBuilder(PackedInts.COMPACT);
-      final PackedLongValues.Builder[] ordDeltas = new PackedLongValues.Builder[subs.length];
-      for (int i = 0; i < ordDeltas.length; i++) {
-        ordDeltas[i] = PackedLongValues.monotonicBuilder(acceptableOverheadRatio);
-      }
-      long[] ordDeltaBits = new long[subs.length];
-      long segmentOrds[] = new long[subs.length];
+      final PackedLongValues.Builder[] ordDeltas = mappings.ordDeltas;
+      final long[] ordDeltaBits = mappings.ordDeltaBits;
+      this.firstSegments = mappings.firstSegments.build();
+      this.globalOrdDeltas = mappings.globalOrdDeltas.build();
+      // ordDeltas is typically the bottleneck, so let's see what we can do to make it faster
+      segmentToGlobalOrds = new LongValues[ordDeltas.length];
+      long ramBytesUsed = BASE_RAM_BYTES_USED + this.globalOrdDeltas.ramBytesUsed()
+          + this.firstSegments.ramBytesUsed() + RamUsageEstimator.shallowSizeOf(segmentToGlobalOrds)
+          + segmentMap.ramBytesUsed() + reusedRamBytesUsed;
+      for (int i = 0; i < ordDeltas.length; ++i) {
+        if (reusedOrds[i] != null) {
+          segmentToGlobalOrds[i] = reusedOrds[i];
+          continue;
+        }
+        final PackedLongValues deltas = ordDeltas[i].build();
+        if (ordDeltaBits[i] == 0L) {
+          // segment ords perfectly match global ordinals
+          // likely in case of low cardinalities and large segments
+          segmentToGlobalOrds[i] = LongValues.IDENTITY;
+        } else {
+          final int bitsRequired = ordDeltaBits[i] < 0 ? 64 : PackedInts.bitsRequired(ordDeltaBits[i]);
+          final long monotonicBits = deltas.ramBytesUsed() * 8;
+          final long packedBits = bitsRequired * deltas.size();
+          if (deltas.size() <= Integer.MAX_VALUE
+              && packedBits <= monotonicBits * (1 + acceptableOverheadRatio)) {
+            // monotonic compression mostly adds overhead, let's keep the mapping in plain packed ints
+            final int size = (int) deltas.size();
+            final PackedInts.Mutable newDeltas = PackedInts.getMutable(size, bitsRequired, acceptableOverheadRatio);
+            final PackedLongValues.Iterator it = deltas.iterator();
+            for (int ord = 0; ord < size; ++ord) {
+              newDeltas.set(ord, it.next());
+            }
+            assert !it.hasNext();
+            segmentToGlobalOrds[i] = new PackedOrdDeltas(newDeltas);
+          } else {
+            segmentToGlobalOrds[i] = new MonotonicOrdDeltas(deltas);
+          }
+          ramBytesUsed += ramBytesUsed(segmentToGlobalOrds[i]);
+        }
+      }
+      this.ramBytesUsed = ramBytesUsed;
+    }
+
+    private static long ramBytesUsed(LongValues segmentToGlobalOrds) {
+      return segmentToGlobalOrds instanceof Accountable ? ((Accountable) segmentToGlobalOrds).ramBytesUsed() : 0L;
+    }
+
+    // the mappings below are static classes, so that maps that reuse them do
+    // not hold on the map, and its owner, that created them
+
+    /** segmentOrd -> globalOrd, as deltas in plain packed ints. */
+    private static final class PackedOrdDeltas extends LongValues implements Accountable {
+      private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(PackedOrdDeltas.class);
+      private final PackedInts.Mutable deltas;
+
+      PackedOrdDeltas(PackedInts.Mutable deltas) {
+        this.deltas = deltas;
+      }
+
+      @Override
+      public long get(long ord) {
+        return ord + deltas.get((int) ord);
+      }
+
+      @Override
+      public long ramBytesUsed() {
+        return BASE_RAM_BYTES_USED + deltas.ramBytesUsed();
+      }
+    }
+
+    /** segmentOrd -> globalOrd, as monotonic deltas. */
+    private static final class MonotonicOrdDeltas extends LongValues implements Accountable {
+      private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(MonotonicOrdDeltas.class);
+      private final PackedLongValues deltas;
+
+      MonotonicOrdDeltas(PackedLongValues deltas) {
+        this.deltas = deltas;
+      }
+
+      @Override
+      public long get(long ord) {
+        return ord + deltas.get(ord);
+      }
+
+      @Override
+      public long ramBytesUsed() {
+        return BASE_RAM_BYTES_USED + deltas.ramBytesUsed();
+      }
+    }
+
+    /** segmentOrd -> globalOrd, as the mapping of a previous map composed
+     *  with a mapping from the global ords of this previous map to global
+     *  ords. The latter is shared by all segments that have the same previous
+     *  mapping and is not included in {@link #ramBytesUsed()}. */
+    private static final class RemappedOrds extends LongValues implements Accountable {
+      private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(RemappedOrds.class);
+      final LongValues segmentToPreviousOrds;
+      final PackedLongValues previousToGlobalOrds;
+
+      RemappedOrds(LongValues segmentToPreviousOrds, PackedLongValues previousToGlobalOrds) {
+        this.segmentToPreviousOrds = segmentToPreviousOrds;
+        this.previousToGlobalOrds = previousToGlobalOrds;
+      }
+
+      @Override
+      public long get(long ord) {
+        return previousToGlobalOrds.get(segmentToPreviousOrds.get(ord));
+      }
+
+      @Override
+      public long ramBytesUsed() {
+        return BASE_RAM_BYTES_USED + OrdinalMap.ramBytesUsed(segmentToPreviousOrds);
+      }
+    }
+
+    /** The mappings of an {@link OrdinalMap} while it is being built. Segments
+     *  are numbered in the order of the {@link SegmentMap}. */
+    private static class Deltas {
+      // globalOrd -> (globalOrd - segmentOrd) where segmentOrd is the the ordinal in the first segment that contains this term
+      final PackedLongValues.Builder globalOrdDeltas;
+      // globalOrd -> first segment container
+      final PackedLongValues.Builder firstSegments;
+      // for every segment, segmentOrd -> (globalOrd - segmentOrd)
+      final PackedLongValues.Builder[] ordDeltas;
+      // for every segment, the bitwise OR of its ord deltas
+      final long[] ordDeltaBits;
+      // for every segment, the next segment ord to map
+      final long[] segmentOrds;
+
+      Deltas(int numSegments, float acceptableOverheadRatio) {
+        // even though we accept an overhead ratio, we keep these ones with COMPACT
+        // since they are only used to resolve values given a global ord, which is
+        // slow anyway
+        globalOrdDeltas = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+        firstSegments = PackedLongValues.packedBuilder(PackedInts.COMPACT);
+        ordDeltas = new PackedLongValues.Builder[numSegments];
+        for (int i = 0; i < ordDeltas.length; i++) {
+          ordDeltas[i] = PackedLongValues.monotonicBuilder(acceptableOverheadRatio);
+        }
+        ordDeltaBits = new long[numSegments];
+        segmentOrds = new long[numSegments];
+      }
+
+      /** Maps all ords up to <code>segmentOrd</code> of the given segment to <code>globalOrd</code>. */
+      void map(int segmentIndex, long segmentOrd, long globalOrd) {
+        final long delta = globalOrd - segmentOrd;
+        while (segmentOrds[segmentIndex] <= segmentOrd) {
+          ordDeltaBits[segmentIndex] |= delta;
+          ordDeltas[segmentIndex].add(delta);
+          segmentOrds[segmentIndex]++;
+        }
+      }
+
+      /** Records the first segment that contains <code>globalOrd</code>. */
+      void addGlobalOrd(long globalOrd, int firstSegmentIndex, long firstSegmentOrd) {
+        firstSegments.add(firstSegmentIndex);
+        globalOrdDeltas.add(globalOrd - firstSegmentOrd);
+      }
+    }
+
+    private static Deltas merge(TermsEnum subs[], SegmentMap segmentMap, float acceptableOverheadRatio) throws IOException {
+      // create the ordinal mappings by pulling a termsenum over each sub's 
+      // unique terms, and walking a multitermsenum over those
+      final Deltas deltas = new Deltas(subs.length, acceptableOverheadRatio);
       ReaderSlice slices[] = new ReaderSlice[subs.length];
       TermsEnumIndex indexes[] = new TermsEnumIndex[slices.length];
       for (int i = 0; i < slices.length; i++) {
@@ -525,78 +698,236 @@ public class MultiDocValues {
       while (mte.next() != null) {        
         TermsEnumWithSlice matches[] = mte.getMatchArray();
         int firstSegmentIndex = Integer.MAX_VALUE;
-        long globalOrdDelta = Long.MAX_VALUE;
+        long firstSegmentOrd = -1;
         for (int i = 0; i < mte.getMatchCount(); i++) {
           int segmentIndex = matches[i].index;
           long segmentOrd = matches[i].terms.ord();
-          long delta = globalOrd - segmentOrd;
           // We compute the least segment where the term occurs. In case the
           // first segment contains most (or better all) values, this will
           // help save significant memory
           if (segmentIndex < firstSegmentIndex) {
             firstSegmentIndex = segmentIndex;
-            globalOrdDelta = delta;
+            firstSegmentOrd = segmentOrd;
           }
           // for each per-segment ord, map it back to the global term.
-          while (segmentOrds[segmentIndex] <= segmentOrd) {
-            ordDeltaBits[segmentIndex] |= delta;
-            ordDeltas[segmentIndex].add(delta);
-            segmentOrds[segmentIndex]++;
-          }
+          deltas.map(segmentIndex, segmentOrd, globalOrd);
         }
         // for each unique term, just mark the first segment index/delta where it occurs
-        assert firstSegmentIndex < segmentOrds.length;
-        firstSegments.add(firstSegmentIndex);
-        globalOrdDeltas.add(globalOrdDelta);
+        assert firstSegmentIndex < subs.length;
+        deltas.addGlobalOrd(globalOrd, firstSegmentIndex, firstSegmentOrd);
         globalOrd++;
       }
-      this.firstSegments = firstSegments.build();
-      this.globalOrdDeltas = globalOrdDeltas.build();
-      // ordDeltas is typically the bottleneck, so let's see what we can do to make it faster
-      segmentToGlobalOrds = new LongValues[subs.length];
-      long ramBytesUsed = BASE_RAM_BYTES_USED + this.globalOrdDeltas.ramBytesUsed()
-          + this.firstSegments.ramBytesUsed() + RamUsageEstimator.shallowSizeOf(segmentToGlobalOrds)
-          + segmentMap.ramBytesUsed();
-      for (int i = 0; i < ordDeltas.length; ++i) {
-        final PackedLongValues deltas = ordDeltas[i].build();
-        if (ordDeltaBits[i] == 0L) {
-          // segment ords perfectly match global ordinals
-          // likely in case of low cardinalities and large segments
-          segmentToGlobalOrds[i] = LongValues.IDENTITY;
+      return deltas;
+    }
+
+    /**
+     * Creates an ordinal map over <code>values</code> that reuses the
+     * mappings of <code>previous</code>, eg. after a near-real-time reopen.
+     * <code>previousSegments[i]</code> is the index in <code>previous</code>
+     * of the segment of <code>values[i]</code>, or -1 if this segment is new.
+     * Segments that are in <code>previous</code> must still have the same
+     * ords, and every segment of <code>previous</code> must be in
+     * <code>values</code>.
+     * <p>
+     * Only the terms of the new segments are compared with terms: each of
+     * them is searched in the global terms of <code>previous</code>, starting
+     * from the previous match. The mappings of the other segments are not
+     * rebuilt: they are composed with a mapping from the global ords of
+     * <code>previous</code> to the new global ords, unless their ords are
+     * fewer than those of the composed mapping, in which case remapping them
+     * is cheaper.
+     */
+    public static OrdinalMap build(Object owner, SortedSetDocValues[] values, OrdinalMap previous,
+        int[] previousSegments, float acceptableOverheadRatio) throws IOException {
+      if (values.length != previousSegments.length) {
+        throw new IllegalArgumentException("values and previousSegments must have the same length");
+      }
+      final int[] newSegments = new int[previous.segmentToGlobalOrds.length];
+      Arrays.fill(newSegments, -1);
+      int numAdded = 0;
+      for (int i = 0; i < previousSegments.length; ++i) {
+        if (previousSegments[i] == -1) {
+          numAdded++;
+        } else if (newSegments[previousSegments[i]] != -1) {
+          throw new IllegalArgumentException("segment " + previousSegments[i] + " of the previous map is used twice");
         } else {
-          final int bitsRequired = ordDeltaBits[i] < 0 ? 64 : PackedInts.bitsRequired(ordDeltaBits[i]);
-          final long monotonicBits = deltas.ramBytesUsed() * 8;
-          final long packedBits = bitsRequired * deltas.size();
-          if (deltas.size() <= Integer.MAX_VALUE
-              && packedBits <= monotonicBits * (1 + acceptableOverheadRatio)) {
-            // monotonic compression mostly adds overhead, let's keep the mapping in plain packed ints
-            final int size = (int) deltas.size();
-            final PackedInts.Mutable newDeltas = PackedInts.getMutable(size, bitsRequired, acceptableOverheadRatio);
-            final PackedLongValues.Iterator it = deltas.iterator();
-            for (int ord = 0; ord < size; ++ord) {
-              newDeltas.set(ord, it.next());
+          newSegments[previousSegments[i]] = i;
+        }
+      }
+      for (int i = 0; i < newSegments.length; ++i) {
+        if (newSegments[i] == -1) {
+          throw new IllegalArgumentException("segment " + i + " of the previous map is missing");
+        }
+      }
+
+      final long[] weights = new long[values.length];
+      for (int i = 0; i < values.length; ++i) {
+        weights[i] = values[i].getValueCount();
+      }
+      final SegmentMap segmentMap = new SegmentMap(weights);
+      final Deltas deltas = new Deltas(values.length, acceptableOverheadRatio);
+
+      // the terms of the new segments
+      final ReaderSlice slices[] = new ReaderSlice[values.length];
+      final TermsEnumIndex indexes[] = new TermsEnumIndex[numAdded];
+      for (int i = 0, added = 0; i < values.length; ++i) {
+        slices[i] = new ReaderSlice(0, 0, i);
+        if (previousSegments[i] == -1) {
+          indexes[added++] = new TermsEnumIndex(values[i].termsEnum(), segmentMap.oldToNew(i));
+        }
+      }
+      final MultiTermsEnum mte = new MultiTermsEnum(slices);
+      mte.reset(indexes);
+
+      // merge them with the global terms of the previous map
+      final long previousValueCount = previous.getValueCount();
+      final PackedLongValues.Builder previousToGlobalOrdsBuilder = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+      long previousOrd = 0;
+      long globalOrd = 0;
+      for (BytesRef addedTerm = mte.next(); ; addedTerm = mte.next()) {
+        final long index = addedTerm == null ? -1 - previousValueCount : seekPrevious(values, previous, newSegments, previousOrd, addedTerm);
+        // previous terms that are before addedTerm
+        for (final long end = index < 0 ? -1 - index : index; previousOrd < end; ++previousOrd, ++globalOrd) {
+          previousToGlobalOrdsBuilder.add(globalOrd);
+          deltas.addGlobalOrd(globalOrd, segmentMap.oldToNew(newSegments[previous.getFirstSegmentNumber(previousOrd)]),
+              previous.getFirstSegmentOrd(previousOrd));
+        }
+        if (addedTerm == null) {
+          break;
+        }
+
+        int firstSegmentIndex = Integer.MAX_VALUE;
+        long firstSegmentOrd = -1;
+        if (index >= 0) {
+          // the term is also in the previous segments
+          firstSegmentIndex = segmentMap.oldToNew(newSegments[previous.getFirstSegmentNumber(previousOrd)]);
+          firstSegmentOrd = previous.getFirstSegmentOrd(previousOrd);
+          previousToGlobalOrdsBuilder.add(globalOrd);
+          previousOrd++;
+        }
+        final TermsEnumWithSlice matches[] = mte.getMatchArray();
+        for (int i = 0; i < mte.getMatchCount(); i++) {
+          final int segmentIndex = matches[i].index;
+          final long segmentOrd = matches[i].terms.ord();
+          if (segmentIndex < firstSegmentIndex) {
+            firstSegmentIndex = segmentIndex;
+            firstSegmentOrd = segmentOrd;
+          }
+          deltas.map(segmentIndex, segmentOrd, globalOrd);
+        }
+        deltas.addGlobalOrd(globalOrd, firstSegmentIndex, firstSegmentOrd);
+        globalOrd++;
+      }
+      final PackedLongValues previousToGlobalOrds = previousToGlobalOrdsBuilder.build();
+
+      // group the segments of the previous map by the previous to global ords
+      // mapping that their mappings are composed with, if any
+      final Map<PackedLongValues,List<Integer>> groups = new IdentityHashMap<>();
+      for (int i = 0; i < values.length; ++i) {
+        if (previousSegments[i] != -1) {
+          final LongValues previousGlobalOrds = previous.getGlobalOrds(previousSegments[i]);
+          final PackedLongValues remap = previousGlobalOrds instanceof RemappedOrds
+              ? ((RemappedOrds) previousGlobalOrds).previousToGlobalOrds
+              : null;
+          List<Integer> group = groups.get(remap);
+          if (group == null) {
+            group = new ArrayList<>();
+            groups.put(remap, group);
+          }
+          group.add(i);
+        }
+      }
+
+      final LongValues[] reusedOrds = new LongValues[values.length];
+      long reusedRamBytesUsed = 0;
+      for (Map.Entry<PackedLongValues,List<Integer>> group : groups.entrySet()) {
+        final PackedLongValues remap = group.getKey();
+        long numSegmentOrds = 0;
+        for (int i : group.getValue()) {
+          numSegmentOrds += values[i].getValueCount();
+        }
+        final long numRemappedOrds = remap == null ? previousValueCount : remap.size();
+        if (numSegmentOrds >= numRemappedOrds) {
+          // compose the previous mappings with the new global ords
+          final PackedLongValues newRemap = remap == null ? previousToGlobalOrds : compose(remap, previousToGlobalOrds);
+          reusedRamBytesUsed += newRemap.ramBytesUsed();
+          for (int i : group.getValue()) {
+            final LongValues previousGlobalOrds = previous.getGlobalOrds(previousSegments[i]);
+            final LongValues segmentToPreviousOrds = remap == null
+                ? previousGlobalOrds
+                : ((RemappedOrds) previousGlobalOrds).segmentToPreviousOrds;
+            final int segmentIndex = segmentMap.oldToNew(i);
+            final RemappedOrds remapped = new RemappedOrds(segmentToPreviousOrds, newRemap);
+            reusedOrds[segmentIndex] = remapped;
+            reusedRamBytesUsed += remapped.ramBytesUsed();
+          }
+        } else {
+          // remap the ords of the segments
+          for (int i : group.getValue()) {
+            final LongValues previousGlobalOrds = previous.getGlobalOrds(previousSegments[i]);
+            final int segmentIndex = segmentMap.oldToNew(i);
+            final long valueCount = values[i].getValueCount();
+            for (long ord = 0; ord < valueCount; ++ord) {
+              deltas.map(segmentIndex, ord, previousToGlobalOrds.get(previousGlobalOrds.get(ord)));
             }
-            assert !it.hasNext();
-            segmentToGlobalOrds[i] = new LongValues() {
-              @Override
-              public long get(long ord) {
-                return ord + newDeltas.get((int) ord);
-              }
-            };
-            ramBytesUsed += newDeltas.ramBytesUsed();
-          } else {
-            segmentToGlobalOrds[i] = new LongValues() {
-              @Override
-              public long get(long ord) {
-                return ord + deltas.get(ord);
-              }
-            };
-            ramBytesUsed += deltas.ramBytesUsed();
           }
-          ramBytesUsed += RamUsageEstimator.shallowSizeOf(segmentToGlobalOrds[i]);
         }
       }
-      this.ramBytesUsed = ramBytesUsed;
+
+      return new OrdinalMap(owner, segmentMap, deltas, reusedOrds, reusedRamBytesUsed, acceptableOverheadRatio);
+    }
+
+    /** Returns <code>second(first(ord))</code> for every ord of <code>first</code>. */
+    private static PackedLongValues compose(PackedLongValues first, PackedLongValues second) {
+      final PackedLongValues.Builder composed = PackedLongValues.monotonicBuilder(PackedInts.COMPACT);
+      for (PackedLongValues.Iterator it = first.iterator(); it.hasNext(); ) {
+        composed.add(second.get(it.next()));
+      }
+      return composed.build();
+    }
+
+    /**
+     * Returns the global ord of <code>term</code> in <code>previous</code>,
+     * or <code>-1-insertionPoint</code> if it does not exist. Only ords that
+     * are greater than or equal to <code>from</code> are searched, with an
+     * exponential search so that terms that are close to <code>from</code>
+     * are found with few comparisons.
+     */
+    private static long seekPrevious(SortedSetDocValues[] values, OrdinalMap previous, int[] newSegments,
+        long from, BytesRef term) {
+      final long valueCount = previous.getValueCount();
+      long lo = from;
+      long hi = from;
+      long step = 1;
+      while (hi < valueCount) {
+        final int cmp = previousTerm(values, previous, newSegments, hi).compareTo(term);
+        if (cmp == 0) {
+          return hi;
+        } else if (cmp > 0) {
+          break;
+        }
+        lo = hi + 1;
+        hi += step;
+        step <<= 1;
+      }
+      hi = Math.min(hi, valueCount);
+      while (lo < hi) {
+        final long mid = (lo + hi) >>> 1;
+        final int cmp = previousTerm(values, previous, newSegments, mid).compareTo(term);
+        if (cmp < 0) {
+          lo = mid + 1;
+        } else if (cmp > 0) {
+          hi = mid;
+        } else {
+          return mid;
+        }
+      }
+      return -1 - lo;
+    }
+
+    private static BytesRef previousTerm(SortedSetDocValues[] values, OrdinalMap previous, int[] newSegments, long previousOrd) {
+      final int segment = newSegments[previous.getFirstSegmentNumber(previousOrd)];
+      return values[segment].lookupOrd(previous.getFirstSegmentOrd(previousOrd));
     }
 
     /** 
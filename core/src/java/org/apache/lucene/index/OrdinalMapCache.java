@@ -0,0 +1,324 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.apache.lucene.index.MultiDocValues.MultiSortedSetDocValues;
+import org.apache.lucene.index.MultiDocValues.OrdinalMap;
+import org.apache.lucene.util.ThreadInterruptedException;
+import org.apache.lucene.util.packed.PackedInts;
+
+/**
+ * Caches {@link OrdinalMap}s per top-level reader and field, so that global
+ * ordinals are computed once per reader instead of once per use.
+ * <p>
+ * The cache also remembers the last map that it built for every index and
+ * field: when a map is needed for a new reader that still contains all the
+ * segments of this map, which is the common case after a near-real-time reopen without
+ * merges, the new map is built incrementally with
+ * {@link OrdinalMap#build(Object, SortedSetDocValues[], OrdinalMap, int[], float)}:
+ * only the terms of the new segments are merged with the previous global
+ * terms. Readers that have the same segments as the previous map, eg. after
+ * deletions, reuse it as-is.
+ * <p>
+ * Entries are evicted when their top-level reader is closed. The last maps
+ * do not hold on their readers: they only keep the mappings, and weak
+ * references to the cores of the segments. They are keyed by the core of
+ * the first segment of their reader, so that indexes that have the same
+ * fields don't replace each other's maps, and are evicted when this core is
+ * closed.
+ *
+ * @lucene.experimental
+ */
+public abstract class OrdinalMapCache {
+
+  /** Cache over the {@link SortedSetDocValues}, or the {@link SortedDocValues},
+   *  of the field. */
+  public static final OrdinalMapCache DOC_VALUES = new OrdinalMapCache() {
+    @Override
+    protected SortedSetDocValues getLeafValues(AtomicReader reader, String field) throws IOException {
+      final SortedSetDocValues values = reader.getSortedSetDocValues(field);
+      if (values != null) {
+        return values;
+      }
+      final SortedDocValues sorted = reader.getSortedDocValues(field);
+      return sorted == null ? null : DocValues.singleton(sorted);
+    }
+  };
+
+  /** The map of a top-level reader and field, which is the future of the
+   *  map while it is being built. */
+  private static final class Entry extends FutureTask<OrdinalMap> {
+    Entry(Callable<OrdinalMap> builder) {
+      super(builder);
+    }
+
+    /** Returns the map, waiting for it to be built if necessary. */
+    OrdinalMap getMap() throws IOException {
+      try {
+        return get();
+      } catch (InterruptedException ie) {
+        throw new ThreadInterruptedException(ie);
+      } catch (ExecutionException ee) {
+        final Throwable cause = ee.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        } else {
+          throw new RuntimeException(cause);
+        }
+      }
+    }
+  }
+
+  /** The last map built for a field, and the segments it was built over. */
+  private static final class LastMap {
+    // core cache keys of the leaves, weak so that the last map does not hold on closed segments
+    final WeakReference<?>[] coreKeys;
+    // a copy of the map without owner, so that the last map does not hold on its top-level reader
+    final OrdinalMap map;
+
+    LastMap(List<AtomicReaderContext> leaves, OrdinalMap map) {
+      coreKeys = new WeakReference<?>[leaves.size()];
+      for (int i = 0; i < coreKeys.length; ++i) {
+        coreKeys[i] = new WeakReference<>(leaves.get(i).reader().getCoreCacheKey());
+      }
+      this.map = new OrdinalMap(map, null);
+    }
+  }
+
+  private final float acceptableOverheadRatio;
+  // top-level reader -> field -> entry
+  private final Map<Object,ConcurrentMap<String,Entry>> cache = new ConcurrentHashMap<>();
+  // core cache key of the first leaf -> field -> last built map
+  private final Map<Object,ConcurrentMap<String,LastMap>> lastMaps = new ConcurrentHashMap<>();
+
+  private final IndexReader.ReaderClosedListener purgeListener = new IndexReader.ReaderClosedListener() {
+    @Override
+    public void onClose(IndexReader reader) {
+      cache.remove(reader.getCoreCacheKey());
+    }
+  };
+
+  private final AtomicReader.CoreClosedListener purgeCoreListener = new AtomicReader.CoreClosedListener() {
+    @Override
+    public void onClose(Object ownerCoreCacheKey) {
+      lastMaps.remove(ownerCoreCacheKey);
+    }
+  };
+
+  /** Sole constructor, using {@link PackedInts#DEFAULT} as the acceptable
+   *  overhead ratio of the segment to global ords mappings. */
+  protected OrdinalMapCache() {
+    this(PackedInts.DEFAULT);
+  }
+
+  /** Creates a cache with the given acceptable overhead ratio for the
+   *  segment to global ords mappings. */
+  protected OrdinalMapCache(float acceptableOverheadRatio) {
+    this.acceptableOverheadRatio = acceptableOverheadRatio;
+  }
+
+  /** Returns the values of the given leaf, or null if it has none. The ords
+   *  of a leaf must only depend on its core. */
+  protected abstract SortedSetDocValues getLeafValues(AtomicReader reader, String field) throws IOException;
+
+  /** Returns the ordinal map of <code>field</code> over the leaves of
+   *  <code>reader</code>, or null if <code>reader</code> has less than two
+   *  leaves, in which case segment ords are global ords. A map is only built
+   *  once per reader and field: concurrent callers wait for the thread that
+   *  builds it, while maps of other readers or fields are built in
+   *  parallel. */
+  public OrdinalMap getOrdinalMap(IndexReader reader, final String field) throws IOException {
+    final List<AtomicReaderContext> leaves = reader.leaves();
+    if (leaves.size() <= 1) {
+      return null;
+    }
+    final Object key = reader.getCoreCacheKey();
+    ConcurrentMap<String,Entry> entries = cache.get(key);
+    if (entries == null) {
+      synchronized (cache) {
+        entries = cache.get(key);
+        if (entries == null) {
+          entries = new ConcurrentHashMap<>();
+          reader.addReaderClosedListener(purgeListener);
+          cache.put(key, entries);
+        }
+      }
+    }
+    Entry entry = entries.get(field);
+    if (entry == null) {
+      final Entry newEntry = new Entry(new Callable<OrdinalMap>() {
+        @Override
+        public OrdinalMap call() throws IOException {
+          return buildOrdinalMap(leaves, field, key);
+        }
+      });
+      entry = entries.putIfAbsent(field, newEntry);
+      if (entry == null) {
+        // we won the race, build the map in this thread while others wait
+        newEntry.run();
+        final OrdinalMap map;
+        try {
+          map = newEntry.getMap();
+        } catch (IOException | RuntimeException | Error e) {
+          // building failed: remove the entry so that the next call retries
+          entries.remove(field, newEntry);
+          throw e;
+        }
+        putLastMap(leaves, field, map);
+        return map;
+      }
+    }
+    return entry.getMap();
+  }
+
+  /** Returns the top-level values of <code>field</code> over the leaves of
+   *  <code>reader</code>, backed by the cached ordinal map. Returns null if no
+   *  leaf has values for this field. */
+  public SortedSetDocValues getValues(IndexReader reader, String field) throws IOException {
+    final List<AtomicReaderContext> leaves = reader.leaves();
+    final int size = leaves.size();
+    if (size == 0) {
+      return null;
+    } else if (size == 1) {
+      return getLeafValues(leaves.get(0).reader(), field);
+    }
+
+    boolean anyReal = false;
+    final SortedSetDocValues[] values = new SortedSetDocValues[size];
+    final int[] starts = new int[size+1];
+    for (int i = 0; i < size; i++) {
+      AtomicReaderContext context = leaves.get(i);
+      SortedSetDocValues v = getLeafValues(context.reader(), field);
+      if (v == null) {
+        v = DocValues.emptySortedSet();
+      } else {
+        anyReal = true;
+      }
+      values[i] = v;
+      starts[i] = context.docBase;
+    }
+    starts[size] = reader.maxDoc();
+
+    if (!anyReal) {
+      return null;
+    }
+    return new MultiSortedSetDocValues(values, starts, getOrdinalMap(reader, field));
+  }
+
+  private OrdinalMap buildOrdinalMap(List<AtomicReaderContext> leaves, String field, Object owner) throws IOException {
+    final SortedSetDocValues[] values = new SortedSetDocValues[leaves.size()];
+    for (int i = 0; i < values.length; ++i) {
+      final SortedSetDocValues v = getLeafValues(leaves.get(i).reader(), field);
+      values[i] = v == null ? DocValues.emptySortedSet() : v;
+    }
+
+    final Map<String,LastMap> fieldLastMaps = lastMaps.get(leaves.get(0).reader().getCoreCacheKey());
+    final LastMap last = fieldLastMaps == null ? null : fieldLastMaps.get(field);
+    if (last != null) {
+      final int[] previousSegments = previousSegments(leaves, last);
+      if (previousSegments != null) {
+        boolean sameSegments = previousSegments.length == last.coreKeys.length;
+        for (int i = 0; i < previousSegments.length && sameSegments; ++i) {
+          sameSegments = previousSegments[i] == i;
+        }
+        if (sameSegments) {
+          // eg. only deletions changed
+          return new OrdinalMap(last.map, owner);
+        }
+        return OrdinalMap.build(owner, values, last.map, previousSegments, acceptableOverheadRatio);
+      }
+    }
+    return OrdinalMap.build(owner, values, acceptableOverheadRatio);
+  }
+
+  private void putLastMap(List<AtomicReaderContext> leaves, String field, OrdinalMap map) {
+    final AtomicReader firstLeaf = leaves.get(0).reader();
+    final Object key = firstLeaf.getCoreCacheKey();
+    ConcurrentMap<String,LastMap> fieldLastMaps = lastMaps.get(key);
+    if (fieldLastMaps == null) {
+      synchronized (lastMaps) {
+        fieldLastMaps = lastMaps.get(key);
+        if (fieldLastMaps == null) {
+          fieldLastMaps = new ConcurrentHashMap<>();
+          firstLeaf.addCoreClosedListener(purgeCoreListener);
+          lastMaps.put(key, fieldLastMaps);
+        }
+      }
+    }
+    fieldLastMaps.put(field, new LastMap(leaves, map));
+  }
+
+  /** Returns the index of every leaf in the segments of <code>last</code>, or
+   *  -1 for new leaves, or null if some segments of <code>last</code> are
+   *  gone. */
+  private static int[] previousSegments(List<AtomicReaderContext> leaves, LastMap last) {
+    final Map<Object,Integer> previousIndexes = new HashMap<>();
+    for (int i = 0; i < last.coreKeys.length; ++i) {
+      final Object coreKey = last.coreKeys[i].get();
+      if (coreKey == null) {
+        // segment is gone
+        return null;
+      }
+      previousIndexes.put(coreKey, i);
+    }
+    final int[] previousSegments = new int[leaves.size()];
+    int numPrevious = 0;
+    for (int i = 0; i < previousSegments.length; ++i) {
+      final Integer previousIndex = previousIndexes.get(leaves.get(i).reader().getCoreCacheKey());
+      if (previousIndex == null) {
+        previousSegments[i] = -1;
+      } else {
+        previousSegments[i] = previousIndex;
+        numPrevious++;
+      }
+    }
+    return numPrevious == previousIndexes.size() ? previousSegments : null;
+  }
+
+  /** Returns the number of top-level readers that have cached maps. */
+  public int size() {
+    return cache.size();
+  }
+
+  /** Returns the number of indexes that have last built maps. */
+  int lastMapsSize() {
+    return lastMaps.size();
+  }
+
+  /** Forgets all cached maps, including the last built maps that are kept to
+   *  be reused by future readers. */
+  public void purgeAllCaches() {
+    cache.clear();
+    lastMaps.clear();
+  }
+}
@@ -85,7 +85,7 @@ final class TermVectorsConsumer extends TermsHash {
   private void initTermVectorsWriter() throws IOException {
     if (writer == null) {
       IOContext context = new IOContext(new FlushInfo(docWriter.getNumDocsInRAM(), docWriter.bytesUsed()));
-      writer = docWriter.codec.termVectorsFormat().vectorsWriter(docWriter.directory, docWriter.getSegmentInfo(), context);
+      writer = docWriter.codec.termVectorsFormat().vectorsWriter(docWriter.segmentDirectory, docWriter.getSegmentInfo(), context);
       lastDocID = 0;
     }
   }
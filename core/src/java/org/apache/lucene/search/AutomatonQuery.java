@@ -22,8 +22,10 @@ import java.io.IOException;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.AttributeSource;
 import org.apache.lucene.util.ToStringUtils;
+import org.apache.lucene.util.automaton.AutomataCache;
 import org.apache.lucene.util.automaton.Automaton;
 import org.apache.lucene.util.automaton.CompiledAutomaton;
 
@@ -46,7 +48,8 @@ import org.apache.lucene.util.automaton.CompiledAutomaton;
  * @lucene.experimental
  */
 public class AutomatonQuery extends MultiTermQuery {
-  /** the automaton to match index terms against */
+  /** the automaton to match index terms against; queries built from the
+   *  same pattern may share it, so it must not be modified */
   protected final Automaton automaton;
   protected final CompiledAutomaton compiled;
   /** term containing the field, and possibly some pattern structure */
@@ -67,6 +70,14 @@ public class AutomatonQuery extends MultiTermQuery {
     this.compiled = new CompiledAutomaton(automaton);
   }
 
+  /** Creates a query over an automaton that has already been compiled. */
+  AutomatonQuery(final Term term, CachedAutomaton cached) {
+    super(term.field());
+    this.term = term;
+    this.automaton = cached.automaton;
+    this.compiled = cached.compiled;
+  }
+
   @Override
   protected TermsEnum getTermsEnum(Terms terms, AttributeSource atts) throws IOException {
     return compiled.getTermsEnum(terms);
@@ -116,8 +127,77 @@ public class AutomatonQuery extends MultiTermQuery {
     return buffer.toString();
   }
   
-  /** Returns the automaton used to create this query */
+  /** Returns a copy of the automaton used to create this query, which can
+   *  be modified without affecting this query or other queries that were
+   *  built from the same pattern. */
   public Automaton getAutomaton() {
-    return automaton;
+    final Automaton copy = new Automaton();
+    copy.copy(automaton);
+    return copy;
+  }
+
+  /** Default value of {@link #setAutomataCacheMaxRamBytes}: 8 MB. */
+  public static final long DEFAULT_AUTOMATA_CACHE_MAX_RAM_BYTES = 8 * 1024 * 1024;
+
+  /** LRU cache of compiled automata, keyed by query class, pattern and
+   *  flags. Compiled automata are immutable, so they can be shared by
+   *  concurrent queries. */
+  static final AutomataCache<CacheKey,CachedAutomaton> AUTOMATA_CACHE = new AutomataCache<>(DEFAULT_AUTOMATA_CACHE_MAX_RAM_BYTES);
+
+  /**
+   * Sets the maximum memory usage of the compiled automata that are kept
+   * across {@link RegexpQuery} and {@link WildcardQuery} instances, so that
+   * patterns that are searched often are only parsed and determinized once.
+   * Least recently used patterns are evicted first. 0 disables the cache.
+   */
+  public static void setAutomataCacheMaxRamBytes(long maxRamBytes) {
+    AUTOMATA_CACHE.setMaxRamBytes(maxRamBytes);
+  }
+
+  /** Returns the maximum memory usage of the cached automata.
+   *  @see #setAutomataCacheMaxRamBytes */
+  public static long getAutomataCacheMaxRamBytes() {
+    return AUTOMATA_CACHE.getMaxRamBytes();
+  }
+
+  /** An automaton and its compiled form. */
+  static final class CachedAutomaton implements Accountable {
+    final Automaton automaton;
+    final CompiledAutomaton compiled;
+
+    CachedAutomaton(Automaton automaton) {
+      this.automaton = automaton;
+      this.compiled = new CompiledAutomaton(automaton);
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return automaton.ramBytesUsed() + compiled.ramBytesUsed();
+    }
+  }
+
+  /** Key of {@link #AUTOMATA_CACHE}. */
+  static final class CacheKey {
+    final Class<?> queryClass;
+    final String pattern;
+    final int flags;
+
+    CacheKey(Class<?> queryClass, String pattern, int flags) {
+      this.queryClass = queryClass;
+      this.pattern = pattern;
+      this.flags = flags;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof CacheKey)) return false;
+      final CacheKey other = (CacheKey) obj;
+      return queryClass == other.queryClass && pattern.equals(other.pattern) && flags == other.flags;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * queryClass.hashCode() + pattern.hashCode()) + flags;
+    }
   }
 }
@@ -175,5 +175,21 @@ public abstract class Collector {
    * here.
    */
 	public abstract boolean acceptsDocsOutOfOrder();
+
+  /**
+   * Expert: optionally returns an iterator over the docs of the current
+   * segment that may still be collected, so that scorers can skip over
+   * docs that this collector would ignore anyway. The iterator may skip
+   * more docs as collection goes on, and scorers only use it to decide
+   * which docs to skip: docs it returns may still be ignored by
+   * {@link #collect(int)}. This is called after {@link #setScorer(Scorer)}.
+   * <p>
+   * The default implementation returns <tt>null</tt>, meaning that all
+   * docs must be collected.
+   * @lucene.experimental
+   */
+  public DocIdSetIterator competitiveIterator() throws IOException {
+    return null;
+  }
   
 }
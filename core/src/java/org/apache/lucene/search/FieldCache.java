@@ -19,6 +19,7 @@ package org.apache.lucene.search;
 
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.Map;
 
 import org.apache.lucene.analysis.NumericTokenStream;
 import org.apache.lucene.document.DoubleField;
@@ -43,6 +44,10 @@ import org.apache.lucene.util.RamUsageEstimator;
 /**
  * Expert: Maintains caches of term values.
  *
+ * <p>The cache reports the memory usage of all cached values through
+ * {@link #ramBytesUsed()}, and can be given a memory budget with
+ * {@link #setMaxRamBytes(long)}.
+ *
  * <p>Created: May 19, 2004 11:13:14 AM
  *
  * @since   lucene 1.4
@@ -50,7 +55,7 @@ import org.apache.lucene.util.RamUsageEstimator;
  *
  * @lucene.internal
  */
-public interface FieldCache {
+public interface FieldCache extends Accountable {
 
   /** Field values as 8-bit signed bytes */
   public static abstract class Bytes {
@@ -798,6 +803,28 @@ public interface FieldCache {
    */
   public void purgeByCacheKey(Object coreCacheKey);
 
+  /**
+   * Returns the memory usage of the cached values of every field, summed
+   * over all readers and value types.
+   * @lucene.experimental
+   */
+  public Map<String,Accountable> getRamUsageByField();
+
+  /**
+   * Expert: sets the maximum memory usage of the cached values, in bytes.
+   * When creating a value takes the cache over this budget, the least
+   * recently used values are dropped from the cache until it fits again;
+   * the value that was just created is always kept. Dropped values are
+   * created again the next time they are needed, so a budget that is too
+   * small for the working set of a searcher makes searches slow. The
+   * default is {@link Long#MAX_VALUE}, which never evicts.
+   * @lucene.experimental
+   */
+  public void setMaxRamBytes(long maxRamBytes);
+
+  /** counterpart of {@link #setMaxRamBytes(long)} */
+  public long getMaxRamBytes();
+
   /**
    * If non-null, FieldCacheImpl will warn whenever
    * entries are created that are not sane according to
@@ -20,10 +20,19 @@ package org.apache.lucene.search;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.lucene.index.AtomicReader;
 import org.apache.lucene.index.BinaryDocValues;
@@ -41,29 +50,39 @@ import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.CollectionUtil;
 import org.apache.lucene.util.FieldCacheSanityChecker;
 import org.apache.lucene.util.FixedBitSet;
 import org.apache.lucene.util.PagedBytes;
 import org.apache.lucene.util.RamUsageEstimator;
+import org.apache.lucene.util.ThreadInterruptedException;
+import org.apache.lucene.util.WeakIdentityMap;
 import org.apache.lucene.util.packed.GrowableWriter;
 import org.apache.lucene.util.packed.PackedInts;
 import org.apache.lucene.util.packed.PackedLongValues;
 
 /**
  * Expert: The default cache implementation, storing all values in memory.
- * A WeakHashMap is used for storage.
+ * Values are stored per core cache key in a weak identity map, and every
+ * value is created by a single thread while other threads that need it
+ * wait, without blocking threads that look up other values. Entries are
+ * evicted in least-recently-used order when the total memory usage goes
+ * above {@link #setMaxRamBytes(long)}.
  *
  * @since   lucene 1.4
  */
 class FieldCacheImpl implements FieldCache {
 
-	private Map<Class<?>, Cache> caches;
+  private final Map<Class<?>, Cache> caches;
+  // values can be shared by several entries, eg. when they were asked
+  // for with and without a parser, so they are accounted once: this maps
+  // every accounted value to its number of entries and its size
+  private final Map<Accountable,long[]> accountedValues = new IdentityHashMap<>();
+  private final AtomicLong ramBytesUsed = new AtomicLong();
+  private volatile long maxRamBytes = Long.MAX_VALUE;
+  private final Object evictionLock = new Object();
 
 	FieldCacheImpl() {
-		init();
-	}
-
-	private synchronized void init() {
 		caches = new HashMap<>(9);
 		caches.put(Byte.TYPE, new ByteCache(this));
 		caches.put(Short.TYPE, new ShortCache(this));
@@ -75,36 +94,39 @@ class FieldCacheImpl implements FieldCache {
 		caches.put(SortedDocValues.class, new SortedDocValuesCache(this));
 		caches.put(DocTermOrds.class, new DocTermOrdsCache(this));
 		caches.put(DocsWithFieldCache.class, new DocsWithFieldCache(this));
+		caches.put(NumericBlockBounds.class, new NumericBlockBoundsCache(this));
 	}
 
   @Override
-  public synchronized void purgeAllCaches() {
-    init();
+  public void purgeAllCaches() {
+    for(Cache c : caches.values()) {
+      c.purgeAll();
+    }
   }
 
   @Override
-  public synchronized void purgeByCacheKey(Object coreCacheKey) {
+  public void purgeByCacheKey(Object coreCacheKey) {
     for(Cache c : caches.values()) {
       c.purgeByCacheKey(coreCacheKey);
     }
   }
 
   @Override
-  public synchronized CacheEntry[] getCacheEntries() {
+  public CacheEntry[] getCacheEntries() {
     List<CacheEntry> result = new ArrayList<>(17);
     for(final Map.Entry<Class<?>,Cache> cacheEntry: caches.entrySet()) {
       final Cache cache = cacheEntry.getValue();
       final Class<?> cacheType = cacheEntry.getKey();
-      synchronized(cache.readerCache) {
-        for (final Map.Entry<Object,Map<CacheKey, Accountable>> readerCacheEntry : cache.readerCache.entrySet()) {
-          final Object readerKey = readerCacheEntry.getKey();
-          if (readerKey == null) continue;
-          final Map<CacheKey, Accountable> innerCache = readerCacheEntry.getValue();
-          for (final Map.Entry<CacheKey, Accountable> mapEntry : innerCache.entrySet()) {
-            CacheKey entry = mapEntry.getKey();
-            result.add(new CacheEntry(readerKey, entry.field,
-                                      cacheType, entry.custom,
-                                      mapEntry.getValue()));
+      for (Iterator<Object> it = cache.readerCache.keyIterator(); it.hasNext(); ) {
+        final Object readerKey = it.next();
+        final EntryMap innerCache = cache.readerCache.get(readerKey);
+        if (innerCache == null) continue;
+        for (final Entry entry : innerCache.values()) {
+          final Accountable value = entry.getIfDone();
+          if (value != null) {
+            result.add(new CacheEntry(readerKey, entry.key.field,
+                                      cacheType, entry.key.custom,
+                                      value));
           }
         }
       }
@@ -112,6 +134,146 @@ class FieldCacheImpl implements FieldCache {
     return result.toArray(new CacheEntry[result.size()]);
   }
 
+  @Override
+  public long ramBytesUsed() {
+    return ramBytesUsed.get();
+  }
+
+  @Override
+  public Map<String,Accountable> getRamUsageByField() {
+    final Map<String,Set<Accountable>> values = new HashMap<>();
+    for (Cache cache : caches.values()) {
+      for (Iterator<EntryMap> it = cache.readerCache.valueIterator(); it.hasNext(); ) {
+        for (Entry entry : it.next().values()) {
+          final Accountable value = entry.accountedValue();
+          if (value != null) {
+            Set<Accountable> fieldValues = values.get(entry.key.field);
+            if (fieldValues == null) {
+              fieldValues = Collections.newSetFromMap(new IdentityHashMap<Accountable,Boolean>());
+              values.put(entry.key.field, fieldValues);
+            }
+            fieldValues.add(value);
+          }
+        }
+      }
+    }
+    final Map<String,Accountable> result = new HashMap<>(values.size());
+    for (Map.Entry<String,Set<Accountable>> fieldValues : values.entrySet()) {
+      long bytes = 0;
+      for (Accountable value : fieldValues.getValue()) {
+        bytes += value.ramBytesUsed();
+      }
+      final long fieldRamBytesUsed = bytes;
+      result.put(fieldValues.getKey(), new Accountable() {
+        @Override
+        public long ramBytesUsed() {
+          return fieldRamBytesUsed;
+        }
+      });
+    }
+    return result;
+  }
+
+  @Override
+  public void setMaxRamBytes(long maxRamBytes) {
+    if (maxRamBytes < 0) {
+      throw new IllegalArgumentException("maxRamBytes must be >= 0, got " + maxRamBytes);
+    }
+    this.maxRamBytes = maxRamBytes;
+    evictIfNeeded(null);
+  }
+
+  @Override
+  public long getMaxRamBytes() {
+    return maxRamBytes;
+  }
+
+  private void acquire(Accountable value) {
+    synchronized (accountedValues) {
+      long[] refCountAndBytes = accountedValues.get(value);
+      if (refCountAndBytes == null) {
+        refCountAndBytes = new long[] {0, value.ramBytesUsed()};
+        accountedValues.put(value, refCountAndBytes);
+        ramBytesUsed.addAndGet(refCountAndBytes[1]);
+      }
+      refCountAndBytes[0]++;
+    }
+  }
+
+  private void release(Accountable value) {
+    synchronized (accountedValues) {
+      final long[] refCountAndBytes = accountedValues.get(value);
+      assert refCountAndBytes != null && refCountAndBytes[0] > 0;
+      if (--refCountAndBytes[0] == 0) {
+        accountedValues.remove(value);
+        ramBytesUsed.addAndGet(-refCountAndBytes[1]);
+      }
+    }
+  }
+
+  /** Accounts for a new value, and evicts least recently used entries
+   *  other than <code>entry</code> if memory usage is above the budget. */
+  void onCreated(Entry entry) {
+    if (entry.account()) {
+      if (entry.owner.purged) {
+        // the reader was purged concurrently
+        entry.release();
+      } else {
+        evictIfNeeded(entry);
+      }
+    }
+  }
+
+  private void evictIfNeeded(Entry keep) {
+    if (ramBytesUsed.get() <= maxRamBytes) {
+      return;
+    }
+    synchronized (evictionLock) {
+      if (ramBytesUsed.get() <= maxRamBytes) {
+        return;
+      }
+      final Accountable keepValue = keep == null ? null : keep.accountedValue();
+      final List<EvictionCandidate> candidates = new ArrayList<>();
+      for (Cache cache : caches.values()) {
+        for (Iterator<EntryMap> it = cache.readerCache.valueIterator(); it.hasNext(); ) {
+          for (Entry entry : it.next().values()) {
+            final Accountable value = entry.accountedValue();
+            if (value != null && value != keepValue) {
+              candidates.add(new EvictionCandidate(entry));
+            }
+          }
+        }
+      }
+      CollectionUtil.timSort(candidates, new Comparator<EvictionCandidate>() {
+        @Override
+        public int compare(EvictionCandidate c1, EvictionCandidate c2) {
+          return Long.compare(c1.lastAccess, c2.lastAccess);
+        }
+      });
+      for (EvictionCandidate candidate : candidates) {
+        if (ramBytesUsed.get() <= maxRamBytes) {
+          break;
+        }
+        final Entry entry = candidate.entry;
+        if (entry.owner.remove(entry.key, entry)) {
+          entry.release();
+        }
+      }
+    }
+  }
+
+  // entries are sorted on a snapshot of their last access time, since
+  // it can change concurrently
+  private static final class EvictionCandidate {
+    final Entry entry;
+    final long lastAccess;
+
+    EvictionCandidate(Entry entry) {
+      this.entry = entry;
+      this.lastAccess = entry.lastAccess;
+    }
+  }
+
   // per-segment fieldcaches don't purge until the shared core closes.
   final SegmentReader.CoreClosedListener purgeCore = new SegmentReader.CoreClosedListener() {
     @Override
@@ -145,6 +307,89 @@ class FieldCacheImpl implements FieldCache {
     }
   }
 
+  /** Expert: The entries of a single reader. */
+  static final class EntryMap extends ConcurrentHashMap<CacheKey,Entry> {
+    volatile boolean purged;
+  }
+
+  /** Expert: A cache entry, which is the future of its value while the
+   *  value is being created. */
+  static final class Entry extends FutureTask<Accountable> {
+    final FieldCacheImpl wrapper;
+    final EntryMap owner;
+    final CacheKey key;
+    volatile long lastAccess;
+    private Accountable accounted;
+    private boolean released;
+
+    Entry(FieldCacheImpl wrapper, EntryMap owner, CacheKey key, Callable<Accountable> creator) {
+      super(creator);
+      this.wrapper = wrapper;
+      this.owner = owner;
+      this.key = key;
+    }
+
+    /** Returns the value, waiting for it to be created if necessary. */
+    Accountable getValue() throws IOException {
+      try {
+        return get();
+      } catch (InterruptedException ie) {
+        throw new ThreadInterruptedException(ie);
+      } catch (ExecutionException ee) {
+        final Throwable cause = ee.getCause();
+        if (cause instanceof IOException) {
+          throw (IOException) cause;
+        } else if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        } else if (cause instanceof Error) {
+          throw (Error) cause;
+        } else {
+          throw new RuntimeException(cause);
+        }
+      }
+    }
+
+    /** Returns the value if it has been created successfully, or null. */
+    Accountable getIfDone() {
+      if (isDone()) {
+        try {
+          return getValue();
+        } catch (IOException | RuntimeException e) {
+          // creation failed, the creating thread will remove this entry
+        }
+      }
+      return null;
+    }
+
+    /** Adds the value to the memory usage of the cache, unless this entry
+     *  has already been released. */
+    synchronized boolean account() {
+      if (released || accounted != null) {
+        return false;
+      }
+      accounted = getIfDone();
+      if (accounted == null) {
+        return false;
+      }
+      wrapper.acquire(accounted);
+      return true;
+    }
+
+    /** Removes the value from the memory usage of the cache. */
+    synchronized void release() {
+      if (accounted != null) {
+        wrapper.release(accounted);
+        accounted = null;
+      }
+      released = true;
+    }
+
+    /** Returns the value if it is accounted for, or null. */
+    synchronized Accountable accountedValue() {
+      return accounted;
+    }
+  }
+
   /** Expert: Internal cache. */
 	abstract static class Cache {
 
@@ -154,82 +399,105 @@ class FieldCacheImpl implements FieldCache {
 
 		final FieldCacheImpl wrapper;
 
-    final Map<Object,Map<CacheKey,Accountable>> readerCache = new WeakHashMap<>();
+    final WeakIdentityMap<Object,EntryMap> readerCache = WeakIdentityMap.newConcurrentHashMap();
     
     protected abstract Accountable createValue(AtomicReader reader, CacheKey key, boolean setDocsWithField)
         throws IOException;
 
     /** Remove this reader from the cache, if present. */
     public void purgeByCacheKey(Object coreCacheKey) {
-      synchronized(readerCache) {
-        readerCache.remove(coreCacheKey);
+      release(readerCache.remove(coreCacheKey));
+    }
+
+    /** Remove all readers from the cache. */
+    void purgeAll() {
+      for (Iterator<Object> it = readerCache.keyIterator(); it.hasNext(); ) {
+        purgeByCacheKey(it.next());
       }
     }
 
-    /** Sets the key to the value for the provided reader;
-     *  if the key is already set then this doesn't change it. */
-    public void put(AtomicReader reader, CacheKey key, Accountable value) {
-      final Object readerKey = reader.getCoreCacheKey();
-      synchronized (readerCache) {
-        Map<CacheKey,Accountable> innerCache = readerCache.get(readerKey);
-        if (innerCache == null) {
-          // First time this reader is using FieldCache
-          innerCache = new HashMap<>();
-          readerCache.put(readerKey, innerCache);
-          wrapper.initReader(reader);
-        }
-        if (innerCache.get(key) == null) {
-          innerCache.put(key, value);
-        } else {
-          // Another thread beat us to it; leave the current
-          // value
+    private static void release(EntryMap innerCache) {
+      if (innerCache != null) {
+        innerCache.purged = true;
+        for (Entry entry : innerCache.values()) {
+          entry.release();
         }
       }
     }
 
-		public Accountable get(AtomicReader reader, CacheKey key, boolean setDocsWithField) throws IOException {
-			Map<CacheKey, Accountable> innerCache;
-      Accountable value;
+    private EntryMap getInnerCache(AtomicReader reader) {
       final Object readerKey = reader.getCoreCacheKey();
-      synchronized (readerCache) {
-        innerCache = readerCache.get(readerKey);
-        if (innerCache == null) {
-          // First time this reader is using FieldCache
-          innerCache = new HashMap<>();
-          readerCache.put(readerKey, innerCache);
-          wrapper.initReader(reader);
-          value = null;
-        } else {
-          value = innerCache.get(key);
+      EntryMap innerCache = readerCache.get(readerKey);
+      if (innerCache == null) {
+        synchronized (readerCache) {
+          innerCache = readerCache.get(readerKey);
+          if (innerCache == null) {
+            // First time this reader is using FieldCache
+            innerCache = new EntryMap();
+            readerCache.put(readerKey, innerCache);
+            wrapper.initReader(reader);
+          }
         }
-        if (value == null) {
-          value = new CreationPlaceholder();
-          innerCache.put(key, value);
+      }
+      return innerCache;
+    }
+
+    /** Sets the key to the value for the provided reader;
+     *  if the key is already set then this doesn't change it. */
+    public void put(AtomicReader reader, CacheKey key, final Accountable value) {
+      final EntryMap innerCache = getInnerCache(reader);
+      final Entry entry = new Entry(wrapper, innerCache, key, new Callable<Accountable>() {
+        @Override
+        public Accountable call() {
+          return value;
         }
+      });
+      entry.run();
+      entry.lastAccess = System.nanoTime();
+      if (innerCache.putIfAbsent(key, entry) == null) {
+        wrapper.onCreated(entry);
+      } else {
+        // Another thread beat us to it; leave the current
+        // value
       }
-      if (value instanceof CreationPlaceholder) {
-        synchronized (value) {
-          CreationPlaceholder progress = (CreationPlaceholder) value;
-          if (progress.value == null) {
-            progress.value = createValue(reader, key, setDocsWithField);
-            synchronized (readerCache) {
-              innerCache.put(key, progress.value);
-            }
+    }
 
+		public Accountable get(final AtomicReader reader, final CacheKey key, final boolean setDocsWithField) throws IOException {
+      final EntryMap innerCache = getInnerCache(reader);
+      Entry entry = innerCache.get(key);
+      if (entry == null) {
+        final Entry newEntry = new Entry(wrapper, innerCache, key, new Callable<Accountable>() {
+          @Override
+          public Accountable call() throws IOException {
+            return createValue(reader, key, setDocsWithField);
+          }
+        });
+        entry = innerCache.putIfAbsent(key, newEntry);
+        if (entry == null) {
+          // we won the race, create the value in this thread while others wait
+          entry = newEntry;
+          entry.lastAccess = System.nanoTime();
+          entry.run();
+          final Accountable value = entry.getIfDone();
+          if (value == null) {
+            // creation failed: remove the entry so that the next call retries
+            innerCache.remove(key, entry);
+          } else {
+            wrapper.onCreated(entry);
             // Only check if key.custom (the parser) is
             // non-null; else, we check twice for a single
             // call to FieldCache.getXXX
             if (key.custom != null && wrapper != null) {
               final PrintStream infoStream = wrapper.getInfoStream();
               if (infoStream != null) {
-                printNewInsanity(infoStream, progress.value);
+                printNewInsanity(infoStream, value);
               }
             }
           }
-          return progress.value;
         }
       }
-      return value;
+      entry.lastAccess = System.nanoTime();
+      return entry.getValue();
     }
 
     private void printNewInsanity(PrintStream infoStream, Object value) {
@@ -1506,6 +1774,69 @@ class FieldCacheImpl implements FieldCache {
     }
   }
 
+  NumericBlockBounds getNumericBlockBounds(AtomicReader reader, String field, SortField.Type type,
+      Parser parser, Number missingValue) throws IOException {
+    final CacheKey key = new CacheKey(field, new NumericBlockBoundsKey(type, parser, missingValue));
+    return (NumericBlockBounds) caches.get(NumericBlockBounds.class).get(reader, key, false);
+  }
+
+  /** The value type, parser and missing value of cached {@link NumericBlockBounds}. */
+  static final class NumericBlockBoundsKey {
+    final SortField.Type type;
+    final Parser parser;
+    final Number missingValue;
+
+    NumericBlockBoundsKey(SortField.Type type, Parser parser, Number missingValue) {
+      this.type = type;
+      this.parser = parser;
+      this.missingValue = missingValue;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (o instanceof NumericBlockBoundsKey) {
+        final NumericBlockBoundsKey other = (NumericBlockBoundsKey) o;
+        return type == other.type
+            && (parser == null ? other.parser == null : parser.equals(other.parser))
+            && (missingValue == null ? other.missingValue == null : missingValue.equals(other.missingValue));
+      }
+      return false;
+    }
+
+    @Override
+    public int hashCode() {
+      int h = type.hashCode();
+      h = 31 * h + (parser == null ? 0 : parser.hashCode());
+      h = 31 * h + (missingValue == null ? 0 : missingValue.hashCode());
+      return h;
+    }
+
+    @Override
+    public String toString() {
+      return type + "," + parser + "," + missingValue;
+    }
+  }
+
+  static final class NumericBlockBoundsCache extends Cache {
+    NumericBlockBoundsCache(FieldCacheImpl wrapper) {
+      super(wrapper);
+    }
+
+    @Override
+    protected Accountable createValue(AtomicReader reader, CacheKey key, boolean setDocsWithField /* ignored */)
+        throws IOException {
+      final NumericBlockBoundsKey boundsKey = (NumericBlockBoundsKey) key.custom;
+      switch (boundsKey.type) {
+        case INT:
+          return NumericBlockBounds.buildIntBounds(reader, key.field, (IntParser) boundsKey.parser, (Integer) boundsKey.missingValue);
+        case LONG:
+          return NumericBlockBounds.buildLongBounds(reader, key.field, (LongParser) boundsKey.parser, (Long) boundsKey.missingValue);
+        default:
+          throw new IllegalArgumentException("unsupported type: " + boundsKey.type);
+      }
+    }
+  }
+
   private volatile PrintStream infoStream;
 
   public void setInfoStream(PrintStream stream) {
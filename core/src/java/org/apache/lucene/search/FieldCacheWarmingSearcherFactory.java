@@ -0,0 +1,134 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.index.AtomicReaderContext;
+import org.apache.lucene.index.IndexReader;
+
+/**
+ * A {@link SearcherFactory} that loads the {@link FieldCache} entries of
+ * configured fields into every new searcher, so that the first sorted
+ * searches after a reopen don't have to uninvert these fields.
+ * <p>
+ * If an {@link Executor} is given, every segment and field is loaded by
+ * a separate task of the executor and {@link #newSearcher(IndexReader)}
+ * returns immediately: searches that need a field before its task ran
+ * load it themselves, and other threads that need the same field wait for
+ * them rather than loading it again. Otherwise fields are loaded before
+ * {@link #newSearcher(IndexReader)} returns. Segments that were already
+ * loaded for a previous searcher are found in the cache and cost nothing.
+ * <p>
+ * Subclasses that create custom searchers should call
+ * {@link #warm(IndexReader)} from {@link #newSearcher(IndexReader)}.
+ * @lucene.experimental
+ */
+public class FieldCacheWarmingSearcherFactory extends SearcherFactory {
+
+  private final Executor executor;
+  private final Map<String,SortField.Type> fields;
+
+  /**
+   * Create a new factory.
+   * @param executor the executor to load fields in the background, or
+   *        <tt>null</tt> to load them in the thread that creates the searcher
+   * @param fields the fields to load, and how they are sorted on: one of
+   *        {@link SortField.Type#INT}, {@link SortField.Type#LONG},
+   *        {@link SortField.Type#FLOAT}, {@link SortField.Type#DOUBLE},
+   *        {@link SortField.Type#STRING} or {@link SortField.Type#STRING_VAL}
+   */
+  public FieldCacheWarmingSearcherFactory(Executor executor, Map<String,SortField.Type> fields) {
+    for (Map.Entry<String,SortField.Type> field : fields.entrySet()) {
+      switch (field.getValue()) {
+        case INT:
+        case LONG:
+        case FLOAT:
+        case DOUBLE:
+        case STRING:
+        case STRING_VAL:
+          break;
+        default:
+          throw new IllegalArgumentException("cannot warm field \"" + field.getKey() + "\" of type " + field.getValue());
+      }
+    }
+    this.executor = executor;
+    this.fields = Collections.unmodifiableMap(new LinkedHashMap<>(fields));
+  }
+
+  @Override
+  public IndexSearcher newSearcher(IndexReader reader) throws IOException {
+    warm(reader);
+    return super.newSearcher(reader);
+  }
+
+  /** Loads the configured fields of all segments of <code>reader</code>. */
+  public void warm(IndexReader reader) throws IOException {
+    for (AtomicReaderContext context : reader.leaves()) {
+      final AtomicReader leaf = context.reader();
+      for (Map.Entry<String,SortField.Type> field : fields.entrySet()) {
+        final String name = field.getKey();
+        final SortField.Type type = field.getValue();
+        if (executor == null) {
+          warm(leaf, name, type);
+        } else {
+          executor.execute(new Runnable() {
+            @Override
+            public void run() {
+              try {
+                warm(leaf, name, type);
+              } catch (IOException | RuntimeException e) {
+                // ignore: searches that need this field will hit the same exception
+              }
+            }
+          });
+        }
+      }
+    }
+  }
+
+  private static void warm(AtomicReader reader, String field, SortField.Type type) throws IOException {
+    switch (type) {
+      case INT:
+        FieldCache.DEFAULT.getInts(reader, field, false);
+        break;
+      case LONG:
+        FieldCache.DEFAULT.getLongs(reader, field, false);
+        break;
+      case FLOAT:
+        FieldCache.DEFAULT.getFloats(reader, field, false);
+        break;
+      case DOUBLE:
+        FieldCache.DEFAULT.getDoubles(reader, field, false);
+        break;
+      case STRING:
+        FieldCache.DEFAULT.getTermsIndex(reader, field);
+        break;
+      case STRING_VAL:
+        FieldCache.DEFAULT.getTerms(reader, field, false);
+        break;
+      default:
+        throw new AssertionError();
+    }
+  }
+}
@@ -19,9 +19,16 @@ package org.apache.lucene.search;
 
 import java.io.IOException;
 
+import org.apache.lucene.index.AtomicReader;
 import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiDocValues.OrdinalMap;
+import org.apache.lucene.index.OrdinalMapCache;
+import org.apache.lucene.index.ReaderUtil;
 import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.search.FieldCache.ByteParser;
 import org.apache.lucene.search.FieldCache.DoubleParser;
 import org.apache.lucene.search.FieldCache.FloatParser;
@@ -31,6 +38,7 @@ import org.apache.lucene.search.FieldCache.ShortParser;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.LongValues;
 
 /**
  * Expert: a FieldComparator compares hits so as to determine their
@@ -184,6 +192,23 @@ public abstract class FieldComparator<T> {
    */
   public abstract FieldComparator<T> setNextReader(AtomicReaderContext context) throws IOException;
 
+  /**
+   * Expert: returns an iterator over the docs of the current segment whose
+   * values may compare better than or equal to the bottom of the queue, or
+   * <tt>null</tt> if any doc may be competitive. This is only called after
+   * {@link #setBottom} has been called, and the returned iterator must
+   * take into account further calls to {@link #setBottom}: it may skip
+   * docs that were not competitive when it was advanced, since the bottom
+   * only gets better. Collectors use it to skip over non-competitive docs
+   * (see {@link Collector#competitiveIterator()}).
+   *
+   * @param reverse true if the sort order is reversed
+   * @lucene.experimental
+   */
+  public DocIdSetIterator competitiveIterator(boolean reverse) throws IOException {
+    return null;
+  }
+
   /** Sets the Scorer to use in case a document's score is
    *  needed.
    * 
@@ -333,6 +358,7 @@ public abstract class FieldComparator<T> {
    *  FieldCache#getDoubles} and sorts by ascending value */
   public static class DoubleComparator extends NumericComparator<Double> {
     private final double[] values;
+    private final double missing;                 // unboxed missingValue
     private final DoubleParser parser;
     private FieldCache.Doubles currentReaderValues;
     private double bottom;
@@ -340,6 +366,7 @@ public abstract class FieldComparator<T> {
 
     public DoubleComparator(int numHits, String field, FieldCache.Parser parser, Double missingValue) {
       super(field, missingValue);
+      missing = missingValue == null ? 0d : missingValue;
       values = new double[numHits];
       this.parser = (DoubleParser) parser;
     }
@@ -355,7 +382,7 @@ public abstract class FieldComparator<T> {
       // Test for v2 == 0 to save Bits.get method call for
       // the common case (doc has value and value is non-zero):
       if (docsWithField != null && v2 == 0 && !docsWithField.get(doc)) {
-        v2 = missingValue;
+        v2 = missing;
       }
 
       return Double.compare(bottom, v2);
@@ -367,7 +394,7 @@ public abstract class FieldComparator<T> {
       // Test for v2 == 0 to save Bits.get method call for
       // the common case (doc has value and value is non-zero):
       if (docsWithField != null && v2 == 0 && !docsWithField.get(doc)) {
-        v2 = missingValue;
+        v2 = missing;
       }
 
       values[slot] = v2;
@@ -407,7 +434,7 @@ public abstract class FieldComparator<T> {
       // Test for docValue == 0 to save Bits.get method call for
       // the common case (doc has value and value is non-zero):
       if (docsWithField != null && docValue == 0 && !docsWithField.get(doc)) {
-        docValue = missingValue;
+        docValue = missing;
       }
       return Double.compare(topValue, docValue);
     }
@@ -417,6 +444,7 @@ public abstract class FieldComparator<T> {
    *  FieldCache#getFloats} and sorts by ascending value */
   public static class FloatComparator extends NumericComparator<Float> {
     private final float[] values;
+    private final float missing;                 // unboxed missingValue
     private final FloatParser parser;
     private FieldCache.Floats currentReaderValues;
     private float bottom;
@@ -424,6 +452,7 @@ public abstract class FieldComparator<T> {
 
 		public FloatComparator(int numHits, String field, FieldCache.Parser parser, Float missingValue) {
 			super(field, missingValue);
+			missing = missingValue == null ? 0f : missingValue;
 			values = new float[numHits];
 			this.parser = (FloatParser) parser;
 		}
@@ -440,7 +469,7 @@ public abstract class FieldComparator<T> {
 			// Test for v2 == 0 to save Bits.get method call for
 			// the common case (doc has value and value is non-zero):
 			if (docsWithField != null && v2 == 0 && !docsWithField.get(doc)) {
-				v2 = missingValue;
+				v2 = missing;
 			}
 
 			return Float.compare(bottom, v2);
@@ -452,7 +481,7 @@ public abstract class FieldComparator<T> {
 			// Test for v2 == 0 to save Bits.get method call for
 			// the common case (doc has value and value is non-zero):
 			if (docsWithField != null && v2 == 0 && !docsWithField.get(doc)) {
-				v2 = missingValue;
+				v2 = missing;
 			}
 
 			values[slot] = v2;
@@ -492,7 +521,7 @@ public abstract class FieldComparator<T> {
       // Test for docValue == 0 to save Bits.get method call for
       // the common case (doc has value and value is non-zero):
       if (docsWithField != null && docValue == 0 && !docsWithField.get(doc)) {
-        docValue = missingValue;
+        docValue = missing;
       }
       return Float.compare(topValue, docValue);
     }
@@ -582,13 +611,16 @@ public abstract class FieldComparator<T> {
    *  FieldCache#getInts} and sorts by ascending value */
 	public static class IntComparator extends NumericComparator<Integer> {
 	    private final int[] values;
+	    private final int missing;                 // unboxed missingValue
 	    private final IntParser parser;
 	    private FieldCache.Ints currentReaderValues;
+	    private AtomicReader currentReader;
 	    private int bottom;                           // Value of bottom of queue
 	    private int topValue;
 
 	    public IntComparator(int numHits, String field, FieldCache.Parser parser, Integer missingValue) {
 	    	super(field, missingValue);
+	    	missing = missingValue == null ? 0 : missingValue;
 	    	values = new int[numHits];
 	    	this.parser = (IntParser) parser;
 	    }
@@ -604,7 +636,7 @@ public abstract class FieldComparator<T> {
 			// Test for v2 == 0 to save Bits.get method call for
 			// the common case (doc has value and value is non-zero):
 			if (docsWithField != null && v2 == 0 && !docsWithField.get(doc)) {
-				v2 = missingValue;
+				v2 = missing;
 			}
 
 			return Integer.compare(bottom, v2);
@@ -616,7 +648,7 @@ public abstract class FieldComparator<T> {
 			// Test for v2 == 0 to save Bits.get method call for
 			// the common case (doc has value and value is non-zero):
 			if (docsWithField != null && v2 == 0 && !docsWithField.get(doc)) {
-				v2 = missingValue;
+				v2 = missing;
 			}
 
 			values[slot] = v2;
@@ -627,6 +659,7 @@ public abstract class FieldComparator<T> {
       // NOTE: must do this before calling super otherwise
       // we compute the docsWithField Bits twice!
     		currentReaderValues = getIntValues(context, field);
+    		currentReader = context.reader();
     		return super.setNextReader(context);
     	}
     
@@ -656,23 +689,41 @@ public abstract class FieldComparator<T> {
       // Test for docValue == 0 to save Bits.get method call for
       // the common case (doc has value and value is non-zero):
       if (docsWithField != null && docValue == 0 && !docsWithField.get(doc)) {
-        docValue = missingValue;
+        docValue = missing;
       }
       return Integer.compare(topValue, docValue);
     }
+
+    @Override
+    public DocIdSetIterator competitiveIterator(boolean reverse) throws IOException {
+      if (getClass() != IntComparator.class) {
+        // values may not come from the field cache
+        return null;
+      }
+      final NumericBlockBounds bounds = NumericBlockBounds.getIntBounds(currentReader, field, parser, missingValue);
+      return new NumericBlockBounds.CompetitiveIterator(bounds, reverse) {
+        @Override
+        protected long bottom() {
+          return bottom;
+        }
+      };
+    }
   }
 
   /** Parses field's values as long (using {@link
    *  FieldCache#getLongs} and sorts by ascending value */
   public static class LongComparator extends NumericComparator<Long> {
     private final long[] values;
+    private final long missing;                 // unboxed missingValue
     private final LongParser parser;
     private FieldCache.Longs currentReaderValues;
+    private AtomicReader currentReader;
     private long bottom;
     private long topValue;
 
     public LongComparator(int numHits, String field, FieldCache.Parser parser, Long missingValue) {
       super(field, missingValue);
+      missing = missingValue == null ? 0L : missingValue;
       values = new long[numHits];
       this.parser = (LongParser) parser;
     }
@@ -690,7 +741,7 @@ public abstract class FieldComparator<T> {
       // Test for v2 == 0 to save Bits.get method call for
       // the common case (doc has value and value is non-zero):
       if (docsWithField != null && v2 == 0 && !docsWithField.get(doc)) {
-        v2 = missingValue;
+        v2 = missing;
       }
 
       return Long.compare(bottom, v2);
@@ -702,7 +753,7 @@ public abstract class FieldComparator<T> {
       // Test for v2 == 0 to save Bits.get method call for
       // the common case (doc has value and value is non-zero):
       if (docsWithField != null && v2 == 0 && !docsWithField.get(doc)) {
-        v2 = missingValue;
+        v2 = missing;
       }
 
       values[slot] = v2;
@@ -713,6 +764,7 @@ public abstract class FieldComparator<T> {
       // NOTE: must do this before calling super otherwise
       // we compute the docsWithField Bits twice!
       currentReaderValues = getLongValues(context, field);
+      currentReader = context.reader();
       return super.setNextReader(context);
     }
     
@@ -742,10 +794,25 @@ public abstract class FieldComparator<T> {
       // Test for docValue == 0 to save Bits.get method call for
       // the common case (doc has value and value is non-zero):
       if (docsWithField != null && docValue == 0 && !docsWithField.get(doc)) {
-        docValue = missingValue;
+        docValue = missing;
       }
       return Long.compare(topValue, docValue);
     }
+
+    @Override
+    public DocIdSetIterator competitiveIterator(boolean reverse) throws IOException {
+      if (getClass() != LongComparator.class) {
+        // values may not come from the field cache
+        return null;
+      }
+      final NumericBlockBounds bounds = NumericBlockBounds.getLongBounds(currentReader, field, parser, missingValue);
+      return new NumericBlockBounds.CompetitiveIterator(bounds, reverse) {
+        @Override
+        protected long bottom() {
+          return bottom;
+        }
+      };
+    }
   }
 
   /** Sorts by descending relevance.  NOTE: if you are
@@ -1150,6 +1217,167 @@ public abstract class FieldComparator<T> {
     }
   }
   
+  /** Sorts by field's natural Term sort order, using the
+   *  global ordinals of the top-level reader, which are cached
+   *  in {@link #TERMS_INDEX}.  Unlike {@link
+   *  TermOrdValComparator}, all comparisons are done by ord,
+   *  even across segments, and values are only resolved by
+   *  {@link #value}.  All the segments that this comparator
+   *  visits must belong to the same top-level reader.
+   *
+   *  @see GlobalOrdinalsSortField */
+  public static class GlobalOrdValComparator extends FieldComparator<BytesRef> {
+
+    /** Cache of the ordinal maps over {@link
+     *  FieldCache#getTermsIndex}. */
+    public static final OrdinalMapCache TERMS_INDEX = new OrdinalMapCache() {
+      @Override
+      protected SortedSetDocValues getLeafValues(AtomicReader reader, String field) throws IOException {
+        return DocValues.singleton(FieldCache.DEFAULT.getTermsIndex(reader, field));
+      }
+    };
+
+    private final long[] ords;
+    private final BytesRefBuilder[] values;
+    private final String field;
+
+    /** -1 if missing values are sorted first, 1 if they are
+     *  sorted last */
+    final int missingSortCmp;
+
+    /** Which ordinal to use for a missing value. */
+    final long missingOrd;
+
+    private IndexReader topReader;
+    private OrdinalMap ordinalMap;
+    private SortedSetDocValues topLevelValues;
+    private SortedDocValues termsIndex;
+    private LongValues globalOrds;
+    private long bottom;
+
+    private BytesRef topValue;
+    private long topOrd;
+    // true if topOrd is the ord of topValue, false if it is the ord of the greatest smaller value
+    private boolean topExact;
+
+    /** Creates this, with control over how missing values
+     *  are sorted.  Pass sortMissingLast=true to put
+     *  missing values at the end. */
+    public GlobalOrdValComparator(int numHits, String field, boolean sortMissingLast) {
+      ords = new long[numHits];
+      values = new BytesRefBuilder[numHits];
+      this.field = field;
+      if (sortMissingLast) {
+        missingSortCmp = 1;
+        missingOrd = Long.MAX_VALUE;
+      } else {
+        missingSortCmp = -1;
+        missingOrd = -1;
+      }
+    }
+
+    private long globalOrd(int doc) {
+      final int ord = termsIndex.getOrd(doc);
+      return ord == -1 ? missingOrd : globalOrds.get(ord);
+    }
+
+    @Override
+    public int compare(int slot1, int slot2) {
+      return Long.compare(ords[slot1], ords[slot2]);
+    }
+
+    @Override
+    public int compareBottom(int doc) {
+      return Long.compare(bottom, globalOrd(doc));
+    }
+
+    @Override
+    public void copy(int slot, int doc) {
+      ords[slot] = globalOrd(doc);
+    }
+
+    @Override
+    public FieldComparator<BytesRef> setNextReader(AtomicReaderContext context) throws IOException {
+      final IndexReader reader = ReaderUtil.getTopLevelContext(context).reader();
+      if (reader != topReader) {
+        if (topReader != null) {
+          throw new IllegalStateException("global ords of field \"" + field + "\" cannot be compared across top-level readers");
+        }
+        topReader = reader;
+        ordinalMap = TERMS_INDEX.getOrdinalMap(reader, field);
+        topLevelValues = TERMS_INDEX.getValues(reader, field);
+        if (topValue == null) {
+          topOrd = missingOrd;
+          topExact = true;
+        } else {
+          final long ord = topLevelValues.lookupTerm(topValue);
+          if (ord >= 0) {
+            topOrd = ord;
+            topExact = true;
+          } else {
+            topOrd = -ord - 2;
+            topExact = false;
+          }
+        }
+      }
+      termsIndex = FieldCache.DEFAULT.getTermsIndex(context.reader(), field);
+      globalOrds = ordinalMap == null ? LongValues.IDENTITY : ordinalMap.getGlobalOrds(context.ord);
+      return this;
+    }
+
+    @Override
+    public void setBottom(final int bottom) {
+      this.bottom = ords[bottom];
+    }
+
+    @Override
+    public void setTopValue(BytesRef value) {
+      // null is fine: it means the last doc of the prior
+      // search was missing this value
+      topValue = value;
+    }
+
+    @Override
+    public BytesRef value(int slot) {
+      final long ord = ords[slot];
+      if (ord == missingOrd) {
+        return null;
+      }
+      if (values[slot] == null) {
+        values[slot] = new BytesRefBuilder();
+      }
+      values[slot].copyBytes(topLevelValues.lookupOrd(ord));
+      return values[slot].get();
+    }
+
+    @Override
+    public int compareTop(int doc) {
+      final long ord = globalOrd(doc);
+      if (topExact) {
+        return Long.compare(topOrd, ord);
+      } else if (ord <= topOrd) {
+        // the equals case always means doc is < value
+        // (because we set topOrd to the lower bound)
+        return 1;
+      } else {
+        return -1;
+      }
+    }
+
+    @Override
+    public int compareValues(BytesRef val1, BytesRef val2) {
+      if (val1 == null) {
+        if (val2 == null) {
+          return 0;
+        }
+        return missingSortCmp;
+      } else if (val2 == null) {
+        return -missingSortCmp;
+      }
+      return val1.compareTo(val2);
+    }
+  }
+
   /** Sorts by field's natural Term sort order.  All
    *  comparisons are done using BytesRef.compareTo, which is
    *  slow for medium to large result sets but possibly
@@ -84,6 +84,52 @@ public abstract class FieldValueHitQueue<T extends FieldValueHitQueue.Entry> ext
 		}
 	}
   
+  /**
+   * An implementation of {@link FieldValueHitQueue} which is optimized in case
+   * there are exactly two comparators. Each comparator is called from its own
+   * call site, so that a given sort only sees one comparator class per call
+   * site and the JIT can inline the comparisons.
+   */
+  private static final class TwoComparatorsFieldValueHitQueue<T extends FieldValueHitQueue.Entry> extends FieldValueHitQueue<T> {
+    private final int reverseMul1;
+    private final int reverseMul2;
+    private FieldComparator<?> secondComparator; // this must always be equal to comparators[1]
+
+    public TwoComparatorsFieldValueHitQueue(SortField[] fields, int size) throws IOException {
+      super(fields, size);
+      assert fields.length == 2;
+      reverseMul1 = reverseMul[0] = fields[0].reverse ? -1 : 1;
+      reverseMul2 = reverseMul[1] = fields[1].reverse ? -1 : 1;
+      setComparator(0, fields[0].getComparator(size, 0));
+      setComparator(1, fields[1].getComparator(size, 1));
+    }
+
+    @Override
+    public void setComparator(int pos, FieldComparator<?> comparator) {
+      super.setComparator(pos, comparator);
+      if (pos == 1) {
+        secondComparator = comparator;
+      }
+    }
+
+    @Override
+    protected boolean lessThan(final Entry hitA, final Entry hitB) {
+      assert hitA != hitB;
+      assert hitA.slot != hitB.slot;
+
+      int c = reverseMul1 * firstComparator.compare(hitA.slot, hitB.slot);
+      if (c != 0) {
+        return c > 0;
+      }
+      c = reverseMul2 * secondComparator.compare(hitA.slot, hitB.slot);
+      if (c != 0) {
+        return c > 0;
+      }
+      // avoid random sort order that could lead to duplicates (bug #31241):
+      return hitA.doc > hitB.doc;
+    }
+  }
+
   /**
    * An implementation of {@link FieldValueHitQueue} which is optimized in case
    * there is more than one comparator.
@@ -158,6 +204,8 @@ public abstract class FieldValueHitQueue<T extends FieldValueHitQueue.Entry> ext
 		
 		if (fields.length == 1) {
 			return new OneComparatorFieldValueHitQueue<>(fields, size);
+		} else if (fields.length == 2) {
+			return new TwoComparatorsFieldValueHitQueue<>(fields, size);
 		} else {
 			return new MultiComparatorsFieldValueHitQueue<>(fields, size);
 		}
@@ -197,7 +245,15 @@ public abstract class FieldValueHitQueue<T extends FieldValueHitQueue.Entry> ext
    * @return The newly created FieldDoc
    * @see IndexSearcher#search(Query,Filter,int,Sort)
    */
-
+  FieldDoc fillFields(final Entry entry) {
+    final int n = comparators.length;
+    final Object[] fields = new Object[n];
+    for (int i = 0; i < n; ++i) {
+      fields[i] = comparators[i].value(entry.slot);
+    }
+    //if (maxscore > 1.0f) doc.score /= maxscore;   // normalize scores
+    return new FieldDoc(entry.doc, entry.score, fields);
+  }
 
   /** Returns the SortFields being used by this hit queue. */
 	SortField[] getFields() {
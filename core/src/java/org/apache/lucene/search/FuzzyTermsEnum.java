@@ -29,13 +29,16 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermState;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Attribute;
 import org.apache.lucene.util.AttributeImpl;
 import org.apache.lucene.util.AttributeSource;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.lucene.util.UnicodeUtil;
+import org.apache.lucene.util.automaton.AutomataCache;
 import org.apache.lucene.util.automaton.Automaton;
 import org.apache.lucene.util.automaton.ByteRunAutomaton;
 import org.apache.lucene.util.automaton.CompiledAutomaton;
@@ -166,19 +169,111 @@ public class FuzzyTermsEnum extends TermsEnum {
     //System.out.println("cached automata size: " + runAutomata.size());
     if (runAutomata.size() <= maxDistance &&
         maxDistance <= LevenshteinAutomata.MAXIMUM_SUPPORTED_DISTANCE) {
-      LevenshteinAutomata builder = 
-        new LevenshteinAutomata(UnicodeUtil.newString(termText, realPrefixLength, termText.length - realPrefixLength), transpositions);
-
-      String prefix = UnicodeUtil.newString(termText, 0, realPrefixLength);
+      final CompiledAutomaton[] automata = getAutomata(term.text(), realPrefixLength, transpositions, maxDistance);
       for (int i = runAutomata.size(); i <= maxDistance; i++) {
-        Automaton a = builder.toAutomaton(i, prefix);
-        //System.out.println("compute automaton n=" + i);
-        runAutomata.add(new CompiledAutomaton(a, true, false));
+        runAutomata.add(automata[i]);
       }
     }
     return runAutomata;
   }
 
+  /** Default value of {@link #setAutomataCacheMaxRamBytes}: 8 MB. */
+  public static final long DEFAULT_AUTOMATA_CACHE_MAX_RAM_BYTES = 8 * 1024 * 1024;
+
+  /** LRU cache of the compiled automata of terms, keyed by term text,
+   *  prefix length and transpositions. Compiled automata are immutable, so
+   *  they can be shared by concurrent queries. */
+  static final AutomataCache<CacheKey,CachedAutomata> AUTOMATA_CACHE = new AutomataCache<>(DEFAULT_AUTOMATA_CACHE_MAX_RAM_BYTES);
+
+  /**
+   * Sets the maximum memory usage of the compiled Levenshtein automata that
+   * are kept across queries, so that queries that are run often do not need
+   * to build their automata again. Least recently used terms are evicted
+   * first. 0 disables the cache.
+   */
+  public static void setAutomataCacheMaxRamBytes(long maxRamBytes) {
+    AUTOMATA_CACHE.setMaxRamBytes(maxRamBytes);
+  }
+
+  /** Returns the maximum memory usage of the cached automata.
+   *  @see #setAutomataCacheMaxRamBytes */
+  public static long getAutomataCacheMaxRamBytes() {
+    return AUTOMATA_CACHE.getMaxRamBytes();
+  }
+
+  /** Returns the automata of <code>text</code> for edit distances 0 to
+   *  at least <code>maxDistance</code>. */
+  static CompiledAutomaton[] getAutomata(String text, int prefixLength, boolean transpositions, int maxDistance) {
+    final CacheKey key = new CacheKey(text, prefixLength, transpositions);
+    final CachedAutomata cached = AUTOMATA_CACHE.get(key);
+    if (cached != null && cached.automata.length > maxDistance) {
+      return cached.automata;
+    }
+
+    // concurrent builds of the same term are harmless
+    final int[] codePoints = new int[text.codePointCount(0, text.length())];
+    for (int cp, i = 0, j = 0; i < text.length(); i += Character.charCount(cp))
+      codePoints[j++] = cp = text.codePointAt(i);
+    final LevenshteinAutomata builder =
+      new LevenshteinAutomata(UnicodeUtil.newString(codePoints, prefixLength, codePoints.length - prefixLength), transpositions);
+    final String prefix = UnicodeUtil.newString(codePoints, 0, prefixLength);
+    final CompiledAutomaton[] automata = new CompiledAutomaton[maxDistance + 1];
+    final int numCached = cached == null ? 0 : cached.automata.length;
+    if (numCached > 0) {
+      System.arraycopy(cached.automata, 0, automata, 0, numCached);
+    }
+    for (int i = numCached; i <= maxDistance; i++) {
+      Automaton a = builder.toAutomaton(i, prefix);
+      //System.out.println("compute automaton n=" + i);
+      automata[i] = new CompiledAutomaton(a, true, false);
+    }
+    AUTOMATA_CACHE.put(key, new CachedAutomata(automata));
+    return automata;
+  }
+
+  /** The automata of a term for edit distances 0 to n. */
+  static final class CachedAutomata implements Accountable {
+    final CompiledAutomaton[] automata;
+
+    CachedAutomata(CompiledAutomaton[] automata) {
+      this.automata = automata;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      long bytes = RamUsageEstimator.shallowSizeOf(automata);
+      for (CompiledAutomaton automaton : automata) {
+        bytes += automaton.ramBytesUsed();
+      }
+      return bytes;
+    }
+  }
+
+  /** Key of {@link #AUTOMATA_CACHE}. */
+  static final class CacheKey {
+    final String text;
+    final int prefixLength;
+    final boolean transpositions;
+
+    CacheKey(String text, int prefixLength, boolean transpositions) {
+      this.text = text;
+      this.prefixLength = prefixLength;
+      this.transpositions = transpositions;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof CacheKey)) return false;
+      final CacheKey other = (CacheKey) obj;
+      return text.equals(other.text) && prefixLength == other.prefixLength && transpositions == other.transpositions;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * (31 * text.hashCode() + prefixLength) + (transpositions ? 1 : 0);
+    }
+  }
+
   /** swap in a new actual enum to proxy to */
   protected void setEnum(TermsEnum actualEnum) {
     this.actualEnum = actualEnum;
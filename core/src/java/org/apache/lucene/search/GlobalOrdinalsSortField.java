@@ -0,0 +1,105 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+import java.io.IOException;
+
+import org.apache.lucene.index.OrdinalMapCache;
+
+/** 
+ * SortField that sorts by a field's natural term order, like {@link
+ * SortField.Type#STRING}, but compares the global ordinals of the top-level
+ * reader instead of per-segment ordinals.
+ * <p>
+ * The mapping from segment ordinals to global ordinals is computed once per
+ * top-level reader and cached by {@link
+ * FieldComparator.GlobalOrdValComparator#TERMS_INDEX}, and near-real-time
+ * reopens only merge the terms of their new segments (see {@link
+ * OrdinalMapCache}). Then documents from different segments never need to
+ * be compared by value, which makes this sort faster than {@link
+ * SortField.Type#STRING} on indexes with many segments, at the cost of the
+ * memory of the mapping.
+ * <p>
+ * Like sorting by string, this also supports sorting missing values as first or last,
+ * via {@link #setMissingValue(Object)}.
+ *
+ * @lucene.experimental
+ */
+public class GlobalOrdinalsSortField extends SortField {
+
+  /**
+   * Creates a sort by the global ordinals of a field.
+   * @param field Name of field to sort by.  Must not be null.
+   */
+  public GlobalOrdinalsSortField(String field) {
+    this(field, false);
+  }
+
+  /**
+   * Creates a sort, possibly in reverse, by the global ordinals of a field.
+   * @param field Name of field to sort by.  Must not be null.
+   * @param reverse True if natural order should be reversed.
+   */
+  public GlobalOrdinalsSortField(String field, boolean reverse) {
+    super(field, SortField.Type.CUSTOM, reverse);
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = super.hashCode();
+    result = prime * result + (missingValue == STRING_LAST ? 1 : 0);
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) return true;
+    if (!super.equals(obj)) return false;
+    if (getClass() != obj.getClass()) return false;
+    GlobalOrdinalsSortField other = (GlobalOrdinalsSortField) obj;
+    if (missingValue != other.missingValue) return false;
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder buffer = new StringBuilder();
+    buffer.append("<globalords" + ": \"").append(getField()).append("\">");
+    if (getReverse()) buffer.append('!');
+    if (missingValue != null) {
+      buffer.append(" missingValue=");
+      buffer.append(missingValue);
+    }
+    return buffer.toString();
+  }
+
+  @Override
+  public void setMissingValue(Object missingValue) {
+    if (missingValue != STRING_FIRST && missingValue != STRING_LAST) {
+      throw new IllegalArgumentException("missing value must be either STRING_FIRST or STRING_LAST");
+    }
+    this.missingValue = missingValue;
+  }
+
+  @Override
+  public FieldComparator<?> getComparator(int numHits, int sortPos) throws IOException {
+    return new FieldComparator.GlobalOrdValComparator(numHits, getField(), missingValue == STRING_LAST);
+  }
+}
@@ -18,6 +18,7 @@ package org.apache.lucene.search;
  */
 
 import java.io.IOException;
+import java.util.concurrent.Executor;
 
 import org.apache.lucene.index.FilteredTermsEnum; // javadocs
 import org.apache.lucene.index.IndexReader;
@@ -149,6 +150,16 @@ public abstract class MultiTermQuery extends Query {
     public TopTermsScoringBooleanQueryRewrite(int size) {
       super(size);
     }
+
+    /** 
+     * Create a TopTermsScoringBooleanQueryRewrite for at most <code>size</code>
+     * terms, that collects the top terms of segments in parallel on
+     * <code>executor</code>.
+     * @see TopTermsRewrite#TopTermsRewrite(int, Executor)
+     */
+    public TopTermsScoringBooleanQueryRewrite(int size, Executor executor) {
+      super(size, executor);
+    }
     
     @Override
     protected int getMaxSize() {
@@ -190,6 +201,16 @@ public abstract class MultiTermQuery extends Query {
     public TopTermsBoostOnlyBooleanQueryRewrite(int size) {
       super(size);
     }
+
+    /** 
+     * Create a TopTermsBoostOnlyBooleanQueryRewrite for at most <code>size</code>
+     * terms, that collects the top terms of segments in parallel on
+     * <code>executor</code>.
+     * @see TopTermsRewrite#TopTermsRewrite(int, Executor)
+     */
+    public TopTermsBoostOnlyBooleanQueryRewrite(int size, Executor executor) {
+      super(size, executor);
+    }
     
     @Override
     protected int getMaxSize() {
@@ -0,0 +1,187 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.index.AtomicReader;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * The minimum and maximum values of every block of
+ * {@value #BLOCK_SIZE} docs of a numeric field of a segment,
+ * which allow sorted searches to skip blocks of docs whose values
+ * can't compete with the bottom of their queue.
+ * <p>
+ * Bounds are computed on the values that {@link FieldComparator.IntComparator}
+ * and {@link FieldComparator.LongComparator} sort on, ie. after replacing
+ * the values of docs that don't have a value with the missing value, and
+ * are cached in the {@link FieldCache}.
+ */
+final class NumericBlockBounds implements Accountable {
+
+  static final int BLOCK_SHIFT = 10;
+  static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+  private final int maxDoc;
+  private final long[] mins;
+  private final long[] maxs;
+
+  private NumericBlockBounds(int maxDoc) {
+    this.maxDoc = maxDoc;
+    final int numBlocks = (int) ((maxDoc + (long) BLOCK_SIZE - 1) >>> BLOCK_SHIFT);
+    mins = new long[numBlocks];
+    maxs = new long[numBlocks];
+  }
+
+  /** Returns the bounds of the int values of <code>field</code>, as sorted on
+   *  by {@link FieldComparator.IntComparator}. */
+  static NumericBlockBounds getIntBounds(AtomicReader reader, String field, FieldCache.IntParser parser, Integer missingValue) throws IOException {
+    if (FieldCache.DEFAULT instanceof FieldCacheImpl) {
+      return ((FieldCacheImpl) FieldCache.DEFAULT).getNumericBlockBounds(reader, field, SortField.Type.INT, parser, missingValue);
+    }
+    return buildIntBounds(reader, field, parser, missingValue);
+  }
+
+  /** Returns the bounds of the long values of <code>field</code>, as sorted
+   *  on by {@link FieldComparator.LongComparator}. */
+  static NumericBlockBounds getLongBounds(AtomicReader reader, String field, FieldCache.LongParser parser, Long missingValue) throws IOException {
+    if (FieldCache.DEFAULT instanceof FieldCacheImpl) {
+      return ((FieldCacheImpl) FieldCache.DEFAULT).getNumericBlockBounds(reader, field, SortField.Type.LONG, parser, missingValue);
+    }
+    return buildLongBounds(reader, field, parser, missingValue);
+  }
+
+  static NumericBlockBounds buildIntBounds(AtomicReader reader, String field, FieldCache.IntParser parser, Integer missingValue) throws IOException {
+    final FieldCache.Ints values = FieldCache.DEFAULT.getInts(reader, field, parser, missingValue != null);
+    final Bits docsWithField = missingValue == null ? null : FieldCache.DEFAULT.getDocsWithField(reader, field);
+    final int maxDoc = reader.maxDoc();
+    final NumericBlockBounds bounds = new NumericBlockBounds(maxDoc);
+    for (int block = 0; block < bounds.mins.length; ++block) {
+      final int start = block << BLOCK_SHIFT;
+      final int end = Math.min(maxDoc, start + BLOCK_SIZE);
+      int min = Integer.MAX_VALUE;
+      int max = Integer.MIN_VALUE;
+      for (int doc = start; doc < end; ++doc) {
+        int v = values.get(doc);
+        if (docsWithField != null && v == 0 && !docsWithField.get(doc)) {
+          v = missingValue;
+        }
+        min = Math.min(min, v);
+        max = Math.max(max, v);
+      }
+      bounds.mins[block] = min;
+      bounds.maxs[block] = max;
+    }
+    return bounds;
+  }
+
+  static NumericBlockBounds buildLongBounds(AtomicReader reader, String field, FieldCache.LongParser parser, Long missingValue) throws IOException {
+    final FieldCache.Longs values = FieldCache.DEFAULT.getLongs(reader, field, parser, missingValue != null);
+    final Bits docsWithField = missingValue == null ? null : FieldCache.DEFAULT.getDocsWithField(reader, field);
+    final int maxDoc = reader.maxDoc();
+    final NumericBlockBounds bounds = new NumericBlockBounds(maxDoc);
+    for (int block = 0; block < bounds.mins.length; ++block) {
+      final int start = block << BLOCK_SHIFT;
+      final int end = Math.min(maxDoc, start + BLOCK_SIZE);
+      long min = Long.MAX_VALUE;
+      long max = Long.MIN_VALUE;
+      for (int doc = start; doc < end; ++doc) {
+        long v = values.get(doc);
+        if (docsWithField != null && v == 0 && !docsWithField.get(doc)) {
+          v = missingValue;
+        }
+        min = Math.min(min, v);
+        max = Math.max(max, v);
+      }
+      bounds.mins[block] = min;
+      bounds.maxs[block] = max;
+    }
+    return bounds;
+  }
+
+  /** Minimum value of the docs of <code>block</code>. */
+  long min(int block) {
+    return mins[block];
+  }
+
+  /** Maximum value of the docs of <code>block</code>. */
+  long max(int block) {
+    return maxs[block];
+  }
+
+  @Override
+  public long ramBytesUsed() {
+    return RamUsageEstimator.NUM_BYTES_OBJECT_HEADER + RamUsageEstimator.NUM_BYTES_INT + 2 * RamUsageEstimator.NUM_BYTES_OBJECT_REF
+        + RamUsageEstimator.sizeOf(mins) + RamUsageEstimator.sizeOf(maxs);
+  }
+
+  /**
+   * An iterator over the docs of the blocks that contain values that
+   * compare better than or equal to the bottom of a queue. The bottom is
+   * read again on every call to {@link #advance}, so that blocks become
+   * non-competitive as the queue gets better.
+   */
+  static abstract class CompetitiveIterator extends DocIdSetIterator {
+
+    private final NumericBlockBounds bounds;
+    private final boolean reverse;
+    private int doc = -1;
+
+    CompetitiveIterator(NumericBlockBounds bounds, boolean reverse) {
+      this.bounds = bounds;
+      this.reverse = reverse;
+    }
+
+    /** The current bottom value of the queue. */
+    protected abstract long bottom();
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+      return advance(doc + 1);
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+      if (target >= bounds.maxDoc) {
+        return doc = NO_MORE_DOCS;
+      }
+      final long bottom = bottom();
+      final long[] mins = bounds.mins;
+      final long[] maxs = bounds.maxs;
+      for (int block = target >>> BLOCK_SHIFT; block < mins.length; ++block) {
+        if (reverse ? maxs[block] >= bottom : mins[block] <= bottom) {
+          return doc = Math.max(target, block << BLOCK_SHIFT);
+        }
+      }
+      return doc = NO_MORE_DOCS;
+    }
+
+    @Override
+    public long cost() {
+      return bounds.maxDoc;
+    }
+  }
+}
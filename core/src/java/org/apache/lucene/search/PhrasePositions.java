@@ -19,6 +19,8 @@ package org.apache.lucene.search;
 
 import java.io.IOException;
 import org.apache.lucene.index.*;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.RamUsageEstimator;
 
 /**
  * Position of a term in a document that takes into account the term offset within the phrase. 
@@ -27,6 +29,8 @@ final class PhrasePositions {
   int doc;              // current doc
   int position;         // position in doc
   int count;            // remaining pos in this doc
+  int[] positions = new int[8]; // buffered positions of the current doc, minus offset
+  int numPositions;     // number of buffered positions
   int offset;           // position in phrase
   final int ord;                                  // unique across all PhrasePositions instances
   final DocsAndPositionsEnum postings;            // stream of docs & positions
@@ -58,8 +62,23 @@ final class PhrasePositions {
     return true;
   }
 
-  final void firstPosition() throws IOException {
-    count = postings.freq();  // read first pos
+  /**
+   * Read all positions of the current doc, so that they can be checked
+   * before being iterated with {@link #firstPosition()} and
+   * {@link #nextPosition()}.
+   */
+  final void readPositions() throws IOException {
+    numPositions = postings.freq();
+    if (positions.length < numPositions) {
+      positions = new int[ArrayUtil.oversize(numPositions, RamUsageEstimator.NUM_BYTES_INT)];
+    }
+    for (int i = 0; i < numPositions; i++) {
+      positions[i] = postings.nextPosition() - offset;
+    }
+  }
+
+  final void firstPosition() {
+    count = numPositions;  // read first pos
     nextPosition();
   }
 
@@ -69,9 +88,9 @@ final class PhrasePositions {
    * matching exact phrase is easily identified when all PhrasePositions 
    * have exactly the same <code>position</code>.
    */
-  final boolean nextPosition() throws IOException {
+  final boolean nextPosition() {
     if (count-- > 0) {  // read subsequent pos's
-      position = postings.nextPosition() - offset;
+      position = positions[numPositions - count - 1];
       return true;
     } else
       return false;
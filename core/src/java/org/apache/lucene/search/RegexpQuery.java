@@ -86,7 +86,22 @@ public class RegexpQuery extends AutomatonQuery {
    * @param provider custom AutomatonProvider for named automata
    */
   public RegexpQuery(Term term, int flags, AutomatonProvider provider) {
-    super(term, new RegExp(term.text(), flags).toAutomaton(provider));
+    super(term, getAutomaton(term.text(), flags, provider));
+  }
+
+  private static CachedAutomaton getAutomaton(String text, int flags, AutomatonProvider provider) {
+    if (provider != defaultProvider) {
+      // custom providers may return different automata over time
+      return new CachedAutomaton(new RegExp(text, flags).toAutomaton(provider));
+    }
+    final CacheKey key = new CacheKey(RegexpQuery.class, text, flags);
+    CachedAutomaton automaton = AUTOMATA_CACHE.get(key);
+    if (automaton == null) {
+      // concurrent builds of the same pattern are harmless
+      automaton = new CachedAutomaton(new RegExp(text, flags).toAutomaton(provider));
+      AUTOMATA_CACHE.put(key, automaton);
+    }
+    return automaton;
   }
   
   /** Prints a user-readable version of this query. */
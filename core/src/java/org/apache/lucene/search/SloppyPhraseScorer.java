@@ -97,7 +97,7 @@ final class SloppyPhraseScorer extends Scorer {
    * We may want to fix this in the future (currently not, for performance reasons).
    */
   private float phraseFreq() throws IOException {
-    if (!initPhrasePositions()) {
+    if (!mayMatch() || !initPhrasePositions()) {
       return 0.0f;
     }
     float freq = 0.0f;
@@ -132,6 +132,57 @@ final class SloppyPhraseScorer extends Scorer {
 		return freq;
 	}
 
+  /**
+   * Read the positions of the current doc and check cheaply whether they may
+   * contain a match, so that {@link #phraseFreq()} does not run the queue on
+   * docs where the terms are too far apart. A match takes one (phrase)
+   * position of every PhrasePositions in a window of <code>slop+1</code>
+   * positions, hence:
+   * <ul>
+   *  <li>the largest first position is at most <code>slop</code> after the
+   *      smallest last position, and any match is in the envelope
+   *      <code>[largestFirst-slop, smallestLast+slop]</code>.
+   *  <li>splitting the envelope in at most 64 buckets of at least
+   *      <code>slop+1</code> positions, a match spans at most two consecutive
+   *      buckets, so there is a bucket such that every PhrasePositions has a
+   *      position in it or in the next one.
+   * </ul>
+   * Repetitions are ignored here, this is only a necessary condition.
+   */
+  private boolean mayMatch() throws IOException {
+    long largestFirst = Long.MIN_VALUE;
+    long smallestLast = Long.MAX_VALUE;
+    for (PhrasePositions pp=min,prev=null; prev!=max; pp=(prev=pp).next) {  // iterate cyclic list: done once handled max
+      pp.readPositions();
+      largestFirst = Math.max(largestFirst, pp.positions[0]);
+      smallestLast = Math.min(smallestLast, pp.positions[pp.numPositions - 1]);
+    }
+    if (largestFirst - smallestLast > slop) {
+      return false;
+    }
+
+    final long envelopeStart = largestFirst - slop;
+    final long envelopeEnd = smallestLast + slop;
+    final long bucketWidth = Math.max(slop + 1L, (envelopeEnd - envelopeStart + Long.SIZE) / Long.SIZE);
+    long candidates = -1L; // buckets where a match may start
+    for (PhrasePositions pp=min,prev=null; prev!=max; pp=(prev=pp).next) {  // iterate cyclic list: done once handled max
+      long buckets = 0L;
+      for (int i = 0; i < pp.numPositions; i++) {
+        final long position = pp.positions[i];
+        if (position > envelopeEnd) {
+          break; // positions are sorted
+        } else if (position >= envelopeStart) {
+          buckets |= 1L << ((position - envelopeStart) / bucketWidth);
+        }
+      }
+      candidates &= buckets | (buckets >>> 1);
+      if (candidates == 0L) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /** advance a PhrasePosition and update 'end', return false if exhausted */
   private boolean advancePP(PhrasePositions pp) throws IOException {
     if (!pp.nextPosition()) {
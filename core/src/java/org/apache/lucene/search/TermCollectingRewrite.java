@@ -49,22 +49,8 @@ abstract class TermCollectingRewrite<Q extends Query> extends MultiTermQuery.Rew
     IndexReaderContext topReaderContext = reader.getContext();
     Comparator<BytesRef> lastTermComp = null;
     for (AtomicReaderContext context : topReaderContext.leaves()) {
-      final Fields fields = context.reader().fields();
-      if (fields == null) {
-        // reader has no fields
-        continue;
-      }
-
-      final Terms terms = fields.terms(query.field);
-      if (terms == null) {
-        // field does not exist
-        continue;
-      }
-
-      final TermsEnum termsEnum = getTermsEnum(query, terms, collector.attributes);
-      assert termsEnum != null;
-
-      if (termsEnum == TermsEnum.EMPTY)
+      final TermsEnum termsEnum = getTermsEnum(query, context, collector.attributes);
+      if (termsEnum == null)
         continue;
       
       // Check comparator compatibility:
@@ -72,14 +58,46 @@ abstract class TermCollectingRewrite<Q extends Query> extends MultiTermQuery.Rew
       if (lastTermComp != null && newTermComp != null && newTermComp != lastTermComp)
         throw new RuntimeException("term comparator should not change between segments: "+lastTermComp+" != "+newTermComp);
       lastTermComp = newTermComp;
-      collector.setReaderContext(topReaderContext, context);
-      collector.setNextEnum(termsEnum);
-      BytesRef bytes;
-      while ((bytes = termsEnum.next()) != null) {
-        if (!collector.collect(bytes))
-          return; // interrupt whole term collection, so also don't iterate other subReaders
-      }
+      if (!collectTerms(topReaderContext, context, termsEnum, collector))
+        return; // interrupt whole term collection, so also don't iterate other subReaders
+    }
+  }
+
+  /** Returns the {@link TermsEnum} of the query over a single segment, or
+   *  null if it has no terms. */
+  final TermsEnum getTermsEnum(MultiTermQuery query, AtomicReaderContext context, AttributeSource atts) throws IOException {
+    final Fields fields = context.reader().fields();
+    if (fields == null) {
+      // reader has no fields
+      return null;
+    }
+
+    final Terms terms = fields.terms(query.field);
+    if (terms == null) {
+      // field does not exist
+      return null;
+    }
+
+    final TermsEnum termsEnum = getTermsEnum(query, terms, atts);
+    assert termsEnum != null;
+
+    if (termsEnum == TermsEnum.EMPTY)
+      return null;
+    return termsEnum;
+  }
+
+  /** Collects the terms of a single segment, returns false if the collector
+   *  interrupted the collection. */
+  final boolean collectTerms(IndexReaderContext topReaderContext, AtomicReaderContext context,
+      TermsEnum termsEnum, TermCollector collector) throws IOException {
+    collector.setReaderContext(topReaderContext, context);
+    collector.setNextEnum(termsEnum);
+    BytesRef bytes;
+    while ((bytes = termsEnum.next()) != null) {
+      if (!collector.collect(bytes))
+        return false;
     }
+    return true;
   }
   
   static abstract class TermCollector {
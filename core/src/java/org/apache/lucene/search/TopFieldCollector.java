@@ -825,6 +825,252 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
 
   }
 
+  /*
+   * Implements a TopFieldCollector over exactly two SortField criteria, without
+   * tracking document scores and maxScore. Unlike
+   * MultiComparatorNonScoringCollector, each comparator is called from its own
+   * call site, so that the calls stay monomorphic for a given sort and can be
+   * inlined.
+   */
+  private static class TwoComparatorsNonScoringCollector extends TopFieldCollector {
+
+    FieldComparator<?> comparator1;
+    FieldComparator<?> comparator2;
+    final int reverseMul1;
+    final int reverseMul2;
+    final FieldValueHitQueue<Entry> queue;
+
+    public TwoComparatorsNonScoringCollector(FieldValueHitQueue<Entry> queue, int numHits, boolean fillFields) {
+      super(queue, numHits, fillFields);
+      this.queue = queue;
+      final FieldComparator<?>[] comparators = queue.getComparators();
+      assert comparators.length == 2;
+      comparator1 = comparators[0];
+      comparator2 = comparators[1];
+      reverseMul1 = queue.getReverseMul()[0];
+      reverseMul2 = queue.getReverseMul()[1];
+    }
+
+    final int compareBottom(int doc) throws IOException {
+      final int c = reverseMul1 * comparator1.compareBottom(doc);
+      if (c != 0) {
+        return c;
+      }
+      return reverseMul2 * comparator2.compareBottom(doc);
+    }
+
+    final void copy(int slot, int doc) throws IOException {
+      comparator1.copy(slot, doc);
+      comparator2.copy(slot, doc);
+    }
+
+    final void setBottom() {
+      comparator1.setBottom(bottom.slot);
+      comparator2.setBottom(bottom.slot);
+    }
+
+    final void updateBottom(int doc) {
+      // bottom.score is already set to Float.NaN in add().
+      bottom.doc = docBase + doc;
+      bottom = pq.updateTop();
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+      ++totalHits;
+      if (queueFull) {
+        // Fastmatch: return if this hit is not competitive. Ties are not
+        // competitive either, since docs are visited in doc Id order.
+        if (compareBottom(doc) <= 0) {
+          return;
+        }
+
+        // This hit is competitive - replace bottom element in queue & adjustTop
+        copy(bottom.slot, doc);
+        updateBottom(doc);
+        setBottom();
+      } else {
+        // Startup transient: queue hasn't gathered numHits yet
+        final int slot = totalHits - 1;
+        // Copy hit into queue
+        copy(slot, doc);
+        add(slot, doc, Float.NaN);
+        if (queueFull) {
+          setBottom();
+        }
+      }
+    }
+
+    @Override
+    public void setNextReader(AtomicReaderContext context) throws IOException {
+      docBase = context.docBase;
+      queue.setComparator(0, comparator1.setNextReader(context));
+      queue.setComparator(1, comparator2.setNextReader(context));
+      comparator1 = queue.getComparators()[0];
+      comparator2 = queue.getComparators()[1];
+    }
+
+    @Override
+    public void setScorer(Scorer scorer) throws IOException {
+      comparator1.setScorer(scorer);
+      comparator2.setScorer(scorer);
+    }
+  }
+
+  /*
+   * Implements a TopFieldCollector over exactly two SortField criteria,
+   * without tracking document scores and maxScore, and assumes out of orderness
+   * in doc Ids collection.
+   */
+  private static class OutOfOrderTwoComparatorsNonScoringCollector extends TwoComparatorsNonScoringCollector {
+
+    public OutOfOrderTwoComparatorsNonScoringCollector(FieldValueHitQueue<Entry> queue,
+        int numHits, boolean fillFields) {
+      super(queue, numHits, fillFields);
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+      ++totalHits;
+      if (queueFull) {
+        // Fastmatch: return if this hit is not competitive
+        final int c = compareBottom(doc);
+        if (c < 0 || (c == 0 && doc + docBase > bottom.doc)) {
+          return;
+        }
+
+        // This hit is competitive - replace bottom element in queue & adjustTop
+        copy(bottom.slot, doc);
+        updateBottom(doc);
+        setBottom();
+      } else {
+        // Startup transient: queue hasn't gathered numHits yet
+        final int slot = totalHits - 1;
+        // Copy hit into queue
+        copy(slot, doc);
+        add(slot, doc, Float.NaN);
+        if (queueFull) {
+          setBottom();
+        }
+      }
+    }
+
+    @Override
+    public boolean acceptsDocsOutOfOrder() {
+      return true;
+    }
+
+  }
+
+  /*
+   * Implements a TopFieldCollector over exactly two SortField criteria, with
+   * tracking document scores but not maxScore.
+   */
+  private static class TwoComparatorsScoringNoMaxScoreCollector extends TwoComparatorsNonScoringCollector {
+
+    Scorer scorer;
+
+    public TwoComparatorsScoringNoMaxScoreCollector(FieldValueHitQueue<Entry> queue, int numHits, boolean fillFields) {
+      super(queue, numHits, fillFields);
+    }
+
+    final void updateBottom(int doc, float score) {
+      bottom.doc = docBase + doc;
+      bottom.score = score;
+      bottom = pq.updateTop();
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+      ++totalHits;
+      if (queueFull) {
+        // Fastmatch: return if this hit is not competitive. Ties are not
+        // competitive either, since docs are visited in doc Id order.
+        if (compareBottom(doc) <= 0) {
+          return;
+        }
+
+        // This hit is competitive - replace bottom element in queue & adjustTop
+        copy(bottom.slot, doc);
+
+        // Compute score only if it is competitive.
+        final float score = scorer.score();
+        updateBottom(doc, score);
+        setBottom();
+      } else {
+        // Startup transient: queue hasn't gathered numHits yet
+        final int slot = totalHits - 1;
+        // Copy hit into queue
+        copy(slot, doc);
+
+        // Compute score only if it is competitive.
+        final float score = scorer.score();
+        add(slot, doc, score);
+        if (queueFull) {
+          setBottom();
+        }
+      }
+    }
+
+    @Override
+    public void setScorer(Scorer scorer) throws IOException {
+      this.scorer = scorer;
+      super.setScorer(scorer);
+    }
+  }
+
+  /*
+   * Implements a TopFieldCollector over exactly two SortField criteria, with
+   * tracking document scores but not maxScore, and assumes out of orderness
+   * in doc Ids collection.
+   */
+  private final static class OutOfOrderTwoComparatorsScoringNoMaxScoreCollector
+      extends TwoComparatorsScoringNoMaxScoreCollector {
+
+    public OutOfOrderTwoComparatorsScoringNoMaxScoreCollector(
+        FieldValueHitQueue<Entry> queue, int numHits, boolean fillFields) {
+      super(queue, numHits, fillFields);
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+      ++totalHits;
+      if (queueFull) {
+        // Fastmatch: return if this hit is not competitive
+        final int c = compareBottom(doc);
+        if (c < 0 || (c == 0 && doc + docBase > bottom.doc)) {
+          return;
+        }
+
+        // This hit is competitive - replace bottom element in queue & adjustTop
+        copy(bottom.slot, doc);
+
+        // Compute score only if it is competitive.
+        final float score = scorer.score();
+        updateBottom(doc, score);
+        setBottom();
+      } else {
+        // Startup transient: queue hasn't gathered numHits yet
+        final int slot = totalHits - 1;
+        // Copy hit into queue
+        copy(slot, doc);
+
+        // Compute score only if it is competitive.
+        final float score = scorer.score();
+        add(slot, doc, score);
+        if (queueFull) {
+          setBottom();
+        }
+      }
+    }
+
+    @Override
+    public boolean acceptsDocsOutOfOrder() {
+      return true;
+    }
+
+  }
+
   /*
    * Implements a TopFieldCollector when after != null.
    */
@@ -1008,6 +1254,8 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
   FieldValueHitQueue.Entry bottom = null;
   boolean queueFull;
   int docBase;
+  // whether docs that can't compete on the first sort field may be skipped
+  boolean skipNonCompetitiveDocs;
   
   // Declaring the constructor private prevents extending this class by anyone
   // else. Note that the class cannot be final since it's extended by the
@@ -1131,6 +1379,24 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
 				}
 			}
 
+			if (queue.getComparators().length == 2 && !trackMaxScore) {
+				// two comparators, the most common multi-field sorts (eg.
+				// field+score or field+id): one call site per comparator
+				if (docsScoredInOrder) {
+					if (trackDocScores) {
+						return new TwoComparatorsScoringNoMaxScoreCollector(queue, numHits, fillFields);
+					} else {
+						return new TwoComparatorsNonScoringCollector(queue, numHits, fillFields);
+					}
+				} else {
+					if (trackDocScores) {
+						return new OutOfOrderTwoComparatorsScoringNoMaxScoreCollector(queue, numHits, fillFields);
+					} else {
+						return new OutOfOrderTwoComparatorsNonScoringCollector(queue, numHits, fillFields);
+					}
+				}
+			}
+
       // multiple comparators.
 			if (docsScoredInOrder) {
 				if (trackMaxScore) {
@@ -1159,7 +1425,89 @@ public abstract class TopFieldCollector extends TopDocsCollector<Entry> {
 			return new PagingFieldCollector(queue, after, numHits, fillFields, trackDocScores, trackMaxScore);
 		}
   	}
+
+  /**
+   * Creates a new {@link TopFieldCollector} from the given arguments.
+   * This is the same as
+   * {@link #create(Sort, int, FieldDoc, boolean, boolean, boolean, boolean)},
+   * except that hits may not all be counted.
+   *
+   * @param trackTotalHits
+   *          specifies whether all hits should be counted. If false, docs
+   *          whose value for the first sort field can't compete with the
+   *          bottom of the queue may be skipped without being scored nor
+   *          counted, so {@link TopDocs#totalHits} is only a lower bound of
+   *          the number of hits. This can make sorted searches that hit
+   *          many docs much faster; it currently works when sorting first
+   *          by an {@link SortField.Type#INT} or {@link SortField.Type#LONG}
+   *          field, if <code>after</code> is null and <code>trackMaxScore</code>
+   *          is false.
+   * @see #create(Sort, int, FieldDoc, boolean, boolean, boolean, boolean)
+   * @lucene.experimental
+   */
+  public static TopFieldCollector create(Sort sort, int numHits, FieldDoc after, boolean fillFields,
+      boolean trackDocScores, boolean trackMaxScore, boolean docsScoredInOrder, boolean trackTotalHits) throws IOException {
+    final TopFieldCollector collector = create(sort, numHits, after, fillFields, trackDocScores, trackMaxScore, docsScoredInOrder);
+    if (trackTotalHits == false && trackMaxScore == false && after == null) {
+      collector.skipNonCompetitiveDocs = true;
+    }
+    return collector;
+  }
   
+  @Override
+  public DocIdSetIterator competitiveIterator() throws IOException {
+    if (skipNonCompetitiveDocs == false) {
+      return null;
+    }
+    final FieldValueHitQueue<Entry> queue = (FieldValueHitQueue<Entry>) pq;
+    return new CompetitiveDocs(queue.getComparators()[0], queue.getReverseMul()[0] == -1);
+  }
+
+  /** All docs until the queue is full, and then the docs that the first
+   *  comparator can't rule out. */
+  private final class CompetitiveDocs extends DocIdSetIterator {
+    private final FieldComparator<?> comparator;
+    private final boolean reverse;
+    private DocIdSetIterator competitive;
+    private boolean allCompetitive;
+    private int doc = -1;
+
+    CompetitiveDocs(FieldComparator<?> comparator, boolean reverse) {
+      this.comparator = comparator;
+      this.reverse = reverse;
+    }
+
+    @Override
+    public int docID() {
+      return doc;
+    }
+
+    @Override
+    public int nextDoc() throws IOException {
+      return advance(doc + 1);
+    }
+
+    @Override
+    public int advance(int target) throws IOException {
+      if (queueFull == false || allCompetitive) {
+        return doc = target;
+      }
+      if (competitive == null) {
+        competitive = comparator.competitiveIterator(reverse);
+        if (competitive == null) {
+          allCompetitive = true;
+          return doc = target;
+        }
+      }
+      return doc = competitive.advance(target);
+    }
+
+    @Override
+    public long cost() {
+      return competitive == null ? Integer.MAX_VALUE : competitive.cost();
+    }
+  }
+
 	final void add(int slot, int doc, float score) {
 		bottom = pq.add(new Entry(slot, docBase + doc, score));
 		queueFull = totalHits == numHits;
@@ -18,12 +18,20 @@ package org.apache.lucene.search;
  */
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Comparator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
+import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexReaderContext;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TermContext;
 import org.apache.lucene.index.TermState;
@@ -31,6 +39,8 @@ import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.ThreadInterruptedException;
 
 /**
  * Base rewrite method for collecting only the top terms
@@ -40,6 +50,7 @@ import org.apache.lucene.util.BytesRefBuilder;
 public abstract class TopTermsRewrite<Q extends Query> extends TermCollectingRewrite<Q> {
 
   private final int size;
+  private final Executor executor;
   
   /** 
    * Create a TopTermsBooleanQueryRewrite for 
@@ -49,7 +60,19 @@ public abstract class TopTermsRewrite<Q extends Query> extends TermCollectingRew
    * <code>size</code>, then it will be used instead. 
    */
   public TopTermsRewrite(int size) {
+    this(size, null);
+  }
+  
+  /** 
+   * Create a TopTermsBooleanQueryRewrite for at most <code>size</code>
+   * terms, that collects the top terms of every segment in parallel on
+   * <code>executor</code>, typically the executor of the {@link
+   * IndexSearcher}, and then merges them. If <code>executor</code> is null,
+   * segments are visited sequentially in the current thread.
+   */
+  public TopTermsRewrite(int size, Executor executor) {
     this.size = size;
+    this.executor = executor;
   }
   
   /** return the maximum priority queue size */
@@ -57,104 +80,25 @@ public abstract class TopTermsRewrite<Q extends Query> extends TermCollectingRew
     return size;
   }
   
+  /** return the executor that collects the terms of segments in parallel, or null */
+  public Executor getExecutor() {
+    return executor;
+  }
+  
   /** return the maximum size of the priority queue (for boolean rewrites this is BooleanQuery#getMaxClauseCount). */
   protected abstract int getMaxSize();
   
   @Override
   public final Q rewrite(final IndexReader reader, final MultiTermQuery query) throws IOException {
     final int maxSize = Math.min(size, getMaxSize());
-    final PriorityQueue<ScoreTerm> stQueue = new PriorityQueue<>();
-    collectTerms(reader, query, new TermCollector() {
-      private final MaxNonCompetitiveBoostAttribute maxBoostAtt =
-        attributes.addAttribute(MaxNonCompetitiveBoostAttribute.class);
-      
-      private final Map<BytesRef,ScoreTerm> visitedTerms = new HashMap<>();
-      
-      private TermsEnum termsEnum;
-      private Comparator<BytesRef> termComp;
-      private BoostAttribute boostAtt;        
-      private ScoreTerm st;
-      
-      @Override
-      public void setNextEnum(TermsEnum termsEnum) {
-        this.termsEnum = termsEnum;
-        this.termComp = termsEnum.getComparator();
-        
-        assert compareToLastTerm(null);
-
-        // lazy init the initial ScoreTerm because comparator is not known on ctor:
-        if (st == null)
-          st = new ScoreTerm(this.termComp, new TermContext(topReaderContext));
-        boostAtt = termsEnum.attributes().addAttribute(BoostAttribute.class);
-      }
-    
-      // for assert:
-      private BytesRefBuilder lastTerm;
-      private boolean compareToLastTerm(BytesRef t) {
-        if (lastTerm == null && t != null) {
-          lastTerm = new BytesRefBuilder();
-          lastTerm.append(t);
-        } else if (t == null) {
-          lastTerm = null;
-        } else {
-          assert termsEnum.getComparator().compare(lastTerm.get(), t) < 0: "lastTerm=" + lastTerm.get() + " t=" + t;
-          lastTerm.copyBytes(t);
-        }
-        return true;
-      }
-  
-      @Override
-      public boolean collect(BytesRef bytes) throws IOException {
-        final float boost = boostAtt.getBoost();
-
-        // make sure within a single seg we always collect
-        // terms in order
-        assert compareToLastTerm(bytes);
-
-        //System.out.println("TTR.collect term=" + bytes.utf8ToString() + " boost=" + boost + " ord=" + readerContext.ord);
-        // ignore uncompetitive hits
-        if (stQueue.size() == maxSize) {
-          final ScoreTerm t = stQueue.peek();
-          if (boost < t.boost)
-            return true;
-          if (boost == t.boost && termComp.compare(bytes, t.bytes.get()) > 0)
-            return true;
-        }
-        ScoreTerm t = visitedTerms.get(bytes);
-        final TermState state = termsEnum.termState();
-        assert state != null;
-        if (t != null) {
-          // if the term is already in the PQ, only update docFreq of term in PQ
-          assert t.boost == boost : "boost should be equal in all segment TermsEnums";
-          t.termState.register(state, readerContext.ord, termsEnum.docFreq(), termsEnum.totalTermFreq());
-        } else {
-          // add new entry in PQ, we must clone the term, else it may get overwritten!
-          st.bytes.copyBytes(bytes);
-          st.boost = boost;
-          visitedTerms.put(st.bytes.get(), st);
-          assert st.termState.docFreq() == 0;
-          st.termState.register(state, readerContext.ord, termsEnum.docFreq(), termsEnum.totalTermFreq());
-          stQueue.offer(st);
-          // possibly drop entries from queue
-          if (stQueue.size() > maxSize) {
-            st = stQueue.poll();
-            visitedTerms.remove(st.bytes.get());
-            st.termState.clear(); // reset the termstate! 
-          } else {
-            st = new ScoreTerm(termComp, new TermContext(topReaderContext));
-          }
-          assert stQueue.size() <= maxSize : "the PQ size must be limited to maxSize";
-          // set maxBoostAtt with values to help FuzzyTermsEnum to optimize
-          if (stQueue.size() == maxSize) {
-            t = stQueue.peek();
-            maxBoostAtt.setMaxNonCompetitiveBoost(t.boost);
-            maxBoostAtt.setCompetitiveTerm(t.bytes.get());
-          }
-        }
-       
-        return true;
-      }
-    });
+    final PriorityQueue<ScoreTerm> stQueue;
+    if (executor == null || reader.leaves().size() <= 1) {
+      final TopTermsCollector collector = new TopTermsCollector(maxSize);
+      collectTerms(reader, query, collector);
+      stQueue = collector.stQueue;
+    } else {
+      stQueue = collectTermsInParallel(reader.getContext(), query, maxSize);
+    }
     
     final Q q = getTopLevelQuery();
     final ScoreTerm[] scoreTerms = stQueue.toArray(new ScoreTerm[stQueue.size()]);
@@ -168,6 +112,167 @@ public abstract class TopTermsRewrite<Q extends Query> extends TermCollectingRew
     return q;
   }
 
+  private PriorityQueue<ScoreTerm> collectTermsInParallel(final IndexReaderContext topReaderContext,
+      final MultiTermQuery query, final int maxSize) throws IOException {
+    final List<FutureTask<TopTermsCollector>> tasks = new ArrayList<>();
+    for (final AtomicReaderContext context : topReaderContext.leaves()) {
+      final FutureTask<TopTermsCollector> task = new FutureTask<>(new Callable<TopTermsCollector>() {
+        @Override
+        public TopTermsCollector call() throws IOException {
+          final TopTermsCollector collector = new TopTermsCollector(maxSize);
+          final TermsEnum termsEnum = getTermsEnum(query, context, collector.attributes);
+          if (termsEnum != null) {
+            collectTerms(topReaderContext, context, termsEnum, collector);
+          }
+          return collector;
+        }
+      });
+      executor.execute(task);
+      tasks.add(task);
+    }
+
+    // A term that is in the top terms of the whole index is also in the top
+    // terms of every segment that contains it, so merging the top terms of
+    // all segments gives the same terms and states as a sequential
+    // collection.
+    final Map<BytesRef,ScoreTerm> mergedTerms = new HashMap<>();
+    Throwable th = null;
+    for (FutureTask<TopTermsCollector> task : tasks) {
+      final TopTermsCollector collector;
+      try {
+        collector = task.get();
+      } catch (InterruptedException e) {
+        throw new ThreadInterruptedException(e);
+      } catch (ExecutionException e) {
+        // wait for the other tasks before throwing
+        if (th == null) {
+          th = e.getCause();
+        }
+        continue;
+      }
+      for (ScoreTerm st : collector.stQueue) {
+        final ScoreTerm t = mergedTerms.get(st.bytes.get());
+        if (t == null) {
+          mergedTerms.put(st.bytes.get(), st);
+        } else {
+          assert t.boost == st.boost : "boost should be equal in all segment TermsEnums";
+          final int ord = collector.readerContext.ord;
+          t.termState.register(st.termState.get(ord), ord, st.termState.docFreq(), st.termState.totalTermFreq());
+        }
+      }
+    }
+    IOUtils.reThrow(th);
+
+    final PriorityQueue<ScoreTerm> stQueue = new PriorityQueue<>();
+    for (ScoreTerm st : mergedTerms.values()) {
+      stQueue.offer(st);
+      if (stQueue.size() > maxSize) {
+        stQueue.poll();
+      }
+    }
+    return stQueue;
+  }
+
+  /** Collects the top terms in a priority queue. */
+  private static final class TopTermsCollector extends TermCollector {
+    private final int maxSize;
+    final PriorityQueue<ScoreTerm> stQueue = new PriorityQueue<>();
+
+    private final MaxNonCompetitiveBoostAttribute maxBoostAtt =
+      attributes.addAttribute(MaxNonCompetitiveBoostAttribute.class);
+    
+    private final Map<BytesRef,ScoreTerm> visitedTerms = new HashMap<>();
+    
+    private TermsEnum termsEnum;
+    private Comparator<BytesRef> termComp;
+    private BoostAttribute boostAtt;        
+    private ScoreTerm st;
+
+    TopTermsCollector(int maxSize) {
+      this.maxSize = maxSize;
+    }
+    
+    @Override
+    public void setNextEnum(TermsEnum termsEnum) {
+      this.termsEnum = termsEnum;
+      this.termComp = termsEnum.getComparator();
+      
+      assert compareToLastTerm(null);
+
+      // lazy init the initial ScoreTerm because comparator is not known on ctor:
+      if (st == null)
+        st = new ScoreTerm(this.termComp, new TermContext(topReaderContext));
+      boostAtt = termsEnum.attributes().addAttribute(BoostAttribute.class);
+    }
+  
+    // for assert:
+    private BytesRefBuilder lastTerm;
+    private boolean compareToLastTerm(BytesRef t) {
+      if (lastTerm == null && t != null) {
+        lastTerm = new BytesRefBuilder();
+        lastTerm.append(t);
+      } else if (t == null) {
+        lastTerm = null;
+      } else {
+        assert termsEnum.getComparator().compare(lastTerm.get(), t) < 0: "lastTerm=" + lastTerm.get() + " t=" + t;
+        lastTerm.copyBytes(t);
+      }
+      return true;
+    }
+
+    @Override
+    public boolean collect(BytesRef bytes) throws IOException {
+      final float boost = boostAtt.getBoost();
+
+      // make sure within a single seg we always collect
+      // terms in order
+      assert compareToLastTerm(bytes);
+
+      //System.out.println("TTR.collect term=" + bytes.utf8ToString() + " boost=" + boost + " ord=" + readerContext.ord);
+      // ignore uncompetitive hits
+      if (stQueue.size() == maxSize) {
+        final ScoreTerm t = stQueue.peek();
+        if (boost < t.boost)
+          return true;
+        if (boost == t.boost && termComp.compare(bytes, t.bytes.get()) > 0)
+          return true;
+      }
+      ScoreTerm t = visitedTerms.get(bytes);
+      final TermState state = termsEnum.termState();
+      assert state != null;
+      if (t != null) {
+        // if the term is already in the PQ, only update docFreq of term in PQ
+        assert t.boost == boost : "boost should be equal in all segment TermsEnums";
+        t.termState.register(state, readerContext.ord, termsEnum.docFreq(), termsEnum.totalTermFreq());
+      } else {
+        // add new entry in PQ, we must clone the term, else it may get overwritten!
+        st.bytes.copyBytes(bytes);
+        st.boost = boost;
+        visitedTerms.put(st.bytes.get(), st);
+        assert st.termState.docFreq() == 0;
+        st.termState.register(state, readerContext.ord, termsEnum.docFreq(), termsEnum.totalTermFreq());
+        stQueue.offer(st);
+        // possibly drop entries from queue
+        if (stQueue.size() > maxSize) {
+          st = stQueue.poll();
+          visitedTerms.remove(st.bytes.get());
+          st.termState.clear(); // reset the termstate! 
+        } else {
+          st = new ScoreTerm(termComp, new TermContext(topReaderContext));
+        }
+        assert stQueue.size() <= maxSize : "the PQ size must be limited to maxSize";
+        // set maxBoostAtt with values to help FuzzyTermsEnum to optimize
+        if (stQueue.size() == maxSize) {
+          t = stQueue.peek();
+          maxBoostAtt.setMaxNonCompetitiveBoost(t.boost);
+          maxBoostAtt.setCompetitiveTerm(t.bytes.get());
+        }
+      }
+     
+      return true;
+    }
+  }
+
   @Override
   public int hashCode() {
     return 31 * size;
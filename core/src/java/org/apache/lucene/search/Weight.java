@@ -158,7 +158,14 @@ public abstract class Weight {
 			// Collector doing something "interesting" in
 			// setScorer will be forced to use BS2 anyways:
 			collector.setScorer(scorer);
-			if (max == DocIdSetIterator.NO_MORE_DOCS) {
+			final DocIdSetIterator competitive = collector.competitiveIterator();
+			if (competitive != null) {
+				int doc = scorer.docID();
+				if (doc < 0) {
+					doc = scorer.nextDoc();
+				}
+				return scoreCompetitive(collector, scorer, competitive, doc, max);
+			} else if (max == DocIdSetIterator.NO_MORE_DOCS) {
 				scoreAll(collector, scorer);
 				return false;
 			} else {
@@ -170,6 +177,28 @@ public abstract class Weight {
 			}
     }
 
+    /** Bulk-scores hits up to <code>end</code>, leap-frogging the scorer
+     *  with the collector's iterator of competitive docs. */
+    static boolean scoreCompetitive(Collector collector, Scorer scorer, DocIdSetIterator competitive, int currentDoc, int end) throws IOException {
+      while (currentDoc < end) {
+        int competitiveDoc = competitive.docID();
+        if (competitiveDoc < currentDoc) {
+          competitiveDoc = competitive.advance(currentDoc);
+        }
+        if (competitiveDoc == currentDoc) {
+          collector.collect(currentDoc);
+          currentDoc = scorer.nextDoc();
+        } else if (competitiveDoc == DocIdSetIterator.NO_MORE_DOCS) {
+          // no more competitive docs in this segment
+          currentDoc = DocIdSetIterator.NO_MORE_DOCS;
+        } else {
+          // docs up to competitiveDoc will never be competitive
+          currentDoc = scorer.advance(competitiveDoc);
+        }
+      }
+      return currentDoc != DocIdSetIterator.NO_MORE_DOCS;
+    }
+
     /** Specialized method to bulk-score a range of hits; we
      *  separate this from {@link #scoreAll} to help out
      *  hotspot.
@@ -54,8 +54,18 @@ public class WildcardQuery extends AutomatonQuery {
    * Constructs a query for terms matching <code>term</code>. 
    */
 	public WildcardQuery(Term term) {
-		super(term, toAutomaton(term));
+		super(term, getAutomaton(term));
 	}
+
+  private static CachedAutomaton getAutomaton(Term term) {
+    final CacheKey key = new CacheKey(WildcardQuery.class, term.text(), 0);
+    CachedAutomaton automaton = AUTOMATA_CACHE.get(key);
+    if (automaton == null) {
+      automaton = new CachedAutomaton(toAutomaton(term));
+      AUTOMATA_CACHE.put(key, automaton);
+    }
+    return automaton;
+  }
   
   /**
    * Convert Lucene wildcard syntax into an automaton.
@@ -208,7 +208,7 @@ public class BM25Similarity extends Similarity {
     for (int i = 0; i < cache.length; i++) {
       cache[i] = k1 * ((1 - b) + b * decodeNormValue((byte)i) / avgdl);
     }
-    return new BM25Stats(collectionStats.field(), idf, queryBoost, avgdl, cache);
+    return new BM25Stats(collectionStats.field(), idf, queryBoost, avgdl, cache, k1);
   }
 
   @Override
@@ -222,16 +222,23 @@ public class BM25Similarity extends Similarity {
     private final float weightValue; // boost * idf * (k1 + 1)
     private final NumericDocValues norms;
     private final float[] cache;
+    private final float[] scoreCache;
     
     BM25DocScorer(BM25Stats stats, NumericDocValues norms) throws IOException {
       this.stats = stats;
       this.weightValue = stats.weight * (k1 + 1);
       this.cache = stats.cache;
       this.norms = norms;
+      this.scoreCache = norms == null ? stats.noNormsScoreCache : stats.scoreCache;
     }
     
     @Override
     public float score(int doc, float freq) {
+      final int intFreq = (int) freq;
+      if (intFreq == freq && intFreq > 0 && intFreq <= SCORE_CACHE_FREQS) {
+        // common case: small integer freq, the score is precomputed
+        return norms == null ? scoreCache[intFreq - 1] : scoreCache[((intFreq - 1) << 8) | ((byte)norms.get(doc) & 0xFF)];
+      }
       // if there are no norms, we act as if b=0
       float norm = norms == null ? k1 : cache[(byte)norms.get(doc) & 0xFF];
       return weightValue * freq / (freq + norm);
@@ -253,6 +260,9 @@ public class BM25Similarity extends Similarity {
     }
   }
   
+  /** Scores are precomputed for integer freqs up to this value. */
+  static final int SCORE_CACHE_FREQS = 4;
+
   /** Collection statistics for the BM25 model. */
   private static class BM25Stats extends SimWeight {
     /** BM25's idf */
@@ -269,13 +279,20 @@ public class BM25Similarity extends Similarity {
     private final String field;
     /** precomputed norm[256] with k1 * ((1 - b) + b * dl / avgdl) */
     private final float cache[];
+    /** k1, used as the norm when the field has no norms */
+    private final float k1;
+    /** precomputed scores for freqs 1 to SCORE_CACHE_FREQS, by (freq - 1) * 256 + norm */
+    private final float scoreCache[] = new float[SCORE_CACHE_FREQS * 256];
+    /** precomputed scores for freqs 1 to SCORE_CACHE_FREQS, without norms */
+    private final float noNormsScoreCache[] = new float[SCORE_CACHE_FREQS];
 
-    BM25Stats(String field, Explanation idf, float queryBoost, float avgdl, float cache[]) {
+    BM25Stats(String field, Explanation idf, float queryBoost, float avgdl, float cache[], float k1) {
       this.field = field;
       this.idf = idf;
       this.queryBoost = queryBoost;
       this.avgdl = avgdl;
       this.cache = cache;
+      this.k1 = k1;
     }
 
     @Override
@@ -290,6 +307,14 @@ public class BM25Similarity extends Similarity {
       // we don't normalize with queryNorm at all, we just capture the top-level boost
       this.topLevelBoost = topLevelBoost;
       this.weight = idf.getValue() * queryBoost * topLevelBoost;
+      // same computation as BM25DocScorer.score, so that scores do not depend on the cache
+      final float weightValue = weight * (k1 + 1);
+      for (int freq = 1; freq <= SCORE_CACHE_FREQS; freq++) {
+        for (int norm = 0; norm < 256; norm++) {
+          scoreCache[((freq - 1) << 8) | norm] = weightValue * freq / (freq + cache[norm]);
+        }
+        noNormsScoreCache[freq - 1] = weightValue * freq / (freq + k1);
+      }
     } 
   }
   
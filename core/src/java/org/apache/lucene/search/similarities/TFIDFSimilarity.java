@@ -700,16 +700,24 @@ public abstract class TFIDFSimilarity extends Similarity {
     private final IDFStats stats;
     private final float weightValue;
     private final NumericDocValues norms;
+    private final float[] rawCache; // tf(f)*weight for small integer freqs
     
 		TFIDFSimScorer(IDFStats stats, NumericDocValues norms) throws IOException {
 			this.stats = stats;
 			this.weightValue = stats.value;
 			this.norms = norms;
+			rawCache = new float[RAW_CACHE_FREQS];
+			for (int freq = 1; freq <= RAW_CACHE_FREQS; freq++) {
+				rawCache[freq - 1] = tf(freq) * weightValue;
+			}
 		}
     
 		@Override
 		public float score(int doc, float freq) {
-			final float raw = tf(freq) * weightValue; // compute tf(f)*weight
+			final int intFreq = (int) freq;
+			final float raw = intFreq == freq && intFreq > 0 && intFreq <= RAW_CACHE_FREQS
+			    ? rawCache[intFreq - 1]
+			    : tf(freq) * weightValue; // compute tf(f)*weight
       		return norms == null ? raw : raw * decodeNormValue(norms.get(doc));  // normalize for field
 		}
     
@@ -729,6 +737,9 @@ public abstract class TFIDFSimilarity extends Similarity {
 		}
   }
   
+  /** tf(freq)*weight is precomputed per segment for integer freqs up to this value. */
+  static final int RAW_CACHE_FREQS = 16;
+
   /** Collection statistics for the TF-IDF model. The only statistic of interest
    * to this model is idf. */
   private static class IDFStats extends SimWeight {
@@ -26,13 +26,9 @@ import org.apache.lucene.util.InPlaceMergeSorter;
 
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Collection;
 import java.util.Map;
-import java.util.Set;
 
 /** A Spans that is formed from the ordered subspans of a SpanNearQuery
  * where the subspans do not overlap and have a maximum slop between them.
@@ -70,7 +66,13 @@ public class NearSpansOrdered extends Spans {
   private int matchDoc = -1;
   private int matchStart = -1;
   private int matchEnd = -1;
-  private List<byte[]> matchPayload;
+  // payloads of the match, except the ones of the last subSpans which are
+  // only read when asked for, since the last subSpans stays on the match
+  private final List<byte[]> matchPayload = new ArrayList<>();
+  private boolean lastPayloadCollected;
+  // reused across matches, to not allocate per candidate match
+  private final List<byte[]> possibleMatchPayloads = new ArrayList<>();
+  private final List<byte[]> possiblePayload = new ArrayList<>();
 
   private final Spans[] subSpansByDoc;
   // Even though the array is probably almost sorted, InPlaceMergeSorter will likely
@@ -103,7 +105,6 @@ public class NearSpansOrdered extends Spans {
     allowedSlop = spanNearQuery.getSlop();
     SpanQuery[] clauses = spanNearQuery.getClauses();
     subSpans = new Spans[clauses.length];
-    matchPayload = new LinkedList<>();
     subSpansByDoc = new Spans[clauses.length];
     for (int i = 0; i < clauses.length; i++) {
       subSpans[i] = clauses[i].getSpans(context, acceptDocs, termContexts);
@@ -129,16 +130,23 @@ public class NearSpansOrdered extends Spans {
   }  
 
   // TODO: Remove warning after API has been finalized
-  // TODO: Would be nice to be able to lazy load payloads
   @Override
   public Collection<byte[]> getPayload() throws IOException {
+    if (collectPayloads && lastPayloadCollected == false) {
+      lastPayloadCollected = true;
+      final Spans lastSpans = subSpans[subSpans.length - 1];
+      if (lastSpans.isPayloadAvailable()) {
+        matchPayload.addAll(lastSpans.getPayload());
+      }
+    }
     return matchPayload;
   }
 
   // TODO: Remove warning after API has been finalized
   @Override
-  public boolean isPayloadAvailable() {
-    return matchPayload.isEmpty() == false;
+  public boolean isPayloadAvailable() throws IOException {
+    return matchPayload.isEmpty() == false
+        || (collectPayloads && lastPayloadCollected == false && subSpans[subSpans.length - 1].isPayloadAvailable());
   }
 
   @Override
@@ -163,9 +171,8 @@ public class NearSpansOrdered extends Spans {
       }
       more = true;
     }
-    if(collectPayloads) {
-      matchPayload.clear();
-    }
+    matchPayload.clear();
+    lastPayloadCollected = false;
     return advanceAfterOrdered();
   }
 
@@ -189,9 +196,8 @@ public class NearSpansOrdered extends Spans {
         return false;
       }
     }
-    if(collectPayloads) {
-      matchPayload.clear();
-    }
+    matchPayload.clear();
+    lastPayloadCollected = false;
     return advanceAfterOrdered();
   }
   
@@ -282,22 +288,17 @@ public class NearSpansOrdered extends Spans {
   private boolean shrinkToAfterShortestMatch() throws IOException {
     matchStart = subSpans[subSpans.length - 1].start();
     matchEnd = subSpans[subSpans.length - 1].end();
-    Set<byte[]> possibleMatchPayloads = new HashSet<>();
-    if (subSpans[subSpans.length - 1].isPayloadAvailable()) {
-      possibleMatchPayloads.addAll(subSpans[subSpans.length - 1].getPayload());
-    }
-
-    Collection<byte[]> possiblePayload = null;
+    possibleMatchPayloads.clear();
     
     int matchSlop = 0;
     int lastStart = matchStart;
     int lastEnd = matchEnd;
     for (int i = subSpans.length - 2; i >= 0; i--) {
       Spans prevSpans = subSpans[i];
+      // prevSpans is advanced after the match, so its payload must be copied now
+      possiblePayload.clear();
       if (collectPayloads && prevSpans.isPayloadAvailable()) {
-        Collection<byte[]> payload = prevSpans.getPayload();
-        possiblePayload = new ArrayList<>(payload.size());
-        possiblePayload.addAll(payload);
+        possiblePayload.addAll(prevSpans.getPayload());
       }
       
       int prevStart = prevSpans.start();
@@ -319,17 +320,14 @@ public class NearSpansOrdered extends Spans {
             prevStart = ppStart;
             prevEnd = ppEnd;
             if (collectPayloads && prevSpans.isPayloadAvailable()) {
-              Collection<byte[]> payload = prevSpans.getPayload();
-              possiblePayload = new ArrayList<>(payload.size());
-              possiblePayload.addAll(payload);
+              possiblePayload.clear();
+              possiblePayload.addAll(prevSpans.getPayload());
             }
           }
         }
       }
 
-      if (collectPayloads && possiblePayload != null) {
-        possibleMatchPayloads.addAll(possiblePayload);
-      }
+      possibleMatchPayloads.addAll(possiblePayload);
       
       assert prevStart <= matchStart;
       if (matchStart > prevEnd) { // Only non overlapping spans add to slop.
@@ -28,8 +28,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.HashSet;
 
 /**
  * Similar to {@link NearSpansOrdered}, but for the unordered case.
@@ -55,6 +53,9 @@ public class NearSpansUnordered extends Spans {
   private boolean more = true;                    // true iff not done
   private boolean firstTime = true;               // true before first next()
 
+  // reused across calls to getPayload()
+  private final List<byte[]> matchPayload = new ArrayList<>();
+
   private class CellQueue extends PriorityQueue<SpansCell> {
     public CellQueue(int size) {
       super(size);
@@ -121,7 +122,7 @@ public class NearSpansUnordered extends Spans {
                     // TODO: Remove warning after API has been finalized
     @Override
     public Collection<byte[]> getPayload() throws IOException {
-      return new ArrayList<>(spans.getPayload());
+      return spans.getPayload(); // copied by NearSpansUnordered.getPayload
     }
 
     // TODO: Remove warning after API has been finalized
@@ -250,7 +251,7 @@ public class NearSpansUnordered extends Spans {
    */
   @Override
   public Collection<byte[]> getPayload() throws IOException {
-    Set<byte[]> matchPayload = new HashSet<>();
+    matchPayload.clear();
     for (SpansCell cell = first; cell != null; cell = cell.next) {
       if (cell.isPayloadAvailable()) {
         matchPayload.addAll(cell.getPayload());
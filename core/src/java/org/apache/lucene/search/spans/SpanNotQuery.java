@@ -28,6 +28,7 @@ import org.apache.lucene.util.ToStringUtils;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -111,6 +112,9 @@ public class SpanNotQuery extends SpanQuery implements Cloneable {
         private Spans excludeSpans = exclude.getSpans(context, acceptDocs, termContexts);
         private boolean moreExclude = excludeSpans.next();
 
+        // reused across calls to getPayload()
+        private final List<byte[]> payload = new ArrayList<>();
+
         @Override
         public boolean next() throws IOException {
           if (moreInclude)                        // move to next include
@@ -173,11 +177,12 @@ public class SpanNotQuery extends SpanQuery implements Cloneable {
       // TODO: Remove warning after API has been finalized
       @Override
       public Collection<byte[]> getPayload() throws IOException {
-        ArrayList<byte[]> result = null;
         if (includeSpans.isPayloadAvailable()) {
-          result = new ArrayList<>(includeSpans.getPayload());
+          payload.clear();
+          payload.addAll(includeSpans.getPayload());
+          return payload;
         }
-        return result;
+        return null;
       }
 
       // TODO: Remove warning after API has been finalized
@@ -172,6 +172,8 @@ public class SpanOrQuery extends SpanQuery implements Cloneable {
     return new Spans() {
         private SpanQueue queue = null;
         private long cost;
+        // reused across calls to getPayload()
+        private final List<byte[]> payload = new ArrayList<>();
 
         private boolean initSpanQueue(int target) throws IOException {
           queue = new SpanQueue(clauses.size());
@@ -239,12 +241,13 @@ public class SpanOrQuery extends SpanQuery implements Cloneable {
 
       @Override
       public Collection<byte[]> getPayload() throws IOException {
-        ArrayList<byte[]> result = null;
         Spans theTop = top();
         if (theTop != null && theTop.isPayloadAvailable()) {
-          result = new ArrayList<>(theTop.getPayload());
+          payload.clear();
+          payload.addAll(theTop.getPayload());
+          return payload;
         }
-        return result;
+        return null;
       }
 
       @Override
@@ -27,6 +27,7 @@ import org.apache.lucene.util.Bits;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -118,6 +119,8 @@ public abstract class SpanPositionCheckQuery extends SpanQuery implements Clonea
 
   protected class PositionCheckSpan extends Spans {
     private Spans spans;
+    // reused across calls to getPayload()
+    private final List<byte[]> payload = new ArrayList<>();
 
     public PositionCheckSpan(AtomicReaderContext context, Bits acceptDocs, Map<Term,TermContext> termContexts) throws IOException {
       spans = match.getSpans(context, acceptDocs, termContexts);
@@ -167,11 +170,12 @@ public abstract class SpanPositionCheckQuery extends SpanQuery implements Clonea
 
     @Override
     public Collection<byte[]> getPayload() throws IOException {
-      ArrayList<byte[]> result = null;
       if (spans.isPayloadAvailable()) {
-        result = new ArrayList<>(spans.getPayload());
+        payload.clear();
+        payload.addAll(spans.getPayload());
+        return payload;
       }
-      return result;//TODO: any way to avoid the new construction?
+      return null;
     }
     // TODO: Remove warning after API has been finalized
 
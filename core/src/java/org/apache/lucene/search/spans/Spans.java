@@ -70,6 +70,9 @@ public abstract class Spans {
    * <br>
     * Note that the return type is a collection, thus the ordering should not be relied upon.
     * <br/>
+   * The returned collection may be reused by the next call to this method,
+   * {@link #next()} or {@link #skipTo(int)}: copy it if it is needed for
+   * longer.<br>
    * @lucene.experimental
    *
    * @return a List of byte arrays containing the data of this payload, otherwise null if isPayloadAvailable is false
@@ -26,8 +26,14 @@ import java.util.zip.Checksum;
  * another input and delegates calls.
  */
 public class BufferedChecksumIndexInput extends ChecksumIndexInput {
+  /** Size of the buffer used to skip (and checksum) bytes; large enough
+   *  to feed the underlying {@link CRC32} without going through
+   *  {@link BufferedChecksum}'s own buffer. */
+  private static final int SKIP_BUFFER_SIZE = 64 * 1024;
+
   final IndexInput main;
   final Checksum digest;
+  private byte[] skipBuffer;
 
   /** Creates a new BufferedChecksumIndexInput */
   public BufferedChecksumIndexInput(IndexInput main) {
@@ -50,6 +56,25 @@ public class BufferedChecksumIndexInput extends ChecksumIndexInput {
     digest.update(b, offset, len);
   }
 
+  /** Reads and checksums the skipped bytes in large chunks, so
+   *  that checksumming a whole file (see
+   *  {@link org.apache.lucene.codecs.CodecUtil#checksumEntireFile})
+   *  is a tight loop of bulk reads. */
+  @Override
+  public void skipBytes(long numBytes) throws IOException {
+    if (numBytes < 0) {
+      throw new IllegalArgumentException("numBytes must be >= 0, got " + numBytes);
+    }
+    if (skipBuffer == null) {
+      skipBuffer = new byte[SKIP_BUFFER_SIZE];
+    }
+    for (long skipped = 0; skipped < numBytes; ) {
+      final int step = (int) Math.min(skipBuffer.length, numBytes - skipped);
+      readBytes(skipBuffer, 0, step);
+      skipped += step;
+    }
+  }
+
   @Override
   public long getChecksum() {
     return digest.getValue();
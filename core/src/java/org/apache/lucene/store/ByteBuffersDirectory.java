@@ -0,0 +1,344 @@
+package org.apache.lucene.store;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+import org.apache.lucene.util.Accountable;
+
+/**
+ * A memory-resident {@link Directory} that stores each file in
+ * large, power-of-two sized {@link ByteBuffer} slabs, either on
+ * the Java heap or off-heap ({@link ByteBuffer#allocateDirect direct} buffers).
+ *
+ * <p>Unlike {@link RAMDirectory}, which keeps files as lists of
+ * 1 KB {@code byte[]} blocks behind synchronized accessors, files
+ * written here are immutable once their output is closed, and are
+ * read through the same {@link ByteBufferIndexInput} code path as
+ * {@link MMapDirectory}, including {@link IndexInput#slice slicing}
+ * and {@link RandomAccessInput} access, without any locking.
+ * File metadata is kept in a {@link ConcurrentHashMap}.
+ *
+ * <p>Small files do not waste a whole slab: a file starts with a
+ * small buffer that doubles until it reaches the slab size, after
+ * which full slabs are appended.
+ *
+ * <p>Files can not be opened for reading while they are still open
+ * for writing.  Locking implementation is by default the
+ * {@link SingleInstanceLockFactory} but can be changed with
+ * {@link #setLockFactory}.
+ *
+ * @lucene.experimental
+ */
+public class ByteBuffersDirectory extends BaseDirectory implements Accountable {
+
+  /** Default slab size: 1 MB. */
+  public static final int DEFAULT_SLAB_SIZE_POWER = 20;
+
+  /** Size of the first buffer of every file. */
+  static final int INITIAL_BUFFER_SIZE = 1024;
+
+  private final Map<String,FileEntry> files = new ConcurrentHashMap<>();
+  private final AtomicLong sizeInBytes = new AtomicLong();
+  private final int slabSizePower;
+  private final boolean direct;
+
+  /** Creates an empty directory using on-heap
+   *  slabs of {@link #DEFAULT_SLAB_SIZE_POWER}. */
+  public ByteBuffersDirectory() {
+    this(DEFAULT_SLAB_SIZE_POWER, false);
+  }
+
+  /**
+   * Creates an empty directory.
+   *
+   * @param slabSizePower log2 of the size of a slab; must be between 10
+   *        and 30 (1 KB to 1 GB)
+   * @param direct true to allocate slabs off-heap with
+   *        {@link ByteBuffer#allocateDirect}
+   */
+  public ByteBuffersDirectory(int slabSizePower, boolean direct) {
+    if (slabSizePower < 10 || slabSizePower > 30) {
+      throw new IllegalArgumentException("slabSizePower must be between 10 and 30; got: " + slabSizePower);
+    }
+    this.slabSizePower = slabSizePower;
+    this.direct = direct;
+    try {
+      setLockFactory(new SingleInstanceLockFactory());
+    } catch (IOException e) {
+      // Cannot happen
+    }
+  }
+
+  @Override
+  public String getLockID() {
+    return "lucene-" + Integer.toHexString(hashCode());
+  }
+
+  @Override
+  public final String[] listAll() {
+    ensureOpen();
+    // NOTE: the code below is resilient to map changes during the array population.
+    Set<String> fileNames = files.keySet();
+    List<String> names = new ArrayList<>(fileNames.size());
+    for (String name : fileNames) names.add(name);
+    return names.toArray(new String[names.size()]);
+  }
+
+  @Override
+  public final boolean fileExists(String name) {
+    ensureOpen();
+    return files.containsKey(name);
+  }
+
+  /** Returns the length in bytes of a file in the directory;
+   *  for a file that is still open for writing, this is the
+   *  length as of the last flush.
+   * @throws IOException if the file does not exist
+   */
+  @Override
+  public final long fileLength(String name) throws IOException {
+    ensureOpen();
+    final FileEntry file = files.get(name);
+    if (file == null) {
+      throw new FileNotFoundException(name);
+    }
+    return file.length;
+  }
+
+  /** Return total size in bytes of all slabs allocated by this directory. */
+  @Override
+  public final long ramBytesUsed() {
+    ensureOpen();
+    return sizeInBytes.get();
+  }
+
+  @Override
+  public void deleteFile(String name) throws IOException {
+    ensureOpen();
+    final FileEntry file = files.remove(name);
+    if (file != null) {
+      file.release();
+    } else {
+      throw new FileNotFoundException(name);
+    }
+  }
+
+  @Override
+  public IndexOutput createOutput(String name, IOContext context) throws IOException {
+    ensureOpen();
+    final FileEntry file = new FileEntry(name);
+    final FileEntry existing = files.put(name, file);
+    if (existing != null) {
+      existing.release();
+    }
+    return new ByteBuffersIndexOutput(file);
+  }
+
+  @Override
+  public void sync(Collection<String> names) throws IOException {
+  }
+
+  @Override
+  public IndexInput openInput(String name, IOContext context) throws IOException {
+    ensureOpen();
+    final FileEntry file = files.get(name);
+    if (file == null) {
+      throw new FileNotFoundException(name);
+    }
+    return file.openInput();
+  }
+
+  /** Closes the store to future operations, releasing associated memory. */
+  @Override
+  public void close() {
+    isOpen = false;
+    files.clear();
+    sizeInBytes.set(0);
+  }
+
+  @Override
+  public String toString() {
+    return getClass().getSimpleName() + "@" + Integer.toHexString(hashCode()) + "(slabSize=" + (1 << slabSizePower) + ",direct=" + direct + ")";
+  }
+
+  /** A file in this directory: mutable until its output is
+   *  closed, then an immutable list of slabs. */
+  final class FileEntry {
+    private final String name;
+    /** Published on close of the output; null while writing. */
+    private volatile ByteBuffer[] buffers;
+    volatile long length;
+    private long allocated;
+    private boolean released;
+
+    FileEntry(String name) {
+      this.name = name;
+    }
+
+    IndexInput openInput() throws IOException {
+      final ByteBuffer[] buffers = this.buffers;
+      if (buffers == null) {
+        throw new IOException("file \"" + name + "\" is still open for writing");
+      }
+      final ByteBuffer[] copy = new ByteBuffer[buffers.length];
+      for (int i = 0; i < buffers.length; i++) {
+        copy[i] = buffers[i].duplicate();
+      }
+      return ByteBufferIndexInput.newInstance("ByteBuffersIndexInput(name=" + name + ")", copy, length, slabSizePower, null, false);
+    }
+
+    void publish(List<ByteBuffer> slabs, long length) {
+      // ByteBufferIndexInput wants (length >>> slabSizePower) + 1
+      // buffers, the last one possibly empty:
+      final int numBuffers = (int) (length >>> slabSizePower) + 1;
+      final ByteBuffer[] buffers = new ByteBuffer[numBuffers];
+      for (int i = 0; i < numBuffers; i++) {
+        final ByteBuffer buffer = i < slabs.size() ? slabs.get(i) : ByteBuffer.allocate(0);
+        buffer.clear();
+        if (i == numBuffers - 1) {
+          buffer.limit((int) (length & ((1L << slabSizePower) - 1)));
+        }
+        buffers[i] = buffer;
+      }
+      this.length = length;
+      this.buffers = buffers;
+    }
+
+    /** Allocates a new buffer, accounting for it until this file is released. */
+    synchronized ByteBuffer allocate(int size) {
+      final ByteBuffer buffer = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+      allocated += size;
+      if (released == false) {
+        sizeInBytes.addAndGet(size);
+      }
+      return buffer;
+    }
+
+    /** Stops accounting for a buffer that was replaced by a larger one. */
+    synchronized void free(ByteBuffer buffer) {
+      allocated -= buffer.capacity();
+      if (released == false) {
+        sizeInBytes.addAndGet(-buffer.capacity());
+      }
+    }
+
+    synchronized void release() {
+      if (released == false) {
+        released = true;
+        sizeInBytes.addAndGet(-allocated);
+      }
+    }
+  }
+
+  /** Writes into slabs; small files grow a single buffer by doubling
+   *  until it reaches the slab size. */
+  final class ByteBuffersIndexOutput extends IndexOutput {
+    private final FileEntry file;
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    private final Checksum crc = new BufferedChecksum(new CRC32());
+    private final int slabSize = 1 << slabSizePower;
+    private ByteBuffer current;
+    /** File pointer of the first byte of {@link #current}. */
+    private long currentStart;
+    private boolean closed;
+
+    ByteBuffersIndexOutput(FileEntry file) {
+      this.file = file;
+    }
+
+    @Override
+    public void writeByte(byte b) throws IOException {
+      if (current == null || current.hasRemaining() == false) {
+        grow();
+      }
+      current.put(b);
+      crc.update(b);
+    }
+
+    @Override
+    public void writeBytes(byte[] b, int offset, int length) throws IOException {
+      crc.update(b, offset, length);
+      while (length > 0) {
+        if (current == null || current.hasRemaining() == false) {
+          grow();
+        }
+        final int chunk = Math.min(length, current.remaining());
+        current.put(b, offset, chunk);
+        offset += chunk;
+        length -= chunk;
+      }
+    }
+
+    /** Makes room for at least one more byte. */
+    private void grow() {
+      if (current == null) {
+        current = file.allocate(Math.min(INITIAL_BUFFER_SIZE, slabSize));
+        slabs.add(current);
+      } else if (current.capacity() < slabSize) {
+        // still a single, small buffer: double it
+        assert slabs.size() == 1;
+        final ByteBuffer bigger = file.allocate(Math.min(current.capacity() << 1, slabSize));
+        current.flip();
+        bigger.put(current);
+        file.free(current);
+        current = bigger;
+        slabs.set(0, current);
+      } else {
+        currentStart += slabSize;
+        current = file.allocate(slabSize);
+        slabs.add(current);
+      }
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void flush() throws IOException {
+      file.length = getFilePointer();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed == false) {
+        closed = true;
+        file.publish(slabs, getFilePointer());
+      }
+    }
+
+    @Override
+    public long getFilePointer() {
+      return current == null ? 0 : currentStart + current.position();
+    }
+
+    @Override
+    public long getChecksum() throws IOException {
+      return crc.getValue();
+    }
+  }
+}
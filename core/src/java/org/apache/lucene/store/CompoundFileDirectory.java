@@ -25,10 +25,12 @@ import org.apache.lucene.index.IndexFileNames;
 import org.apache.lucene.store.DataOutput; // javadocs
 import org.apache.lucene.util.IOUtils;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 
@@ -52,22 +54,24 @@ import java.io.IOException;
  * </ul>
  * <p>Description:</p>
  * <ul>
- *   <li>Compound (.cfs) --&gt; Header, FileData <sup>FileCount</sup></li>
+ *   <li>Compound (.cfs) --&gt; Header, ChunkData <sup>ChunkCount</sup>, Footer</li>
  *   <li>Compound Entry Table (.cfe) --&gt; Header, FileCount, &lt;FileName,
- *       DataOffset, DataLength&gt; <sup>FileCount</sup>, Footer</li>
+ *       ChunkCount, &lt;DataOffset, DataLength&gt; <sup>ChunkCount</sup>&gt; <sup>FileCount</sup>, Footer</li>
  *   <li>Header --&gt; {@link CodecUtil#writeHeader CodecHeader}</li>
- *   <li>FileCount --&gt; {@link DataOutput#writeVInt VInt}</li>
+ *   <li>FileCount,ChunkCount --&gt; {@link DataOutput#writeVInt VInt}</li>
  *   <li>DataOffset,DataLength --&gt; {@link DataOutput#writeLong UInt64}</li>
  *   <li>FileName --&gt; {@link DataOutput#writeString String}</li>
- *   <li>FileData --&gt; raw file data</li>
+ *   <li>ChunkData --&gt; raw file data</li>
  *   <li>Footer --&gt; {@link CodecUtil#writeFooter CodecFooter}</li>
  * </ul>
  * <p>Notes:</p>
  * <ul>
  *   <li>FileCount indicates how many files are contained in this compound file. 
  *       The entry table that follows has that many entries. 
- *   <li>Each directory entry contains a long pointer to the start of this file's data
- *       section, the files length, and a String with that file's name.
+ *   <li>Each directory entry contains a String with that file's name, and the
+ *       long pointer to the start and the length of each chunk of the file's data.
+ *       Files that are written at the same time are interleaved in chunks;
+ *       other files are made of a single chunk.
  * </ul>
  * 
  * @lucene.experimental
@@ -78,6 +82,11 @@ public final class CompoundFileDirectory extends BaseDirectory {
   public static final class FileEntry {
     long offset;
     long length;
+    /** for files that are made of several chunks: the offsets of the
+     *  chunks in the compound file, and the position of each chunk in the
+     *  file, followed by the file's length; null otherwise */
+    long[] chunkOffsets;
+    long[] chunkStarts;
   }
   
   private final Directory directory;
@@ -121,7 +130,9 @@ public final class CompoundFileDirectory extends BaseDirectory {
       this.isOpen = true;
       writer = null;
     } else {
-      assert !(directory instanceof CompoundFileDirectory) : "compound file inside of compound file: " + fileName;
+      // NOTE: directory may be a compound file itself: segments are
+      // flushed straight into their compound file, and some (older)
+      // formats write compound files of their own
       this.entries = SENTINEL;
       this.isOpen = true;
       writer = new CompoundFileWriter(directory, fileName);
@@ -174,8 +185,12 @@ public final class CompoundFileDirectory extends BaseDirectory {
           if (previous != null) {
             throw new CorruptIndexException("Duplicate cfs entry id=" + id + " in CFS: " + entriesStream);
           }
-          fileEntry.offset = entriesStream.readLong();
-          fileEntry.length = entriesStream.readLong();
+          if (version >= CompoundFileWriter.VERSION_CHUNKS) {
+            readChunks(entriesStream, fileEntry);
+          } else {
+            fileEntry.offset = entriesStream.readLong();
+            fileEntry.length = entriesStream.readLong();
+          }
         }
         if (version >= CompoundFileWriter.VERSION_CHECKSUM) {
           CodecUtil.checkFooter(entriesStream);
@@ -198,6 +213,24 @@ public final class CompoundFileDirectory extends BaseDirectory {
     return mapping;
   }
 
+  private static void readChunks(IndexInput entriesStream, FileEntry fileEntry) throws IOException {
+    final int numChunks = entriesStream.readVInt();
+    if (numChunks == 1) {
+      fileEntry.offset = entriesStream.readLong();
+      fileEntry.length = entriesStream.readLong();
+    } else if (numChunks > 1) {
+      fileEntry.chunkOffsets = new long[numChunks];
+      fileEntry.chunkStarts = new long[numChunks + 1];
+      for (int i = 0; i < numChunks; i++) {
+        fileEntry.chunkOffsets[i] = entriesStream.readLong();
+        fileEntry.chunkStarts[i + 1] = fileEntry.chunkStarts[i] + entriesStream.readLong();
+      }
+      fileEntry.offset = fileEntry.chunkOffsets[0];
+      fileEntry.length = fileEntry.chunkStarts[numChunks];
+    }
+    // else: empty file
+  }
+
   private static Map<String, FileEntry> readLegacyEntries(IndexInput stream,
       int firstInt) throws CorruptIndexException, IOException {
     final Map<String,FileEntry> entries = new HashMap<>();
@@ -286,6 +319,9 @@ public final class CompoundFileDirectory extends BaseDirectory {
     if (entry == null) {
       throw new FileNotFoundException("No sub-file with id " + id + " found (fileName=" + name + " files: " + entries.keySet() + ")");
     }
+    if (entry.chunkOffsets != null) {
+      return new ChunkedIndexInput("ChunkedIndexInput(" + name + " in " + fileName + ")", handle.clone(), entry, readBufferSize);
+    }
     return handle.slice(name, entry.offset, entry.length);
   }
   
@@ -366,4 +402,68 @@ public final class CompoundFileDirectory extends BaseDirectory {
   public String toString() {
     return "CompoundFileDirectory(file=\"" + fileName + "\" in dir=" + directory + ")";
   }
+
+  /** Reads a file whose chunks were interleaved with other files'. */
+  private static final class ChunkedIndexInput extends BufferedIndexInput {
+    private IndexInput base;
+    private final long[] chunkOffsets;
+    private final long[] chunkStarts;
+    private final long length;
+
+    ChunkedIndexInput(String resourceDescription, IndexInput base, FileEntry entry, int bufferSize) {
+      super(resourceDescription, bufferSize);
+      this.base = base;
+      this.chunkOffsets = entry.chunkOffsets;
+      this.chunkStarts = entry.chunkStarts;
+      this.length = entry.length;
+    }
+
+    @Override
+    protected void readInternal(byte[] b, int offset, int len) throws IOException {
+      long pos = getFilePointer();
+      if (pos + len > length) {
+        throw new EOFException("read past EOF: " + this);
+      }
+      int chunk = Arrays.binarySearch(chunkStarts, pos);
+      if (chunk < 0) {
+        chunk = -2 - chunk;
+      }
+      while (len > 0) {
+        // move to the chunk that contains pos
+        while (chunkStarts[chunk + 1] == pos) {
+          chunk++;
+        }
+        final int n = (int) Math.min(len, chunkStarts[chunk + 1] - pos);
+        base.seek(chunkOffsets[chunk] + pos - chunkStarts[chunk]);
+        base.readBytes(b, offset, n);
+        pos += n;
+        offset += n;
+        len -= n;
+      }
+    }
+
+    @Override
+    protected void seekInternal(long pos) throws IOException {
+      if (pos > length) {
+        throw new EOFException("seek past EOF: " + this);
+      }
+    }
+
+    @Override
+    public long length() {
+      return length;
+    }
+
+    @Override
+    public ChunkedIndexInput clone() {
+      final ChunkedIndexInput clone = (ChunkedIndexInput) super.clone();
+      clone.base = base.clone();
+      return clone;
+    }
+
+    @Override
+    public void close() throws IOException {
+      // the compound file's handle is closed by the directory
+    }
+  }
 }
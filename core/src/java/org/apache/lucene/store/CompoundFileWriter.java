@@ -23,18 +23,25 @@ import java.io.IOException;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.Map;
-import java.util.Queue;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
 
 import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.IOUtils;
 
 /**
  * Combines multiple files into a single compound file.
+ * <p>
+ * Files may be written concurrently: each output buffers up to
+ * {@link #CHUNK_SIZE} bytes and appends them to the compound stream
+ * when its buffer is full or when it is closed. A file that is written
+ * while no other file is open ends up in a single contiguous chunk; a
+ * file whose writes are interleaved with other files is made of several
+ * chunks, which are all listed in the entry table.
  * 
  * @see CompoundFileDirectory
  * @lucene.internal
@@ -45,12 +52,16 @@ final class CompoundFileWriter implements Closeable{
     /** source file */
     String file;
     long length;
-    /** temporary holder for the start of this file's data section */
-    long offset;
-    /** the directory which contains the file. */
-    Directory dir;
+    /** offsets and lengths of this file's chunks in the compound stream */
+    long[] chunkOffsets = new long[1];
+    long[] chunkLengths = new long[1];
+    int numChunks;
   }
 
+  /** Number of bytes that an output buffers before appending them to the
+   *  compound stream. */
+  static final int CHUNK_SIZE = 1 << 14;
+
   // Before versioning started.
   static final int FORMAT_PRE_VERSION = 0;
 
@@ -61,7 +72,8 @@ final class CompoundFileWriter implements Closeable{
   static final String DATA_CODEC = "CompoundFileWriterData";
   static final int VERSION_START = 0;
   static final int VERSION_CHECKSUM = 1;
-  static final int VERSION_CURRENT = VERSION_CHECKSUM;
+  static final int VERSION_CHUNKS = 2;
+  static final int VERSION_CURRENT = VERSION_CHUNKS;
 
   // versioning for the .cfe file
   static final String ENTRY_CODEC = "CompoundFileWriterEntries";
@@ -69,11 +81,9 @@ final class CompoundFileWriter implements Closeable{
   private final Directory directory;
   private final Map<String, FileEntry> entries = new HashMap<>();
   private final Set<String> seenIDs = new HashSet<>();
-  // all entries that are written to a sep. file but not yet moved into CFS
-  private final Queue<FileEntry> pendingEntries = new LinkedList<>();
   private boolean closed = false;
   private IndexOutput dataOut;
-  private final AtomicBoolean outputTaken = new AtomicBoolean(false);
+  private int openOutputs;
   final String entryTableName;
   final String dataFileName;
 
@@ -140,8 +150,10 @@ final class CompoundFileWriter implements Closeable{
     // (remove partial .cfs/.cfe)
     boolean success = false;
     try {
-      if (!pendingEntries.isEmpty() || outputTaken.get()) {
-        throw new IllegalStateException("CFS has pending open files");
+      synchronized (this) {
+        if (openOutputs != 0) {
+          throw new IllegalStateException("CFS has pending open files");
+        }
       }
       closed = true;
       // open the compound stream; we can safely use IOContext.DEFAULT
@@ -179,35 +191,25 @@ final class CompoundFileWriter implements Closeable{
   }
 
   /**
-   * Copy the contents of the file with specified extension into the provided
-   * output stream.
+   * Appends a chunk of the given file to the compound stream.
    */
-  private final long copyFileEntry(IndexOutput dataOut, FileEntry fileEntry)
+  private synchronized void appendChunk(FileEntry entry, byte[] bytes, int offset, int length, IOContext context)
       throws IOException {
-    final IndexInput is = fileEntry.dir.openInput(fileEntry.file, IOContext.READONCE);
-    boolean success = false;
-    try {
-      final long startPtr = dataOut.getFilePointer();
-      final long length = fileEntry.length;
-      dataOut.copyBytes(is, length);
-      // Verify that the output length diff is equal to original file
-      long endPtr = dataOut.getFilePointer();
-      long diff = endPtr - startPtr;
-      if (diff != length)
-        throw new IOException("Difference in the output file offsets " + diff
-            + " does not match the original file length " + length);
-      fileEntry.offset = startPtr;
-      success = true;
-      return length;
-    } finally {
-      if (success) {
-        IOUtils.close(is);
-        // copy successful - delete file
-        // if we can't we rely on IFD to pick up and retry
-        IOUtils.deleteFilesIgnoringExceptions(fileEntry.dir, fileEntry.file);
-      } else {
-        IOUtils.closeWhileHandlingException(is);
+    final IndexOutput out = getOutput(context);
+    final long startPtr = out.getFilePointer();
+    out.writeBytes(bytes, offset, length);
+    final int last = entry.numChunks - 1;
+    if (last >= 0 && entry.chunkOffsets[last] + entry.chunkLengths[last] == startPtr) {
+      // no other file was appended since the previous chunk of this file
+      entry.chunkLengths[last] += length;
+    } else {
+      if (entry.numChunks == entry.chunkOffsets.length) {
+        entry.chunkOffsets = ArrayUtil.grow(entry.chunkOffsets);
+        entry.chunkLengths = ArrayUtil.grow(entry.chunkLengths, entry.chunkOffsets.length);
       }
+      entry.chunkOffsets[entry.numChunks] = startPtr;
+      entry.chunkLengths[entry.numChunks] = length;
+      entry.numChunks++;
     }
   }
 
@@ -217,67 +219,36 @@ final class CompoundFileWriter implements Closeable{
     entryOut.writeVInt(entries.size());
     for (FileEntry fe : entries) {
       entryOut.writeString(IndexFileNames.stripSegmentName(fe.file));
-      entryOut.writeLong(fe.offset);
-      entryOut.writeLong(fe.length);
+      entryOut.writeVInt(fe.numChunks);
+      for (int i = 0; i < fe.numChunks; i++) {
+        entryOut.writeLong(fe.chunkOffsets[i]);
+        entryOut.writeLong(fe.chunkLengths[i]);
+      }
     }
     CodecUtil.writeFooter(entryOut);
   }
 
-  IndexOutput createOutput(String name, IOContext context) throws IOException {
+  synchronized IndexOutput createOutput(String name, IOContext context) throws IOException {
     ensureOpen();
-    boolean success = false;
-    boolean outputLocked = false;
-    try {
-      assert name != null : "name must not be null";
-      if (entries.containsKey(name)) {
-        throw new IllegalArgumentException("File " + name + " already exists");
-      }
-      final FileEntry entry = new FileEntry();
-      entry.file = name;
-      entries.put(name, entry);
-      final String id = IndexFileNames.stripSegmentName(name);
-      assert !seenIDs.contains(id): "file=\"" + name + "\" maps to id=\"" + id + "\", which was already written";
-      seenIDs.add(id);
-      final DirectCFSIndexOutput out;
-
-      if ((outputLocked = outputTaken.compareAndSet(false, true))) {
-        out = new DirectCFSIndexOutput(getOutput(context), entry, false);
-      } else {
-        entry.dir = this.directory;
-        out = new DirectCFSIndexOutput(directory.createOutput(name, context), entry,
-            true);
-      }
-      success = true;
-      return out;
-    } finally {
-      if (!success) {
-        entries.remove(name);
-        if (outputLocked) { // release the output lock if not successful
-          assert outputTaken.get();
-          releaseOutputLock();
-        }
-      }
+    assert name != null : "name must not be null";
+    if (entries.containsKey(name)) {
+      throw new IllegalArgumentException("File " + name + " already exists");
     }
+    // open the compound file up front so that we fail early, eg. on disk full
+    getOutput(context);
+    final FileEntry entry = new FileEntry();
+    entry.file = name;
+    entries.put(name, entry);
+    final String id = IndexFileNames.stripSegmentName(name);
+    assert !seenIDs.contains(id): "file=\"" + name + "\" maps to id=\"" + id + "\", which was already written";
+    seenIDs.add(id);
+    openOutputs++;
+    return new ChunkedCFSIndexOutput(entry, context);
   }
 
-  final void releaseOutputLock() {
-    outputTaken.compareAndSet(true, false);
-  }
-
-  private final void prunePendingEntries() throws IOException {
-    // claim the output and copy all pending files in
-    if (outputTaken.compareAndSet(false, true)) {
-      try {
-        while (!pendingEntries.isEmpty()) {
-          FileEntry entry = pendingEntries.poll();
-          copyFileEntry(getOutput(new IOContext(new FlushInfo(0, entry.length))), entry);
-          entries.put(entry.file, entry);
-        }
-      } finally {
-        final boolean compareAndSet = outputTaken.compareAndSet(true, false);
-        assert compareAndSet;
-      }
-    }
+  private synchronized void outputClosed() {
+    assert openOutputs > 0;
+    openOutputs--;
   }
 
   long fileLength(String name) throws IOException {
@@ -296,69 +267,89 @@ final class CompoundFileWriter implements Closeable{
     return entries.keySet().toArray(new String[0]);
   }
 
-  private final class DirectCFSIndexOutput extends IndexOutput {
-    private final IndexOutput delegate;
-    private final long offset;
+  private final class ChunkedCFSIndexOutput extends IndexOutput {
+    private final FileEntry entry;
+    private final IOContext context;
+    private byte[] buffer = new byte[CHUNK_SIZE];
+    private int upto;
+    // bytes that were already appended to the compound stream
+    private long appendedBytes;
     private boolean closed;
-    private FileEntry entry;
-    private long writtenBytes;
-    private final boolean isSeparate;
-
-    DirectCFSIndexOutput(IndexOutput delegate, FileEntry entry,
-        boolean isSeparate) {
-      super();
-      this.delegate = delegate;
+    // the compound stream's checksum covers the whole CFS, not only this file
+    private final Checksum crc = new BufferedChecksum(new CRC32());
+
+    ChunkedCFSIndexOutput(FileEntry entry, IOContext context) {
       this.entry = entry;
-      entry.offset = offset = delegate.getFilePointer();
-      this.isSeparate = isSeparate;
+      this.context = context;
+    }
 
+    private void appendBuffer() throws IOException {
+      if (upto > 0) {
+        appendChunk(entry, buffer, 0, upto, context);
+        appendedBytes += upto;
+        upto = 0;
+      }
     }
 
     @Override
     public void flush() throws IOException {
-      delegate.flush();
+      appendBuffer();
     }
 
     @Override
     public void close() throws IOException {
       if (!closed) {
         closed = true;
-        entry.length = writtenBytes;
-        if (isSeparate) {
-          delegate.close();
-          // we are a separate file - push into the pending entries
-          pendingEntries.add(entry);
-        } else {
-          // we have been written into the CFS directly - release the lock
-          releaseOutputLock();
+        try {
+          appendBuffer();
+          entry.length = appendedBytes;
+        } finally {
+          buffer = null;
+          outputClosed();
         }
-        // now prune all pending entries and push them into the CFS
-        prunePendingEntries();
       }
     }
 
     @Override
     public long getFilePointer() {
-      return delegate.getFilePointer() - offset;
+      return appendedBytes + upto;
     }
 
     @Override
     public void writeByte(byte b) throws IOException {
       assert !closed;
-      writtenBytes++;
-      delegate.writeByte(b);
+      if (upto == buffer.length) {
+        appendBuffer();
+      }
+      buffer[upto++] = b;
+      crc.update(b);
     }
 
     @Override
     public void writeBytes(byte[] b, int offset, int length) throws IOException {
       assert !closed;
-      writtenBytes += length;
-      delegate.writeBytes(b, offset, length);
+      crc.update(b, offset, length);
+      if (upto == 0 && length >= buffer.length) {
+        // large write: no need to copy it to the buffer first
+        appendChunk(entry, b, offset, length, context);
+        appendedBytes += length;
+        return;
+      }
+      while (length > 0) {
+        if (upto == buffer.length) {
+          appendBuffer();
+        }
+        final int n = Math.min(length, buffer.length - upto);
+        System.arraycopy(b, offset, buffer, upto, n);
+        upto += n;
+        offset += n;
+        length -= n;
+      }
     }
 
     @Override
     public long getChecksum() throws IOException {
-      return delegate.getChecksum();
+      return crc.getValue();
     }
   }
 
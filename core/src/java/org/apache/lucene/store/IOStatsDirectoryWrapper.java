@@ -0,0 +1,490 @@
+package org.apache.lucene.store;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.lucene.index.IndexFileNames;
+
+/**
+ * A delegating {@link Directory} that counts the I/O performed through
+ * it: bytes read and written, seeks, and opened inputs, split by file
+ * extension and by {@link IOContext.Context} (for example to tell how
+ * much searches read from {@code .doc} files versus {@code .dvd}
+ * files, and how much merges write).
+ * <p>
+ * Counters are striped across threads and updated without locking,
+ * so that the wrapper is cheap enough to be left on permanently; use
+ * {@link #getStats()} to take a snapshot of the counters, and
+ * {@link Stats#minus} to compute rates between two snapshots.
+ * <p>
+ * <b>NOTE</b>: files are attributed to their own extension, so reads
+ * of files inside a compound file are counted against {@code cfs}.
+ * Files that have no extension (such as {@code segments_N}) are counted
+ * against their name without generation.  Reads through clones and
+ * slices are counted against the input they were created from, with
+ * the {@link IOContext.Context} that input was opened with.
+ *
+ * @lucene.experimental
+ */
+public final class IOStatsDirectoryWrapper extends FilterDirectory {
+
+  // index into the striped counters:
+  private static final int BYTES_READ = 0;
+  private static final int BYTES_WRITTEN = 1;
+  private static final int SEEKS = 2;
+  private static final int INPUTS_OPENED = 3;
+  private static final int INPUTS_CLOSED = 4;
+  private static final int OUTPUTS_CREATED = 5;
+  // number of longs per stripe: 64 bytes, about a cache line, so
+  // that threads updating different stripes don't share cache lines
+  private static final int STRIPE_SIZE = 8;
+
+  private static final int NUM_STRIPES;
+  static {
+    final int cpus = Runtime.getRuntime().availableProcessors();
+    int numStripes = 1;
+    while (numStripes < cpus && numStripes < 64) {
+      numStripes <<= 1;
+    }
+    NUM_STRIPES = numStripes;
+  }
+
+  /** Bytes written are accumulated per output, and published at most
+   *  that many bytes apart, as well as on close. */
+  private static final int WRITE_FLUSH_BYTES = 1 << 16;
+
+  /** Bytes read from inputs (but not from their clones and slices,
+   *  which are usually not closed) are accumulated per input, and
+   *  published at most that many bytes apart, as well as on seek and
+   *  close. */
+  static final int READ_FLUSH_BYTES = 1 << 13;
+
+  private static final IOContext.Context[] CONTEXTS = IOContext.Context.values();
+
+  /** Per extension, the counters of each context. */
+  private final ConcurrentHashMap<String,Counters[]> counters = new ConcurrentHashMap<>();
+
+  /** Sole constructor. */
+  public IOStatsDirectoryWrapper(Directory in) {
+    super(in);
+  }
+
+  @Override
+  public IndexInput openInput(String name, IOContext context) throws IOException {
+    ensureOpen();
+    final Counters counters = getCounters(name, context);
+    final IndexInput input = in.openInput(name, context);
+    counters.add(INPUTS_OPENED, 1);
+    return new IOStatsIndexInput(input, counters, false);
+  }
+
+  @Override
+  public IndexOutput createOutput(String name, IOContext context) throws IOException {
+    ensureOpen();
+    final Counters counters = getCounters(name, context);
+    final IndexOutput output = in.createOutput(name, context);
+    counters.add(OUTPUTS_CREATED, 1);
+    return new IOStatsIndexOutput(output, counters);
+  }
+
+  /** Returns the extension files are accounted under. */
+  static String getKey(String fileName) {
+    final String extension = IndexFileNames.getExtension(fileName);
+    if (extension != null) {
+      return extension;
+    }
+    // eg. segments_N
+    return IndexFileNames.parseSegmentName(fileName);
+  }
+
+  private Counters getCounters(String fileName, IOContext context) {
+    final String key = getKey(fileName);
+    Counters[] perContext = counters.get(key);
+    if (perContext == null) {
+      perContext = new Counters[CONTEXTS.length];
+      for (int i = 0; i < perContext.length; i++) {
+        perContext[i] = new Counters();
+      }
+      final Counters[] existing = counters.putIfAbsent(key, perContext);
+      if (existing != null) {
+        perContext = existing;
+      }
+    }
+    return perContext[context.context.ordinal()];
+  }
+
+  /**
+   * Returns a snapshot of the counters of every extension and
+   * {@link IOContext.Context} that saw any I/O.
+   * <p>
+   * <b>NOTE</b>: counters are read one after the other while I/O
+   * may be going on, so a snapshot is not atomic.  Bytes written to
+   * outputs that are still open may be reported late, by up to 64 KB
+   * per output, and bytes read by inputs that are still open may be
+   * reported late, by up to 8 KB per input, until they seek or are
+   * closed.  Bytes read by clones and slices are reported immediately.
+   */
+  public List<Stats> getStats() {
+    final List<Stats> stats = new ArrayList<>();
+    for (Map.Entry<String,Counters[]> entry : counters.entrySet()) {
+      final Counters[] perContext = entry.getValue();
+      for (int i = 0; i < perContext.length; i++) {
+        final Stats s = perContext[i].snapshot(entry.getKey(), CONTEXTS[i]);
+        if (s.isEmpty() == false) {
+          stats.add(s);
+        }
+      }
+    }
+    return Collections.unmodifiableList(stats);
+  }
+
+  /**
+   * Returns a snapshot of the counters of the given extension (without
+   * the leading dot) and {@link IOContext.Context}.
+   *
+   * @see #getStats()
+   */
+  public Stats getStats(String extension, IOContext.Context context) {
+    final Counters[] perContext = counters.get(extension);
+    if (perContext == null) {
+      return new Stats(extension, context, 0, 0, 0, 0, 0, 0);
+    }
+    return perContext[context.ordinal()].snapshot(extension, context);
+  }
+
+  /** A snapshot of the I/O counters of one file extension and
+   *  {@link IOContext.Context}. */
+  public static final class Stats {
+    /** File extension, without the leading dot */
+    public final String extension;
+    /** The context files were opened or created with */
+    public final IOContext.Context context;
+    /** Number of bytes read, including clones and slices */
+    public final long bytesRead;
+    /** Number of bytes written */
+    public final long bytesWritten;
+    /** Number of calls to {@link IndexInput#seek} */
+    public final long seeks;
+    /** Number of inputs opened, not counting clones and slices */
+    public final long inputsOpened;
+    /** Number of inputs that are currently open */
+    public final long openInputs;
+    /** Number of outputs created */
+    public final long outputsCreated;
+
+    Stats(String extension, IOContext.Context context, long bytesRead, long bytesWritten, long seeks,
+        long inputsOpened, long openInputs, long outputsCreated) {
+      this.extension = extension;
+      this.context = context;
+      this.bytesRead = bytesRead;
+      this.bytesWritten = bytesWritten;
+      this.seeks = seeks;
+      this.inputsOpened = inputsOpened;
+      this.openInputs = openInputs;
+      this.outputsCreated = outputsCreated;
+    }
+
+    boolean isEmpty() {
+      return bytesRead == 0 && bytesWritten == 0 && seeks == 0 && inputsOpened == 0 && outputsCreated == 0;
+    }
+
+    /** Returns the I/O that happened between the given, older,
+     *  snapshot and this one.  {@link #openInputs} is taken from
+     *  this snapshot. */
+    public Stats minus(Stats older) {
+      if (extension.equals(older.extension) == false || context != older.context) {
+        throw new IllegalArgumentException("cannot subtract stats of " + older.extension + "/" + older.context
+            + " from stats of " + extension + "/" + context);
+      }
+      return new Stats(extension, context, bytesRead - older.bytesRead, bytesWritten - older.bytesWritten,
+          seeks - older.seeks, inputsOpened - older.inputsOpened, openInputs, outputsCreated - older.outputsCreated);
+    }
+
+    @Override
+    public String toString() {
+      return extension + "/" + context + "(bytesRead=" + bytesRead + ",bytesWritten=" + bytesWritten
+          + ",seeks=" + seeks + ",inputsOpened=" + inputsOpened + ",openInputs=" + openInputs
+          + ",outputsCreated=" + outputsCreated + ")";
+    }
+  }
+
+  /** Counters of one extension and context.  Each thread updates the
+   *  stripe of its id, so that concurrent updates rarely contend;
+   *  reads sum up all stripes. */
+  private static final class Counters {
+    private final AtomicLongArray counts = new AtomicLongArray(NUM_STRIPES * STRIPE_SIZE);
+
+    void add(int counter, long delta) {
+      final int stripe = (int) Thread.currentThread().getId() & (NUM_STRIPES - 1);
+      counts.getAndAdd(stripe * STRIPE_SIZE + counter, delta);
+    }
+
+    long get(int counter) {
+      long sum = 0;
+      for (int stripe = 0; stripe < NUM_STRIPES; stripe++) {
+        sum += counts.get(stripe * STRIPE_SIZE + counter);
+      }
+      return sum;
+    }
+
+    Stats snapshot(String extension, IOContext.Context context) {
+      final long inputsOpened = get(INPUTS_OPENED);
+      return new Stats(extension, context, get(BYTES_READ), get(BYTES_WRITTEN), get(SEEKS),
+          inputsOpened, Math.max(0, inputsOpened - get(INPUTS_CLOSED)), get(OUTPUTS_CREATED));
+    }
+  }
+
+  /** Accumulates the bytes read locally, since an input is only read
+   *  by one thread.  They are not published on clone or slice, which
+   *  may be called concurrently on the same input.  Clones and slices
+   *  publish every read, since they are usually never closed. */
+  private static final class IOStatsIndexInput extends IndexInput {
+    private final IndexInput in;
+    private final Counters counters;
+    /** Clones and slices are not counted as opened inputs */
+    private final boolean isClone;
+    private boolean closed;
+    private long pendingBytes;
+
+    IOStatsIndexInput(IndexInput in, Counters counters, boolean isClone) {
+      super("IOStatsIndexInput(" + in + ")");
+      this.in = in;
+      this.counters = counters;
+      this.isClone = isClone;
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+      final byte b = in.readByte();
+      count(1);
+      return b;
+    }
+
+    @Override
+    public void readBytes(byte[] b, int offset, int len) throws IOException {
+      in.readBytes(b, offset, len);
+      count(len);
+    }
+
+    @Override
+    public void readBytes(byte[] b, int offset, int len, boolean useBuffer) throws IOException {
+      in.readBytes(b, offset, len, useBuffer);
+      count(len);
+    }
+
+    @Override
+    public short readShort() throws IOException {
+      final short v = in.readShort();
+      count(2);
+      return v;
+    }
+
+    @Override
+    public int readInt() throws IOException {
+      final int v = in.readInt();
+      count(4);
+      return v;
+    }
+
+    @Override
+    public long readLong() throws IOException {
+      final long v = in.readLong();
+      count(8);
+      return v;
+    }
+
+    @Override
+    public int readVInt() throws IOException {
+      final int v = in.readVInt();
+      // negative values take 5 bytes
+      count(v < 0 ? 5 : vLongBytes(v));
+      return v;
+    }
+
+    @Override
+    public long readVLong() throws IOException {
+      final long v = in.readVLong();
+      count(vLongBytes(v));
+      return v;
+    }
+
+    /** Returns the number of bytes of the vLong encoding of the given
+     *  non-negative value, so that we don't need to ask the input for
+     *  its file pointer. */
+    private static int vLongBytes(long v) {
+      return Math.max(1, (64 - Long.numberOfLeadingZeros(v) + 6) / 7);
+    }
+
+    private void count(long bytes) {
+      if (isClone) {
+        counters.add(BYTES_READ, bytes);
+        return;
+      }
+      pendingBytes += bytes;
+      if (pendingBytes >= READ_FLUSH_BYTES) {
+        publish();
+      }
+    }
+
+    private void publish() {
+      if (pendingBytes != 0) {
+        counters.add(BYTES_READ, pendingBytes);
+        pendingBytes = 0;
+      }
+    }
+
+    @Override
+    public void seek(long pos) throws IOException {
+      in.seek(pos);
+      publish();
+      counters.add(SEEKS, 1);
+    }
+
+    @Override
+    public long getFilePointer() {
+      return in.getFilePointer();
+    }
+
+    @Override
+    public long length() {
+      return in.length();
+    }
+
+    @Override
+    public IOStatsIndexInput clone() {
+      return new IOStatsIndexInput(in.clone(), counters, true);
+    }
+
+    @Override
+    public IndexInput slice(String sliceDescription, long offset, long length) throws IOException {
+      return new IOStatsIndexInput(in.slice(sliceDescription, offset, length), counters, true);
+    }
+
+    @Override
+    public RandomAccessInput randomAccessSlice(long offset, long length) throws IOException {
+      final RandomAccessInput slice = in.randomAccessSlice(offset, length);
+      // random-access slices may be shared by threads, so every read is published
+      return new RandomAccessInput() {
+        @Override
+        public byte readByte(long pos) throws IOException {
+          final byte b = slice.readByte(pos);
+          counters.add(BYTES_READ, 1);
+          return b;
+        }
+
+        @Override
+        public short readShort(long pos) throws IOException {
+          final short v = slice.readShort(pos);
+          counters.add(BYTES_READ, 2);
+          return v;
+        }
+
+        @Override
+        public int readInt(long pos) throws IOException {
+          final int v = slice.readInt(pos);
+          counters.add(BYTES_READ, 4);
+          return v;
+        }
+
+        @Override
+        public long readLong(long pos) throws IOException {
+          final long v = slice.readLong(pos);
+          counters.add(BYTES_READ, 8);
+          return v;
+        }
+      };
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+      publish();
+      if (isClone == false && closed == false) {
+        closed = true;
+        counters.add(INPUTS_CLOSED, 1);
+      }
+    }
+  }
+
+  /** Accumulates the bytes written locally, since outputs are only
+   *  used by one thread and are always closed. */
+  private static final class IOStatsIndexOutput extends IndexOutput {
+    private final IndexOutput out;
+    private final Counters counters;
+    private long pendingBytes;
+
+    IOStatsIndexOutput(IndexOutput out, Counters counters) {
+      this.out = out;
+      this.counters = counters;
+    }
+
+    @Override
+    public void writeByte(byte b) throws IOException {
+      out.writeByte(b);
+      if (++pendingBytes >= WRITE_FLUSH_BYTES) {
+        publish();
+      }
+    }
+
+    @Override
+    public void writeBytes(byte[] b, int offset, int length) throws IOException {
+      out.writeBytes(b, offset, length);
+      pendingBytes += length;
+      if (pendingBytes >= WRITE_FLUSH_BYTES) {
+        publish();
+      }
+    }
+
+    private void publish() {
+      counters.add(BYTES_WRITTEN, pendingBytes);
+      pendingBytes = 0;
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        out.close();
+      } finally {
+        publish();
+      }
+    }
+
+    @Override
+    public long getFilePointer() {
+      return out.getFilePointer();
+    }
+
+    @Override
+    public long getChecksum() throws IOException {
+      return out.getChecksum();
+    }
+  }
+}
@@ -188,6 +188,15 @@ public class MMapDirectory extends FSDirectory {
     return 1 << chunkSizePower;
   }
 
+  /**
+   * Returns <code>true</code> if the given input reads from memory-mapped
+   * buffers (or from the in-memory buffers of a {@link ByteBuffersDirectory}),
+   * so that random reads on it don't need any I/O call.
+   */
+  public static boolean isMapped(IndexInput in) {
+    return in instanceof ByteBufferIndexInput;
+  }
+
   /** Creates an IndexInput for the file with the given name. */
   @Override
   public IndexInput openInput(String name, IOContext context) throws IOException {
@@ -17,15 +17,23 @@ package org.apache.lucene.store;
  * limitations under the License.
  */
 
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.lucene.index.IndexFileNames;
-import org.apache.lucene.store.RAMDirectory;      // javadocs
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.IOUtils;
+import org.apache.lucene.util.ThreadInterruptedException;
 
 // TODO
 //   - let subclass dictate policy...?
@@ -33,7 +41,7 @@ import org.apache.lucene.util.IOUtils;
 
 // :Post-Release-Update-Version.LUCENE_X_Y: (in <pre> block in javadoc below)
 /**
- * Wraps a {@link RAMDirectory}
+ * Wraps a {@link ByteBuffersDirectory}
  * around any provided delegate directory, to
  * be used during NRT search.
  *
@@ -61,17 +69,48 @@ import org.apache.lucene.util.IOUtils;
  * cached bytes exceeds 60 MB at which point all writes will
  * not be cached (until the net bytes falls below 60 MB).</p>
  *
+ * <p>Reads ({@link #openInput}, {@link #fileLength}, {@link #fileExists}
+ * and {@link #listAll}) do not take any lock: a file is always copied
+ * to the delegate before it is removed from the cache, so a lookup that
+ * misses the cache simply falls through to the delegate.</p>
+ *
+ * <p>Optionally, an {@link ExecutorService} can be passed to persist
+ * cached files to the delegate in the background as soon as
+ * their output is closed.  A later {@link #sync} then only needs to
+ * drop the (already copied) file from the cache instead of writing it,
+ * which keeps commits fast when reopening at a high rate.</p>
+ *
  * @lucene.experimental
  */
 
 public class NRTCachingDirectory extends FilterDirectory implements Accountable {
 
-  private final RAMDirectory cache = new RAMDirectory();
+  /** Slab size of the cache: 64 KB, as most cached files are small. */
+  private static final int CACHE_SLAB_SIZE_POWER = 16;
+
+  private final ByteBuffersDirectory cache = new ByteBuffersDirectory(CACHE_SLAB_SIZE_POWER, false);
 
 
   private final long maxMergeSizeBytes;
   private final long maxCachedBytes;
 
+  /** Executor used to copy closed cached files to the delegate, or null. */
+  private final ExecutorService persistExecutor;
+
+  /** Cached files whose background copy has been scheduled but did not run yet. */
+  private final Map<String,FutureTask<Void>> pendingPersists = new ConcurrentHashMap<>();
+
+  /** Cached files that already have an identical copy in the delegate. */
+  private final Set<String> persisted = Collections.newSetFromMap(new ConcurrentHashMap<String,Boolean>());
+
+  /** Cached files that are being copied to the delegate in the background;
+   *  guarded by uncacheLock. */
+  private final Set<String> persisting = new HashSet<>();
+
+  /** Files that were deleted while being copied in the background, so
+   *  that their copy must be deleted once done; guarded by uncacheLock. */
+  private final Set<String> deletedWhilePersisting = new HashSet<>();
+
   private static final boolean VERBOSE = false;
 
   /**
@@ -79,11 +118,27 @@ public class NRTCachingDirectory extends FilterDirectory implements Accountable
    *  flush or a merge and the estimated size of the merged segment is <=
    *  maxMergeSizeMB, and 2) the total cached bytes is <= maxCachedMB */
 	public NRTCachingDirectory(Directory delegate, double maxMergeSizeMB, double maxCachedMB) {
-		super(delegate);
-		maxMergeSizeBytes = (long) (maxMergeSizeMB * 1024 * 1024);
-		maxCachedBytes = (long) (maxCachedMB * 1024 * 1024);
+		this(delegate, maxMergeSizeMB, maxCachedMB, null);
 	}
 
+  /**
+   * Like {@link #NRTCachingDirectory(Directory, double, double)}, but
+   * cached files are additionally copied to the delegate on the provided
+   * ExecutorService as soon as they are closed.  Files stay readable
+   * from RAM until they are sync'd.  This directory will not
+   * shutdown/awaitTermination the ExecutorService on close; you must
+   * do so, eventually, on your own.  If the executor rejects a task, or
+   * a background copy fails, the file is simply copied on {@link #sync}.
+   *
+   * @lucene.experimental
+   */
+  public NRTCachingDirectory(Directory delegate, double maxMergeSizeMB, double maxCachedMB, ExecutorService persistExecutor) {
+    super(delegate);
+    maxMergeSizeBytes = (long) (maxMergeSizeMB * 1024 * 1024);
+    maxCachedBytes = (long) (maxCachedMB * 1024 * 1024);
+    this.persistExecutor = persistExecutor;
+  }
+
 
   @Override
   public String toString() {
@@ -91,8 +146,10 @@ public class NRTCachingDirectory extends FilterDirectory implements Accountable
   }
 
   @Override
-  public synchronized String[] listAll() throws IOException {
+  public String[] listAll() throws IOException {
     final Set<String> files = new HashSet<>();
+    // NOTE: list the cache first; a file that is uncached concurrently
+    // is always written to the delegate before it leaves the cache:
     for(String f : cache.listAll()) {
       files.add(f);
     }
@@ -118,27 +175,38 @@ public class NRTCachingDirectory extends FilterDirectory implements Accountable
   }
 
   @Override
-  public synchronized boolean fileExists(String name) throws IOException {
+  public boolean fileExists(String name) throws IOException {
     return cache.fileExists(name) || in.fileExists(name);
   }
 
   @Override
-  public synchronized void deleteFile(String name) throws IOException {
+  public void deleteFile(String name) throws IOException {
     if (VERBOSE) {
       System.out.println("nrtdir.deleteFile name=" + name);
     }
-    if (cache.fileExists(name)) {
-      cache.deleteFile(name);
-    } else {
-      in.deleteFile(name);
+    cancelPersist(name);
+    synchronized(uncacheLock) {
+      if (cache.fileExists(name)) {
+        cache.deleteFile(name);
+        // If it is being copied, the background copy is
+        // deleted once done:
+        if (persisting.contains(name)) {
+          deletedWhilePersisting.add(name);
+        }
+        if (persisted.remove(name)) {
+          in.deleteFile(name);
+        }
+      } else {
+        in.deleteFile(name);
+      }
     }
   }
 
   @Override
-  public synchronized long fileLength(String name) throws IOException {
-    if (cache.fileExists(name)) {
+  public long fileLength(String name) throws IOException {
+    try {
       return cache.fileLength(name);
-    } else {
+    } catch (FileNotFoundException fnfe) {
       return in.fileLength(name);
     }
   }
@@ -152,6 +220,13 @@ public class NRTCachingDirectory extends FilterDirectory implements Accountable
     if (VERBOSE) {
       System.out.println("nrtdir.createOutput name=" + name);
     }
+    synchronized(uncacheLock) {
+      cancelPersist(name);
+      // Don't let a running copy of the previous file
+      // overwrite or delete the new one in the delegate:
+      waitForPersist(name);
+      persisted.remove(name);
+    }
     if (doCacheWrite(name, context)) {
       if (VERBOSE) {
         System.out.println("  to cache");
@@ -161,7 +236,8 @@ public class NRTCachingDirectory extends FilterDirectory implements Accountable
       } catch (IOException ioe) {
         // This is fine: file may not exist
       }
-      return cache.createOutput(name, context);
+      final IndexOutput out = cache.createOutput(name, context);
+      return persistExecutor == null ? out : new PersistingIndexOutput(name, out);
     } else {
       try {
         cache.deleteFile(name);
@@ -184,16 +260,17 @@ public class NRTCachingDirectory extends FilterDirectory implements Accountable
   }
 
   @Override
-  public synchronized IndexInput openInput(String name, IOContext context) throws IOException {
+  public IndexInput openInput(String name, IOContext context) throws IOException {
     if (VERBOSE) {
       System.out.println("nrtdir.openInput name=" + name);
     }
-    if (cache.fileExists(name)) {
+    try {
+      final IndexInput input = cache.openInput(name, context);
       if (VERBOSE) {
         System.out.println("  from cache");
       }
-      return cache.openInput(name, context);
-    } else {
+      return input;
+    } catch (FileNotFoundException fnfe) {
       return in.openInput(name, context);
     }
   }
@@ -215,7 +292,7 @@ public class NRTCachingDirectory extends FilterDirectory implements Accountable
   }
 
   /** Subclass can override this to customize logic; return
-   *  true if this file should be written to the RAMDirectory. */
+   *  true if this file should be written to the cache. */
   protected boolean doCacheWrite(String name, IOContext context) {
     //System.out.println(Thread.currentThread().getName() + ": CACHE check merge=" + merge + " size=" + (merge==null ? 0 : merge.estimatedMergeBytes));
 
@@ -232,32 +309,112 @@ public class NRTCachingDirectory extends FilterDirectory implements Accountable
   private final Object uncacheLock = new Object();
 
   private void unCache(String fileName) throws IOException {
+    cancelPersist(fileName);
     // Only let one thread uncache at a time; this only
     // happens during commit() or close():
     synchronized(uncacheLock) {
       if (VERBOSE) {
         System.out.println("nrtdir.unCache name=" + fileName);
       }
+      waitForPersist(fileName);
       if (!cache.fileExists(fileName)) {
         // Another thread beat us...
         return;
       }
-      final IOContext context = IOContext.DEFAULT;
-      final IndexOutput out = in.createOutput(fileName, context);
-      IndexInput in = null;
+      if (persisted.remove(fileName) == false) {
+        copyToDelegate(fileName);
+      }
+      // NOTE: the delegate holds the file now, so readers that
+      // miss the cache from here on fall through to it:
+      cache.deleteFile(fileName);
+    }
+  }
+
+  /** Background task: copies a closed, cached file to the
+   *  delegate, leaving it in the cache until it is sync'd.
+   *  The file is claimed under uncacheLock but copied
+   *  without holding it, so that commits and deletes of
+   *  other files don't wait for the copy. */
+  private void persist(String fileName) throws IOException {
+    synchronized(uncacheLock) {
+      if (pendingPersists.remove(fileName) == null) {
+        // Deleted, re-created or uncached in the meantime
+        return;
+      }
+      if (VERBOSE) {
+        System.out.println("nrtdir.persist name=" + fileName);
+      }
+      if (cache.fileExists(fileName) == false) {
+        return;
+      }
+      persisting.add(fileName);
+    }
+    boolean success = false;
+    try {
+      copyToDelegate(fileName);
+      success = true;
+    } finally {
+      synchronized(uncacheLock) {
+        persisting.remove(fileName);
+        if (deletedWhilePersisting.remove(fileName) == false && success) {
+          persisted.add(fileName);
+        } else {
+          // The copy failed, or the file was deleted while
+          // it was being copied:
+          IOUtils.deleteFilesIgnoringExceptions(in, fileName);
+        }
+        uncacheLock.notifyAll();
+      }
+    }
+  }
+
+  /** Waits for a background copy of this file to finish;
+   *  must be called while holding uncacheLock. */
+  private void waitForPersist(String fileName) {
+    assert Thread.holdsLock(uncacheLock);
+    while (persisting.contains(fileName)) {
       try {
-        in = cache.openInput(fileName, context);
-        out.copyBytes(in, in.length());
-      } finally {
-        IOUtils.close(in, out);
+        uncacheLock.wait();
+      } catch (InterruptedException ie) {
+        throw new ThreadInterruptedException(ie);
       }
+    }
+  }
+
+  private void cancelPersist(String fileName) {
+    final FutureTask<Void> pending = pendingPersists.remove(fileName);
+    if (pending != null) {
+      pending.cancel(false);
+    }
+  }
+
+  private void copyToDelegate(String fileName) throws IOException {
+    final IOContext context = IOContext.DEFAULT;
+    final IndexOutput out = in.createOutput(fileName, context);
+    IndexInput in = null;
+    try {
+      in = cache.openInput(fileName, context);
+      out.copyBytes(in, in.length());
+    } finally {
+      IOUtils.close(in, out);
+    }
+  }
 
-      // Lock order: uncacheLock -> this
-      synchronized(this) {
-        // Must sync here because other sync methods have
-        // if (cache.fileExists(name)) { ... } else { ... }:
-        cache.deleteFile(fileName);
+  private void schedulePersist(final String fileName) {
+    final FutureTask<Void> task = new FutureTask<>(new Callable<Void>() {
+      @Override
+      public Void call() throws IOException {
+        persist(fileName);
+        return null;
       }
+    });
+    // Register before submitting, so that persist() finds it:
+    pendingPersists.put(fileName, task);
+    try {
+      persistExecutor.execute(task);
+    } catch (RejectedExecutionException ree) {
+      // The file will be copied on sync instead
+      pendingPersists.remove(fileName, task);
     }
   }
 
@@ -265,4 +422,79 @@ public class NRTCachingDirectory extends FilterDirectory implements Accountable
   public long ramBytesUsed() {
     return cache.ramBytesUsed();
   }
+
+  /** Returns the number of cached bytes that were
+   *  already persisted to the delegate in the background;
+   *  this memory is released on the next {@link #sync}.
+   *  This is always <code>0</code> if no persist executor
+   *  was provided. */
+  public long persistedBytes() throws IOException {
+    long bytes = 0;
+    for(String fileName : persisted) {
+      try {
+        bytes += cache.fileLength(fileName);
+      } catch (FileNotFoundException fnfe) {
+        // Uncached concurrently
+      }
+    }
+    return bytes;
+  }
+
+  /** Returns the number of cached files whose
+   *  background copy to the delegate is still pending. */
+  public int pendingPersistCount() {
+    return pendingPersists.size();
+  }
+
+  /** Schedules a background copy of the cached file once its writer closes it. */
+  private final class PersistingIndexOutput extends IndexOutput {
+    private final String name;
+    private final IndexOutput delegate;
+    private boolean closed;
+
+    PersistingIndexOutput(String name, IndexOutput delegate) {
+      this.name = name;
+      this.delegate = delegate;
+    }
+
+    @Override
+    public void writeByte(byte b) throws IOException {
+      delegate.writeByte(b);
+    }
+
+    @Override
+    public void writeBytes(byte[] b, int offset, int length) throws IOException {
+      delegate.writeBytes(b, offset, length);
+    }
+
+    @Override
+    public void copyBytes(DataInput input, long numBytes) throws IOException {
+      delegate.copyBytes(input, numBytes);
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void flush() throws IOException {
+      delegate.flush();
+    }
+
+    @Override
+    public long getFilePointer() {
+      return delegate.getFilePointer();
+    }
+
+    @Override
+    public long getChecksum() throws IOException {
+      return delegate.getChecksum();
+    }
+
+    @Override
+    public void close() throws IOException {
+      delegate.close();
+      if (closed == false) {
+        closed = true;
+        schedulePersist(name);
+      }
+    }
+  }
 }
@@ -0,0 +1,139 @@
+package org.apache.lucene.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.index.DocsEnum;
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+
+/**
+ * A builder of {@link DocIdSet}s that computes the union of several sets of
+ * documents, like the postings of all terms of a multi-term query.
+ * <p>Documents are first buffered in an int[], which is sorted and compressed
+ * into a {@link PForDeltaDocIdSet} when {@link #build()} is called. When more
+ * than <code>maxDoc / 128</code> documents have been added, the buffer is
+ * replaced with a {@link FixedBitSet}, so that sparse unions do not need to
+ * allocate <code>maxDoc / 8</code> bytes while dense unions are not slowed
+ * down by sorting.
+ * @lucene.internal
+ */
+public final class DocIdSetBuilder {
+
+  private static final int BUFFER_SIZE = 128;
+
+  private final int maxDoc;
+  private final int threshold;
+  private final int[] scratch;
+
+  private int[] buffer;
+  private int bufferSize;
+  private FixedBitSet bitSet;
+
+  /** Create a builder that can contain doc IDs between {@code 0} and {@code maxDoc}. */
+  public DocIdSetBuilder(int maxDoc) {
+    this.maxDoc = maxDoc;
+    threshold = maxDoc >>> 7;
+    scratch = new int[BUFFER_SIZE];
+    buffer = new int[0];
+  }
+
+  private void upgradeToBitSet() {
+    assert bitSet == null;
+    bitSet = new FixedBitSet(maxDoc);
+    for (int i = 0; i < bufferSize; ++i) {
+      bitSet.set(buffer[i]);
+    }
+    buffer = null;
+    bufferSize = 0;
+  }
+
+  private void add(int[] docs, int length) {
+    if (bitSet == null && bufferSize + length > threshold) {
+      upgradeToBitSet();
+    }
+    if (bitSet != null) {
+      for (int i = 0; i < length; ++i) {
+        bitSet.set(docs[i]);
+      }
+    } else {
+      buffer = ArrayUtil.grow(buffer, bufferSize + length);
+      System.arraycopy(docs, 0, buffer, bufferSize, length);
+      bufferSize += length;
+    }
+  }
+
+  /**
+   * Add the content of the provided {@link DocsEnum} to this builder,
+   * reading documents in bulk with {@link DocsEnum#read(int[])}.
+   */
+  public void add(DocsEnum docs) throws IOException {
+    for (int length = docs.read(scratch); length > 0; length = docs.read(scratch)) {
+      add(scratch, length);
+    }
+  }
+
+  /**
+   * Add the content of the provided {@link DocIdSetIterator} to this builder.
+   */
+  public void add(DocIdSetIterator iter) throws IOException {
+    if (bitSet != null) {
+      bitSet.or(iter);
+      return;
+    }
+    int length = 0;
+    for (int doc = iter.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = iter.nextDoc()) {
+      scratch[length++] = doc;
+      if (length == BUFFER_SIZE) {
+        add(scratch, length);
+        length = 0;
+      }
+    }
+    add(scratch, length);
+  }
+
+  /**
+   * Build a {@link DocIdSet} that contains all doc ids that have been added.
+   * This method can only be called once.
+   */
+  public DocIdSet build() {
+    final DocIdSet result;
+    if (bitSet != null) {
+      result = bitSet;
+    } else {
+      Arrays.sort(buffer, 0, bufferSize);
+      final PForDeltaDocIdSet.Builder builder = new PForDeltaDocIdSet.Builder();
+      int previous = -1;
+      for (int i = 0; i < bufferSize; ++i) {
+        final int doc = buffer[i];
+        // skip duplicates
+        if (doc != previous) {
+          builder.add(doc);
+          previous = doc;
+        }
+      }
+      result = builder.build();
+    }
+    bitSet = null;
+    buffer = null;
+    return result;
+  }
+
+}
@@ -112,6 +112,12 @@ public final class FieldCacheSanityChecker {
         continue;
       }
 
+      // or the block bounds that sorting on numeric fields uses to skip
+      // non-competitive docs
+      if (val != null && "NumericBlockBounds".equals(val.getClass().getSimpleName())) {
+        continue;
+      }
+
       if (val instanceof FieldCache.CreationPlaceholder)
         continue;
 
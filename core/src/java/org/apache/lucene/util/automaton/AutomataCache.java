@@ -0,0 +1,104 @@
+package org.apache.lucene.util.automaton;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.apache.lucene.util.Accountable;
+
+/**
+ * A least recently used cache for automata, or for objects that hold
+ * automata, that are expensive to build and built again and again from the
+ * same input, like the automata of query patterns. The cache is bounded by
+ * the {@link Accountable#ramBytesUsed() memory usage} of its values. Values
+ * are shared by all users of the cache, so they must not be modified once
+ * cached.
+ * <p>
+ * This class is thread-safe.
+ *
+ * @lucene.internal
+ */
+public final class AutomataCache<K,V extends Accountable> implements Accountable {
+
+  private final LinkedHashMap<K,V> cache = new LinkedHashMap<>(16, 0.75f, true);
+  private long maxRamBytes;
+  private long ramBytesUsed;
+
+  /** Create a cache whose values use at most <code>maxRamBytes</code>
+   *  bytes of memory. */
+  public AutomataCache(long maxRamBytes) {
+    setMaxRamBytes(maxRamBytes);
+  }
+
+  /** Set the maximum memory usage of the values of this cache, evicting the
+   *  least recently used values if needed. 0 disables the cache. */
+  public synchronized void setMaxRamBytes(long maxRamBytes) {
+    if (maxRamBytes < 0) {
+      throw new IllegalArgumentException("maxRamBytes must be >= 0, got " + maxRamBytes);
+    }
+    this.maxRamBytes = maxRamBytes;
+    evict();
+  }
+
+  /** Return the maximum memory usage of the values of this cache.
+   *  @see #setMaxRamBytes */
+  public synchronized long getMaxRamBytes() {
+    return maxRamBytes;
+  }
+
+  /** Return the value cached for <code>key</code>, or null. */
+  public synchronized V get(K key) {
+    return cache.get(key);
+  }
+
+  /** Cache <code>value</code> for <code>key</code>, unless it alone uses
+   *  more memory than the maximum, and evict the least recently used values
+   *  until the cache fits in its maximum memory usage again. */
+  public synchronized void put(K key, V value) {
+    final long bytes = value.ramBytesUsed();
+    if (bytes > maxRamBytes) {
+      return;
+    }
+    final V previous = cache.put(key, value);
+    if (previous != null) {
+      ramBytesUsed -= previous.ramBytesUsed();
+    }
+    ramBytesUsed += bytes;
+    evict();
+  }
+
+  private void evict() {
+    assert Thread.holdsLock(this);
+    for (Iterator<V> it = cache.values().iterator(); ramBytesUsed > maxRamBytes; ) {
+      ramBytesUsed -= it.next().ramBytesUsed();
+      it.remove();
+    }
+  }
+
+  /** Return the number of cached values. */
+  public synchronized int size() {
+    return cache.size();
+  }
+
+  /** Return the memory usage of the cached values. */
+  @Override
+  public synchronized long ramBytesUsed() {
+    return ramBytesUsed;
+  }
+}
@@ -24,8 +24,10 @@ import java.util.BitSet;
 import java.util.HashSet;
 import java.util.Set;
 
+import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.ArrayUtil;
 import org.apache.lucene.util.InPlaceMergeSorter;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.apache.lucene.util.Sorter;
 
 
@@ -47,7 +49,12 @@ import org.apache.lucene.util.Sorter;
  *
  * @lucene.experimental */
 
-public class Automaton {
+public class Automaton implements Accountable {
+
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(Automaton.class)
+      + RamUsageEstimator.shallowSizeOfInstance(BitSet.class)
+      + 2 * RamUsageEstimator.shallowSizeOfInstance(InPlaceMergeSorter.class);
+
   /** Where we next write to the int[] states; this increments by 2 for
    *  each added state because we pack a pointer to the transitions
    *  array and a count of how many transitions leave the state.  */
@@ -300,6 +307,13 @@ public class Automaton {
     return deterministic;
   }
 
+  @Override
+  public long ramBytesUsed() {
+    // the accept bits are stored in a long[] of isAccept.size() bits
+    return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(states) + RamUsageEstimator.sizeOf(transitions)
+        + RamUsageEstimator.alignObjectSize(RamUsageEstimator.NUM_BYTES_ARRAY_HEADER + isAccept.size() / 8);
+  }
+
   /** Finishes the current state; call this once you are done adding
    *  transitions for a state.  This is automatically called if you
    *  start adding transitions to a new source state, but for the last
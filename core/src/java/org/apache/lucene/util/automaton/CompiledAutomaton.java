@@ -25,8 +25,10 @@ import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.PrefixTermsEnum;
 import org.apache.lucene.index.SingleTermsEnum;
+import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefBuilder;
+import org.apache.lucene.util.RamUsageEstimator;
 
 /**
  * Immutable class holding compiled details for a given
@@ -35,7 +37,9 @@ import org.apache.lucene.util.BytesRefBuilder;
  *
  * @lucene.experimental
  */
-public class CompiledAutomaton {
+public class CompiledAutomaton implements Accountable {
+  private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(CompiledAutomaton.class);
+
   /**
    * Automata are compiled into different internal forms for the
    * most efficient execution depending upon the language they accept.
@@ -192,11 +196,9 @@ public class CompiledAutomaton {
     this.automaton = runAutomaton.automaton;
   }
 
-  private Transition transition = new Transition();
-  
   //private static final boolean DEBUG = BlockTreeTermsWriter.DEBUG;
 
-  private BytesRef addTail(int state, BytesRefBuilder term, int idx, int leadLabel) {
+  private BytesRef addTail(int state, BytesRefBuilder term, int idx, int leadLabel, Transition transition) {
     //System.out.println("addTail state=" + state + " term=" + term.utf8ToString() + " idx=" + idx + " leadLabel=" + (char) leadLabel);
     //System.out.println(automaton.toDot());
     // Find biggest transition that's < label
@@ -295,6 +297,8 @@ public class CompiledAutomaton {
     //if (DEBUG) System.out.println("CA.floor input=" + input.utf8ToString());
 
     int state = runAutomaton.getInitialState();
+    // not a member so that compiled automata can be shared across threads
+    final Transition transition = new Transition();
 
     // Special case empty string:
     if (input.length == 0) {
@@ -367,7 +371,7 @@ public class CompiledAutomaton {
 
         //if (DEBUG) System.out.println("  label=" + (char) label + " idx=" + idx);
 
-        return addTail(state, output, idx, label);
+        return addTail(state, output, idx, label, transition);
         
       } else {
         output.grow(1+idx);
@@ -379,6 +383,15 @@ public class CompiledAutomaton {
     }
   }
 
+  @Override
+  public long ramBytesUsed() {
+    // automaton is the automaton of runAutomaton
+    return BASE_RAM_BYTES_USED
+        + (runAutomaton == null ? 0 : runAutomaton.ramBytesUsed())
+        + (term == null ? 0 : RamUsageEstimator.sizeOf(term.bytes))
+        + (commonSuffixRef == null ? 0 : RamUsageEstimator.sizeOf(commonSuffixRef.bytes));
+  }
+
   @Override
   public int hashCode() {
     final int prime = 31;
@@ -32,6 +32,7 @@ import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.store.ByteArrayDataOutput;
 import org.apache.lucene.store.DataInput;
 import org.apache.lucene.store.DataOutput;
+import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.InputStreamDataInput;
 import org.apache.lucene.store.OutputStreamDataOutput;
 import org.apache.lucene.store.RAMOutputStream;
@@ -151,8 +152,13 @@ public final class FST<T> implements Accountable {
   // produces this output
   T emptyOutput;
 
+  // null if the FST bytes are read from offHeapBytes
   final BytesStore bytes;
 
+  // if non-null, the FST bytes are read from this slice of the
+  // Directory, and never loaded onto the heap
+  private final IndexInput offHeapBytes;
+
   private long startNode = -1;
 
   public final Outputs<T> outputs;
@@ -297,6 +303,7 @@ public final class FST<T> implements Accountable {
     this.allowArrayArcs = allowArrayArcs;
     version = VERSION_CURRENT;
 		bytes = new BytesStore(bytesPageBits);
+    offHeapBytes = null;
     // pad: ensure no node gets address 0 which is reserved to mean the stop state w/ no arcs
     bytes.writeByte((byte) 0);
     NO_OUTPUT = outputs.getNoOutput();
@@ -325,6 +332,23 @@ public final class FST<T> implements Accountable {
 	 * of the byte[] pages used to hold the FST bytes.
 	 */
 	public FST(DataInput in, Outputs<T> outputs, int maxBlockBits) throws IOException {
+    this(in, outputs, maxBlockBits, false);
+  }
+
+  /**
+   * Load a previously saved FST; if <code>offHeap</code> is true, the FST
+   * bytes are not copied to the heap but read from a slice of <code>in</code>
+   * on demand. The slice stays valid after <code>in</code> has been read past
+   * the FST, but <code>in</code> must not be closed for as long as the FST is
+   * used. Since arcs are read backwards, one byte at a time, this is only
+   * fast if <code>in</code> is memory-mapped.
+   * Otherwise, this is the same as {@link #FST(DataInput, Outputs)}.
+   */
+  public FST(IndexInput in, Outputs<T> outputs, boolean offHeap) throws IOException {
+    this(in, outputs, DEFAULT_MAX_BLOCK_BITS, offHeap);
+  }
+
+  private FST(DataInput in, Outputs<T> outputs, int maxBlockBits, boolean offHeap) throws IOException {
 		this.outputs = outputs;
 
     if (maxBlockBits < 1 || maxBlockBits > 30) {
@@ -384,7 +408,15 @@ public final class FST<T> implements Accountable {
     arcWithOutputCount = in.readVLong();
 
     long numBytes = in.readVLong();
-    bytes = new BytesStore(in, numBytes, 1<<maxBlockBits);
+    if (offHeap) {
+      final IndexInput input = (IndexInput) in;
+      offHeapBytes = input.slice("fst", input.getFilePointer(), numBytes);
+      input.seek(input.getFilePointer() + numBytes);
+      bytes = null;
+    } else {
+      bytes = new BytesStore(in, numBytes, 1<<maxBlockBits);
+      offHeapBytes = null;
+    }
     
     NO_OUTPUT = outputs.getNoOutput();
 
@@ -433,7 +465,9 @@ public final class FST<T> implements Accountable {
   @Override
   public long ramBytesUsed() {
     long size = BASE_RAM_BYTES_USED;
-    size += bytes.ramBytesUsed();
+    if (bytes != null) {
+      size += bytes.ramBytesUsed();
+    }
     if (packed) {
       size += nodeRefToAddress.ramBytesUsed();
     } else if (nodeAddress != null) {
@@ -606,9 +640,16 @@ public final class FST<T> implements Accountable {
     out.writeVLong(nodeCount);
     out.writeVLong(arcCount);
     out.writeVLong(arcWithOutputCount);
-    long numBytes = bytes.getPosition();
-    out.writeVLong(numBytes);
-    bytes.writeTo(out);
+    if (offHeapBytes != null) {
+      final IndexInput in = offHeapBytes.clone();
+      in.seek(0);
+      out.writeVLong(in.length());
+      out.copyBytes(in, in.length());
+    } else {
+      long numBytes = bytes.getPosition();
+      out.writeVLong(numBytes);
+      bytes.writeTo(out);
+    }
   }
   
   /**
@@ -1355,7 +1396,9 @@ public final class FST<T> implements Accountable {
    *  position 0. */
   public BytesReader getBytesReader() {
     BytesReader in;
-    if (packed) {
+    if (offHeapBytes != null) {
+      in = new IndexInputBytesReader(offHeapBytes.clone(), packed == false);
+    } else if (packed) {
       in = bytes.getForwardReader();
     } else {
       in = bytes.getReverseReader();
@@ -1500,6 +1543,7 @@ public final class FST<T> implements Accountable {
     packed = true;
     this.inputType = inputType;
     bytes = new BytesStore(bytesPageBits);
+    offHeapBytes = null;
     this.outputs = outputs;
     NO_OUTPUT = outputs.getNoOutput();
     
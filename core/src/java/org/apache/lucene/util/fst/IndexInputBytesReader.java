@@ -0,0 +1,91 @@
+package org.apache.lucene.util.fst;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+
+import org.apache.lucene.store.IndexInput;
+
+/** Reads the bytes of an off-heap FST from an {@link IndexInput},
+ *  forwards or in reverse. */
+final class IndexInputBytesReader extends FST.BytesReader {
+  private final IndexInput in;
+  private final boolean reversed;
+  private long pos;
+
+  public IndexInputBytesReader(IndexInput in, boolean reversed) {
+    this.in = in;
+    this.reversed = reversed;
+  }
+
+  @Override
+  public byte readByte() throws IOException {
+    if (reversed) {
+      in.seek(pos--);
+    } else {
+      seekIfNeeded();
+      pos++;
+    }
+    return in.readByte();
+  }
+
+  @Override
+  public void readBytes(byte[] b, int offset, int len) throws IOException {
+    if (reversed) {
+      for(int i=0;i<len;i++) {
+        in.seek(pos--);
+        b[offset+i] = in.readByte();
+      }
+    } else {
+      seekIfNeeded();
+      in.readBytes(b, offset, len);
+      pos += len;
+    }
+  }
+
+  // forward reads only seek after the position was changed
+  private void seekIfNeeded() throws IOException {
+    if (in.getFilePointer() != pos) {
+      in.seek(pos);
+    }
+  }
+
+  @Override
+  public void skipBytes(long count) {
+    if (reversed) {
+      pos -= count;
+    } else {
+      pos += count;
+    }
+  }
+
+  @Override
+  public long getPosition() {
+    return pos;
+  }
+
+  @Override
+  public void setPosition(long pos) {
+    this.pos = pos;
+  }
+
+  @Override
+  public boolean reversed() {
+    return reversed;
+  }
+}
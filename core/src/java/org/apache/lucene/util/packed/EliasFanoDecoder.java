@@ -223,8 +223,9 @@ public class EliasFanoDecoder {
       assert false;
     }
     /* CHECKME: Add a (binary) search in the upperZeroBitPositions here. */
+    // the lowest set bit of curHighLong is the high bit for efIndex
     int curSetBits = Long.bitCount(curHighLong);
-    while ((efIndex + curSetBits) < index) { // curHighLong has not enough set bits to reach index
+    while ((efIndex + curSetBits) <= index) { // curHighLong has not enough set bits to reach index
       efIndex += curSetBits;
       toNextHighLong();
       curSetBits = Long.bitCount(curHighLong);
@@ -234,11 +235,10 @@ public class EliasFanoDecoder {
       /* CHECKME: Instead of the linear search here, use (forward) broadword selection from
        * "Broadword Implementation of Rank/Select Queries", Sebastiano Vigna, January 30, 2012.
        */
-      if (! toAfterCurrentHighBit()) {
-        assert false;
-      }
-      toNextHighValue();
+      curHighLong &= curHighLong - 1; // clear the high bit for efIndex
+      efIndex += 1;
     }
+    toNextHighValue();
     return true;
   }
 
@@ -17,8 +17,11 @@
 
 package org.apache.lucene.util.packed;
 
+import java.io.IOException;
 import java.util.Arrays;
 
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.FixedBitSet; // for javadocs
 import org.apache.lucene.util.RamUsageEstimator;
@@ -307,6 +310,50 @@ public class EliasFanoEncoder implements Accountable {
     return upperZeroBitPositionIndex;
   }
 
+  /** Expert. Writes the encoded sequence to <code>out</code>, so that it can be
+   * read back with {@link #readFrom}.
+   * Perform all calls to {@link #encodeNext} before calling {@link #writeTo}.
+   */
+  public void writeTo(DataOutput out) throws IOException {
+    out.writeVLong(numValues);
+    out.writeLong(upperBound);
+    out.writeVLong(indexInterval);
+    out.writeVLong(numEncoded);
+    out.writeVLong(lastEncoded);
+    out.writeVLong(currentEntryIndex);
+    writeLongs(out, upperLongs);
+    writeLongs(out, lowerLongs);
+    writeLongs(out, upperZeroBitPositionIndex);
+  }
+
+  private static void writeLongs(DataOutput out, long[] longs) throws IOException {
+    for (long l : longs) {
+      out.writeLong(l);
+    }
+  }
+
+  /** Expert. Reads a sequence that was written with {@link #writeTo}.
+   * The returned encoder can only be used to get a {@link #getDecoder decoder}. */
+  public static EliasFanoEncoder readFrom(DataInput in) throws IOException {
+    final long numValues = in.readVLong();
+    final long upperBound = in.readLong();
+    final long indexInterval = in.readVLong();
+    final EliasFanoEncoder efEncoder = new EliasFanoEncoder(numValues, upperBound, indexInterval);
+    efEncoder.numEncoded = in.readVLong();
+    efEncoder.lastEncoded = in.readVLong();
+    efEncoder.currentEntryIndex = in.readVLong();
+    readLongs(in, efEncoder.upperLongs);
+    readLongs(in, efEncoder.lowerLongs);
+    readLongs(in, efEncoder.upperZeroBitPositionIndex);
+    return efEncoder;
+  }
+
+  private static void readLongs(DataInput in, long[] longs) throws IOException {
+    for (int i = 0; i < longs.length; i++) {
+      longs[i] = in.readLong();
+    }
+  }
+
   @Override
   public String toString() {
     StringBuilder s = new StringBuilder("EliasFanoSequence");
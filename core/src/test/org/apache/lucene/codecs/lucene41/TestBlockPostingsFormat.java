@@ -17,8 +17,23 @@ package org.apache.lucene.codecs.lucene41;
  * limitations under the License.
  */
 
+import java.util.Locale;
+
+import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.blocktree.FieldReader;
+import org.apache.lucene.codecs.blocktree.Stats;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.AtomicReader;
 import org.apache.lucene.index.BasePostingsFormatTestCase;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.TestUtil;
 
 /**
@@ -31,4 +46,72 @@ public class TestBlockPostingsFormat extends BasePostingsFormatTestCase {
   protected Codec getCodec() {
     return codec;
   }
+
+  /** Suffixes and stats of terms blocks are compressed when they are repetitive. */
+  public void testCompressedBlocks() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(codec);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = atLeast(1000);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newStringField("id", String.format(Locale.ROOT, "%08d-customer-record", i), Field.Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    w.close();
+
+    DirectoryReader r = DirectoryReader.open(dir);
+    AtomicReader ar = getOnlySegmentReader(r);
+    FieldReader id = (FieldReader) ar.terms("id");
+    Stats stats = id.computeStats();
+    assertEquals(numDocs, stats.totalTermCount);
+    assertTrue(stats.toString(), stats.totalBlockSuffixBytes * 2 < stats.totalTermBytes);
+    assertTrue(stats.toString(), stats.totalBlockStatsBytes * 2 < stats.totalTermCount);
+    TermsEnum termsEnum = id.iterator(null);
+    for (int i = 0; i < numDocs; i++) {
+      final BytesRef term = new BytesRef(String.format(Locale.ROOT, "%08d-customer-record", i));
+      if (random().nextBoolean()) {
+        assertTrue(termsEnum.seekExact(term));
+      } else {
+        assertEquals(term, termsEnum.next());
+      }
+      assertEquals(1, termsEnum.docFreq());
+    }
+    assertNull(termsEnum.next());
+    r.close();
+    dir.close();
+  }
+
+  /** By default, only the terms index of primary keys is off-heap, and only if it is memory-mapped. */
+  public void testAutoFSTLoadMode() throws Exception {
+    Directory dir = new MMapDirectory(createTempDir("offheap"));
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setCodec(codec);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = atLeast(1000);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newStringField("id", Integer.toString(i), Field.Store.NO));
+      doc.add(newTextField("body", "value" + (i % 10) + " value" + (i % 7), Field.Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    w.close();
+
+    DirectoryReader r = DirectoryReader.open(dir);
+    AtomicReader ar = getOnlySegmentReader(r);
+    FieldReader id = (FieldReader) ar.terms("id");
+    FieldReader body = (FieldReader) ar.terms("body");
+    assertTrue(id.isIndexOffHeap());
+    assertFalse(body.isIndexOffHeap());
+    TermsEnum termsEnum = id.iterator(null);
+    for (int i = 0; i < numDocs; i++) {
+      assertTrue(termsEnum.seekExact(new BytesRef(Integer.toString(i))));
+    }
+    assertFalse(termsEnum.seekExact(new BytesRef("foo")));
+    r.close();
+    dir.close();
+  }
 }
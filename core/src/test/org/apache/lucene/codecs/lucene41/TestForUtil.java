@@ -82,7 +82,14 @@ public class TestForUtil extends LuceneTestCase {
           continue;
         }
         final int[] restored = new int[MAX_DATA_SIZE];
-        forUtil.readBlock(in, new byte[MAX_ENCODED_SIZE], restored);
+        if (random().nextBoolean()) {
+          forUtil.readBlock(in, new byte[MAX_ENCODED_SIZE], restored);
+        } else {
+          // lazy decoding
+          final byte[] encoded = new byte[MAX_ENCODED_SIZE];
+          final int numBits = forUtil.readEncodedBlock(in, encoded);
+          forUtil.decodeBlock(numBits, encoded, restored);
+        }
         assertArrayEquals(Arrays.copyOfRange(values, i * BLOCK_SIZE, (i + 1) * BLOCK_SIZE),
             Arrays.copyOf(restored, BLOCK_SIZE));
       }
@@ -31,6 +31,7 @@ import org.apache.lucene.codecs.memory.FSTOrdPostingsFormat;
 import org.apache.lucene.codecs.memory.FSTOrdPulsing41PostingsFormat;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.SortedSetDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.AtomicReader;
@@ -38,6 +39,7 @@ import org.apache.lucene.index.AtomicReaderContext;
 import org.apache.lucene.index.BaseCompressingDocValuesFormatTestCase;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NumericDocValues;
 import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.SerialMergeScheduler;
 import org.apache.lucene.index.Term;
@@ -45,6 +47,7 @@ import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.index.TermsEnum.SeekStatus;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.TestUtil;
 
@@ -114,6 +117,127 @@ public class TestLucene410DocValuesFormat extends BaseCompressingDocValuesFormat
     }
   }
   
+  public void testSparseNumeric() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig conf = newIndexWriterConfig(new MockAnalyzer(random()));
+    conf.setCodec(codec);
+    // keep docs in order
+    conf.setMergePolicy(newLogMergePolicy());
+    RandomIndexWriter writer = new RandomIndexWriter(random(), dir, conf);
+    final int numDocs = atLeast(10000);
+    final Long[] expected = new Long[numDocs];
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Field.Store.NO));
+      if (random().nextInt(200) == 0) {
+        expected[i] = random().nextBoolean() ? random().nextLong() : TestUtil.nextLong(random(), -3, 3);
+        doc.add(new NumericDocValuesField("dv", expected[i]));
+      }
+      writer.addDocument(doc);
+    }
+    // make sure the field exists
+    Document doc = new Document();
+    doc.add(new StringField("id", Integer.toString(numDocs), Field.Store.NO));
+    doc.add(new NumericDocValuesField("dv", 42));
+    writer.addDocument(doc);
+    writer.forceMerge(1);
+
+    DirectoryReader ir = writer.getReader();
+    AtomicReader ar = getOnlySegmentReader(ir);
+    NumericDocValues values = ar.getNumericDocValues("dv");
+    Bits docsWithField = ar.getDocsWithField("dv");
+    // in order, then in random order
+    for (int i = 0; i < numDocs; i++) {
+      assertEquals(expected[i] != null, docsWithField.get(i));
+      assertEquals(expected[i] == null ? 0 : expected[i], values.get(i));
+    }
+    assertEquals(42, values.get(numDocs));
+    for (int iter = 0; iter < 1000; iter++) {
+      final int i = random().nextInt(numDocs);
+      assertEquals(expected[i] != null, docsWithField.get(i));
+      assertEquals(expected[i] == null ? 0 : expected[i], values.get(i));
+    }
+    ir.close();
+    writer.close();
+    dir.close();
+  }
+
+  public void testBlockNumeric() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig conf = newIndexWriterConfig(new MockAnalyzer(random()));
+    conf.setCodec(codec);
+    // keep docs in order
+    conf.setMergePolicy(newLogMergePolicy());
+    RandomIndexWriter writer = new RandomIndexWriter(random(), dir, conf);
+    final int blockSize = Lucene410DocValuesConsumer.NUMERIC_BLOCK_SIZE;
+    final int numDocs = blockSize * TestUtil.nextInt(random(), 2, 4) + random().nextInt(blockSize);
+    final long[] expected = new long[numDocs];
+    // every block has its own range and gcd, and some blocks have a single value
+    long base = random().nextLong() >> 4;
+    long gcd = 1;
+    int range = 1;
+    for (int i = 0; i < numDocs; i++) {
+      if ((i & (blockSize - 1)) == 0) {
+        base += TestUtil.nextLong(random(), -1L << 40, 1L << 40);
+        gcd = random().nextBoolean() ? 1 : TestUtil.nextInt(random(), 2, 1000);
+        range = random().nextInt(5) == 0 ? 1 : 1 << random().nextInt(16);
+      }
+      expected[i] = base + gcd * random().nextInt(range);
+      Document doc = new Document();
+      doc.add(new NumericDocValuesField("dv", expected[i]));
+      writer.addDocument(doc);
+    }
+    writer.forceMerge(1);
+
+    DirectoryReader ir = writer.getReader();
+    AtomicReader ar = getOnlySegmentReader(ir);
+    NumericDocValues values = ar.getNumericDocValues("dv");
+    // in order, then in random order
+    for (int i = 0; i < numDocs; i++) {
+      assertEquals(expected[i], values.get(i));
+    }
+    for (int iter = 0; iter < 1000; iter++) {
+      final int i = random().nextInt(numDocs);
+      assertEquals(expected[i], values.get(i));
+    }
+    ir.close();
+    writer.close();
+    dir.close();
+  }
+
+  public void testAllMissingNumeric() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig conf = newIndexWriterConfig(new MockAnalyzer(random()));
+    conf.setCodec(codec);
+    RandomIndexWriter writer = new RandomIndexWriter(random(), dir, conf);
+    final int numDocs = atLeast(100);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Field.Store.NO));
+      if (i == 0) {
+        doc.add(new NumericDocValuesField("dv", 5));
+      }
+      writer.addDocument(doc);
+    }
+    writer.commit();
+    writer.deleteDocuments(new Term("id", "0"));
+    writer.forceMerge(1);
+
+    DirectoryReader ir = writer.getReader();
+    AtomicReader ar = getOnlySegmentReader(ir);
+    NumericDocValues values = ar.getNumericDocValues("dv");
+    Bits docsWithField = ar.getDocsWithField("dv");
+    if (values != null) {
+      for (int i = 0; i < ar.maxDoc(); i++) {
+        assertFalse(docsWithField.get(i));
+        assertEquals(0, values.get(i));
+      }
+    }
+    ir.close();
+    writer.close();
+    dir.close();
+  }
+
   // TODO: try to refactor this and some termsenum tests into the base class.
   // to do this we need to fix the test class to get a DVF not a Codec so we can setup
   // the postings format correctly.
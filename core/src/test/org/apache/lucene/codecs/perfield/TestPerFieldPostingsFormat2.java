@@ -17,9 +17,15 @@ package org.apache.lucene.codecs.perfield;
  * limitations under the License.
  */
 import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.analysis.MockTokenFilter;
+import org.apache.lucene.analysis.MockTokenizer;
 import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.FieldStats;
 import org.apache.lucene.codecs.PostingsFormat;
 import org.apache.lucene.codecs.lucene41.Lucene41PostingsFormat;
 import org.apache.lucene.codecs.lucene410.Lucene410Codec;
@@ -28,9 +34,12 @@ import org.apache.lucene.codecs.pulsing.Pulsing41PostingsFormat;
 import org.apache.lucene.codecs.simpletext.SimpleTextPostingsFormat;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
@@ -300,6 +309,98 @@ public class TestPerFieldPostingsFormat2 extends LuceneTestCase {
     doTestMixedPostings(codec);
   }
   
+  public void testFieldStats() throws Exception {
+    final Map<String,FieldStats> stats = new ConcurrentHashMap<>();
+    Codec codec = new Lucene410Codec() {
+      @Override
+      public PostingsFormat getPostingsFormatForField(FieldInfo field, FieldStats fieldStats) {
+        assertNotNull(fieldStats);
+        stats.put(field.name, fieldStats);
+        return super.getPostingsFormatForField(field, fieldStats);
+      }
+    };
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = new IndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random()));
+    iwc.setCodec(codec);
+    iwc.setMergePolicy(new LogDocMergePolicy());
+    IndexWriter w = new IndexWriter(dir, iwc);
+    for (int i = 0; i < 20; i++) {
+      Document doc = new Document();
+      doc.add(new StringField("id", Integer.toString(i), Store.NO));
+      doc.add(new TextField("body", i % 2 == 0 ? "a b c" : "a b", Store.NO));
+      if (i % 10 < 5) {
+        doc.add(new StringField("sparse", "x", Store.NO));
+      }
+      w.addDocument(doc);
+      if (i == 9) {
+        w.commit();
+        assertStats(stats.get("id"), 10, 10, 10, 10);
+        assertStats(stats.get("body"), 3, 10, 25, 10);
+        assertStats(stats.get("sparse"), 1, 5, 5, 10);
+        stats.clear();
+      }
+    }
+    w.commit();
+    assertStats(stats.get("id"), 10, 10, 10, 10);
+    stats.clear();
+
+    w.forceMerge(1);
+    // the number of terms is an upper bound when merging
+    assertStats(stats.get("id"), 20, 20, 20, 20);
+    assertStats(stats.get("body"), 6, 20, 50, 20);
+    assertStats(stats.get("sparse"), 2, 10, 10, 20);
+    w.close();
+    dir.close();
+  }
+
+  public void testFieldStatsWithoutTokens() throws Exception {
+    final Map<String,FieldStats> stats = new ConcurrentHashMap<>();
+    Codec codec = new Lucene410Codec() {
+      @Override
+      public PostingsFormat getPostingsFormatForField(FieldInfo field, FieldStats fieldStats) {
+        stats.put(field.name, fieldStats);
+        return super.getPostingsFormatForField(field, fieldStats);
+      }
+    };
+    Directory dir = newDirectory();
+    Analyzer analyzer = new MockAnalyzer(random(), MockTokenizer.SIMPLE, true, MockTokenFilter.ENGLISH_STOPSET);
+    IndexWriterConfig iwc = new IndexWriterConfig(TEST_VERSION_CURRENT, analyzer);
+    iwc.setCodec(codec);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    for (int i = 0; i < 10; i++) {
+      Document doc = new Document();
+      switch (i % 3) {
+        case 0:
+          doc.add(new TextField("body", "", Store.NO));
+          break;
+        case 1:
+          doc.add(new TextField("body", "the an", Store.NO));
+          break;
+        default:
+          doc.add(new TextField("body", "foo", Store.NO));
+          break;
+      }
+      if (i == 9) {
+        // only the second value produces tokens
+        doc.add(new TextField("body", "foo", Store.NO));
+      }
+      w.addDocument(doc);
+    }
+    w.commit();
+    // documents whose values produce no tokens are not counted
+    assertStats(stats.get("body"), 1, 4, 4, 10);
+    w.close();
+    dir.close();
+  }
+
+  private static void assertStats(FieldStats stats, long numTerms, int docCount, long sumDocFreq, int maxDoc) {
+    assertNotNull(stats);
+    assertEquals(stats.toString(), numTerms, stats.numTerms);
+    assertEquals(stats.toString(), docCount, stats.docCount);
+    assertEquals(stats.toString(), sumDocFreq, stats.sumDocFreq);
+    assertEquals(stats.toString(), maxDoc, stats.maxDoc);
+  }
+
   private void doTestMixedPostings(Codec codec) throws Exception {
     Directory dir = newDirectory();
     IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
@@ -26,6 +26,7 @@ import java.util.ArrayList;
 
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.analysis.CannedTokenStream;
 import org.apache.lucene.analysis.MockAnalyzer;
@@ -33,6 +34,7 @@ import org.apache.lucene.analysis.Token;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.TextField;
 
 public class TestCheckIndex extends LuceneTestCase {
@@ -99,6 +101,57 @@ public class TestCheckIndex extends LuceneTestCase {
     dir.close();
   }
   
+  public void testThreadCount() throws IOException {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMaxBufferedDocs(TestUtil.nextInt(random(), 2, 10));
+    iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter writer = new IndexWriter(dir, iwc);
+    final int numDocs = atLeast(100);
+    for(int i=0;i<numDocs;i++) {
+      Document doc = new Document();
+      FieldType customType = new FieldType(TextField.TYPE_STORED);
+      customType.setStoreTermVectors(true);
+      doc.add(newField("field", "aaa"+i, customType));
+      if (defaultCodecSupportsDocValues()) {
+        doc.add(new NumericDocValuesField("dv", i));
+      }
+      writer.addDocument(doc);
+      if (random().nextInt(10) == 0) {
+        writer.deleteDocuments(new Term("field", "aaa" + random().nextInt(i+1)));
+      }
+    }
+    writer.close();
+
+    final boolean verbose = random().nextBoolean();
+    CheckIndex checker = new CheckIndex(dir);
+    ByteArrayOutputStream sequential = new ByteArrayOutputStream();
+    checker.setInfoStream(new PrintStream(sequential, false, IOUtils.UTF_8), verbose);
+    CheckIndex.Status expected = checker.checkIndex();
+    assertTrue(expected.clean);
+
+    checker.setThreadCount(TestUtil.nextInt(random(), 2, 8));
+    ByteArrayOutputStream concurrent = new ByteArrayOutputStream();
+    checker.setInfoStream(new PrintStream(concurrent, false, IOUtils.UTF_8), verbose);
+    CheckIndex.Status actual = checker.checkIndex();
+    assertTrue(actual.clean);
+    assertEquals(expected.segmentInfos.size(), actual.segmentInfos.size());
+    for (int i = 0; i < expected.segmentInfos.size(); i++) {
+      CheckIndex.Status.SegmentInfoStatus e = expected.segmentInfos.get(i);
+      CheckIndex.Status.SegmentInfoStatus a = actual.segmentInfos.get(i);
+      assertEquals(e.name, a.name);
+      assertEquals(e.numDeleted, a.numDeleted);
+      assertEquals(e.numFields, a.numFields);
+      assertEquals(e.termIndexStatus.termCount, a.termIndexStatus.termCount);
+      assertEquals(e.storedFieldStatus.totFields, a.storedFieldStatus.totFields);
+      assertEquals(e.termVectorStatus.totVectors, a.termVectorStatus.totVectors);
+      assertEquals(e.docValuesStatus.totalNumericFields, a.docValuesStatus.totalNumericFields);
+    }
+    assertEquals(expected.newSegments.size(), actual.newSegments.size());
+    assertEquals(sequential.toString(IOUtils.UTF_8), concurrent.toString(IOUtils.UTF_8));
+    dir.close();
+  }
+
   // LUCENE-4221: we have to let these thru, for now
   public void testBogusTermVectors() throws IOException {
     Directory dir = newDirectory();
@@ -17,10 +17,16 @@ package org.apache.lucene.index;
  * limitations under the License.
  */
 
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.codecs.CodecUtil;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.TextField;
 import org.apache.lucene.store.CompoundFileDirectory;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FilterDirectory;
 import org.apache.lucene.store.IOContext;
 import org.apache.lucene.store.IndexInput;
 import org.apache.lucene.store.IndexOutput;
@@ -30,8 +36,16 @@ import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.LuceneTestCase;
 import org.apache.lucene.util.TestUtil;
 
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.apache.lucene.store.TestHelper.isSimpleFSIndexInput;
 import static org.apache.lucene.store.TestHelper.isSimpleFSIndexInputOpen;
@@ -830,6 +844,237 @@ public class TestCompoundFile extends LuceneTestCase
     dir.close();
   }
   
+  // files that are written concurrently are interleaved in chunks
+  public void testConcurrentOutputs() throws IOException {
+    MockDirectoryWrapper newDir = newMockDirectory();
+    // we check which files exist
+    newDir.setEnableVirusScanner(false);
+    CompoundFileDirectory csw = new CompoundFileDirectory(newDir, "d.cfs", newIOContext(random()), true);
+    final int numFiles = TestUtil.nextInt(random(), 2, 10);
+    final IndexOutput[] outs = new IndexOutput[numFiles];
+    for (int i = 0; i < numFiles; i++) {
+      outs[i] = csw.createOutput("d_" + i + ".xyz", newIOContext(random()));
+      CodecUtil.writeHeader(outs[i], "test", 0);
+    }
+    final int size = atLeast(10000);
+    for (int j = 0; j < size; j++) {
+      for (int i = 0; i < numFiles; i++) {
+        outs[i].writeVInt(i * j);
+      }
+    }
+    final List<Integer> order = new ArrayList<>();
+    for (int i = 0; i < numFiles; i++) {
+      order.add(i);
+    }
+    Collections.shuffle(order, random());
+    for (int i : order) {
+      CodecUtil.writeFooter(outs[i]);
+      outs[i].close();
+      // no temporary files
+      assertEquals(Collections.singletonList("d.cfs"), Arrays.asList(newDir.listAll()));
+    }
+    csw.close();
+    assertEquals(2, newDir.listAll().length);
+
+    CompoundFileDirectory csr = new CompoundFileDirectory(newDir, "d.cfs", newIOContext(random()), false);
+    assertEquals(numFiles, csr.listAll().length);
+    for (int i = 0; i < numFiles; i++) {
+      IndexInput in = csr.openInput("d_" + i + ".xyz", newIOContext(random()));
+      CodecUtil.checksumEntireFile(in);
+      CodecUtil.checkHeader(in, "test", 0, 0);
+      for (int j = 0; j < size; j++) {
+        assertEquals(i * j, in.readVInt());
+      }
+      in.close();
+    }
+    csr.close();
+    newDir.close();
+  }
+
+  // seeks, clones and slices of files that are made of several chunks
+  public void testInterleavedOutputs() throws IOException {
+    Directory newDir = newDirectory();
+    CompoundFileDirectory csw = new CompoundFileDirectory(newDir, "d.cfs", newIOContext(random()), true);
+    IndexOutput small = csw.createOutput("d.small", newIOContext(random()));
+    IndexOutput large = csw.createOutput("d.large", newIOContext(random()));
+    final byte[] bytes = new byte[TestUtil.nextInt(random(), 1, 200000)];
+    random().nextBytes(bytes);
+    for (int i = 0; i < bytes.length; ) {
+      final int len = Math.min(bytes.length - i, TestUtil.nextInt(random(), 1, 50000));
+      large.writeBytes(bytes, i, len);
+      i += len;
+      small.writeByte((byte) i);
+    }
+    CodecUtil.writeFooter(large);
+    CodecUtil.writeFooter(small);
+    small.close();
+    large.close();
+    csw.close();
+
+    CompoundFileDirectory csr = new CompoundFileDirectory(newDir, "d.cfs", newIOContext(random()), false);
+    IndexInput in = csr.openInput("d.large", newIOContext(random()));
+    assertEquals(bytes.length + CodecUtil.footerLength(), in.length());
+    CodecUtil.checksumEntireFile(in);
+    in.seek(0);
+    final byte[] actual = new byte[bytes.length];
+    in.readBytes(actual, 0, actual.length);
+    assertArrayEquals(bytes, actual);
+    for (int iter = 0; iter < 100; iter++) {
+      final int pos = random().nextInt(bytes.length);
+      in.seek(pos);
+      assertEquals(bytes[pos], in.readByte());
+      final IndexInput clone = in.clone();
+      assertEquals(pos + 1, clone.getFilePointer());
+      final int len = random().nextInt(bytes.length - pos);
+      final IndexInput slice = in.slice("slice", pos, len);
+      final byte[] sliceBytes = new byte[len];
+      slice.readBytes(sliceBytes, 0, len);
+      assertArrayEquals(Arrays.copyOfRange(bytes, pos, pos + len), sliceBytes);
+    }
+    in.seek(bytes.length + CodecUtil.footerLength());
+    try {
+      in.readByte();
+      fail();
+    } catch (EOFException expected) {
+      // ok
+    }
+    in.close();
+    in = csr.openInput("d.small", newIOContext(random()));
+    CodecUtil.checksumEntireFile(in);
+    in.close();
+    csr.close();
+    newDir.close();
+  }
+
+  // a compound file written into another one is interleaved with the outer one's files
+  public void testNestedConcurrentOutputs() throws IOException {
+    MockDirectoryWrapper newDir = newMockDirectory();
+    // we check which files exist
+    newDir.setEnableVirusScanner(false);
+    CompoundFileDirectory outer = new CompoundFileDirectory(newDir, "d.cfs", newIOContext(random()), true);
+    IndexOutput outerFile = outer.createOutput("d.outer", newIOContext(random()));
+    CompoundFileDirectory inner = new CompoundFileDirectory(outer, "d_inner.cfs", newIOContext(random()), true);
+    IndexOutput first = inner.createOutput("d_inner.first", newIOContext(random()));
+    IndexOutput second = inner.createOutput("d_inner.second", newIOContext(random()));
+    second.writeInt(2);
+    CodecUtil.writeFooter(second);
+    second.close();
+    first.writeInt(1);
+    CodecUtil.writeFooter(first);
+    first.close();
+    inner.close();
+    outerFile.writeInt(3);
+    CodecUtil.writeFooter(outerFile);
+    outerFile.close();
+    assertEquals(Collections.singletonList("d.cfs"), Arrays.asList(newDir.listAll()));
+    outer.close();
+
+    CompoundFileDirectory outerReader = new CompoundFileDirectory(newDir, "d.cfs", newIOContext(random()), false);
+    CompoundFileDirectory innerReader = new CompoundFileDirectory(outerReader, "d_inner.cfs", newIOContext(random()), false);
+    for (int i = 1; i <= 2; i++) {
+      IndexInput in = innerReader.openInput(i == 1 ? "d_inner.first" : "d_inner.second", newIOContext(random()));
+      CodecUtil.checksumEntireFile(in);
+      assertEquals(i, in.readInt());
+      in.close();
+    }
+    innerReader.close();
+    IndexInput in = outerReader.openInput("d.outer", newIOContext(random()));
+    CodecUtil.checksumEntireFile(in);
+    assertEquals(3, in.readInt());
+    in.close();
+    outerReader.close();
+    newDir.close();
+  }
+
+  // flushed segments are written straight into their compound file, and
+  // each byte is written once
+  public void testFlushWritesCompoundFile() throws IOException {
+    assumeTrue("codec does not support doc values", defaultCodecSupportsDocValues());
+    Directory dir = newDirectory();
+    final Set<String> createdFiles = Collections.synchronizedSet(new HashSet<String>());
+    final AtomicLong bytesWritten = new AtomicLong();
+    Directory tracking = new FilterDirectory(dir) {
+      @Override
+      public IndexOutput createOutput(String name, IOContext context) throws IOException {
+        final IndexOutput out = super.createOutput(name, context);
+        if (IndexFileNames.parseSegmentName(name).startsWith("_") == false) {
+          return out;
+        }
+        createdFiles.add(name);
+        return new IndexOutput() {
+          @Override
+          public void writeByte(byte b) throws IOException {
+            out.writeByte(b);
+          }
+
+          @Override
+          public void writeBytes(byte[] b, int offset, int length) throws IOException {
+            out.writeBytes(b, offset, length);
+          }
+
+          @Override
+          public void flush() throws IOException {
+            out.flush();
+          }
+
+          @Override
+          public void close() throws IOException {
+            bytesWritten.addAndGet(out.getFilePointer());
+            out.close();
+          }
+
+          @Override
+          public long getFilePointer() {
+            return out.getFilePointer();
+          }
+
+          @Override
+          public long getChecksum() throws IOException {
+            return out.getChecksum();
+          }
+        };
+      }
+    };
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setUseCompoundFile(true);
+    iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+    iwc.setMaxBufferedDocs(IndexWriterConfig.DISABLE_AUTO_FLUSH);
+    iwc.setRAMBufferSizeMB(IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB);
+    IndexWriter w = new IndexWriter(tracking, iwc);
+    FieldType ft = new FieldType(TextField.TYPE_STORED);
+    ft.setStoreTermVectors(true);
+    final int numDocs = atLeast(1000);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(new Field("body", TestUtil.randomSimpleString(random(), 100) + " text " + i, ft));
+      doc.add(new NumericDocValuesField("dv", random().nextLong()));
+      w.addDocument(doc);
+    }
+    w.commit();
+    long expectedBytes = 0;
+    long cfsLength = 0;
+    for (String file : createdFiles) {
+      final String ext = IndexFileNames.getExtension(file);
+      // no file is written under its own name, or to a temporary file
+      assertTrue("unexpected file: " + file, IndexFileNames.COMPOUND_FILE_EXTENSION.equals(ext) 
+          || IndexFileNames.COMPOUND_FILE_ENTRIES_EXTENSION.equals(ext) || "si".equals(ext));
+      expectedBytes += dir.fileLength(file);
+      if (IndexFileNames.COMPOUND_FILE_EXTENSION.equals(ext)) {
+        cfsLength += dir.fileLength(file);
+      }
+    }
+    assertEquals(expectedBytes, bytesWritten.get());
+    assertTrue(cfsLength + " vs " + bytesWritten, cfsLength >= bytesWritten.get() * 0.9);
+    DirectoryReader r = DirectoryReader.open(w, true);
+    assertEquals(numDocs, r.numDocs());
+    assertEquals(1, r.leaves().size());
+    assertEquals(numDocs, r.docFreq(new Term("body", "text")));
+    r.close();
+    w.close();
+    checkFiles(dir);
+    dir.close();
+  }
+  
   // checks that we can open all files returned by listAll!
   private void checkFiles(Directory dir) throws IOException {
     for (String file : dir.listAll()) {
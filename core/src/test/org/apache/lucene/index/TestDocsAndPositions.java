@@ -377,4 +377,73 @@ public class TestDocsAndPositions extends LuceneTestCase {
     r.close();
     dir.close();
   }
+
+  public void testBulkRead() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter writer = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(1000);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      StringBuilder sb = new StringBuilder();
+      for (int j = 0; j < 4; j++) {
+        if (random().nextInt(1 << j) == 0) {
+          sb.append(" t").append(j);
+        }
+      }
+      doc.add(newStringField("id", Integer.toString(i), Field.Store.NO));
+      doc.add(newTextField("foo", sb.toString(), Field.Store.NO));
+      writer.addDocument(doc);
+    }
+    final int numDeletes = random().nextInt(numDocs / 10);
+    for (int i = 0; i < numDeletes; i++) {
+      writer.deleteDocuments(new Term("id", Integer.toString(random().nextInt(numDocs))));
+    }
+    if (random().nextBoolean()) {
+      writer.forceMerge(1);
+    }
+    DirectoryReader reader = writer.getReader();
+    writer.close();
+
+    final int[] docs = new int[TestUtil.nextInt(random(), 1, 300)];
+    for (AtomicReaderContext context : reader.leaves()) {
+      final AtomicReader r = context.reader();
+      for (int j = 0; j < 4; j++) {
+        final BytesRef term = new BytesRef("t" + j);
+        DocsEnum expected = r.termDocsEnum(new Term("foo", term));
+        if (expected == null) {
+          continue;
+        }
+        DocsEnum actual = TestUtil.docs(random(), r, "foo", term, r.getLiveDocs(), null, DocsEnum.FLAG_NONE);
+        int doc = -1;
+        while (doc != DocIdSetIterator.NO_MORE_DOCS) {
+          if (random().nextInt(4) == 0) {
+            // mix bulk reads and nextDoc
+            doc = actual.nextDoc();
+            assertEquals(expected.nextDoc(), doc);
+          } else {
+            final int count = actual.read(docs);
+            assertTrue(count >= 0 && count <= docs.length);
+            for (int i = 0; i < count; i++) {
+              assertEquals(expected.nextDoc(), docs[i]);
+            }
+            doc = actual.docID();
+            if (count == 0) {
+              assertEquals(DocIdSetIterator.NO_MORE_DOCS, doc);
+            }
+            if (doc == DocIdSetIterator.NO_MORE_DOCS) {
+              assertEquals(DocIdSetIterator.NO_MORE_DOCS, expected.nextDoc());
+            } else {
+              assertTrue(count > 0);
+              assertEquals(docs[count - 1], doc);
+            }
+          }
+        }
+        // exhausted enums keep returning 0
+        assertEquals(0, actual.read(docs));
+        assertEquals(DocIdSetIterator.NO_MORE_DOCS, actual.docID());
+      }
+    }
+    reader.close();
+    dir.close();
+  }
 }
@@ -364,16 +364,23 @@ public class TestIndexWriterWithThreads extends LuceneTestCase {
       if (doFail) {
         StackTraceElement[] trace = new Exception().getStackTrace();
         boolean sawAbortOrFlushDoc = false;
+        boolean sawFlushSegment = false;
         boolean sawClose = false;
         boolean sawMerge = false;
         for (int i = 0; i < trace.length; i++) {
-          if (sawAbortOrFlushDoc && sawMerge && sawClose) {
+          if (sawAbortOrFlushDoc && sawFlushSegment && sawMerge && sawClose) {
             break;
           }
           if ("abort".equals(trace[i].getMethodName()) ||
               "finishDocument".equals(trace[i].getMethodName())) {
             sawAbortOrFlushDoc = true;
           }
+          // with compound files, the segment's files are buffered and
+          // only reach the directory when the segment is flushed
+          if (DocumentsWriterPerThread.class.getName().equals(trace[i].getClassName()) &&
+              "flush".equals(trace[i].getMethodName())) {
+            sawFlushSegment = true;
+          }
           if ("merge".equals(trace[i].getMethodName())) {
             sawMerge = true;
           }
@@ -381,7 +388,7 @@ public class TestIndexWriterWithThreads extends LuceneTestCase {
             sawClose = true;
           }
         }
-        if (sawAbortOrFlushDoc && !sawClose && !sawMerge) {
+        if (((sawAbortOrFlushDoc && !sawClose) || sawFlushSegment) && !sawMerge) {
           if (onlyOnce) {
             doFail = false;
           }
@@ -407,6 +414,52 @@ public class TestIndexWriterWithThreads extends LuceneTestCase {
     _testSingleThreadFailure(new FailOnlyOnAbortOrFlush(true));
   }
 
+  // flushed segments are written straight into their compound file:
+  // make sure a failure while writing it surfaces, and that the
+  // compound file is not left behind
+  public void testIOExceptionDuringFlushWithCompoundFile() throws IOException {
+    MockDirectoryWrapper dir = newMockDirectory();
+    // we check for unreferenced files
+    dir.setEnableVirusScanner(false);
+
+    IndexWriter writer = new IndexWriter(dir, newIndexWriterConfig(new MockAnalyzer(random()))
+                                                .setMaxBufferedDocs(2)
+                                                .setUseCompoundFile(true)
+                                                .setMergePolicy(NoMergePolicy.INSTANCE));
+    final Document doc = new Document();
+    FieldType customType = new FieldType(TextField.TYPE_STORED);
+    customType.setStoreTermVectors(true);
+    customType.setStoreTermVectorPositions(true);
+    customType.setStoreTermVectorOffsets(true);
+    doc.add(newField("field", "aaa bbb ccc ddd eee fff ggg hhh iii jjj", customType));
+
+    for(int i=0;i<6;i++)
+      writer.addDocument(doc);
+
+    FailOnlyOnAbortOrFlush failure = new FailOnlyOnAbortOrFlush(true);
+    dir.failOn(failure);
+    failure.setDoFail();
+    try {
+      writer.addDocument(doc);
+      writer.addDocument(doc);
+      writer.commit();
+      fail("did not hit exception");
+    } catch (IOException ioe) {
+      // expected
+    }
+    failure.clearDoFail();
+    writer.addDocument(doc);
+    writer.close();
+
+    TestIndexWriter.assertNoUnreferencedFiles(dir, "aborted segment left files behind");
+    DirectoryReader reader = DirectoryReader.open(dir);
+    for (AtomicReaderContext context : reader.leaves()) {
+      assertTrue(((SegmentReader) context.reader()).getSegmentInfo().info.getUseCompoundFile());
+    }
+    reader.close();
+    dir.close();
+  }
+
   // LUCENE-1130: make sure initial IOException, and then 2nd
   // IOException during rollback(), with multiple threads, is OK:
   public void testIOExceptionDuringAbortWithThreads() throws Exception {
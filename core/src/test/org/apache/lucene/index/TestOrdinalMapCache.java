@@ -0,0 +1,389 @@
+package org.apache.lucene.index;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.index.MultiDocValues.OrdinalMap;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LongValues;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.LuceneTestCase.SuppressCodecs;
+import org.apache.lucene.util.TestUtil;
+import org.apache.lucene.util.packed.PackedInts;
+
+@SuppressCodecs({"Lucene3x", "Lucene40", "Lucene41", "Lucene42", "Lucene45", "Lucene46"})
+// avoid codecs that don't support sortedset
+public class TestOrdinalMapCache extends LuceneTestCase {
+
+  private static void addDocument(IndexWriter w, int maxTerms) throws Exception {
+    Document doc = new Document();
+    doc.add(newStringField("id", Integer.toString(random().nextInt(100)), Field.Store.NO));
+    final int numValues = random().nextInt(4);
+    for (int i = 0; i < numValues; i++) {
+      doc.add(new SortedSetDocValuesField("sortedset", new BytesRef(Integer.toString(random().nextInt(maxTerms)))));
+    }
+    w.addDocument(doc);
+  }
+
+  private static SortedSetDocValues[] leafValues(IndexReader reader) throws Exception {
+    final List<AtomicReaderContext> leaves = reader.leaves();
+    final SortedSetDocValues[] values = new SortedSetDocValues[leaves.size()];
+    for (int i = 0; i < values.length; i++) {
+      values[i] = DocValues.getSortedSet(leaves.get(i).reader(), "sortedset");
+    }
+    return values;
+  }
+
+  /** Checks that both maps assign the same global ords, and resolve them to the same terms. */
+  private static void assertSameMapping(SortedSetDocValues[] values, OrdinalMap expected, OrdinalMap actual) {
+    assertEquals(expected.getValueCount(), actual.getValueCount());
+    for (int i = 0; i < values.length; i++) {
+      final LongValues expectedOrds = expected.getGlobalOrds(i);
+      final LongValues actualOrds = actual.getGlobalOrds(i);
+      for (long ord = 0; ord < values[i].getValueCount(); ord++) {
+        assertEquals(expectedOrds.get(ord), actualOrds.get(ord));
+      }
+    }
+    for (long globalOrd = 0; globalOrd < expected.getValueCount(); globalOrd++) {
+      final BytesRef expectedTerm = BytesRef.deepCopyOf(
+          values[expected.getFirstSegmentNumber(globalOrd)].lookupOrd(expected.getFirstSegmentOrd(globalOrd)));
+      final BytesRef actualTerm = values[actual.getFirstSegmentNumber(globalOrd)].lookupOrd(actual.getFirstSegmentOrd(globalOrd));
+      assertEquals(expectedTerm, actualTerm);
+    }
+  }
+
+  public void testIncrementalBuild() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int maxTerms = TestUtil.nextInt(random(), 1, 1000);
+
+    DirectoryReader reader = null;
+    OrdinalMap previous = null;
+    List<Object> previousCoreKeys = new ArrayList<>();
+    final int iters = atLeast(5);
+    for (int iter = 0; iter < iters; iter++) {
+      final int numDocs = TestUtil.nextInt(random(), 1, 200);
+      for (int i = 0; i < numDocs; i++) {
+        addDocument(w, maxTerms);
+      }
+      if (random().nextBoolean()) {
+        w.deleteDocuments(new Term("id", Integer.toString(random().nextInt(100))));
+      }
+      w.commit();
+      final DirectoryReader newReader = reader == null ? DirectoryReader.open(dir) : DirectoryReader.openIfChanged(reader);
+      assertNotNull(newReader);
+      if (reader != null) {
+        reader.close();
+      }
+      reader = newReader;
+
+      final SortedSetDocValues[] values = leafValues(reader);
+      final OrdinalMap expected = OrdinalMap.build(null, values, PackedInts.DEFAULT);
+      if (previous != null) {
+        final int[] previousSegments = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+          previousSegments[i] = previousCoreKeys.indexOf(reader.leaves().get(i).reader().getCoreCacheKey());
+        }
+        final OrdinalMap actual = OrdinalMap.build(null, values, previous, previousSegments, PackedInts.DEFAULT);
+        assertSameMapping(values, expected, actual);
+        previous = actual;
+      } else {
+        previous = expected;
+      }
+      previousCoreKeys.clear();
+      for (AtomicReaderContext context : reader.leaves()) {
+        previousCoreKeys.add(context.reader().getCoreCacheKey());
+      }
+    }
+
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testIncrementalBuildMissingSegment() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    for (int i = 0; i < 2; i++) {
+      addDocument(w, 10);
+      w.commit();
+    }
+    DirectoryReader reader = DirectoryReader.open(dir);
+    final SortedSetDocValues[] values = leafValues(reader);
+    final OrdinalMap map = OrdinalMap.build(null, values, PackedInts.DEFAULT);
+    try {
+      OrdinalMap.build(null, new SortedSetDocValues[] { values[0] }, map, new int[] { 0 }, PackedInts.DEFAULT);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      // ok
+    }
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testCache() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    if (random().nextBoolean()) {
+      iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+    }
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int maxTerms = TestUtil.nextInt(random(), 1, 1000);
+    final OrdinalMapCache cache = new OrdinalMapCache() {
+      @Override
+      protected SortedSetDocValues getLeafValues(AtomicReader reader, String field) throws IOException {
+        return reader.getSortedSetDocValues(field);
+      }
+    };
+
+    DirectoryReader reader = null;
+    boolean cached = false;
+    final int iters = atLeast(5);
+    for (int iter = 0; iter < iters; iter++) {
+      final int numDocs = TestUtil.nextInt(random(), 1, 200);
+      for (int i = 0; i < numDocs; i++) {
+        addDocument(w, maxTerms);
+      }
+      if (random().nextBoolean()) {
+        w.deleteDocuments(new Term("id", Integer.toString(random().nextInt(100))));
+      }
+      final DirectoryReader newReader = reader == null ? DirectoryReader.open(w, true) : DirectoryReader.openIfChanged(reader, w, true);
+      if (newReader == null) {
+        continue;
+      }
+      if (reader != null) {
+        reader.close();
+      }
+      reader = newReader;
+      cached = false;
+      if (random().nextInt(3) == 0) {
+        // skip some readers, so that the next map has more new segments
+        continue;
+      }
+
+      final OrdinalMap map = cache.getOrdinalMap(reader, "sortedset");
+      if (reader.leaves().size() <= 1) {
+        assertNull(map);
+        continue;
+      }
+      cached = true;
+      assertSame(map, cache.getOrdinalMap(reader, "sortedset"));
+      final SortedSetDocValues[] values = leafValues(reader);
+      assertSameMapping(values, OrdinalMap.build(null, values, PackedInts.DEFAULT), map);
+
+      final SortedSetDocValues topLevel = cache.getValues(reader, "sortedset");
+      final SortedSetDocValues expected = MultiDocValues.getSortedSetValues(reader, "sortedset");
+      assertEquals(expected.getValueCount(), topLevel.getValueCount());
+      for (long ord = 0; ord < expected.getValueCount(); ord++) {
+        assertEquals(BytesRef.deepCopyOf(expected.lookupOrd(ord)), topLevel.lookupOrd(ord));
+      }
+    }
+    if (reader != null) {
+      assertEquals(cached ? 1 : 0, cache.size());
+      reader.close();
+    }
+    // closed readers are purged
+    assertEquals(0, cache.size());
+    assertNull(cache.getValues(new MultiReader(), "sortedset"));
+
+    w.close();
+    dir.close();
+  }
+
+  public void testClosedReaderCanBeCollected() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    for (int i = 0; i < 2; i++) {
+      addDocument(w, 10);
+      w.commit();
+    }
+    final OrdinalMapCache cache = new OrdinalMapCache() {
+      @Override
+      protected SortedSetDocValues getLeafValues(AtomicReader reader, String field) throws IOException {
+        return reader.getSortedSetDocValues(field);
+      }
+    };
+
+    // the writer keeps the cores of NRT readers open
+    DirectoryReader reader = DirectoryReader.open(w, true);
+    assertNotNull(cache.getOrdinalMap(reader, "sortedset"));
+    final WeakReference<DirectoryReader> readerRef = new WeakReference<>(reader);
+    reader.close();
+    reader = null;
+    for (int i = 0; i < 100 && readerRef.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertNull("the cache holds on a closed reader", readerRef.get());
+
+    // the last map is still used to build the map of the next reader
+    assertEquals(1, cache.lastMapsSize());
+    addDocument(w, 10);
+    w.commit();
+    reader = DirectoryReader.open(w, true);
+    final SortedSetDocValues[] values = leafValues(reader);
+    assertSameMapping(values, OrdinalMap.build(null, values, PackedInts.DEFAULT), cache.getOrdinalMap(reader, "sortedset"));
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testLastMapsPerIndex() throws Exception {
+    final Directory[] dirs = new Directory[2];
+    final IndexWriter[] writers = new IndexWriter[2];
+    final DirectoryReader[] readers = new DirectoryReader[2];
+    final OrdinalMapCache cache = new OrdinalMapCache() {
+      @Override
+      protected SortedSetDocValues getLeafValues(AtomicReader reader, String field) throws IOException {
+        return reader.getSortedSetDocValues(field);
+      }
+    };
+    for (int i = 0; i < dirs.length; i++) {
+      dirs[i] = newDirectory();
+      IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+      iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+      writers[i] = new IndexWriter(dirs[i], iwc);
+      for (int j = 0; j < 2; j++) {
+        addDocument(writers[i], 100);
+        writers[i].commit();
+      }
+      readers[i] = DirectoryReader.open(dirs[i]);
+      assertNotNull(cache.getOrdinalMap(readers[i], "sortedset"));
+    }
+    // indexes that have the same field don't replace each other's last map
+    assertEquals(2, cache.lastMapsSize());
+
+    // the last map is kept while a reader of its segments is open
+    addDocument(writers[0], 100);
+    writers[0].commit();
+    final DirectoryReader newReader = DirectoryReader.openIfChanged(readers[0]);
+    assertNotNull(newReader);
+    readers[0].close();
+    readers[0] = newReader;
+    assertEquals(2, cache.lastMapsSize());
+    final SortedSetDocValues[] values = leafValues(readers[0]);
+    assertSameMapping(values, OrdinalMap.build(null, values, PackedInts.DEFAULT), cache.getOrdinalMap(readers[0], "sortedset"));
+
+    // and evicted once the last one is closed
+    readers[0].close();
+    assertEquals(1, cache.lastMapsSize());
+    readers[1].close();
+    assertEquals(0, cache.lastMapsSize());
+    for (int i = 0; i < dirs.length; i++) {
+      writers[i].close();
+      dirs[i].close();
+    }
+  }
+
+  public void testConcurrentGetOrdinalMap() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numSegments = TestUtil.nextInt(random(), 2, 5);
+    for (int i = 0; i < numSegments; i++) {
+      final int numDocs = TestUtil.nextInt(random(), 1, 100);
+      for (int j = 0; j < numDocs; j++) {
+        addDocument(w, 1000);
+      }
+      w.commit();
+    }
+    final OrdinalMapCache cache = new OrdinalMapCache() {
+      @Override
+      protected SortedSetDocValues getLeafValues(AtomicReader reader, String field) throws IOException {
+        return reader.getSortedSetDocValues(field);
+      }
+    };
+    final DirectoryReader reader = DirectoryReader.open(dir);
+
+    final OrdinalMap[] maps = new OrdinalMap[TestUtil.nextInt(random(), 2, 8)];
+    final CountDownLatch start = new CountDownLatch(1);
+    final Thread[] threads = new Thread[maps.length];
+    for (int i = 0; i < threads.length; i++) {
+      final int index = i;
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            maps[index] = cache.getOrdinalMap(reader, "sortedset");
+          } catch (Exception e) {
+            throw new RuntimeException(e);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    start.countDown();
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    // the map was built once
+    for (OrdinalMap map : maps) {
+      assertNotNull(map);
+      assertSame(maps[0], map);
+    }
+    final SortedSetDocValues[] values = leafValues(reader);
+    assertSameMapping(values, OrdinalMap.build(null, values, PackedInts.DEFAULT), maps[0]);
+    reader.close();
+    w.close();
+    dir.close();
+  }
+
+  public void testSortedDocValues() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setMergePolicy(NoMergePolicy.INSTANCE);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    for (int i = 0; i < 3; i++) {
+      Document doc = new Document();
+      doc.add(new SortedDocValuesField("sorted", new BytesRef(Integer.toString(2 - i))));
+      w.addDocument(doc);
+      w.commit();
+    }
+    DirectoryReader reader = DirectoryReader.open(dir);
+    assertEquals(3, reader.leaves().size());
+    SortedSetDocValues values = OrdinalMapCache.DOC_VALUES.getValues(reader, "sorted");
+    assertEquals(3, values.getValueCount());
+    values.setDocument(0);
+    assertEquals(2, values.nextOrd());
+    assertEquals(SortedSetDocValues.NO_MORE_ORDS, values.nextOrd());
+    assertNull(OrdinalMapCache.DOC_VALUES.getValues(reader, "missing"));
+    reader.close();
+    w.close();
+    dir.close();
+  }
+}
@@ -22,7 +22,9 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedHashSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -57,6 +59,7 @@ import org.apache.lucene.search.FieldCache.Ints;
 import org.apache.lucene.search.FieldCache.Longs;
 import org.apache.lucene.search.FieldCache.Shorts;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.IOUtils;
@@ -439,6 +442,88 @@ public class TestFieldCache extends LuceneTestCase {
     assertFalse(failed.get());
   }
   
+  public void testConcurrentCreation() throws Exception {
+    final FieldCache cache = FieldCache.DEFAULT;
+    cache.purgeAllCaches();
+
+    final Thread[] threads = new Thread[TestUtil.nextInt(random(), 2, 8)];
+    final Ints[] values = new Ints[threads.length];
+    final CyclicBarrier start = new CyclicBarrier(threads.length);
+    for (int i = 0; i < threads.length; i++) {
+      final int threadID = i;
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+            values[threadID] = cache.getInts(reader, "theInt", false);
+          } catch (Exception e) {
+            throw new RuntimeException(e);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    for (Ints value : values) {
+      assertSame(values[0], value);
+    }
+    // with and without a parser
+    assertEquals(2, cache.getCacheEntries().length);
+    cache.purgeAllCaches();
+  }
+
+  public void testRamUsage() throws Exception {
+    final FieldCache cache = FieldCache.DEFAULT;
+    cache.purgeAllCaches();
+    assertEquals(0, cache.ramBytesUsed());
+
+    // the values are cached both with and without a parser, but only accounted once
+    Ints ints = cache.getInts(reader, "theInt", false);
+    assertEquals(2, cache.getCacheEntries().length);
+    assertEquals(((Accountable) ints).ramBytesUsed(), cache.ramBytesUsed());
+
+    cache.getTermsIndex(reader, "theRandomUnicodeString");
+    Map<String,Accountable> ramUsage = cache.getRamUsageByField();
+    assertEquals(2, ramUsage.size());
+    assertEquals(((Accountable) ints).ramBytesUsed(), ramUsage.get("theInt").ramBytesUsed());
+    assertEquals(cache.ramBytesUsed(),
+        ramUsage.get("theInt").ramBytesUsed() + ramUsage.get("theRandomUnicodeString").ramBytesUsed());
+
+    cache.purgeByCacheKey(reader.getCoreCacheKey());
+    assertEquals(0, cache.ramBytesUsed());
+    assertTrue(cache.getRamUsageByField().isEmpty());
+  }
+
+  public void testMaxRamBytes() throws Exception {
+    final FieldCache cache = FieldCache.DEFAULT;
+    cache.purgeAllCaches();
+    try {
+      Longs longs = cache.getLongs(reader, "theLong", false);
+      final long longsBytes = cache.ramBytesUsed();
+      cache.setMaxRamBytes(longsBytes);
+      assertEquals(longsBytes, cache.ramBytesUsed());
+
+      // the least recently used field is evicted to make room
+      cache.getDoubles(reader, "theDouble", false);
+      assertEquals(Collections.singleton("theDouble"), cache.getRamUsageByField().keySet());
+
+      // evicted values are created again when they are needed
+      assertNotSame(longs, cache.getLongs(reader, "theLong", false));
+      assertEquals(Collections.singleton("theLong"), cache.getRamUsageByField().keySet());
+      assertEquals(longsBytes, cache.ramBytesUsed());
+
+      cache.setMaxRamBytes(0);
+      assertEquals(0, cache.ramBytesUsed());
+      assertEquals(0, cache.getCacheEntries().length);
+    } finally {
+      cache.setMaxRamBytes(Long.MAX_VALUE);
+      cache.purgeAllCaches();
+    }
+  }
+
   public void testDocValuesIntegration() throws Exception {
     assumeTrue("3.x does not support docvalues", defaultCodecSupportsDocValues());
     Directory dir = newDirectory();
@@ -0,0 +1,98 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.IntField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
+
+public class TestFieldCacheWarmingSearcherFactory extends LuceneTestCase {
+
+  private void doTestWarm(ExecutorService executor) throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(new MockAnalyzer(random())));
+    for (int i = 0; i < 100; i++) {
+      Document doc = new Document();
+      doc.add(new IntField("int", i, Field.Store.NO));
+      doc.add(newStringField("string", "value" + i, Field.Store.NO));
+      w.addDocument(doc);
+    }
+    w.commit();
+
+    Map<String,SortField.Type> fields = new HashMap<>();
+    fields.put("int", SortField.Type.INT);
+    fields.put("string", SortField.Type.STRING);
+    FieldCache.DEFAULT.purgeAllCaches();
+    SearcherManager manager = new SearcherManager(w, true, new FieldCacheWarmingSearcherFactory(executor, fields));
+    if (executor != null) {
+      executor.shutdown();
+      assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    }
+
+    IndexSearcher searcher = manager.acquire();
+    try {
+      final int numEntries = FieldCache.DEFAULT.getCacheEntries().length;
+      assertTrue(numEntries > 0);
+      assertTrue(FieldCache.DEFAULT.getRamUsageByField().keySet().contains("int"));
+      assertTrue(FieldCache.DEFAULT.getRamUsageByField().keySet().contains("string"));
+      // sorting doesn't need to load anything
+      TopDocs hits = searcher.search(new MatchAllDocsQuery(), 10,
+          new Sort(new SortField("string", SortField.Type.STRING), new SortField("int", SortField.Type.INT)));
+      assertEquals(100, hits.totalHits);
+      assertEquals(numEntries, FieldCache.DEFAULT.getCacheEntries().length);
+    } finally {
+      manager.release(searcher);
+    }
+
+    manager.close();
+    w.close();
+    dir.close();
+    // purged when the segments were closed
+    assertEquals(0, FieldCache.DEFAULT.ramBytesUsed());
+  }
+
+  public void testWarm() throws Exception {
+    doTestWarm(null);
+  }
+
+  public void testWarmInBackground() throws Exception {
+    doTestWarm(Executors.newFixedThreadPool(2, new NamedThreadFactory("TestFieldCacheWarmingSearcherFactory")));
+  }
+
+  public void testIllegalType() {
+    Map<String,SortField.Type> fields = new HashMap<>();
+    fields.put("score", SortField.Type.SCORE);
+    try {
+      new FieldCacheWarmingSearcherFactory(null, fields);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      // ok
+    }
+  }
+}
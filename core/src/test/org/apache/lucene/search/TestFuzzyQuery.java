@@ -20,6 +20,9 @@ package org.apache.lucene.search;
 import java.util.List;
 import java.util.Arrays;
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.analysis.MockTokenizer;
@@ -31,6 +34,8 @@ import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.NamedThreadFactory;
+import org.apache.lucene.util.TestUtil;
 import org.apache.lucene.util.automaton.LevenshteinAutomata;
 
 /**
@@ -411,6 +416,105 @@ public class TestFuzzyQuery extends LuceneTestCase {
     }
   }
   
+  public void testParallelRewrite() throws Exception {
+    Directory directory = newDirectory();
+    RandomIndexWriter writer = new RandomIndexWriter(random(), directory);
+    final int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; i++) {
+      addDoc(randomWord(), writer);
+      if (random().nextInt(20) == 0) {
+        writer.commit();
+      }
+    }
+    IndexReader reader = writer.getReader();
+    IndexSearcher searcher = newSearcher(reader);
+    writer.close();
+
+    ExecutorService executor = Executors.newFixedThreadPool(TestUtil.nextInt(random(), 1, 4), new NamedThreadFactory("TestFuzzyQuery"));
+    try {
+      final int iters = atLeast(20);
+      for (int iter = 0; iter < iters; iter++) {
+        final Term term = new Term("field", randomWord());
+        final int maxEdits = random().nextInt(LevenshteinAutomata.MAXIMUM_SUPPORTED_DISTANCE + 1);
+        final int prefixLength = random().nextInt(3);
+        final int maxExpansions = TestUtil.nextInt(random(), 1, 50);
+        final boolean transpositions = random().nextBoolean();
+        FuzzyQuery expected = new FuzzyQuery(term, maxEdits, prefixLength, maxExpansions, transpositions);
+        FuzzyQuery actual = new FuzzyQuery(term, maxEdits, prefixLength, maxExpansions, transpositions);
+        if (random().nextBoolean()) {
+          expected.setRewriteMethod(new MultiTermQuery.TopTermsBoostOnlyBooleanQueryRewrite(maxExpansions));
+          actual.setRewriteMethod(new MultiTermQuery.TopTermsBoostOnlyBooleanQueryRewrite(maxExpansions, executor));
+        } else {
+          actual.setRewriteMethod(new MultiTermQuery.TopTermsScoringBooleanQueryRewrite(maxExpansions, executor));
+        }
+        assertEquals(searcher.rewrite(expected), searcher.rewrite(actual));
+
+        final TopDocs expectedDocs = searcher.search(expected, 10);
+        final TopDocs actualDocs = searcher.search(actual, 10);
+        assertEquals(expectedDocs.totalHits, actualDocs.totalHits);
+        for (int i = 0; i < expectedDocs.scoreDocs.length; i++) {
+          assertEquals(expectedDocs.scoreDocs[i].doc, actualDocs.scoreDocs[i].doc);
+          assertEquals(expectedDocs.scoreDocs[i].score, actualDocs.scoreDocs[i].score, 0f);
+        }
+      }
+    } finally {
+      executor.shutdown();
+      executor.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    reader.close();
+    directory.close();
+  }
+
+  public void testAutomataCache() throws Exception {
+    Directory directory = newDirectory();
+    RandomIndexWriter writer = new RandomIndexWriter(random(), directory);
+    final int numDocs = atLeast(50);
+    for (int i = 0; i < numDocs; i++) {
+      addDoc(randomWord(), writer);
+    }
+    IndexReader reader = writer.getReader();
+    IndexSearcher searcher = newSearcher(reader);
+    writer.close();
+
+    try {
+      FuzzyTermsEnum.setAutomataCacheMaxRamBytes(-1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      // ok
+    }
+    try {
+      final Term[] terms = new Term[] { new Term("field", randomWord()), new Term("field", randomWord()), new Term("field", randomWord()) };
+      final Query[] rewritten = new Query[terms.length];
+      FuzzyTermsEnum.setAutomataCacheMaxRamBytes(0);
+      for (int i = 0; i < terms.length; i++) {
+        rewritten[i] = searcher.rewrite(new FuzzyQuery(terms[i], 2));
+      }
+      // cached automata must give the same terms, including when the
+      // automata of a term are evicted and built again
+      FuzzyTermsEnum.setAutomataCacheMaxRamBytes(TestUtil.nextLong(random(), 1, 1 << 16));
+      for (int iter = 0; iter < 3; iter++) {
+        for (int i = 0; i < terms.length; i++) {
+          assertEquals(rewritten[i], searcher.rewrite(new FuzzyQuery(terms[i], 2)));
+        }
+      }
+    } finally {
+      FuzzyTermsEnum.setAutomataCacheMaxRamBytes(FuzzyTermsEnum.DEFAULT_AUTOMATA_CACHE_MAX_RAM_BYTES);
+    }
+    assertEquals(FuzzyTermsEnum.DEFAULT_AUTOMATA_CACHE_MAX_RAM_BYTES, FuzzyTermsEnum.getAutomataCacheMaxRamBytes());
+
+    reader.close();
+    directory.close();
+  }
+
+  private static String randomWord() {
+    final char[] chars = new char[TestUtil.nextInt(random(), 1, 6)];
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = (char) ('a' + random().nextInt(4));
+    }
+    return new String(chars);
+  }
+
   private void addDoc(String text, RandomIndexWriter writer) throws IOException {
     Document doc = new Document();
     doc.add(newTextField("field", text, Field.Store.YES));
@@ -0,0 +1,159 @@
+package org.apache.lucene.search;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
+
+/** Tests for GlobalOrdinalsSortField */
+public class TestGlobalOrdinalsSortField extends LuceneTestCase {
+
+  public void testEmptyIndex() throws Exception {
+    IndexSearcher empty = newSearcher(new MultiReader());
+    Query query = new TermQuery(new Term("contents", "foo"));
+
+    Sort sort = new Sort(new GlobalOrdinalsSortField("string"));
+    TopDocs td = empty.search(query, null, 10, sort, true, true);
+    assertEquals(0, td.totalHits);
+  }
+
+  public void testEquals() throws Exception {
+    SortField sf = new GlobalOrdinalsSortField("a");
+    assertFalse(sf.equals(null));
+
+    assertEquals(sf, sf);
+
+    SortField sf2 = new GlobalOrdinalsSortField("a");
+    assertEquals(sf, sf2);
+    assertEquals(sf.hashCode(), sf2.hashCode());
+
+    assertFalse(sf.equals(new GlobalOrdinalsSortField("a", true)));
+    assertFalse(sf.equals(new GlobalOrdinalsSortField("b")));
+    assertFalse(sf.equals(new SortField("a", SortField.Type.STRING)));
+
+    sf2.setMissingValue(SortField.STRING_LAST);
+    assertFalse(sf.equals(sf2));
+    try {
+      sf2.setMissingValue("foo");
+      fail();
+    } catch (IllegalArgumentException expected) {
+      // ok
+    }
+  }
+
+  public void testBasic() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter writer = new RandomIndexWriter(random(), dir);
+    Document doc = new Document();
+    doc.add(newStringField("value", "baz", Field.Store.YES));
+    writer.addDocument(doc);
+    writer.commit();
+    doc = new Document();
+    doc.add(newStringField("value", "foo", Field.Store.YES));
+    writer.addDocument(doc);
+    writer.commit();
+    doc = new Document();
+    writer.addDocument(doc);
+    doc = new Document();
+    doc.add(newStringField("value", "bar", Field.Store.YES));
+    writer.addDocument(doc);
+    IndexReader ir = writer.getReader();
+    writer.close();
+
+    IndexSearcher searcher = newSearcher(ir);
+    SortField sortField = new GlobalOrdinalsSortField("value");
+    sortField.setMissingValue(SortField.STRING_LAST);
+    Sort sort = new Sort(sortField);
+
+    TopDocs td = searcher.search(new MatchAllDocsQuery(), 10, sort);
+    assertEquals(4, td.totalHits);
+    assertEquals("bar", searcher.doc(td.scoreDocs[0].doc).get("value"));
+    assertEquals("baz", searcher.doc(td.scoreDocs[1].doc).get("value"));
+    assertEquals("foo", searcher.doc(td.scoreDocs[2].doc).get("value"));
+    assertNull(searcher.doc(td.scoreDocs[3].doc).get("value"));
+    assertEquals(new BytesRef("bar"), ((FieldDoc) td.scoreDocs[0]).fields[0]);
+    assertNull(((FieldDoc) td.scoreDocs[3]).fields[0]);
+
+    ir.close();
+    dir.close();
+  }
+
+  /** Compares against {@link SortField.Type#STRING}, with and without searchAfter. */
+  public void testRandom() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter writer = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(500);
+    final int maxTerms = TestUtil.nextInt(random(), 1, 200);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newStringField("body", random().nextBoolean() ? "a" : "b", Field.Store.NO));
+      if (random().nextInt(10) != 0) {
+        doc.add(newStringField("string", TestUtil.randomSimpleString(random(), 1, 3) + random().nextInt(maxTerms), Field.Store.NO));
+      }
+      writer.addDocument(doc);
+      if (random().nextInt(50) == 0) {
+        writer.commit();
+      }
+    }
+    IndexReader ir = writer.getReader();
+    writer.close();
+    IndexSearcher searcher = newSearcher(ir);
+
+    final int iters = atLeast(20);
+    for (int iter = 0; iter < iters; iter++) {
+      final boolean reverse = random().nextBoolean();
+      final SortField expectedField = new SortField("string", SortField.Type.STRING, reverse);
+      final SortField actualField = new GlobalOrdinalsSortField("string", reverse);
+      if (random().nextBoolean()) {
+        final Object missingValue = random().nextBoolean() ? SortField.STRING_FIRST : SortField.STRING_LAST;
+        expectedField.setMissingValue(missingValue);
+        actualField.setMissingValue(missingValue);
+      }
+      final Sort expectedSort = new Sort(expectedField, SortField.FIELD_DOC);
+      final Sort actualSort = new Sort(actualField, SortField.FIELD_DOC);
+      final Query query = random().nextBoolean() ? new MatchAllDocsQuery() : new TermQuery(new Term("body", "a"));
+      final int numHits = TestUtil.nextInt(random(), 1, 100);
+
+      FieldDoc after = null;
+      do {
+        final TopDocs expected = searcher.searchAfter(after, query, numHits, expectedSort);
+        final TopDocs actual = searcher.searchAfter(after, query, numHits, actualSort);
+        assertEquals(expected.totalHits, actual.totalHits);
+        assertEquals(expected.scoreDocs.length, actual.scoreDocs.length);
+        for (int i = 0; i < expected.scoreDocs.length; i++) {
+          final FieldDoc expectedDoc = (FieldDoc) expected.scoreDocs[i];
+          final FieldDoc actualDoc = (FieldDoc) actual.scoreDocs[i];
+          assertEquals(expectedDoc.doc, actualDoc.doc);
+          assertEquals(expectedDoc.fields[0], actualDoc.fields[0]);
+        }
+        after = expected.scoreDocs.length == 0 ? null : (FieldDoc) expected.scoreDocs[expected.scoreDocs.length - 1];
+      } while (after != null && random().nextBoolean());
+    }
+
+    ir.close();
+    dir.close();
+  }
+}
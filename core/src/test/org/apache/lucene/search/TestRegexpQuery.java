@@ -110,8 +110,49 @@ public class TestRegexpQuery extends LuceneTestCase {
     };
     RegexpQuery query = new RegexpQuery(newTerm("<quickBrown>"), RegExp.ALL, myProvider);
     assertEquals(1, searcher.search(query, 5).totalHits);
+    // named automata of custom providers are not cached
+    assertNotSame(query.compiled, new RegexpQuery(newTerm("<quickBrown>"), RegExp.ALL, myProvider).compiled);
   }
   
+  public void testAutomataCache() throws IOException {
+    final long maxRamBytes = AutomatonQuery.getAutomataCacheMaxRamBytes();
+    try {
+      AutomatonQuery.setAutomataCacheMaxRamBytes(AutomatonQuery.DEFAULT_AUTOMATA_CACHE_MAX_RAM_BYTES);
+      RegexpQuery q1 = new RegexpQuery(newTerm("q.[aeiou]c.*"));
+      RegexpQuery q2 = new RegexpQuery(newTerm("q.[aeiou]c.*"));
+      assertSame(q1.compiled, q2.compiled);
+      assertEquals(q1, q2);
+      assertEquals(1, searcher.search(q2, 5).totalHits);
+      // different flags
+      assertNotSame(q1.compiled, new RegexpQuery(newTerm("q.[aeiou]c.*"), RegExp.NONE).compiled);
+      // wildcards do not share the automata of regexps
+      assertNotSame(new RegexpQuery(newTerm("quick")).compiled, new WildcardQuery(newTerm("quick")).compiled);
+      assertTrue(AutomatonQuery.AUTOMATA_CACHE.ramBytesUsed() > 0);
+      assertTrue(AutomatonQuery.AUTOMATA_CACHE.ramBytesUsed() <= AutomatonQuery.DEFAULT_AUTOMATA_CACHE_MAX_RAM_BYTES);
+
+      AutomatonQuery.setAutomataCacheMaxRamBytes(0);
+      assertEquals(0, AutomatonQuery.AUTOMATA_CACHE.size());
+      assertEquals(0, AutomatonQuery.AUTOMATA_CACHE.ramBytesUsed());
+      assertNotSame(new RegexpQuery(newTerm("q.[aeiou]c.*")).compiled, new RegexpQuery(newTerm("q.[aeiou]c.*")).compiled);
+      assertEquals(0, AutomatonQuery.AUTOMATA_CACHE.size());
+    } finally {
+      AutomatonQuery.setAutomataCacheMaxRamBytes(maxRamBytes);
+    }
+  }
+
+  public void testGetAutomatonReturnsCopy() throws IOException {
+    RegexpQuery q1 = new RegexpQuery(newTerm("q.[aeiou]c.*"));
+    Automaton automaton = q1.getAutomaton();
+    assertNotSame(q1.automaton, automaton);
+    assertEquals(q1.automaton.getNumStates(), automaton.getNumStates());
+    assertFalse(automaton.isAccept(0));
+    automaton.setAccept(0, true);
+    // neither this query nor queries that share its cached automaton see the change
+    assertFalse(q1.automaton.isAccept(0));
+    assertFalse(new RegexpQuery(newTerm("q.[aeiou]c.*")).getAutomaton().isAccept(0));
+    assertEquals(1, searcher.search(q1, 5).totalHits);
+  }
+
   /**
    * Test a corner case for backtracking: In this case the term dictionary has
    * 493432 followed by 49344. When backtracking from 49343... to 4934, its
@@ -133,6 +133,41 @@ public class TestSloppyPhraseQuery extends LuceneTestCase {
     }
   }
   
+  /**
+   * Docs where the terms are too far apart are skipped before computing
+   * the phrase freq: make sure that exactly the docs with a match within
+   * the slop remain, including long docs with many distant occurrences.
+   */
+  public void testTermsFarApart() throws Exception {
+    for (int iter = 0; iter < 10; iter++) {
+      final int gap = random().nextInt(100);
+      final int slop = random().nextInt(100);
+      // distance of "A X{gap} B" to "A B" is gap, and to "B A" is gap+2
+      checkPhraseQuery(makeDocument("A" + repeat(" X", gap) + " B"), makePhraseQuery("A B"), slop, gap <= slop ? 1 : 0);
+      checkPhraseQuery(makeDocument("B" + repeat(" X", gap) + " A"), makePhraseQuery("A B"), slop, gap + 2 <= slop ? 1 : 0);
+
+      // many occurrences, all far apart, and maybe one close pair at the end
+      final StringBuilder text = new StringBuilder();
+      final int numOccurrences = atLeast(50);
+      for (int i = 0; i < numOccurrences; i++) {
+        text.append(i % 2 == 0 ? "A" : "B").append(repeat(" X", slop + 3)).append(' ');
+      }
+      final boolean closePair = random().nextBoolean();
+      if (closePair) {
+        text.append("A").append(repeat(" X", random().nextInt(slop + 1))).append(" B");
+      }
+      checkPhraseQuery(makeDocument(text.toString()), makePhraseQuery("A B"), slop, closePair ? 1 : 0);
+    }
+  }
+
+  private static String repeat(String s, int times) {
+    final StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < times; i++) {
+      sb.append(s);
+    }
+    return sb.toString();
+  }
+
   private float  checkPhraseQuery(Document doc, PhraseQuery query, int slop, int expectedNumResults) throws Exception {
     query.setSlop(slop);
 
@@ -17,13 +17,22 @@ package org.apache.lucene.search;
  * limitations under the License.
  */
 
+import org.apache.lucene.analysis.MockAnalyzer;
 import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.IntField;
+import org.apache.lucene.document.LongField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.RandomIndexWriter;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.FieldValueHitQueue.Entry;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.util.LuceneTestCase;
+import org.apache.lucene.util.TestUtil;
 
 public class TestTopFieldCollector extends LuceneTestCase {
   private IndexSearcher is;
@@ -207,8 +216,9 @@ public class TestTopFieldCollector extends LuceneTestCase {
   // OutOfOrderMulti*Collector
   public void testOutOfOrderDocsScoringSortMulti() throws Exception {
 
-    // Two Sort criteria to instantiate the multi/single comparators.
-    Sort[] sort = new Sort[] {new Sort(SortField.FIELD_DOC, SortField.FIELD_SCORE) };
+    // Two and three Sort criteria to instantiate the two/multi comparators.
+    Sort[] sort = new Sort[] {new Sort(SortField.FIELD_DOC, SortField.FIELD_SCORE),
+        new Sort(SortField.FIELD_SCORE, SortField.FIELD_DOC, SortField.FIELD_SCORE) };
     boolean[][] tfcOptions = new boolean[][] {
         new boolean[] { false, false, false },
         new boolean[] { false, false, true },
@@ -219,7 +229,18 @@ public class TestTopFieldCollector extends LuceneTestCase {
         new boolean[] { true, true, false },
         new boolean[] { true, true, true },
     };
-    String[] actualTFCClasses = new String[] {
+    String[][] actualTFCClasses = new String[][] {
+      new String[] {
+        "OutOfOrderTwoComparatorsNonScoringCollector",
+        "OutOfOrderMultiComparatorScoringMaxScoreCollector",
+        "OutOfOrderTwoComparatorsScoringNoMaxScoreCollector",
+        "OutOfOrderMultiComparatorScoringMaxScoreCollector",
+        "OutOfOrderTwoComparatorsNonScoringCollector",
+        "OutOfOrderMultiComparatorScoringMaxScoreCollector",
+        "OutOfOrderTwoComparatorsScoringNoMaxScoreCollector",
+        "OutOfOrderMultiComparatorScoringMaxScoreCollector"
+      },
+      new String[] {
         "OutOfOrderMultiComparatorNonScoringCollector", 
         "OutOfOrderMultiComparatorScoringMaxScoreCollector", 
         "OutOfOrderMultiComparatorScoringNoMaxScoreCollector", 
@@ -228,6 +249,7 @@ public class TestTopFieldCollector extends LuceneTestCase {
         "OutOfOrderMultiComparatorScoringMaxScoreCollector", 
         "OutOfOrderMultiComparatorScoringNoMaxScoreCollector", 
         "OutOfOrderMultiComparatorScoringMaxScoreCollector" 
+      }
     };
     
     BooleanQuery bq = new BooleanQuery();
@@ -242,7 +264,7 @@ public class TestTopFieldCollector extends LuceneTestCase {
         TopDocsCollector<Entry> tdc = TopFieldCollector.create(sort[i], 10,
             tfcOptions[j][0], tfcOptions[j][1], tfcOptions[j][2], false);
 
-        assertTrue(tdc.getClass().getName().endsWith("$"+actualTFCClasses[j]));
+        assertTrue(tdc.getClass().getName().endsWith("$"+actualTFCClasses[i][j]));
         
         is.search(bq, tdc);
         
@@ -253,6 +275,73 @@ public class TestTopFieldCollector extends LuceneTestCase {
     }
   }
   
+  // Two*Collector and TwoComparatorsFieldValueHitQueue must sort like the
+  // generic multi comparators
+  public void testTwoComparators() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(500);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newStringField("body", random().nextBoolean() ? "a" : "b", Field.Store.NO));
+      if (random().nextInt(10) != 0) {
+        doc.add(new IntField("int", random().nextInt(10), Field.Store.NO));
+      }
+      if (random().nextInt(10) != 0) {
+        doc.add(new LongField("long", random().nextInt(100), Field.Store.NO));
+      }
+      doc.add(newStringField("string", TestUtil.randomSimpleString(random(), 2), Field.Store.NO));
+      w.addDocument(doc);
+    }
+    IndexReader reader = w.getReader();
+    w.close();
+    IndexSearcher searcher = newSearcher(reader);
+
+    final SortField[] sortFields = new SortField[] {
+        new SortField("int", SortField.Type.INT),
+        new SortField("int", SortField.Type.INT, true),
+        new SortField("long", SortField.Type.LONG),
+        new SortField("long", SortField.Type.LONG, true),
+        new SortField("string", SortField.Type.STRING),
+        new SortField("string", SortField.Type.STRING, true),
+        SortField.FIELD_SCORE,
+    };
+    final int iters = atLeast(20);
+    for (int iter = 0; iter < iters; iter++) {
+      final SortField sortField1 = sortFields[random().nextInt(sortFields.length)];
+      final SortField sortField2 = sortFields[random().nextInt(sortFields.length)];
+      // adding the doc ID doesn't change the order, but uses multi comparators
+      final Sort multiSort = new Sort(sortField1, sortField2, SortField.FIELD_DOC);
+      final Sort twoSort = new Sort(sortField1, sortField2);
+      final Query query = random().nextBoolean() ? new MatchAllDocsQuery() : new TermQuery(new Term("body", "a"));
+      final int numHits = TestUtil.nextInt(random(), 1, 50);
+      final boolean trackDocScores = random().nextBoolean();
+      final boolean inOrder = random().nextBoolean();
+
+      TopFieldCollector expected = TopFieldCollector.create(multiSort, numHits, true, trackDocScores, false, inOrder);
+      searcher.search(query, expected);
+      TopFieldCollector actual = TopFieldCollector.create(twoSort, numHits, true, trackDocScores, false, inOrder);
+      searcher.search(query, actual);
+
+      TopDocs expectedDocs = expected.topDocs();
+      TopDocs actualDocs = actual.topDocs();
+      assertEquals(expectedDocs.totalHits, actualDocs.totalHits);
+      assertEquals(expectedDocs.scoreDocs.length, actualDocs.scoreDocs.length);
+      for (int i = 0; i < expectedDocs.scoreDocs.length; i++) {
+        final FieldDoc expectedDoc = (FieldDoc) expectedDocs.scoreDocs[i];
+        final FieldDoc actualDoc = (FieldDoc) actualDocs.scoreDocs[i];
+        assertEquals(expectedDoc.doc, actualDoc.doc);
+        assertEquals(expectedDoc.score, actualDoc.score, 0f);
+        assertEquals(2, actualDoc.fields.length);
+        assertEquals(expectedDoc.fields[0], actualDoc.fields[0]);
+        assertEquals(expectedDoc.fields[1], actualDoc.fields[1]);
+      }
+    }
+
+    reader.close();
+    dir.close();
+  }
+
   public void testSortWithScoreAndMaxScoreTrackingNoResults() throws Exception {
     
     // Two Sort criteria to instantiate the multi/single comparators.
@@ -264,4 +353,101 @@ public class TestTopFieldCollector extends LuceneTestCase {
       assertTrue(Float.isNaN(td.getMaxScore()));
     }
   }  
+
+  public void testSkipNonCompetitiveDocs() throws Exception {
+    Directory dir = newDirectory();
+    IndexWriter w = new IndexWriter(dir, newIndexWriterConfig(new MockAnalyzer(random())).setMergePolicy(newLogMergePolicy()));
+    final int numDocs = atLeast(5000);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(new LongField("long", i, Field.Store.NO));
+      w.addDocument(doc);
+    }
+    w.forceMerge(1);
+    IndexReader reader = DirectoryReader.open(w, true);
+    w.close();
+    IndexSearcher searcher = new IndexSearcher(reader);
+
+    Sort sort = new Sort(new SortField("long", SortField.Type.LONG));
+    TopFieldCollector collector = TopFieldCollector.create(sort, 10, null, true, false, false, true, false);
+    searcher.search(new MatchAllDocsQuery(), collector);
+    TopDocs topDocs = collector.topDocs();
+    assertEquals(10, topDocs.scoreDocs.length);
+    for (int i = 0; i < 10; i++) {
+      assertEquals(i, topDocs.scoreDocs[i].doc);
+    }
+    // only the first block was collected
+    assertTrue(topDocs.totalHits < numDocs);
+
+    reader.close();
+    dir.close();
+  }
+
+  public void testSkipNonCompetitiveDocsRandom() throws Exception {
+    Directory dir = newDirectory();
+    RandomIndexWriter w = new RandomIndexWriter(random(), dir);
+    final int numDocs = atLeast(5000);
+    final int maxValue = random().nextBoolean() ? 100 : Integer.MAX_VALUE;
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newStringField("body", random().nextBoolean() ? "a" : "b", Field.Store.NO));
+      if (random().nextInt(10) != 0) {
+        // values that mostly grow with doc IDs, so that blocks can be skipped
+        final int value = random().nextInt(10) == 0 ? random().nextInt(maxValue) : (int) ((long) maxValue * i / numDocs);
+        doc.add(new IntField("int", value, Field.Store.NO));
+        doc.add(new LongField("long", value, Field.Store.NO));
+        doc.add(new NumericDocValuesField("dv", value));
+      }
+      w.addDocument(doc);
+    }
+    IndexReader reader = w.getReader();
+    w.close();
+    IndexSearcher searcher = newSearcher(reader);
+
+    final int iters = atLeast(10);
+    for (int iter = 0; iter < iters; iter++) {
+      final SortField sortField;
+      switch (random().nextInt(3)) {
+        case 0:
+          sortField = new SortField("int", SortField.Type.INT, random().nextBoolean());
+          if (random().nextBoolean()) {
+            sortField.setMissingValue(random().nextBoolean() ? Integer.MIN_VALUE : Integer.MAX_VALUE);
+          }
+          break;
+        case 1:
+          sortField = new SortField("long", SortField.Type.LONG, random().nextBoolean());
+          if (random().nextBoolean()) {
+            sortField.setMissingValue(random().nextBoolean() ? Long.MIN_VALUE : Long.MAX_VALUE);
+          }
+          break;
+        default:
+          sortField = new SortField("dv", SortField.Type.LONG, random().nextBoolean());
+          break;
+      }
+      final Sort sort = random().nextBoolean() ? new Sort(sortField) : new Sort(sortField, SortField.FIELD_DOC);
+      final Query query = random().nextBoolean() ? new MatchAllDocsQuery() : new TermQuery(new Term("body", "a"));
+      final int numHits = TestUtil.nextInt(random(), 1, 100);
+      final boolean trackDocScores = random().nextBoolean();
+
+      TopFieldCollector expected = TopFieldCollector.create(sort, numHits, null, true, trackDocScores, false, true);
+      searcher.search(query, expected);
+      TopFieldCollector actual = TopFieldCollector.create(sort, numHits, null, true, trackDocScores, false, true, false);
+      searcher.search(query, actual);
+
+      TopDocs expectedDocs = expected.topDocs();
+      TopDocs actualDocs = actual.topDocs();
+      assertTrue(actualDocs.totalHits <= expectedDocs.totalHits);
+      assertEquals(expectedDocs.scoreDocs.length, actualDocs.scoreDocs.length);
+      for (int i = 0; i < expectedDocs.scoreDocs.length; i++) {
+        final FieldDoc expectedDoc = (FieldDoc) expectedDocs.scoreDocs[i];
+        final FieldDoc actualDoc = (FieldDoc) actualDocs.scoreDocs[i];
+        assertEquals(expectedDoc.doc, actualDoc.doc);
+        assertEquals(expectedDoc.score, actualDoc.score, 0f);
+        assertArrayEquals(expectedDoc.fields, actualDoc.fields);
+      }
+    }
+
+    reader.close();
+    dir.close();
+  }
 }
@@ -18,6 +18,7 @@ package org.apache.lucene.search.similarities;
  */
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.lucene.document.Document;
@@ -30,8 +31,10 @@ import org.apache.lucene.index.RandomIndexWriter;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.CheckHits;
 import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.spans.SpanOrQuery;
@@ -157,6 +160,52 @@ public class TestSimilarity2 extends LuceneTestCase {
     dir.close();
   }
   
+  /** make sure scores of small freqs, which some sims precompute, are
+   *  consistent with the scores of larger freqs and with explanations */
+  public void testSmallFreqs() throws Exception {
+    for (boolean omitNorms : new boolean[] { false, true }) {
+      Directory dir = newDirectory();
+      RandomIndexWriter iw = new RandomIndexWriter(random(), dir);
+      FieldType ft = new FieldType(TextField.TYPE_NOT_STORED);
+      ft.setOmitNorms(omitNorms);
+      ft.freeze();
+      final int maxFreq = 2 * Math.max(BM25Similarity.SCORE_CACHE_FREQS, TFIDFSimilarity.RAW_CACHE_FREQS);
+      for (int freq = 1; freq <= maxFreq; freq++) {
+        // all docs have the same length
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < maxFreq; i++) {
+          sb.append(i < freq ? "bar " : "baz ");
+        }
+        Document doc = new Document();
+        doc.add(newField("foo", sb.toString(), ft));
+        doc.add(newStringField("freq", Integer.toString(freq), Field.Store.YES));
+        iw.addDocument(doc);
+      }
+      IndexReader ir = iw.getReader();
+      iw.close();
+      IndexSearcher is = newSearcher(ir);
+
+      for (Similarity sim : sims) {
+        is.setSimilarity(sim);
+        Query query = new TermQuery(new Term("foo", "bar"));
+        TopDocs td = is.search(query, maxFreq);
+        assertEquals(maxFreq, td.totalHits);
+        float[] scores = new float[maxFreq + 1];
+        for (ScoreDoc sd : td.scoreDocs) {
+          scores[Integer.parseInt(is.doc(sd.doc).get("freq"))] = sd.score;
+        }
+        if (sim instanceof BM25Similarity || sim instanceof DefaultSimilarity) {
+          for (int freq = 2; freq <= maxFreq; freq++) {
+            assertTrue(sim + ": " + Arrays.toString(scores), scores[freq] > scores[freq - 1]);
+          }
+        }
+        CheckHits.checkExplanations(query, "foo", is);
+      }
+      ir.close();
+      dir.close();
+    }
+  }
+
   /** make sure all sims work if TF is omitted */
   public void testOmitTF() throws Exception {
     Directory dir = newDirectory();
@@ -364,6 +364,47 @@ public class TestPayloadSpans extends LuceneTestCase {
     directory.close();
   }
   
+  public void testLazyNearPayloads() throws IOException {
+    Directory directory = newDirectory();
+    RandomIndexWriter writer = new RandomIndexWriter(random(), directory,
+                                                     newIndexWriterConfig(new TestPayloadAnalyzer()));
+
+    Document doc = new Document();
+    doc.add(new TextField("content", new StringReader("a k x a k")));
+    writer.addDocument(doc);
+    IndexReader reader = writer.getReader();
+    IndexSearcher is = newSearcher(reader);
+    writer.close();
+
+    SpanQuery[] sqs = { new SpanTermQuery(new Term("content", "a")), new SpanTermQuery(new Term("content", "k")) };
+    Spans spans = MultiSpansWrapper.wrap(is.getTopReaderContext(), new SpanNearQuery(sqs, 0, true));
+
+    // payloads of the first match are not read
+    assertTrue(spans.next());
+    assertEquals(0, spans.start());
+    assertTrue(spans.next());
+    assertEquals(3, spans.start());
+    assertTrue(spans.isPayloadAvailable());
+    Set<String> payloadSet = new HashSet<>();
+    for (final byte [] payload : spans.getPayload()) {
+      payloadSet.add(new String(payload, StandardCharsets.UTF_8));
+    }
+    assertEquals(2, payloadSet.size());
+    assertTrue(payloadSet.contains("a:Noise:3"));
+    assertTrue(payloadSet.contains("k:Noise:4"));
+    // reading them again returns the same payloads
+    assertEquals(2, spans.getPayload().size());
+    assertFalse(spans.next());
+
+    spans = MultiSpansWrapper.wrap(is.getTopReaderContext(), new SpanNearQuery(sqs, 0, true, false));
+    while (spans.next()) {
+      assertFalse(spans.isPayloadAvailable());
+      assertTrue(spans.getPayload().isEmpty());
+    }
+    reader.close();
+    directory.close();
+  }
+
   public void testPayloadSpanUtil() throws Exception {
     Directory directory = newDirectory();
     RandomIndexWriter writer = new RandomIndexWriter(random(), directory,
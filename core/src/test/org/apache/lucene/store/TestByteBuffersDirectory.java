@@ -0,0 +1,125 @@
+package org.apache.lucene.store;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.English;
+import org.apache.lucene.util.TestUtil;
+
+public class TestByteBuffersDirectory extends BaseDirectoryTestCase {
+
+  @Override
+  protected Directory getDirectory(File path) {
+    return new ByteBuffersDirectory(TestUtil.nextInt(random(), 10, 16), random().nextBoolean());
+  }
+
+  public void testMultipleSlabs() throws IOException {
+    Directory dir = new ByteBuffersDirectory(10, random().nextBoolean());
+    // exactly 2 slabs, then a bit more than 4
+    for (int numBytes : new int[] {2048, 4097}) {
+      IndexOutput out = dir.createOutput("foo", IOContext.DEFAULT);
+      for (int i = 0; i < numBytes; i++) {
+        out.writeByte((byte) i);
+      }
+      out.close();
+      assertEquals(numBytes, dir.fileLength("foo"));
+
+      IndexInput in = dir.openInput("foo", IOContext.DEFAULT);
+      assertEquals(numBytes, in.length());
+      for (int i = 0; i < numBytes; i++) {
+        assertEquals((byte) i, in.readByte());
+      }
+      in.seek(1000);
+      assertEquals((byte) 1000, in.readByte());
+      IndexInput slice = in.slice("slice", 1020, numBytes - 1020);
+      assertEquals((byte) 1020, slice.readByte());
+      slice.seek(slice.length() - 1);
+      assertEquals((byte) (numBytes - 1), slice.readByte());
+      in.close();
+    }
+    dir.close();
+  }
+
+  public void testRamBytesUsed() throws IOException {
+    ByteBuffersDirectory dir = new ByteBuffersDirectory(12, false);
+    assertEquals(0, dir.ramBytesUsed());
+    IndexOutput out = dir.createOutput("small", IOContext.DEFAULT);
+    out.writeBytes(new byte[100], 100);
+    out.close();
+    assertEquals(ByteBuffersDirectory.INITIAL_BUFFER_SIZE, dir.ramBytesUsed());
+
+    out = dir.createOutput("big", IOContext.DEFAULT);
+    out.writeBytes(new byte[10000], 10000);
+    out.close();
+    // 3 slabs of 4 KB for the big file
+    assertEquals(ByteBuffersDirectory.INITIAL_BUFFER_SIZE + 3 * 4096, dir.ramBytesUsed());
+
+    dir.deleteFile("big");
+    assertEquals(ByteBuffersDirectory.INITIAL_BUFFER_SIZE, dir.ramBytesUsed());
+    dir.deleteFile("small");
+    assertEquals(0, dir.ramBytesUsed());
+    dir.close();
+  }
+
+  public void testOpenWhileWriting() throws IOException {
+    Directory dir = getDirectory(null);
+    IndexOutput out = dir.createOutput("foo", IOContext.DEFAULT);
+    out.writeInt(42);
+    try {
+      dir.openInput("foo", IOContext.DEFAULT);
+      fail("file is still open for writing");
+    } catch (IOException expected) {
+      // expected
+    }
+    out.close();
+    IndexInput in = dir.openInput("foo", IOContext.DEFAULT);
+    assertEquals(42, in.readInt());
+    in.close();
+    dir.close();
+  }
+
+  public void testIndexAndSearch() throws IOException {
+    Directory dir = getDirectory(null);
+    IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(TEST_VERSION_CURRENT, new MockAnalyzer(random())));
+    final int numDocs = atLeast(200);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newStringField("content", English.intToEnglish(i).trim(), Field.Store.YES));
+      writer.addDocument(doc);
+    }
+    writer.close();
+
+    DirectoryReader reader = DirectoryReader.open(dir);
+    assertEquals(numDocs, reader.numDocs());
+    IndexSearcher searcher = newSearcher(reader);
+    assertEquals(1, searcher.search(new TermQuery(new Term("content", English.intToEnglish(42).trim())), 1).totalHits);
+    reader.close();
+    dir.close();
+  }
+}
@@ -0,0 +1,228 @@
+package org.apache.lucene.store;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.File;
+
+import org.apache.lucene.analysis.MockAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.IOStatsDirectoryWrapper.Stats;
+import org.apache.lucene.util.TestUtil;
+
+public class TestIOStatsDirectoryWrapper extends BaseDirectoryTestCase {
+
+  @Override
+  protected Directory getDirectory(File path) {
+    Directory in = newFSDirectory(path);
+    if (in instanceof MockDirectoryWrapper) {
+      // test manipulates directory directly
+      ((MockDirectoryWrapper)in).setEnableVirusScanner(false);
+    }
+    return new IOStatsDirectoryWrapper(in);
+  }
+
+  public void testCounts() throws Exception {
+    IOStatsDirectoryWrapper dir = new IOStatsDirectoryWrapper(newDirectory());
+    final byte[] bytes = new byte[TestUtil.nextInt(random(), 1, 100000)];
+    random().nextBytes(bytes);
+    IndexOutput out = dir.createOutput("_0.foo", new IOContext(new FlushInfo(1, bytes.length)));
+    out.writeBytes(bytes, bytes.length);
+    out.writeInt(42);
+    out.close();
+
+    Stats stats = dir.getStats("foo", IOContext.Context.FLUSH);
+    assertEquals(bytes.length + 4, stats.bytesWritten);
+    assertEquals(1, stats.outputsCreated);
+    assertEquals(0, stats.bytesRead);
+    assertEquals(stats.toString(), 1, dir.getStats().size());
+
+    IndexInput in = dir.openInput("_0.foo", IOContext.READ);
+    assertEquals(1, dir.getStats("foo", IOContext.Context.READ).openInputs);
+    IndexInput clone = in.clone();
+    in.seek(bytes.length);
+    assertEquals(42, in.readInt());
+    final byte[] actual = new byte[bytes.length];
+    clone.readBytes(actual, 0, actual.length);
+    assertArrayEquals(bytes, actual);
+    IndexInput slice = in.slice("slice", 1, 3);
+    slice.readByte();
+    slice.readShort();
+    RandomAccessInput randomAccess = in.randomAccessSlice(0, bytes.length);
+    assertEquals(bytes[bytes.length - 1], randomAccess.readByte(bytes.length - 1));
+    // reads of clones and slices are published right away, those of
+    // the input on close
+    assertEquals(bytes.length + 3 + 1, dir.getStats("foo", IOContext.Context.READ).bytesRead);
+    slice.close();
+    clone.close();
+    in.close();
+
+    stats = dir.getStats("foo", IOContext.Context.READ);
+    assertEquals(bytes.length + 4 + 3 + 1, stats.bytesRead);
+    assertEquals(1, stats.seeks);
+    assertEquals(1, stats.inputsOpened);
+    assertEquals(0, stats.openInputs);
+    assertEquals(0, stats.bytesWritten);
+    // written stats did not change
+    assertEquals(bytes.length + 4, dir.getStats("foo", IOContext.Context.FLUSH).bytesWritten);
+
+    IndexInput in2 = dir.openInput("_0.foo", IOContext.READ);
+    in2.readByte();
+    Stats delta = dir.getStats("foo", IOContext.Context.READ).minus(stats);
+    assertEquals(1, delta.inputsOpened);
+    assertEquals(1, delta.openInputs);
+    in2.close();
+    delta = dir.getStats("foo", IOContext.Context.READ).minus(stats);
+    assertEquals(1, delta.bytesRead);
+    assertEquals(0, delta.openInputs);
+
+    assertEquals(0, dir.getStats("bar", IOContext.Context.READ).bytesRead);
+    dir.close();
+  }
+
+  public void testConcurrentReads() throws Exception {
+    final IOStatsDirectoryWrapper dir = new IOStatsDirectoryWrapper(newDirectory());
+    final int numBytes = atLeast(10000);
+    IndexOutput out = dir.createOutput("_0.foo", newIOContext(random()));
+    for (int i = 0; i < numBytes; i++) {
+      out.writeByte((byte) i);
+    }
+    out.close();
+
+    final IndexInput in = dir.openInput("_0.foo", IOContext.READ);
+    final Thread[] threads = new Thread[TestUtil.nextInt(random(), 2, 8)];
+    for (int i = 0; i < threads.length; i++) {
+      threads[i] = new Thread() {
+        @Override
+        public void run() {
+          try {
+            IndexInput clone = in.clone();
+            for (int j = 0; j < numBytes; j++) {
+              clone.readByte();
+            }
+            clone.close();
+          } catch (Exception e) {
+            throw new RuntimeException(e);
+          }
+        }
+      };
+      threads[i].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    in.close();
+    assertEquals((long) threads.length * numBytes, dir.getStats("foo", IOContext.Context.READ).bytesRead);
+    dir.close();
+  }
+
+  public void testReadsArePublished() throws Exception {
+    IOStatsDirectoryWrapper dir = new IOStatsDirectoryWrapper(newDirectory());
+    final int numBytes = TestUtil.nextInt(random(), 2, 4) * IOStatsDirectoryWrapper.READ_FLUSH_BYTES;
+    IndexOutput out = dir.createOutput("_0.foo", newIOContext(random()));
+    out.writeBytes(new byte[numBytes], numBytes);
+    out.close();
+
+    IndexInput in = dir.openInput("_0.foo", IOContext.READ);
+    IndexInput clone = in.clone();
+    for (int i = 0; i < numBytes; i++) {
+      clone.readByte();
+    }
+    // clones are usually never closed, so their reads are not batched
+    assertEquals(numBytes, dir.getStats("foo", IOContext.Context.READ).bytesRead);
+
+    in.readByte();
+    assertEquals(numBytes, dir.getStats("foo", IOContext.Context.READ).bytesRead);
+    // seeks publish pending bytes
+    in.seek(0);
+    assertEquals(numBytes + 1, dir.getStats("foo", IOContext.Context.READ).bytesRead);
+    in.close();
+    dir.close();
+  }
+
+  public void testVInts() throws Exception {
+    IOStatsDirectoryWrapper dir = new IOStatsDirectoryWrapper(newDirectory());
+    IndexOutput out = dir.createOutput("_0.foo", newIOContext(random()));
+    final int numValues = atLeast(1000);
+    for (int i = 0; i < numValues; i++) {
+      out.writeVInt(random().nextInt(1 << random().nextInt(31)));
+      out.writeVInt(-random().nextInt(Integer.MAX_VALUE) - 1);
+      out.writeVLong(random().nextLong() >>> (1 + random().nextInt(63)));
+    }
+    final long length = out.getFilePointer();
+    out.close();
+
+    IndexInput in = dir.openInput("_0.foo", IOContext.READ);
+    IndexInput clone = in.clone();
+    for (int i = 0; i < numValues; i++) {
+      clone.readVInt();
+      clone.readVInt();
+      clone.readVLong();
+    }
+    assertEquals(length, clone.getFilePointer());
+    assertEquals(length, dir.getStats("foo", IOContext.Context.READ).bytesRead);
+    in.close();
+    dir.close();
+  }
+
+  public void testIndexing() throws Exception {
+    IOStatsDirectoryWrapper dir = new IOStatsDirectoryWrapper(newDirectory());
+    IndexWriterConfig iwc = newIndexWriterConfig(new MockAnalyzer(random()));
+    iwc.setUseCompoundFile(false);
+    IndexWriter w = new IndexWriter(dir, iwc);
+    final int numDocs = atLeast(100);
+    for (int i = 0; i < numDocs; i++) {
+      Document doc = new Document();
+      doc.add(newStringField("id", Integer.toString(i), Field.Store.YES));
+      w.addDocument(doc);
+    }
+    w.close();
+
+    long bytesWritten = 0;
+    for (Stats stats : dir.getStats()) {
+      bytesWritten += stats.bytesWritten;
+    }
+    long fileBytes = 0;
+    for (String file : dir.listAll()) {
+      fileBytes += dir.fileLength(file);
+    }
+    // some files may have been written and deleted again
+    assertTrue(bytesWritten >= fileBytes);
+    assertTrue(dir.getStats(IndexFileNames.SEGMENTS, IOContext.Context.DEFAULT).bytesWritten > 0);
+
+    DirectoryReader reader = DirectoryReader.open(dir);
+    IndexSearcher searcher = newSearcher(reader);
+    assertEquals(1, searcher.search(new TermQuery(new Term("id", "1")), 1).totalHits);
+    long bytesRead = 0;
+    for (Stats stats : dir.getStats()) {
+      if (stats.context == IOContext.Context.READ) {
+        bytesRead += stats.bytesRead;
+      }
+    }
+    assertTrue(bytesRead > 0);
+    reader.close();
+    dir.close();
+  }
+}
@@ -20,7 +20,12 @@ package org.apache.lucene.store;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.MockAnalyzer;
@@ -35,7 +40,9 @@ import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.LineFileDocs;
+import org.apache.lucene.util.NamedThreadFactory;
 import org.apache.lucene.util.TestUtil;
+import org.apache.lucene.util.ThreadInterruptedException;
 
 public class TestNRTCachingDirectory extends BaseDirectoryTestCase {
 
@@ -140,4 +147,228 @@ public class TestNRTCachingDirectory extends BaseDirectoryTestCase {
     cfsDir.close();
     dir.close();
   }
+
+  public void testBackgroundPersist() throws Exception {
+    Directory dir = newDirectory();
+    ExecutorService executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("TestNRTCachingDirectory"));
+    NRTCachingDirectory cachedDir = new NRTCachingDirectory(dir, 2.0, 25.0, executor);
+    IOContext context = new IOContext(new FlushInfo(1, 1024));
+    IndexOutput out = cachedDir.createOutput("foo.bin", context);
+    for(int i=0;i<1000;i++) {
+      out.writeInt(i);
+    }
+    out.close();
+    assertEquals(1, cachedDir.listCachedFiles().length);
+
+    // wait for the background copy to finish
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    assertEquals(0, cachedDir.pendingPersistCount());
+    assertTrue(dir.fileExists("foo.bin"));
+    assertEquals(4000, dir.fileLength("foo.bin"));
+    assertEquals(4000, cachedDir.persistedBytes());
+
+    // still served from RAM until it's sync'd
+    assertEquals(1, cachedDir.listCachedFiles().length);
+    cachedDir.sync(Collections.singleton("foo.bin"));
+    assertEquals(0, cachedDir.listCachedFiles().length);
+    assertEquals(0, cachedDir.persistedBytes());
+
+    IndexInput in = cachedDir.openInput("foo.bin", context);
+    for(int i=0;i<1000;i++) {
+      assertEquals(i, in.readInt());
+    }
+    in.close();
+    cachedDir.close();
+  }
+
+  public void testDeleteBeforePersist() throws Exception {
+    MockDirectoryWrapper dir = newMockDirectory();
+    // we want to verify deletion of persisted files:
+    dir.setEnableVirusScanner(false);
+    ExecutorService executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("TestNRTCachingDirectory"));
+    NRTCachingDirectory cachedDir = new NRTCachingDirectory(dir, 2.0, 25.0, executor);
+    IOContext context = new IOContext(new FlushInfo(1, 1024));
+    for(int i=0;i<10;i++) {
+      IndexOutput out = cachedDir.createOutput("foo" + i + ".bin", context);
+      out.writeLong(i);
+      out.close();
+      cachedDir.deleteFile("foo" + i + ".bin");
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    assertEquals(0, cachedDir.listAll().length);
+    assertEquals(0, dir.listAll().length);
+    cachedDir.close();
+  }
+
+  /** Returns a directory whose outputs for files starting with "slow"
+   *  are only closed once <code>release</code> is counted down. */
+  private static Directory newSlowDirectory(final CountDownLatch started, final CountDownLatch release) {
+    return newSlowDirectory(newMockDirectory(), started, release);
+  }
+
+  private static Directory newSlowDirectory(MockDirectoryWrapper dir, final CountDownLatch started, final CountDownLatch release) {
+    // we want to verify deletion of persisted files:
+    dir.setEnableVirusScanner(false);
+    return new FilterDirectory(dir) {
+      @Override
+      public IndexOutput createOutput(String name, IOContext context) throws IOException {
+        final IndexOutput out = super.createOutput(name, context);
+        if (name.startsWith("slow") == false) {
+          return out;
+        }
+        return new IndexOutput() {
+          @Override
+          public void writeByte(byte b) throws IOException {
+            out.writeByte(b);
+          }
+
+          @Override
+          public void writeBytes(byte[] b, int offset, int length) throws IOException {
+            out.writeBytes(b, offset, length);
+          }
+
+          @Override
+          public void flush() throws IOException {
+            out.flush();
+          }
+
+          @Override
+          public void close() throws IOException {
+            started.countDown();
+            try {
+              release.await();
+            } catch (InterruptedException ie) {
+              throw new ThreadInterruptedException(ie);
+            }
+            out.close();
+          }
+
+          @Override
+          public long getFilePointer() {
+            return out.getFilePointer();
+          }
+
+          @Override
+          public long getChecksum() throws IOException {
+            return out.getChecksum();
+          }
+        };
+      }
+    };
+  }
+
+  public void testDeleteDuringPersist() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    Directory dir = newSlowDirectory(started, release);
+    ExecutorService executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("TestNRTCachingDirectory"));
+    NRTCachingDirectory cachedDir = new NRTCachingDirectory(dir, 2.0, 25.0, executor);
+    IOContext context = new IOContext(new FlushInfo(1, 1024));
+    IndexOutput out = cachedDir.createOutput("slow.bin", context);
+    out.writeLong(42);
+    out.close();
+    started.await();
+
+    // other files can be uncached while slow.bin is being copied
+    out = cachedDir.createOutput("other.bin", context);
+    out.writeLong(43);
+    out.close();
+    cachedDir.sync(Collections.singleton("other.bin"));
+    assertTrue(dir.fileExists("other.bin"));
+
+    cachedDir.deleteFile("slow.bin");
+    release.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    // the copy of the deleted file was removed
+    assertFalse(dir.fileExists("slow.bin"));
+    assertFalse(cachedDir.fileExists("slow.bin"));
+    assertEquals(0, cachedDir.persistedBytes());
+    cachedDir.close();
+  }
+
+  public void testSyncDuringPersist() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    Directory dir = newSlowDirectory(started, release);
+    ExecutorService executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("TestNRTCachingDirectory"));
+    final NRTCachingDirectory cachedDir = new NRTCachingDirectory(dir, 2.0, 25.0, executor);
+    IOContext context = new IOContext(new FlushInfo(1, 1024));
+    IndexOutput out = cachedDir.createOutput("slow.bin", context);
+    out.writeLong(42);
+    out.close();
+    started.await();
+
+    // sync waits for the background copy to finish
+    Thread syncThread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          cachedDir.sync(Collections.singleton("slow.bin"));
+        } catch (IOException ioe) {
+          throw new RuntimeException(ioe);
+        }
+      }
+    };
+    syncThread.start();
+    release.countDown();
+    syncThread.join();
+    assertEquals(0, cachedDir.listCachedFiles().length);
+    assertEquals(8, dir.fileLength("slow.bin"));
+    IndexInput in = cachedDir.openInput("slow.bin", context);
+    assertEquals(42, in.readLong());
+    in.close();
+
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    cachedDir.close();
+  }
+  public void testRecreateDuringPersist() throws Exception {
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    MockDirectoryWrapper mockDir = newMockDirectory();
+    // the copy of the previous version is overwritten on sync:
+    mockDir.setPreventDoubleWrite(false);
+    final Directory dir = newSlowDirectory(mockDir, started, release);
+    ExecutorService executor = Executors.newSingleThreadExecutor(new NamedThreadFactory("TestNRTCachingDirectory"));
+    final NRTCachingDirectory cachedDir = new NRTCachingDirectory(dir, 2.0, 25.0, executor);
+    final IOContext context = new IOContext(new FlushInfo(1, 1024));
+    IndexOutput out = cachedDir.createOutput("slow.bin", context);
+    out.writeLong(42);
+    out.close();
+    started.await();
+
+    // re-create and sync the file while its previous version is being copied
+    Thread recreateThread = new Thread() {
+      @Override
+      public void run() {
+        try {
+          IndexOutput out = cachedDir.createOutput("slow.bin", context);
+          out.writeLong(43);
+          out.close();
+          cachedDir.sync(Collections.singleton("slow.bin"));
+        } catch (IOException ioe) {
+          throw new RuntimeException(ioe);
+        }
+      }
+    };
+    recreateThread.start();
+    while (recreateThread.getState() != Thread.State.WAITING && recreateThread.isAlive()) {
+      Thread.yield();
+    }
+    release.countDown();
+    recreateThread.join();
+
+    // the new version wins over the stale copy
+    assertEquals(0, cachedDir.listCachedFiles().length);
+    IndexInput in = dir.openInput("slow.bin", context);
+    assertEquals(43, in.readLong());
+    in.close();
+
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    cachedDir.close();
+  }
 }
@@ -0,0 +1,95 @@
+package org.apache.lucene.util;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.IOException;
+import java.util.BitSet;
+
+import org.apache.lucene.search.DocIdSet;
+import org.apache.lucene.search.DocIdSetIterator;
+
+public class TestDocIdSetBuilder extends LuceneTestCase {
+
+  private static void assertEquals(BitSet expected, DocIdSet actual) throws IOException {
+    final DocIdSetIterator it = actual.iterator();
+    if (it == null) {
+      assertEquals(0, expected.cardinality());
+      return;
+    }
+    for (int doc = expected.nextSetBit(0); doc != -1; doc = expected.nextSetBit(doc + 1)) {
+      assertEquals(doc, it.nextDoc());
+    }
+    assertEquals(DocIdSetIterator.NO_MORE_DOCS, it.nextDoc());
+  }
+
+  private static DocIdSetIterator randomIterator(int maxDoc, int numDocs, BitSet expected) throws IOException {
+    final FixedBitSet bits = new FixedBitSet(maxDoc);
+    for (int i = 0; i < numDocs; ++i) {
+      final int doc = random().nextInt(maxDoc);
+      bits.set(doc);
+      expected.set(doc);
+    }
+    // don't always use a FixedBitSetIterator, which FixedBitSet.or optimizes
+    final PForDeltaDocIdSet.Builder builder = new PForDeltaDocIdSet.Builder();
+    builder.add(bits.iterator());
+    return random().nextBoolean() ? bits.iterator() : builder.build().iterator();
+  }
+
+  public void testEmpty() throws IOException {
+    final DocIdSetBuilder builder = new DocIdSetBuilder(TestUtil.nextInt(random(), 1, 100000));
+    assertEquals(new BitSet(), builder.build());
+  }
+
+  public void testSparse() throws IOException {
+    final int maxDoc = 1000000 + random().nextInt(1000000);
+    final DocIdSetBuilder builder = new DocIdSetBuilder(maxDoc);
+    final BitSet expected = new BitSet(maxDoc);
+    final int numIterators = TestUtil.nextInt(random(), 1, 10);
+    for (int i = 0; i < numIterators; ++i) {
+      builder.add(randomIterator(maxDoc, random().nextInt(100), expected));
+    }
+    final DocIdSet result = builder.build();
+    assertFalse(result instanceof FixedBitSet);
+    assertEquals(expected, result);
+  }
+
+  public void testDense() throws IOException {
+    final int maxDoc = 1000000 + random().nextInt(1000000);
+    final DocIdSetBuilder builder = new DocIdSetBuilder(maxDoc);
+    final BitSet expected = new BitSet(maxDoc);
+    final int numIterators = TestUtil.nextInt(random(), 1, 10);
+    for (int i = 0; i < numIterators; ++i) {
+      builder.add(randomIterator(maxDoc, maxDoc / numIterators / 10, expected));
+    }
+    final DocIdSet result = builder.build();
+    assertTrue(result instanceof FixedBitSet);
+    assertEquals(expected, result);
+  }
+
+  public void testRandom() throws IOException {
+    final int maxDoc = TestUtil.nextInt(random(), 1, 100000);
+    final DocIdSetBuilder builder = new DocIdSetBuilder(maxDoc);
+    final BitSet expected = new BitSet(maxDoc);
+    final int numIterators = TestUtil.nextInt(random(), 1, 20);
+    for (int i = 0; i < numIterators; ++i) {
+      builder.add(randomIterator(maxDoc, random().nextInt(1 + maxDoc / 50), expected));
+    }
+    assertEquals(expected, builder.build());
+  }
+
+}
@@ -0,0 +1,109 @@
+package org.apache.lucene.util.automaton;
+
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.LuceneTestCase;
+
+public class TestAutomataCache extends LuceneTestCase {
+
+  private static final class Value implements Accountable {
+    final long ramBytesUsed;
+
+    Value(long ramBytesUsed) {
+      this.ramBytesUsed = ramBytesUsed;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+      return ramBytesUsed;
+    }
+  }
+
+  public void testEvictsLeastRecentlyUsed() {
+    final AutomataCache<String,Value> cache = new AutomataCache<>(100);
+    final Value a = new Value(40), b = new Value(40), c = new Value(40);
+    cache.put("a", a);
+    cache.put("b", b);
+    assertEquals(80, cache.ramBytesUsed());
+    assertSame(a, cache.get("a"));
+    // b is the least recently used value now
+    cache.put("c", c);
+    assertEquals(2, cache.size());
+    assertEquals(80, cache.ramBytesUsed());
+    assertSame(a, cache.get("a"));
+    assertNull(cache.get("b"));
+    assertSame(c, cache.get("c"));
+
+    // replacing a value does not count it twice
+    cache.put("c", new Value(50));
+    assertEquals(90, cache.ramBytesUsed());
+    assertEquals(2, cache.size());
+  }
+
+  public void testValueLargerThanMax() {
+    final AutomataCache<String,Value> cache = new AutomataCache<>(100);
+    cache.put("a", new Value(60));
+    cache.put("b", new Value(101));
+    assertNull(cache.get("b"));
+    assertNotNull(cache.get("a"));
+    assertEquals(60, cache.ramBytesUsed());
+  }
+
+  public void testSetMaxRamBytes() {
+    final AutomataCache<String,Value> cache = new AutomataCache<>(100);
+    cache.put("a", new Value(30));
+    cache.put("b", new Value(30));
+    cache.put("c", new Value(30));
+    cache.setMaxRamBytes(60);
+    assertEquals(60, cache.getMaxRamBytes());
+    assertNull(cache.get("a"));
+    assertEquals(2, cache.size());
+    assertEquals(60, cache.ramBytesUsed());
+
+    cache.setMaxRamBytes(0);
+    assertEquals(0, cache.size());
+    assertEquals(0, cache.ramBytesUsed());
+    cache.put("a", new Value(1));
+    assertEquals(0, cache.size());
+
+    try {
+      cache.setMaxRamBytes(-1);
+      fail();
+    } catch (IllegalArgumentException expected) {
+      // ok
+    }
+  }
+
+  public void testCompiledAutomata() {
+    final AutomataCache<String,CompiledAutomaton> cache = new AutomataCache<>(Long.MAX_VALUE);
+    long expected = 0;
+    for (int i = 0; i < 10; i++) {
+      final CompiledAutomaton compiled = new CompiledAutomaton(AutomatonTestUtil.randomAutomaton(random()));
+      assertTrue(compiled.ramBytesUsed() > 0);
+      expected += compiled.ramBytesUsed();
+      cache.put("key" + i, compiled);
+    }
+    assertEquals(expected, cache.ramBytesUsed());
+    // now only the most recent automata fit
+    cache.setMaxRamBytes(expected / 2);
+    assertTrue(cache.size() < 10);
+    assertTrue(cache.ramBytesUsed() <= expected / 2);
+    assertNull(cache.get("key0"));
+  }
+}
@@ -1030,6 +1030,66 @@ public class TestFSTs extends LuceneTestCase {
   }
 
 
+  public void testOffHeap() throws Exception {
+    final PositiveIntOutputs outputs = PositiveIntOutputs.getSingleton();
+    final boolean doPack = random().nextBoolean();
+    final Builder<Long> builder = new Builder<>(FST.INPUT_TYPE.BYTE1, 0, 0, true, true, Integer.MAX_VALUE, outputs,
+                                                doPack, PackedInts.DEFAULT, true, 15);
+    final TreeMap<String,Long> terms = new TreeMap<>();
+    final int numTerms = atLeast(1000);
+    while (terms.size() < numTerms) {
+      terms.put(simpleRandomString(random()), (long) random().nextInt(1000));
+    }
+    final IntsRefBuilder scratch = new IntsRefBuilder();
+    for (Map.Entry<String,Long> ent : terms.entrySet()) {
+      builder.add(Util.toIntsRef(new BytesRef(ent.getKey()), scratch), ent.getValue());
+    }
+    final FST<Long> fst = builder.finish();
+
+    Directory dir = newDirectory();
+    IndexOutput out = dir.createOutput("fst", IOContext.DEFAULT);
+    // the FST does not start at the beginning of the file
+    out.writeVInt(42);
+    fst.save(out);
+    out.writeVInt(43);
+    out.close();
+
+    IndexInput in = dir.openInput("fst", IOContext.DEFAULT);
+    assertEquals(42, in.readVInt());
+    final FST<Long> offHeap = new FST<>(in, outputs, true);
+    assertEquals(43, in.readVInt());
+    assertTrue(offHeap.ramBytesUsed() < fst.ramBytesUsed());
+
+    for (Map.Entry<String,Long> ent : terms.entrySet()) {
+      assertEquals(ent.getValue(), Util.get(offHeap, new BytesRef(ent.getKey())));
+    }
+    for (int i = 0; i < 100; i++) {
+      final String term = simpleRandomString(random());
+      assertEquals(terms.get(term), Util.get(offHeap, new BytesRef(term)));
+    }
+    final BytesRefFSTEnum<Long> fstEnum = new BytesRefFSTEnum<>(offHeap);
+    for (Map.Entry<String,Long> ent : terms.entrySet()) {
+      final InputOutput<Long> io = fstEnum.next();
+      assertEquals(new BytesRef(ent.getKey()), io.input);
+      assertEquals(ent.getValue(), io.output);
+    }
+    assertNull(fstEnum.next());
+
+    // saving an off-heap FST copies its bytes
+    out = dir.createOutput("fst2", IOContext.DEFAULT);
+    offHeap.save(out);
+    out.close();
+    IndexInput in2 = dir.openInput("fst2", IOContext.DEFAULT);
+    final FST<Long> fst2 = new FST<>(in2, outputs);
+    in2.close();
+    for (Map.Entry<String,Long> ent : terms.entrySet()) {
+      assertEquals(ent.getValue(), Util.get(fst2, new BytesRef(ent.getKey())));
+    }
+
+    in.close();
+    dir.close();
+  }
+
   /**
    * Test state expansion (array format) on close-to-root states. Creates
    * synthetic input that has one expanded state on each level.
@@ -17,6 +17,10 @@ package org.apache.lucene.util.packed;
  * limitations under the License.
  */
 
+import java.io.IOException;
+
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.ByteArrayDataOutput;
 import org.apache.lucene.util.LuceneTestCase;
 
 public class TestEliasFanoSequence extends LuceneTestCase {
@@ -98,6 +102,18 @@ public class TestEliasFanoSequence extends LuceneTestCase {
     assertEquals(EliasFanoDecoder.NO_MORE_VALUES, advanceValue);
   }
 
+  private static void tstDecodeAdvanceToIndexMultiples(long[] values, EliasFanoDecoder efd, final int m) {
+    // test advancing to indexes that are multiples of m
+    assert m > 0;
+    efd.toBeforeSequence();
+    for (int index = m - 1; index < values.length; index += m) {
+      assertTrue("advanceToIndex at end too early", efd.advanceToIndex(index));
+      assertEquals(index, efd.currentIndex());
+      assertEquals(values[index], efd.currentValue());
+    }
+    assertFalse(efd.advanceToIndex(values.length));
+  }
+
   private static void tstDecodeBackToMultiples(long[] values, EliasFanoDecoder efd, final long m) {
     // test backing to multiples of m
     assert m > 0;
@@ -286,6 +302,19 @@ public class TestEliasFanoSequence extends LuceneTestCase {
     }
   }
 
+  public void testAdvanceToIndexMultiples() {
+    for (int s = 2; s < 130; s++) {
+      long[] values = new long[s];
+      for (int i = 0; i < s; i++) {
+        values[i] = i * ((long) i + 1) / 2;
+      }
+      EliasFanoEncoder efEncoder = makeEncoder(values, EliasFanoEncoder.DEFAULT_INDEX_INTERVAL);
+      for (int m = 1; m <= s; m++) {
+        tstDecodeAdvanceToIndexMultiples(values, efEncoder.getDecoder(), m);
+      }
+    }
+  }
+
   public void testEmptyIndex() {
     long indexInterval = 2;
     long[] emptyLongs = new long[0];
@@ -378,5 +407,25 @@ public class TestEliasFanoSequence extends LuceneTestCase {
     assertEquals("advance 22", 32, efDecVI.advanceToValue(22));
   }
 
-}
 
+  public void testWriteReadFrom() throws IOException {
+    final int s = atLeast(1000);
+    long[] values = new long[s];
+    long value = 0;
+    for (int i = 0; i < s; i++) {
+      value += random().nextInt(100);
+      values[i] = value;
+    }
+    EliasFanoEncoder efEncoder = makeEncoder(values, 2 + random().nextInt(300));
+    byte[] bytes = new byte[(int) efEncoder.ramBytesUsed() + 100];
+    ByteArrayDataOutput out = new ByteArrayDataOutput(bytes);
+    efEncoder.writeTo(out);
+    ByteArrayDataInput in = new ByteArrayDataInput(bytes, 0, out.getPosition());
+    EliasFanoEncoder efEncoder2 = EliasFanoEncoder.readFrom(in);
+    assertTrue(in.eof());
+    assertEquals(efEncoder, efEncoder2);
+    tstDecodeAll(efEncoder2, values);
+    tstDecodeAdvanceToMultiples(values, efEncoder2.getDecoder(), 7);
+  }
+
+}
@@ -7,9 +7,8 @@ import java.util.Map;
 
 import org.apache.lucene.facet.FacetsConfig;
 import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState.OrdRange;
-import org.apache.lucene.index.AtomicReader;
 import org.apache.lucene.index.IndexReader;
-import org.apache.lucene.index.SlowCompositeReaderWrapper;
+import org.apache.lucene.index.OrdinalMapCache;
 import org.apache.lucene.index.SortedSetDocValues;
 import org.apache.lucene.util.BytesRef;
 
@@ -36,7 +35,6 @@ import org.apache.lucene.util.BytesRef;
 public class DefaultSortedSetDocValuesReaderState extends SortedSetDocValuesReaderState {
 
   private final String field;
-  private final AtomicReader topReader;
   private final int valueCount;
 
   /** {@link IndexReader} passed to the constructor. */
@@ -56,10 +54,9 @@ public class DefaultSortedSetDocValuesReaderState extends SortedSetDocValuesRead
     this.field = field;
     this.origReader = reader;
 
-    // We need this to create thread-safe MultiSortedSetDV
-    // per collector:
-    topReader = SlowCompositeReaderWrapper.wrap(reader);
-    SortedSetDocValues dv = topReader.getSortedSetDocValues(field);
+    // The ordinal map is cached per reader, and reopened
+    // readers only merge the terms of their new segments:
+    SortedSetDocValues dv = OrdinalMapCache.DOC_VALUES.getValues(reader, field);
     if (dv == null) {
       throw new IllegalArgumentException("field \"" + field + "\" was not indexed with SortedSetDocValues");
     }
@@ -101,7 +98,9 @@ public class DefaultSortedSetDocValuesReaderState extends SortedSetDocValuesRead
   /** Return top-level doc values. */
   @Override
   public SortedSetDocValues getDocValues() throws IOException {
-    return topReader.getSortedSetDocValues(field);
+    // We need this to create thread-safe MultiSortedSetDV
+    // per collector:
+    return OrdinalMapCache.DOC_VALUES.getValues(origReader, field);
   }
 
   /** Returns mapping from prefix to {@link OrdRange}. */
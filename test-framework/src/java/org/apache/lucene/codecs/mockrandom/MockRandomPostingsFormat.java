@@ -37,6 +37,7 @@ import org.apache.lucene.codecs.blockterms.TermsIndexWriterBase;
 import org.apache.lucene.codecs.blockterms.VariableGapTermsIndexReader;
 import org.apache.lucene.codecs.blockterms.VariableGapTermsIndexWriter;
 import org.apache.lucene.codecs.blocktree.BlockTreeTermsReader;
+import org.apache.lucene.codecs.blocktree.BlockTreeTermsReader.FSTLoadMode;
 import org.apache.lucene.codecs.blocktree.BlockTreeTermsWriter;
 import org.apache.lucene.codecs.blocktreeords.OrdsBlockTreeTermsReader;
 import org.apache.lucene.codecs.blocktreeords.OrdsBlockTreeTermsWriter;
@@ -404,6 +405,11 @@ public final class MockRandomPostingsFormat extends PostingsFormat {
         System.out.println("MockRandomCodec: reading BlockTree terms dict");
       }
 
+      final FSTLoadMode fstLoadMode = FSTLoadMode.values()[random.nextInt(FSTLoadMode.values().length)];
+      if (LuceneTestCase.VERBOSE) {
+        System.out.println("MockRandomCodec: terms index load mode=" + fstLoadMode);
+      }
+
       boolean success = false;
       try {
         fields = new BlockTreeTermsReader(state.directory,
@@ -412,7 +418,8 @@ public final class MockRandomPostingsFormat extends PostingsFormat {
                                           postingsReader,
                                           state.context,
                                           state.segmentSuffix,
-                                          state.termsIndexDivisor);
+                                          state.termsIndexDivisor,
+                                          fstLoadMode);
         success = true;
       } finally {
         if (!success) {
@@ -304,6 +304,26 @@ public class AssertingAtomicReader extends FilterAtomicReader {
       return doc = advanced;
     }
 
+    @Override
+    public int read(int[] docs) throws IOException {
+      int count = in.read(docs);
+      assert count >= 0 && count <= docs.length;
+      assert state != DocsEnumState.FINISHED || count == 0 : "read() returned docs after NO_MORE_DOCS";
+      for (int i = 0; i < count; ++i) {
+        assert docs[i] > (i == 0 ? doc : docs[i-1]) : "backwards read from " + (i == 0 ? doc : docs[i-1]) + " to " + docs[i] + " " + in;
+      }
+      final int docID = super.docID();
+      if (count == 0) {
+        assert docID == DocIdSetIterator.NO_MORE_DOCS : "read() returned 0 but docID() is " + docID + " " + in;
+      } else {
+        assert docID == docs[count - 1] || docID == DocIdSetIterator.NO_MORE_DOCS : "invalid docID() after read(): " + docID + " " + in;
+      }
+      state = docID == DocIdSetIterator.NO_MORE_DOCS ? DocsEnumState.FINISHED : DocsEnumState.ITERATING;
+      // freq() is undefined after read()
+      doc = docID;
+      return count;
+    }
+
     @Override
     public int docID() {
       assert doc == super.docID() : " invalid docID() in " + in.getClass() + " " + super.docID() + " instead of " + doc;